@@ -73,6 +73,7 @@ tasks.shadowJar {
 
 	manifest {
 		attributes["Premain-Class"] = "com.teamscale.jacoco.agent.PreMain"
+		attributes["Can-Retransform-Classes"] = "true"
 	}
 }
 
@@ -11,10 +11,13 @@ import com.teamscale.jacoco.agent.upload.IUploader;
 import com.teamscale.jacoco.agent.upload.UploaderException;
 import com.teamscale.jacoco.agent.util.AgentUtils;
 import com.teamscale.jacoco.agent.util.Benchmark;
+import com.teamscale.jacoco.agent.util.DaemonThreadFactory;
 import com.teamscale.jacoco.agent.util.FileSystemUtilsClone;
 import com.teamscale.jacoco.agent.util.Timer;
 import com.teamscale.report.jacoco.CoverageFile;
 import com.teamscale.report.jacoco.EmptyReportException;
+import com.teamscale.report.jacoco.ICoverageReportGenerator;
+import com.teamscale.report.jacoco.JaCoCoLineCoverageReportGenerator;
 import com.teamscale.report.jacoco.JaCoCoXmlReportGenerator;
 import com.teamscale.report.jacoco.dump.Dump;
 import org.conqat.lib.commons.string.StringUtils;
@@ -31,6 +34,9 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static com.teamscale.jacoco.agent.upload.teamscale.TeamscaleUploader.RETRY_UPLOAD_FILE_SUFFIX;
@@ -43,25 +49,81 @@ import static com.teamscale.jacoco.agent.util.LoggingUtils.wrap;
 public class Agent extends AgentBase {
 
 	/** Converts binary data to XML. */
-	private final JaCoCoXmlReportGenerator generator;
+	private final ICoverageReportGenerator generator;
 
 	/** Regular dump task. */
 	private Timer timer;
 
+	/** Regular task that persists the coverage to the {@link #coverageStore}. */
+	private Timer coverageStoreTimer;
+
+	/**
+	 * Uploads coverage that was taken out of the {@link #coverageStore}, i.e. coverage recovered from a previous run of
+	 * the JVM or the coverage of a previous session, without blocking the caller.
+	 */
+	private final ExecutorService coverageStoreUploadExecutor = Executors.newSingleThreadExecutor(
+			new DaemonThreadFactory(Agent.class, "coverage store upload"));
+
+	/** Persists the coverage between two dumps or <code>null</code> if no store is configured. */
+	private PersistentCoverageStore coverageStore;
+
 	/** Stores the XML files. */
 	protected final IUploader uploader;
 
+	/**
+	 * All coverage handed to the uploader so far. Used to skip dumps without new coverage or <code>null</code> if all dumps should be
+	 * converted and uploaded.
+	 */
+	private final CumulativeCoverage cumulativeCoverage;
+
+	/** Number of consecutive dumps that have been skipped since they did not contain new coverage. */
+	private int skippedDumps = 0;
+
+	/**
+	 * Removes the instrumentation of fully covered classes or <code>null</code> if all classes should stay
+	 * instrumented.
+	 */
+	private SaturatedClassesRetransformer saturatedClassesRetransformer;
+
 	/** Constructor. */
 	public Agent(AgentOptions options, Instrumentation instrumentation)
 			throws IllegalStateException, UploaderException {
+		this(options, instrumentation, null);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param transformer The transformer that instruments the classes. Only needed if the instrumentation of fully
+	 *                    covered classes should be removed.
+	 */
+	public Agent(AgentOptions options, Instrumentation instrumentation, LenientCoverageTransformer transformer)
+			throws IllegalStateException, UploaderException {
 		super(options);
 
 		uploader = options.createUploader(instrumentation);
 		logger.info("Upload method: {}", uploader.describe());
 		retryUnsuccessfulUploads(options, uploader);
-		generator = new JaCoCoXmlReportGenerator(options.getClassDirectoriesOrZips(),
-				options.getLocationIncludeFilter(), options.getDuplicateClassFileBehavior(),
-				options.shouldIgnoreUncoveredClasses(), wrap(logger));
+		if (options.shouldGenerateLineCoverageReport()) {
+			generator = new JaCoCoLineCoverageReportGenerator(options.getClassDirectoriesOrZips(),
+					options.getLocationIncludeFilter(), options.getDuplicateClassFileBehavior(),
+					options.shouldIgnoreUncoveredClasses(), wrap(logger));
+		} else {
+			generator = new JaCoCoXmlReportGenerator(options.getClassDirectoriesOrZips(),
+					options.getLocationIncludeFilter(), options.getDuplicateClassFileBehavior(),
+					options.shouldIgnoreUncoveredClasses(), wrap(logger));
+		}
+		if (options.shouldSkipUnchangedDumps()) {
+			cumulativeCoverage = new CumulativeCoverage();
+		} else {
+			cumulativeCoverage = null;
+		}
+		if (options.shouldRetransformSaturatedClasses() && instrumentation != null && transformer != null) {
+			saturatedClassesRetransformer = new SaturatedClassesRetransformer(instrumentation, transformer);
+		}
+		if (options.getCoverageStore() != null) {
+			openCoverageStore(options.getCoverageStore());
+		}
 
 		if (options.shouldDumpInIntervals()) {
 			timer = new Timer(this::dumpReport, Duration.ofMinutes(options.getDumpIntervalInMinutes()));
@@ -73,6 +135,63 @@ public class Agent extends AgentBase {
 		}
 	}
 
+	/**
+	 * Opens the coverage store and uploads the coverage that is left over from a previous run of the JVM that did not
+	 * shut down gracefully.
+	 */
+	private void openCoverageStore(Path coverageStoreFile) {
+		try {
+			coverageStore = PersistentCoverageStore.open(coverageStoreFile);
+		} catch (IOException e) {
+			logger.error("Could not open the coverage store {}. Coverage will only be kept in memory.",
+					coverageStoreFile, e);
+			return;
+		}
+
+		if (!coverageStore.isEmpty()) {
+			logger.info("Recovering coverage from the coverage store {} that was not dumped by a previous run.",
+					coverageStoreFile);
+			uploadInBackground(coverageStore.read());
+			coverageStore.clear();
+		}
+
+		coverageStoreTimer = new Timer(this::persistCoverage,
+				Duration.ofSeconds(options.getCoverageStoreIntervalInSeconds()));
+		coverageStoreTimer.start();
+		logger.info("Persisting coverage to {} every {} seconds.", coverageStoreFile,
+				options.getCoverageStoreIntervalInSeconds());
+	}
+
+	/**
+	 * Merges the coverage collected so far into the {@link #coverageStore} without resetting it. Logs any errors, never
+	 * throws an exception.
+	 */
+	private synchronized void persistCoverage() {
+		try {
+			Dump snapshot = controller.snapshot();
+			if (saturatedClassesRetransformer != null) {
+				saturatedClassesRetransformer.addCoverageOfRetransformedClasses(snapshot);
+			}
+			Dump previousSession = coverageStore.merge(snapshot);
+			if (previousSession != null) {
+				logger.info("Uploading the coverage of session {} that was not dumped before the session changed.",
+						previousSession.info.getId());
+				uploadInBackground(previousSession);
+			}
+		} catch (Throwable t) {
+			logger.error("Persisting the coverage failed, retrying later", t);
+		}
+	}
+
+	/** Converts and uploads the given coverage, which is no longer contained in the {@link #coverageStore}. */
+	private void uploadInBackground(Dump dump) {
+		coverageStoreUploadExecutor.execute(() -> {
+			synchronized (this) {
+				convertAndUpload(dump);
+			}
+		});
+	}
+
 	/**
 	 * If we have coverage that was leftover because of previously unsuccessful coverage uploads, we retry to upload
 	 * them again with the same configuration as in the previous try.
@@ -131,9 +250,17 @@ public class Agent extends AgentBase {
 		if (timer != null) {
 			timer.stop();
 		}
+		if (coverageStoreTimer != null) {
+			coverageStoreTimer.stop();
+		}
+		awaitCoverageStoreUploads();
 		if (options.shouldDumpOnExit()) {
+			// clears the coverage store only if the dump succeeds, so the coverage is recovered on the next start
 			dumpReport();
+		} else {
+			clearCoverageStore();
 		}
+		closeCoverageStore();
 
 		try {
 			deleteDirectoryIfEmpty(options.getOutputDirectory());
@@ -146,6 +273,35 @@ public class Agent extends AgentBase {
 		}
 	}
 
+	/** Waits for the uploads of the {@link #coverageStoreUploadExecutor}, since their coverage is not stored anymore. */
+	private void awaitCoverageStoreUploads() {
+		coverageStoreUploadExecutor.shutdown();
+		try {
+			if (!coverageStoreUploadExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+				logger.error("Uploading the coverage taken from the coverage store did not finish within a minute. " +
+						"This coverage is lost.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Closes the {@link #coverageStore} on a graceful shutdown. Its contents are kept, i.e. they are only non-empty if
+	 * the final dump failed.
+	 */
+	private synchronized void closeCoverageStore() {
+		if (coverageStore == null) {
+			return;
+		}
+		try {
+			coverageStore.close();
+		} catch (IOException e) {
+			logger.error("Could not close the coverage store {}.", options.getCoverageStore(), e);
+		}
+		coverageStore = null;
+	}
+
 	/**
 	 * Delete a directory from disk if it is empty. This method does nothing if the path provided does not exist or
 	 * point to a file.
@@ -183,7 +339,7 @@ public class Agent extends AgentBase {
 		}
 	}
 
-	private void dumpReportUnsafe() {
+	private synchronized void dumpReportUnsafe() {
 		Dump dump;
 		try {
 			dump = controller.dumpAndReset();
@@ -192,14 +348,71 @@ public class Agent extends AgentBase {
 			return;
 		}
 
+		if (saturatedClassesRetransformer != null) {
+			saturatedClassesRetransformer.process(dump);
+		}
+
+		if (shouldSkip(dump)) {
+			clearCoverageStore();
+			return;
+		}
+
+		if (convertAndUpload(dump)) {
+			// The coverage is only considered as reported once it was handed to the uploader. Otherwise, a failed
+			// conversion would cause all later dumps with the same coverage to be skipped
+			if (cumulativeCoverage != null) {
+				cumulativeCoverage.mergeAndCheckForNewCoverage(dump.info.getId(), dump.store);
+			}
+			clearCoverageStore();
+		}
+	}
+
+	/** Clears the {@link #coverageStore}, if one is configured, since its coverage was handled. */
+	private synchronized void clearCoverageStore() {
+		if (coverageStore != null) {
+			coverageStore.clear();
+		}
+	}
+
+	/**
+	 * Converts the given dump to XML and uploads it.
+	 *
+	 * @return whether the dump was handled, i.e. it does not need to be kept in the {@link #coverageStore}.
+	 */
+	private boolean convertAndUpload(Dump dump) {
 		try (Benchmark ignored = new Benchmark("Generating the XML report")) {
 			File outputFile = options.createNewFileInOutputDirectory("jacoco", "xml");
 			CoverageFile coverageFile = generator.convert(dump, outputFile);
 			uploader.upload(coverageFile);
+			return true;
 		} catch (IOException e) {
 			logger.error("Converting binary dump to XML failed", e);
+			return false;
 		} catch (EmptyReportException e) {
 			logger.error("No coverage was collected. " + e.getMessage(), e);
+			return true;
+		}
+	}
+
+	/**
+	 * Whether the given dump can be skipped since all of its coverage has already been dumped before. Every
+	 * {@link AgentOptions#getHeartbeatDumpIntervals()} skipped dumps, a dump is performed anyway. The coverage of the
+	 * dump is not added to the {@link #cumulativeCoverage} here, but only after it was uploaded.
+	 */
+	private boolean shouldSkip(Dump dump) {
+		if (cumulativeCoverage == null) {
+			return false;
 		}
+
+		boolean hasNewCoverage = cumulativeCoverage.hasNewCoverage(dump.info.getId(), dump.store);
+		int heartbeatDumpIntervals = options.getHeartbeatDumpIntervals();
+		if (hasNewCoverage || (heartbeatDumpIntervals > 0 && skippedDumps >= heartbeatDumpIntervals)) {
+			skippedDumps = 0;
+			return false;
+		}
+
+		skippedDumps++;
+		logger.info("Skipping dump since no new coverage was collected since the last dump.");
+		return true;
 	}
 }
@@ -1,6 +1,9 @@
 package com.teamscale.jacoco.agent;
 
 import com.teamscale.jacoco.agent.options.AgentOptions;
+import com.teamscale.jacoco.agent.server.IHttpRequestHandler;
+import com.teamscale.jacoco.agent.server.JerseyRequestHandler;
+import com.teamscale.jacoco.agent.server.LightweightHttpServer;
 import com.teamscale.jacoco.agent.util.LoggingUtils;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
@@ -33,6 +36,12 @@ public abstract class AgentBase {
 
 	private Server server;
 
+	/** The server that is used instead of {@link #server} if the lightweight HTTP server is enabled. */
+	private LightweightHttpServer lightweightServer;
+
+	/** The server that listens on the Unix domain socket if one is configured. */
+	private LightweightHttpServer socketServer;
+
 	/** Constructor. */
 	public AgentBase(AgentOptions options) throws IllegalStateException {
 		this.options = options;
@@ -45,12 +54,12 @@ public abstract class AgentBase {
 		}
 		logger.info("Starting JaCoCo agent for process {} with options: {}",
 				ManagementFactory.getRuntimeMXBean().getName(), getOptionsObjectToLog());
-		if (options.getHttpServerPort() != null) {
+		if (options.getHttpServerPort() != null || options.getHttpServerSocket() != null) {
 			try {
 				initServer();
 			} catch (Exception e) {
-				logger.error("Could not start http server on port " + options.getHttpServerPort()
-						+ ". Please check if the port is blocked.");
+				logger.error("Could not start http server on port " + options.getHttpServerPort() + " or socket "
+						+ options.getHttpServerSocket() + ". Please check if the port is blocked.");
 				throw new IllegalStateException("Control server not started.", e);
 			}
 		}
@@ -77,8 +86,27 @@ public abstract class AgentBase {
 	 * Starts the http server, which waits for information about started and finished tests.
 	 */
 	private void initServer() throws Exception {
+		IHttpRequestHandler directRequestHandler = createDirectRequestHandler();
+		JerseyRequestHandler jerseyRequestHandler = new JerseyRequestHandler(this::initResourceConfig);
+		if (options.getHttpServerSocket() != null) {
+			logger.info("Listening for test events on socket {}.", options.getHttpServerSocket());
+			socketServer = new LightweightHttpServer(options.getHttpServerSocket(), directRequestHandler,
+					jerseyRequestHandler);
+			socketServer.start();
+		}
+		if (options.getHttpServerPort() == null) {
+			return;
+		}
+
 		logger.info("Listening for test events on port {}.", options.getHttpServerPort());
 
+		if (options.shouldUseLightweightHttpServer()) {
+			lightweightServer = new LightweightHttpServer(options.getHttpServerPort(), directRequestHandler,
+					jerseyRequestHandler);
+			lightweightServer.start();
+			return;
+		}
+
 		// Jersey Implementation
 		ServletContextHandler handler = buildUsingResourceConfig();
 		QueuedThreadPool threadPool = new QueuedThreadPool();
@@ -109,21 +137,37 @@ public abstract class AgentBase {
 	 */
 	protected abstract ResourceConfig initResourceConfig();
 
+	/**
+	 * Returns a handler for requests to the {@link LightweightHttpServer} that should not go through the Jersey
+	 * resources, e.g. for performance reasons. The default handles no request at all.
+	 */
+	protected IHttpRequestHandler createDirectRequestHandler() {
+		return request -> null;
+	}
+
 	/**
 	 * Registers a shutdown hook that stops the timer and dumps coverage a final time.
 	 */
 	void registerShutdownHook() {
-		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-			stopServer();
-			prepareShutdown();
-			logger.info("CQSE JaCoCo agent successfully shut down.");
-			PreMain.closeLoggingResources();
-		}));
+		Runtime.getRuntime().addShutdownHook(new Thread(this::shutDown));
+	}
+
+	/** Stops the http server, dumps coverage a final time and closes the logging resources. */
+	void shutDown() {
+		stopServer();
+		prepareShutdown();
+		logger.info("CQSE JaCoCo agent successfully shut down.");
+		PreMain.closeLoggingResources();
 	}
 
 	/** Stop the http server if it's running */
 	void stopServer() {
-		if (options.getHttpServerPort() != null) {
+		if (socketServer != null) {
+			socketServer.stop();
+		}
+		if (lightweightServer != null) {
+			lightweightServer.stop();
+		} else if (options.getHttpServerPort() != null) {
 			try {
 				server.stop();
 			} catch (Exception e) {
@@ -0,0 +1,112 @@
+package com.teamscale.jacoco.agent;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps track of all probes that have been hit at least once since the agent was started (or since the session changed
+ * the last time). This allows to detect whether a dump contains any coverage that has not already been reported
+ * before.
+ * <p>
+ * This class is not thread-safe. Callers must synchronize on their own.
+ */
+public class CumulativeCoverage {
+
+	/** The probes that have been hit so far per class ID. */
+	private final Map<Long, boolean[]> probesByClassId = new HashMap<>();
+
+	/** The session ID the probes in {@link #probesByClassId} belong to. */
+	private String sessionId;
+
+	/**
+	 * Merges the given execution data into the cumulative coverage.
+	 *
+	 * @return <code>true</code> if the given data contains at least one probe that has not been hit before or if it
+	 * belongs to a different session than the previously merged data.
+	 */
+	public boolean mergeAndCheckForNewCoverage(String sessionId, ExecutionDataStore store) {
+		boolean hasNewCoverage = false;
+		if (this.sessionId == null || !this.sessionId.equals(sessionId)) {
+			probesByClassId.clear();
+			this.sessionId = sessionId;
+			hasNewCoverage = true;
+		}
+
+		for (ExecutionData executionData : store.getContents()) {
+			hasNewCoverage |= merge(executionData);
+		}
+		return hasNewCoverage;
+	}
+
+	/**
+	 * Checks whether the given execution data contains coverage that has not been merged before, without merging it.
+	 *
+	 * @return <code>true</code> in the same cases as {@link #mergeAndCheckForNewCoverage(String, ExecutionDataStore)}.
+	 */
+	public boolean hasNewCoverage(String sessionId, ExecutionDataStore store) {
+		if (this.sessionId == null || !this.sessionId.equals(sessionId)) {
+			return true;
+		}
+
+		for (ExecutionData executionData : store.getContents()) {
+			if (hasNewCoverage(executionData)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns whether all probes of the class with the given ID have been hit. */
+	public boolean isFullyCovered(long classId) {
+		boolean[] probes = probesByClassId.get(classId);
+		if (probes == null) {
+			return false;
+		}
+		for (boolean probe : probes) {
+			if (!probe) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns whether one of the probes of the given class has not been hit before. */
+	private boolean hasNewCoverage(ExecutionData executionData) {
+		boolean[] probes = executionData.getProbes();
+		boolean[] cumulativeProbes = probesByClassId.get(executionData.getId());
+		if (cumulativeProbes == null || cumulativeProbes.length != probes.length) {
+			return executionData.hasHits();
+		}
+
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i] && !cumulativeProbes[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Merges the probes of a single class and returns whether one of them has not been hit before. */
+	private boolean merge(ExecutionData executionData) {
+		boolean[] probes = executionData.getProbes();
+		boolean[] cumulativeProbes = probesByClassId.get(executionData.getId());
+		if (cumulativeProbes == null || cumulativeProbes.length != probes.length) {
+			// A class ID with a different number of probes can only happen for a hash collision. In this case we
+			// simply start over for this class
+			probesByClassId.put(executionData.getId(), probes.clone());
+			return executionData.hasHits();
+		}
+
+		boolean hasNewCoverage = false;
+		for (int i = 0; i < probes.length; i++) {
+			if (probes[i] && !cumulativeProbes[i]) {
+				cumulativeProbes[i] = true;
+				hasNewCoverage = true;
+			}
+		}
+		return hasNewCoverage;
+	}
+}
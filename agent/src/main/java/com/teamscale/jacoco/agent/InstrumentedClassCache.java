@@ -0,0 +1,182 @@
+package com.teamscale.jacoco.agent;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.teamscale.jacoco.agent.util.DaemonThreadFactory;
+import com.teamscale.jacoco.agent.util.LoggingUtils;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of instrumented class files that speeds up the start of a JVM since classes that have already been
+ * instrumented in a previous run do not have to be instrumented again.
+ * <p>
+ * The cached classes are stored by their JaCoCo class ID (the CRC64 checksum of the original class file) in a
+ * sub-directory of the cache directory, which is named after everything else the instrumentation depends on (e.g. the
+ * agent and JaCoCo version). The size of the whole cache directory is bounded: When the cache is opened, the least
+ * recently used class files are deleted until it is smaller than the configured maximum. At runtime, no more classes
+ * are added once the maximum is reached.
+ * <p>
+ * New classes are written on a background thread. Multiple JVMs may share a cache directory.
+ */
+public class InstrumentedClassCache {
+
+	/** File extension of the cached classes. */
+	private static final String CLASS_FILE_EXTENSION = ".class";
+
+	/** Magic number each class file starts with. */
+	private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+
+	/** After eviction, the cache is only filled to this fraction of its maximum size to leave room for new classes. */
+	private static final double FILL_RATIO_AFTER_EVICTION = 0.8;
+
+	private final Logger logger = LoggingUtils.getLogger(this);
+
+	/** The directory that contains the classes of this cache's instrumentation settings. */
+	private final Path directory;
+
+	/** The maximum size of the whole cache directory in bytes. */
+	private final long maxSizeInBytes;
+
+	/** The current size of the whole cache directory in bytes. */
+	private final AtomicLong sizeInBytes = new AtomicLong();
+
+	/** Whether it has already been logged that the cache is full. */
+	private final AtomicBoolean fullLogged = new AtomicBoolean();
+
+	/** Writes new classes in the background. */
+	private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor(
+			new DaemonThreadFactory(InstrumentedClassCache.class, "cache writer"));
+
+	private InstrumentedClassCache(Path directory, long maxSizeInBytes) {
+		this.directory = directory;
+		this.maxSizeInBytes = maxSizeInBytes;
+	}
+
+	/**
+	 * Opens the cache and evicts the least recently used classes if the cache directory is too large.
+	 *
+	 * @param cacheDirectory The root directory of the cache.
+	 * @param cacheKey       Identifies all settings that influence the instrumentation. Classes instrumented with
+	 *                       different settings are never returned.
+	 * @param maxSizeInBytes The maximum size of the whole cache directory.
+	 */
+	public static InstrumentedClassCache open(Path cacheDirectory, String cacheKey,
+			long maxSizeInBytes) throws IOException {
+		Path directory = cacheDirectory.resolve(cacheKey.replaceAll("[^A-Za-z0-9._-]", "_"));
+		Files.createDirectories(directory);
+		InstrumentedClassCache cache = new InstrumentedClassCache(directory, maxSizeInBytes);
+		cache.evictLeastRecentlyUsed(cacheDirectory);
+		return cache;
+	}
+
+	/** Deletes the least recently used files in the cache directory until it is small enough. */
+	private void evictLeastRecentlyUsed(Path cacheDirectory) throws IOException {
+		List<File> files;
+		try (Stream<Path> paths = Files.walk(cacheDirectory)) {
+			files = paths.filter(Files::isRegularFile).map(Path::toFile).collect(Collectors.toList());
+		}
+		long size = files.stream().mapToLong(File::length).sum();
+		if (size > maxSizeInBytes) {
+			files.sort(Comparator.comparingLong(File::lastModified));
+			int evictedFiles = 0;
+			for (File file : files) {
+				if (size <= maxSizeInBytes * FILL_RATIO_AFTER_EVICTION) {
+					break;
+				}
+				long length = file.length();
+				if (file.delete()) {
+					size -= length;
+					evictedFiles++;
+				}
+			}
+			logger.debug("Evicted {} classes from the instrumentation cache {}.", evictedFiles,
+					cacheDirectory);
+		}
+		sizeInBytes.set(size);
+	}
+
+	/** Returns the cached instrumented class with the given ID or <code>null</code> if it is not cached. */
+	public byte[] get(long classId) {
+		File file = getFile(classId);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			byte[] instrumented = Files.readAllBytes(file.toPath());
+			if (!isClassFile(instrumented)) {
+				return null;
+			}
+			// Marks the file as recently used for the eviction. Does not matter if this fails
+			file.setLastModified(System.currentTimeMillis());
+			return instrumented;
+		} catch (IOException e) {
+			// may have been evicted by another JVM in the meantime
+			return null;
+		}
+	}
+
+	/** Adds the given instrumented class to the cache in the background. */
+	public void put(long classId, byte[] instrumented) {
+		if (sizeInBytes.addAndGet(instrumented.length) > maxSizeInBytes) {
+			sizeInBytes.addAndGet(-instrumented.length);
+			if (!fullLogged.getAndSet(true)) {
+				logger.info("The instrumentation cache {} is full. Further classes are not cached in this run.",
+						directory);
+			}
+			return;
+		}
+		writeExecutor.execute(() -> write(classId, instrumented));
+	}
+
+	/**
+	 * Writes the class to a temporary file first, which is then moved to its final location so other JVMs never read
+	 * incomplete class files.
+	 */
+	private void write(long classId, byte[] instrumented) {
+		Path target = getFile(classId).toPath();
+		try {
+			Path temporaryFile = Files.createTempFile(directory, Long.toHexString(classId), ".tmp");
+			try {
+				Files.write(temporaryFile, instrumented);
+				Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporaryFile);
+			}
+		} catch (IOException e) {
+			sizeInBytes.addAndGet(-instrumented.length);
+			logger.debug("Could not add {} to the instrumentation cache.", target, e);
+		}
+	}
+
+	/** Waits until all classes passed to {@link #put(long, byte[])} have been written. */
+	@VisibleForTesting
+	void awaitPendingWrites() throws InterruptedException, ExecutionException {
+		writeExecutor.submit(() -> {
+			// nothing to do, all previously submitted writes are done once this is executed
+		}).get();
+	}
+
+	private File getFile(long classId) {
+		return directory.resolve(Long.toHexString(classId) + CLASS_FILE_EXTENSION).toFile();
+	}
+
+	private static boolean isClassFile(byte[] bytes) {
+		return bytes.length >= 4 && ((bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8
+				| (bytes[3] & 0xFF)) == CLASS_FILE_MAGIC;
+	}
+}
@@ -13,25 +13,30 @@
 
 package com.teamscale.jacoco.agent;
 
+import com.teamscale.jacoco.agent.util.AgentUtils;
 import org.jacoco.agent.rt.internal_aeaf9ab.Agent;
 import org.jacoco.agent.rt.internal_aeaf9ab.AgentModule;
 import org.jacoco.agent.rt.internal_aeaf9ab.CoverageTransformer;
 import org.jacoco.agent.rt.internal_aeaf9ab.IExceptionLogger;
 import org.jacoco.agent.rt.internal_aeaf9ab.PreMain;
+import org.jacoco.agent.rt.internal_aeaf9ab.core.JaCoCo;
 import org.jacoco.agent.rt.internal_aeaf9ab.core.runtime.AgentOptions;
 import org.jacoco.agent.rt.internal_aeaf9ab.core.runtime.IRuntime;
 import org.jacoco.agent.rt.internal_aeaf9ab.core.runtime.InjectedClassRuntime;
 import org.jacoco.agent.rt.internal_aeaf9ab.core.runtime.ModifiedSystemClassRuntime;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.lang.instrument.Instrumentation;
+import java.nio.file.Path;
 
 /**
  * This is a copy of the {@link PreMain} class from the JaCoCo agent. The only changes are that we:
  * <ul>
  * <li>replaced the {@link CoverageTransformer} with our {@link LenientCoverageTransformer}</li>
- * <li>pass a {@link Logger} to {@link #premain(String, Instrumentation, Logger)} which is passed to the
- * {@link LenientCoverageTransformer} instead of {@link IExceptionLogger}</li>
+ * <li>pass a {@link Logger} to {@link #premain(String, Instrumentation, com.teamscale.jacoco.agent.options.AgentOptions,
+ * Logger)} which is passed to the {@link LenientCoverageTransformer} instead of {@link IExceptionLogger}</li>
+ * <li>configure the {@link LenientCoverageTransformer} according to the agent options and return it</li>
  * </ul>
  */
 public final class JaCoCoPreMain {
@@ -43,12 +48,14 @@ public final class JaCoCoPreMain {
 	/**
 	 * This method is called by the JVM to initialize Java agents.
 	 *
-	 * @param options agent options
-	 * @param inst    instrumentation callback provided by the JVM
+	 * @param options          JaCoCo agent options
+	 * @param inst             instrumentation callback provided by the JVM
+	 * @param teamscaleOptions the options of our agent
+	 * @return the registered transformer
 	 * @throws Exception in case initialization fails
 	 */
-	public static void premain(final String options, final Instrumentation inst, Logger logger)
-			throws Exception {
+	public static LenientCoverageTransformer premain(final String options, final Instrumentation inst,
+			com.teamscale.jacoco.agent.options.AgentOptions teamscaleOptions, Logger logger) throws Exception {
 
 		final AgentOptions agentOptions = new AgentOptions(options);
 
@@ -56,8 +63,37 @@ public final class JaCoCoPreMain {
 
 		final IRuntime runtime = createRuntime(inst);
 		runtime.startup(agent.getData());
-		inst.addTransformer(new LenientCoverageTransformer(runtime, agentOptions,
-				logger));
+		boolean canRetransform = teamscaleOptions.shouldRetransformSaturatedClasses();
+		LenientCoverageTransformer transformer = new LenientCoverageTransformer(runtime, agentOptions, logger,
+				canRetransform, teamscaleOptions.getInstrumentationMode(),
+				openInstrumentedClassCache(teamscaleOptions, runtime, logger));
+		inst.addTransformer(transformer, canRetransform);
+		return transformer;
+	}
+
+	/**
+	 * Opens the cache for instrumented classes or returns <code>null</code> if none is configured or it cannot be
+	 * opened.
+	 */
+	private static InstrumentedClassCache openInstrumentedClassCache(
+			com.teamscale.jacoco.agent.options.AgentOptions teamscaleOptions, IRuntime runtime, Logger logger) {
+		Path cacheDirectory = teamscaleOptions.getInstrumentationCacheDirectory();
+		if (cacheDirectory == null) {
+			return null;
+		}
+
+		// The instrumented classes depend on the agent and JaCoCo version, the way the runtime is accessed and the
+		// instrumentation mode
+		String cacheKey = AgentUtils.VERSION + "-jacoco-" + JaCoCo.VERSION + "-" + runtime.getClass()
+				.getSimpleName() + "-" + teamscaleOptions.getInstrumentationMode();
+		try {
+			return InstrumentedClassCache.open(cacheDirectory, cacheKey,
+					teamscaleOptions.getInstrumentationCacheMaxSizeInMb() * 1024L * 1024L);
+		} catch (IOException e) {
+			logger.warn("Could not open the instrumentation cache {}. Classes will be instrumented without cache.",
+					cacheDirectory, e);
+			return null;
+		}
 	}
 
 	private static IRuntime createRuntime(final Instrumentation inst)
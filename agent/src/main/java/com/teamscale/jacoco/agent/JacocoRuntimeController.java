@@ -53,8 +53,21 @@ public class JacocoRuntimeController {
 	 *                       later if this ever happens.
 	 */
 	public Dump dumpAndReset() throws DumpException {
-		byte[] binaryData = agent.getExecutionData(true);
+		return readDump(agent.getExecutionData(true));
+	}
+
+	/**
+	 * Dumps execution data without resetting it.
+	 *
+	 * @throws DumpException if dumping fails. This should never happen in real life. Dumping should simply be retried
+	 *                       later if this ever happens.
+	 */
+	public Dump snapshot() throws DumpException {
+		return readDump(agent.getExecutionData(false));
+	}
 
+	/** Parses the given binary execution data. */
+	private static Dump readDump(byte[] binaryData) throws DumpException {
 		try (ByteArrayInputStream inputStream = new ByteArrayInputStream(binaryData)) {
 			ExecutionDataReader reader = new ExecutionDataReader(inputStream);
 
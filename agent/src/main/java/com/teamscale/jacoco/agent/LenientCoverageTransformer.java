@@ -1,28 +1,87 @@
 package com.teamscale.jacoco.agent;
 
+import com.teamscale.jacoco.agent.options.EInstrumentationMode;
 import org.jacoco.agent.rt.internal_aeaf9ab.CoverageTransformer;
+import org.jacoco.agent.rt.internal_aeaf9ab.CoverageTransformerAccess;
 import org.jacoco.agent.rt.internal_aeaf9ab.core.runtime.AgentOptions;
 import org.jacoco.agent.rt.internal_aeaf9ab.core.runtime.IRuntime;
+import org.jacoco.core.internal.data.CRC64;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.lang.instrument.IllegalClassFormatException;
 import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A class file transformer which delegates to the JaCoCo {@link CoverageTransformer} to do the actual instrumentation,
  * but treats instrumentation errors e.g. due to unsupported class file versions more lenient by only logging them, but
  * not bailing out completely. Those unsupported classes will not be instrumented and will therefore not be contained in
  * the collected coverage report.
+ * <p>
+ * If registered as retransformation capable, classes that are retransformed are instrumented again, except for the
+ * classes marked as {@link #markSaturated(long) saturated}, which get their original method bodies back.
+ * <p>
+ * In {@link EInstrumentationMode#METHOD_ENTRY} mode, the probes inserted by JaCoCo are reduced to one probe per method
+ * (see {@link MethodEntryProbes}).
+ * <p>
+ * If an {@link InstrumentedClassCache} is given, classes that have already been instrumented in a previous run are
+ * taken from the cache instead of instrumenting them again.
  */
 public class LenientCoverageTransformer extends CoverageTransformer {
 
 	private final Logger logger;
 
+	/** Whether this transformer has been registered as retransformation capable. */
+	private final boolean canRetransform;
+
+	/** How detailed the classes are instrumented. */
+	private final EInstrumentationMode instrumentationMode;
+
+	/** The cache for instrumented classes or <code>null</code> if classes should always be instrumented. */
+	private final InstrumentedClassCache cache;
+
+	/** The directory to which JaCoCo dumps the original class files or <code>null</code>. */
+	private final String classDumpDirectory;
+
+	/** IDs of the classes whose probes should be removed when they are retransformed. */
+	private final Set<Long> saturatedClassIds = ConcurrentHashMap.newKeySet();
+
 	public LenientCoverageTransformer(IRuntime runtime, AgentOptions options, Logger logger) {
+		this(runtime, options, logger, false, EInstrumentationMode.FULL, null);
+	}
+
+	public LenientCoverageTransformer(IRuntime runtime, AgentOptions options, Logger logger, boolean canRetransform,
+									  EInstrumentationMode instrumentationMode, InstrumentedClassCache cache) {
 		// The coverage transformer only uses the logger to print an error when the instrumentation fails.
 		// We want to show our more specific error message instead, so we only log this for debugging at trace.
 		super(runtime, options, e -> logger.trace(e.getMessage(), e));
 		this.logger = logger;
+		this.canRetransform = canRetransform;
+		this.instrumentationMode = instrumentationMode;
+		this.cache = cache;
+		this.classDumpDirectory = options.getClassDumpDir();
+	}
+
+	/**
+	 * Marks the class with the given ID as saturated, i.e. the next retransformation of the class restores its original
+	 * method bodies.
+	 */
+	public void markSaturated(long classId) {
+		saturatedClassIds.add(classId);
+	}
+
+	/** Reverts {@link #markSaturated(long)}. */
+	public void unmarkSaturated(long classId) {
+		saturatedClassIds.remove(classId);
 	}
 
 	@Override
@@ -30,7 +89,17 @@ public class LenientCoverageTransformer extends CoverageTransformer {
 							ProtectionDomain protectionDomain,
 							byte[] classfileBuffer) {
 		try {
-			return super.transform(loader, classname, classBeingRedefined, protectionDomain, classfileBuffer);
+			if (classBeingRedefined != null && !canRetransform) {
+				// JaCoCo does not instrument redefined classes
+				return super.transform(loader, classname, classBeingRedefined, protectionDomain, classfileBuffer);
+			}
+
+			byte[] instrumented = instrument(loader, classname, protectionDomain, classfileBuffer);
+			if (instrumented != null && classBeingRedefined != null
+					&& saturatedClassIds.contains(CRC64.classId(classfileBuffer))) {
+				return restoreOriginalMethods(classname, classfileBuffer, instrumented);
+			}
+			return instrumented;
 		} catch (IllegalClassFormatException e) {
 			logger.error(
 					"Failed to instrument " + classname + ". File will be skipped from instrumentation. " +
@@ -41,6 +110,96 @@ public class LenientCoverageTransformer extends CoverageTransformer {
 		}
 	}
 
+	/**
+	 * Returns the instrumented class or <code>null</code> if the class should not be instrumented. Uses the
+	 * {@link #cache} if there is one.
+	 */
+	private byte[] instrument(ClassLoader loader, String classname, ProtectionDomain protectionDomain,
+							  byte[] classfileBuffer) throws IllegalClassFormatException {
+		if (cache == null) {
+			return instrumentWithoutCache(loader, classname, protectionDomain, classfileBuffer);
+		}
+		if (!CoverageTransformerAccess.shouldInstrument(this, loader, classname, protectionDomain)) {
+			return null;
+		}
+
+		long classId = CRC64.classId(classfileBuffer);
+		byte[] cached = cache.get(classId);
+		if (cached != null) {
+			try {
+				CoverageTransformerAccess.dumpClassFile(classDumpDirectory, classname, classfileBuffer);
+			} catch (IOException e) {
+				logger.warn("Failed to dump class file of {}. It will be missing in the coverage report.", classname,
+						e);
+			}
+			return cached;
+		}
+
+		byte[] instrumented = instrumentWithoutCache(loader, classname, protectionDomain, classfileBuffer);
+		if (instrumented != null) {
+			cache.put(classId, instrumented);
+		}
+		return instrumented;
+	}
+
+	/** Lets JaCoCo instrument the class and applies the {@link #instrumentationMode}. */
+	private byte[] instrumentWithoutCache(ClassLoader loader, String classname, ProtectionDomain protectionDomain,
+										  byte[] classfileBuffer) throws IllegalClassFormatException {
+		// JaCoCo does not instrument retransformed classes, which would remove the instrumentation of any class that is
+		// retransformed (e.g. by another agent), so we never pass the class being redefined
+		byte[] instrumented = super.transform(loader, classname, null, protectionDomain, classfileBuffer);
+		if (instrumented != null && instrumentationMode == EInstrumentationMode.METHOD_ENTRY) {
+			return reduceToMethodEntryProbes(classname, instrumented);
+		}
+		return instrumented;
+	}
+
+	/** Removes the instrumentation of a saturated class (see {@link #restoreOriginalMethods(byte[], byte[])}). */
+	private byte[] restoreOriginalMethods(String classname, byte[] originalBytes, byte[] instrumentedBytes) {
+		try {
+			return restoreOriginalMethods(originalBytes, instrumentedBytes);
+		} catch (RuntimeException e) {
+			logger.warn("Failed to remove the instrumentation from {}. The class stays instrumented.", classname, e);
+			return instrumentedBytes;
+		}
+	}
+
+	/**
+	 * Replaces the instrumented methods with the original ones. The fields and methods JaCoCo added are kept, as
+	 * retransformation must not change the schema of a class. They are simply never used anymore, except for a static
+	 * initializer JaCoCo added to an interface, which only initializes the probe array.
+	 * <p>
+	 * Neither the original nor the added methods are modified, so their frames and maximum stack and locals sizes are
+	 * copied as they are and need not be recomputed.
+	 */
+	/* package */ static byte[] restoreOriginalMethods(byte[] originalBytes, byte[] instrumentedBytes) {
+		ClassNode original = new ClassNode(Opcodes.ASM9);
+		new ClassReader(originalBytes).accept(original, 0);
+		ClassNode instrumented = new ClassNode(Opcodes.ASM9);
+		new ClassReader(instrumentedBytes).accept(instrumented, 0);
+
+		Map<String, MethodNode> originalMethods = new HashMap<>();
+		for (MethodNode method : original.methods) {
+			originalMethods.put(method.name + method.desc, method);
+		}
+		instrumented.methods.replaceAll(method -> originalMethods.getOrDefault(method.name + method.desc, method));
+
+		ClassWriter writer = new ClassWriter(0);
+		instrumented.accept(writer);
+		return writer.toByteArray();
+	}
+
+	/** Reduces the probes of the instrumented class to one probe per method. */
+	private byte[] reduceToMethodEntryProbes(String classname, byte[] instrumentedBytes) {
+		try {
+			return MethodEntryProbes.reduceToMethodEntryProbes(instrumentedBytes);
+		} catch (RuntimeException e) {
+			logger.warn("Failed to reduce the instrumentation of {} to method entries. The class is fully instrumented.",
+					classname, e);
+			return instrumentedBytes;
+		}
+	}
+
 	private static String getRootCauseMessage(Throwable e) {
 		if (e.getCause() != null) {
 			return getRootCauseMessage(e.getCause());
@@ -0,0 +1,238 @@
+package com.teamscale.jacoco.agent;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Reduces the probes JaCoCo inserted into a class to a single check at the entry of each method. This makes the
+ * instrumented code almost as fast as the original code, but the resulting coverage only tells which methods have been
+ * executed.
+ * <p>
+ * The probe array layout of the class is not changed, so the execution data can be analyzed as usual. The first time
+ * a method is entered after the probes were reset, all of its probes are set at once. Every later call only checks the
+ * first probe of the method. So JaCoCo reports all lines and branches of each executed method as covered and all lines
+ * of the other methods as not covered, i.e. the line coverage is on method level.
+ */
+public class MethodEntryProbes {
+
+	/** Name of the method JaCoCo adds to initialize the probe array. */
+	private static final String INIT_METHOD_NAME = "$jacocoInit";
+
+	/** Name of the field or constant dynamic JaCoCo uses to store the probe array. */
+	private static final String DATA_FIELD_NAME = "$jacocoData";
+
+	/**
+	 * Returns the given class instrumented by JaCoCo with only one probe per method. Methods whose instrumentation is
+	 * not recognized are left untouched.
+	 */
+	public static byte[] reduceToMethodEntryProbes(byte[] instrumentedClass) {
+		ClassNode classNode = new ClassNode(Opcodes.ASM9);
+		// the frames are expanded, since the ones of the entry check are inserted in between the existing ones
+		new ClassReader(instrumentedClass).accept(classNode, ClassReader.EXPAND_FRAMES);
+		boolean needsFrames = (classNode.version & 0xFFFF) >= Opcodes.V1_6;
+		for (MethodNode method : classNode.methods) {
+			if (!method.name.equals(INIT_METHOD_NAME)) {
+				reduceProbes(classNode.name, method, needsFrames);
+			}
+		}
+		ClassWriter writer = new ClassWriter(0);
+		classNode.accept(writer);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Replaces all probes of the method with a check right after the initialization of the probe array, which sets all
+	 * probes of the method if its first probe has not been set yet.
+	 */
+	private static void reduceProbes(String className, MethodNode method, boolean needsFrames) {
+		VarInsnNode probeArrayStore = findProbeArrayStore(method.instructions);
+		if (probeArrayStore == null) {
+			return;
+		}
+
+		int probeArrayVariable = probeArrayStore.var;
+		List<AbstractInsnNode> probes = new ArrayList<>();
+		TreeSet<Integer> probeIds = new TreeSet<>();
+		for (AbstractInsnNode instruction : method.instructions) {
+			Integer probeId = getProbeId(instruction, probeArrayVariable);
+			if (probeId != null) {
+				probes.add(instruction);
+				probeIds.add(probeId);
+			}
+		}
+		if (probes.isEmpty()) {
+			return;
+		}
+
+		for (AbstractInsnNode probe : probes) {
+			// a probe consists of: ALOAD probes, push probe ID, ICONST_1, BASTORE
+			AbstractInsnNode instruction = probe;
+			for (int i = 0; i < 4; i++) {
+				AbstractInsnNode next = instruction.getNext();
+				method.instructions.remove(instruction);
+				instruction = next;
+			}
+		}
+
+		// if (!probes[firstProbeId]) { probes[id] = true; ... }
+		LabelNode entered = new LabelNode();
+		InsnList entryCheck = new InsnList();
+		entryCheck.add(new VarInsnNode(Opcodes.ALOAD, probeArrayVariable));
+		entryCheck.add(new LdcInsnNode(probeIds.first()));
+		entryCheck.add(new InsnNode(Opcodes.BALOAD));
+		entryCheck.add(new JumpInsnNode(Opcodes.IFNE, entered));
+		for (int probeId : probeIds) {
+			entryCheck.add(new VarInsnNode(Opcodes.ALOAD, probeArrayVariable));
+			entryCheck.add(new LdcInsnNode(probeId));
+			entryCheck.add(new InsnNode(Opcodes.ICONST_1));
+			entryCheck.add(new InsnNode(Opcodes.BASTORE));
+		}
+		entryCheck.add(entered);
+		if (needsFrames) {
+			entryCheck.add(createEntryFrame(className, method, probeArrayVariable));
+			// the original code may start with a frame of its own, which must not be at the same offset
+			entryCheck.add(new InsnNode(Opcodes.NOP));
+		}
+		method.instructions.insert(probeArrayStore, entryCheck);
+		method.maxStack = Math.max(method.maxStack, 3);
+	}
+
+	/**
+	 * Creates the frame right after the entry check. At this point, the locals are the arguments of the method and the
+	 * probe array, which JaCoCo places after the arguments and an unused slot, and the stack is empty.
+	 */
+	private static FrameNode createEntryFrame(String className, MethodNode method, int probeArrayVariable) {
+		boolean isStatic = (method.access & Opcodes.ACC_STATIC) != 0;
+		// the size includes the implicit this argument
+		int argumentsSize = (Type.getArgumentsAndReturnSizes(method.desc) >> 2) - (isStatic ? 1 : 0);
+		if (probeArrayVariable < argumentsSize) {
+			throw new IllegalStateException("The probe array of " + className + "." + method.name + method.desc
+					+ " is not stored after the arguments.");
+		}
+
+		List<Object> locals = new ArrayList<>();
+		if (!isStatic) {
+			if (method.name.equals("<init>")) {
+				locals.add(Opcodes.UNINITIALIZED_THIS);
+			} else {
+				locals.add(className);
+			}
+		}
+		for (Type argumentType : Type.getArgumentTypes(method.desc)) {
+			locals.add(getFrameType(argumentType));
+		}
+		for (int unusedSlot = argumentsSize; unusedSlot < probeArrayVariable; unusedSlot++) {
+			locals.add(Opcodes.TOP);
+		}
+		locals.add("[Z");
+		return new FrameNode(Opcodes.F_NEW, locals.size(), locals.toArray(), 0, new Object[0]);
+	}
+
+	/** Returns the representation of the given type in a {@link FrameNode}. */
+	private static Object getFrameType(Type type) {
+		switch (type.getSort()) {
+			case Type.BOOLEAN:
+			case Type.CHAR:
+			case Type.BYTE:
+			case Type.SHORT:
+			case Type.INT:
+				return Opcodes.INTEGER;
+			case Type.FLOAT:
+				return Opcodes.FLOAT;
+			case Type.LONG:
+				return Opcodes.LONG;
+			case Type.DOUBLE:
+				return Opcodes.DOUBLE;
+			default:
+				return type.getInternalName();
+		}
+	}
+
+	/**
+	 * Returns the instruction that stores the probe array in a local variable at the beginning of the method or
+	 * <code>null</code> if there is none.
+	 */
+	private static VarInsnNode findProbeArrayStore(InsnList instructions) {
+		AbstractInsnNode first = instructions.getFirst();
+		while (first != null && first.getOpcode() < 0) {
+			// skip labels, line numbers and frames
+			first = first.getNext();
+		}
+		if (first == null || !isProbeArrayLoad(first)) {
+			return null;
+		}
+		AbstractInsnNode next = first.getNext();
+		if (next != null && next.getOpcode() == Opcodes.CHECKCAST) {
+			// the constant dynamic is loaded as Object and needs to be cast to boolean[]
+			next = next.getNext();
+		}
+		if (next == null || next.getOpcode() != Opcodes.ASTORE) {
+			return null;
+		}
+		return (VarInsnNode) next;
+	}
+
+	/** Whether the instruction loads JaCoCo's probe array. */
+	private static boolean isProbeArrayLoad(AbstractInsnNode instruction) {
+		if (instruction instanceof MethodInsnNode) {
+			return ((MethodInsnNode) instruction).name.equals(INIT_METHOD_NAME);
+		}
+		if (instruction instanceof LdcInsnNode && ((LdcInsnNode) instruction).cst instanceof ConstantDynamic) {
+			return ((ConstantDynamic) ((LdcInsnNode) instruction).cst).getName().equals(DATA_FIELD_NAME);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the ID of the probe that starts with the given instruction or <code>null</code> if the instruction is
+	 * not the start of a probe.
+	 */
+	private static Integer getProbeId(AbstractInsnNode instruction, int probeArrayVariable) {
+		if (instruction.getOpcode() != Opcodes.ALOAD || ((VarInsnNode) instruction).var != probeArrayVariable) {
+			return null;
+		}
+		AbstractInsnNode push = instruction.getNext();
+		if (push == null || push.getNext() == null || push.getNext().getOpcode() != Opcodes.ICONST_1) {
+			return null;
+		}
+		AbstractInsnNode store = push.getNext().getNext();
+		if (store == null || store.getOpcode() != Opcodes.BASTORE) {
+			return null;
+		}
+		return getPushedInt(push);
+	}
+
+	/** Returns the int constant pushed by the given instruction or <code>null</code> if it does not push one. */
+	private static Integer getPushedInt(AbstractInsnNode instruction) {
+		int opcode = instruction.getOpcode();
+		if (opcode >= Opcodes.ICONST_0 && opcode <= Opcodes.ICONST_5) {
+			return opcode - Opcodes.ICONST_0;
+		}
+		if (opcode == Opcodes.BIPUSH || opcode == Opcodes.SIPUSH) {
+			return ((IntInsnNode) instruction).operand;
+		}
+		if (instruction instanceof LdcInsnNode && ((LdcInsnNode) instruction).cst instanceof Integer) {
+			return (Integer) ((LdcInsnNode) instruction).cst;
+		}
+		return null;
+	}
+}
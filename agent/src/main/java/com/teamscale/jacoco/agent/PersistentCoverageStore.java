@@ -0,0 +1,300 @@
+package com.teamscale.jacoco.agent;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Memory-mapped file that accumulates the probes of all classes that have been executed since it was last cleared.
+ * <p>
+ * Since all writes go directly to the mapped memory, the data survives a crash of the JVM (e.g. when it is killed due
+ * to an out of memory error) without the need to explicitly flush it. Only a crash of the whole operating system may
+ * lose the most recent writes. Merging a snapshot into the store is cheap, so it can be done much more often than the
+ * conversion and upload of a coverage report.
+ * <p>
+ * The file starts with a fixed size header that contains the end of the last completely written class entry. Each class entry consists of the class ID, the class name and the probes stored as a bit set. The end
+ * offset is only advanced after an entry has been written completely, so a crash while appending never results in a
+ * corrupt store. Probes of classes that are already contained in the store are OR-ed in place.
+ * <p>
+ * The session ID is kept in a separate file next to the store, which is replaced atomically whenever the session
+ * changes, so a crash never leaves a partially written session ID behind. The store only ever contains the coverage of
+ * a single session: merging the coverage of a new session removes the one of the previous session, which is returned to
+ * the caller so that it can be reported under its own session ID.
+ * <p>
+ * This class is not thread-safe. Callers must synchronize on their own.
+ */
+public class PersistentCoverageStore implements Closeable {
+
+	/** Marks a file as coverage store ("TSCS"). */
+	private static final int MAGIC = 0x54534353;
+
+	/** Version of the file layout. */
+	private static final int VERSION = 2;
+
+	/** Offset of the int that stores the end of the last completely written entry. */
+	private static final int END_OFFSET = 8;
+
+	/** Size of the header, i.e. offset of the first class entry. */
+	private static final int HEADER_SIZE = END_OFFSET + 4;
+
+	/** Suffix of the file that contains the session ID of the store. */
+	private static final String SESSION_ID_FILE_SUFFIX = ".session";
+
+	/** Initial size of the mapped file. Grows on demand. */
+	private static final int INITIAL_SIZE = 1024 * 1024;
+
+	/** The channel of the store file. */
+	private final FileChannel channel;
+
+	/** Prevents that two JVMs write to the same store. */
+	private final FileLock lock;
+
+	/** The file that contains the {@link #sessionId}. */
+	private final Path sessionIdFile;
+
+	/** The session ID of the coverage in the store. */
+	private String sessionId;
+
+	/** The mapped file contents. */
+	private MappedByteBuffer buffer;
+
+	/** Offset of the probe bits of each class in the store by class ID. */
+	private final Map<Long, ProbesLocation> probesLocations = new HashMap<>();
+
+	private PersistentCoverageStore(FileChannel channel, FileLock lock, Path sessionIdFile) throws IOException {
+		this.channel = channel;
+		this.lock = lock;
+		this.sessionIdFile = sessionIdFile;
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_SIZE));
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || getEnd() < HEADER_SIZE
+				|| getEnd() > buffer.capacity()) {
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, VERSION);
+			clear();
+		}
+		sessionId = readSessionId();
+		indexEntries();
+	}
+
+	/**
+	 * Opens the store in the given file. The file is created if it does not exist yet and its previous contents are
+	 * kept if it is a valid store.
+	 *
+	 * @throws IOException if the file cannot be opened or if it is used by another process.
+	 */
+	public static PersistentCoverageStore open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			FileLock lock = channel.tryLock();
+			if (lock == null) {
+				throw new IOException("The coverage store " + file + " is already used by another process.");
+			}
+			return new PersistentCoverageStore(channel, lock,
+					file.resolveSibling(file.getFileName() + SESSION_ID_FILE_SUFFIX));
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** Reads the positions of all entries into {@link #probesLocations}. */
+	private void indexEntries() {
+		int offset = HEADER_SIZE;
+		int end = getEnd();
+		while (offset < end) {
+			long classId = buffer.getLong(offset);
+			int nameLength = Short.toUnsignedInt(buffer.getShort(offset + 8));
+			int probeCount = buffer.getInt(offset + 10 + nameLength);
+			int probesOffset = offset + 14 + nameLength;
+			probesLocations.put(classId, new ProbesLocation(offset, probesOffset, probeCount));
+			offset = probesOffset + getBitSetSize(probeCount);
+		}
+	}
+
+	/** Returns whether the store does not contain any coverage. */
+	public boolean isEmpty() {
+		return probesLocations.isEmpty();
+	}
+
+	/** Returns the accumulated coverage. */
+	public Dump read() {
+		ExecutionDataStore store = new ExecutionDataStore();
+		for (Map.Entry<Long, ProbesLocation> entry : probesLocations.entrySet()) {
+			ProbesLocation location = entry.getValue();
+			int nameLength = Short.toUnsignedInt(buffer.getShort(location.entryOffset + 8));
+			byte[] name = new byte[nameLength];
+			for (int i = 0; i < nameLength; i++) {
+				name[i] = buffer.get(location.entryOffset + 10 + i);
+			}
+			boolean[] probes = new boolean[location.probeCount];
+			for (int i = 0; i < probes.length; i++) {
+				probes[i] = (buffer.get(location.probesOffset + i / 8) & (1 << (i % 8))) != 0;
+			}
+			store.put(new ExecutionData(entry.getKey(), new String(name, StandardCharsets.UTF_8), probes));
+		}
+		long now = System.currentTimeMillis();
+		return new Dump(new SessionInfo(sessionId, now, now), store);
+	}
+
+	/**
+	 * Adds the hit probes of the given dump to the store.
+	 *
+	 * @return The coverage of the previous session if the dump belongs to a new session and the store was not empty.
+	 * This coverage has been removed from the store. <code>null</code> otherwise.
+	 */
+	public Dump merge(Dump dump) throws IOException {
+		Dump previousSession = null;
+		if (!sessionId.equals(dump.info.getId())) {
+			if (!isEmpty()) {
+				previousSession = read();
+				clear();
+			}
+			writeSessionId(dump.info.getId());
+		}
+		for (ExecutionData executionData : dump.store.getContents()) {
+			if (!executionData.hasHits()) {
+				continue;
+			}
+			ProbesLocation location = probesLocations.get(executionData.getId());
+			if (location == null) {
+				append(executionData);
+			} else if (location.probeCount == executionData.getProbes().length) {
+				mergeProbes(location.probesOffset, executionData.getProbes());
+			}
+			// otherwise two different classes share the same ID, which JaCoCo cannot handle either
+		}
+		return previousSession;
+	}
+
+	/** Appends a new class entry to the store. */
+	private void append(ExecutionData executionData) throws IOException {
+		byte[] name = executionData.getName().getBytes(StandardCharsets.UTF_8);
+		boolean[] probes = executionData.getProbes();
+		int offset = getEnd();
+		int probesOffset = offset + 14 + name.length;
+		ensureCapacity(probesOffset + getBitSetSize(probes.length));
+
+		buffer.putLong(offset, executionData.getId());
+		buffer.putShort(offset + 8, (short) name.length);
+		for (int i = 0; i < name.length; i++) {
+			buffer.put(offset + 10 + i, name[i]);
+		}
+		buffer.putInt(offset + 10 + name.length, probes.length);
+		for (int i = 0; i < getBitSetSize(probes.length); i++) {
+			buffer.put(probesOffset + i, (byte) 0);
+		}
+		mergeProbes(probesOffset, probes);
+
+		buffer.putInt(END_OFFSET, probesOffset + getBitSetSize(probes.length));
+		probesLocations.put(executionData.getId(), new ProbesLocation(offset, probesOffset, probes.length));
+	}
+
+	/** Sets the bits of all hit probes. */
+	private void mergeProbes(int probesOffset, boolean[] probes) {
+		for (int i = 0; i < probes.length; i += 8) {
+			int bits = 0;
+			for (int j = 0; j < 8 && i + j < probes.length; j++) {
+				if (probes[i + j]) {
+					bits |= 1 << j;
+				}
+			}
+			if (bits != 0) {
+				int byteOffset = probesOffset + i / 8;
+				buffer.put(byteOffset, (byte) (buffer.get(byteOffset) | bits));
+			}
+		}
+	}
+
+	/** Removes all coverage from the store. */
+	public void clear() {
+		buffer.putInt(END_OFFSET, HEADER_SIZE);
+		probesLocations.clear();
+	}
+
+	/** Grows the mapped file if necessary so that it has at least the given size. */
+	private void ensureCapacity(int requiredSize) throws IOException {
+		if (requiredSize <= buffer.capacity()) {
+			return;
+		}
+		long newSize = Math.max((long) buffer.capacity() * 2, requiredSize);
+		if (newSize > Integer.MAX_VALUE) {
+			throw new IOException("The coverage store exceeds the maximum size of 2 GB.");
+		}
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+	}
+
+	private int getEnd() {
+		return buffer.getInt(END_OFFSET);
+	}
+
+	private String readSessionId() throws IOException {
+		if (!Files.exists(sessionIdFile)) {
+			return "";
+		}
+		return new String(Files.readAllBytes(sessionIdFile), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the session ID to a temporary file first, which is then moved to the {@link #sessionIdFile}, so the file
+	 * always contains either the old or the new session ID.
+	 */
+	private void writeSessionId(String newSessionId) throws IOException {
+		Path temporaryFile = Files.createTempFile(sessionIdFile.toAbsolutePath().getParent(),
+				sessionIdFile.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temporaryFile, newSessionId.getBytes(StandardCharsets.UTF_8));
+			Files.move(temporaryFile, sessionIdFile, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporaryFile);
+		}
+		sessionId = newSessionId;
+	}
+
+	/** Returns the number of bytes needed to store the given number of probes as bits. */
+	private static int getBitSetSize(int probeCount) {
+		return (probeCount + 7) / 8;
+	}
+
+	/** Flushes the store to disk and releases the file. */
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		lock.release();
+		channel.close();
+	}
+
+	/** Position of a class entry in the store. */
+	private static class ProbesLocation {
+
+		/** Offset of the entry. */
+		private final int entryOffset;
+
+		/** Offset of the probe bits of the entry. */
+		private final int probesOffset;
+
+		/** Number of probes of the class. */
+		private final int probeCount;
+
+		private ProbesLocation(int entryOffset, int probesOffset, int probeCount) {
+			this.entryOffset = entryOffset;
+			this.probesOffset = probesOffset;
+			this.probeCount = probeCount;
+		}
+	}
+}
@@ -30,6 +30,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /** Container class for the premain entry point for the agent. */
 public class PreMain {
@@ -53,6 +55,7 @@ public class PreMain {
 	 * Entry point for the agent, called by the JVM.
 	 */
 	public static void premain(String options, Instrumentation instrumentation) throws Exception {
+		long startTime = System.currentTimeMillis();
 		if (System.getProperty(LOCKING_SYSTEM_PROPERTY) != null) {
 			return;
 		}
@@ -80,13 +83,19 @@ public class PreMain {
 		logger.info("Teamscale Java profiler version " + AgentUtils.VERSION);
 		logger.info("Starting JaCoCo's agent");
 		JacocoAgentOptionsBuilder agentBuilder = new JacocoAgentOptionsBuilder(agentOptions);
-		JaCoCoPreMain.premain(agentBuilder.createJacocoAgentOptions(), instrumentation, logger);
+		LenientCoverageTransformer transformer = JaCoCoPreMain.premain(agentBuilder.createJacocoAgentOptions(),
+				instrumentation, agentOptions, logger);
 
 		if (agentOptions.configurationViaTeamscale != null) {
 			agentOptions.configurationViaTeamscale.startHeartbeatThreadAndRegisterShutdownHook();
 		}
-		AgentBase agent = createAgent(agentOptions, instrumentation);
-		agent.registerShutdownHook();
+		if (agentOptions.shouldDeferStartup()) {
+			createAgentInBackground(agentOptions, instrumentation, transformer, logger);
+		} else {
+			AgentBase agent = createAgent(agentOptions, instrumentation, transformer);
+			agent.registerShutdownHook();
+		}
+		logger.debug("Agent premain finished after {} ms.", System.currentTimeMillis() - startTime);
 	}
 
 	@NotNull
@@ -160,15 +169,50 @@ public class PreMain {
 	 * Returns in instance of the agent that was configured. Either an agent with interval based line-coverage dump or
 	 * the HTTP server is used.
 	 */
-	private static AgentBase createAgent(AgentOptions agentOptions,
-										 Instrumentation instrumentation) throws UploaderException, IOException {
+	private static AgentBase createAgent(AgentOptions agentOptions, Instrumentation instrumentation,
+										 LenientCoverageTransformer transformer) throws UploaderException, IOException {
 		if (agentOptions.useTestwiseCoverageMode()) {
 			return TestwiseCoverageAgent.create(agentOptions);
 		} else {
-			return new Agent(agentOptions, instrumentation);
+			return new Agent(agentOptions, instrumentation, transformer);
 		}
 	}
 
+	/**
+	 * Creates the agent on a background thread, so the HTTP server, the uploader and the report generation are
+	 * initialized while the profiled application is already running. The instrumentation is not affected by this, as
+	 * the transformer is already registered at this point.
+	 * <p>
+	 * The shutdown hook waits until the agent is created, so the coverage of applications that terminate before is not
+	 * lost.
+	 */
+	private static void createAgentInBackground(AgentOptions agentOptions, Instrumentation instrumentation,
+												LenientCoverageTransformer transformer, Logger logger) {
+		FutureTask<AgentBase> agentCreation = new FutureTask<>(() -> {
+			try {
+				return createAgent(agentOptions, instrumentation, transformer);
+			} catch (Exception | Error e) {
+				logger.error("Failed to start the agent. No coverage will be collected.", e);
+				throw e;
+			}
+		});
+		Thread thread = new Thread(agentCreation, "Teamscale Java profiler startup");
+		thread.setDaemon(true);
+		thread.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				agentCreation.get().shutDown();
+			} catch (ExecutionException e) {
+				// already logged by the startup thread
+				closeLoggingResources();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				closeLoggingResources();
+			}
+		}));
+	}
+
 	/**
 	 * Initializes debug logging during {@link #premain(String, Instrumentation)} and also logs the log directory if
 	 * given.
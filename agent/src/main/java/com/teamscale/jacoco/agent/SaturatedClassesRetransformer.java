@@ -0,0 +1,108 @@
+package com.teamscale.jacoco.agent;
+
+import com.teamscale.jacoco.agent.util.LoggingUtils;
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.slf4j.Logger;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes the instrumentation of classes once all of their probes have been hit, since the probes cannot produce any
+ * new information anymore. The coverage of these classes is added to all subsequent dumps so it is still reported.
+ * <p>
+ * This class is not thread-safe. Callers must synchronize on their own.
+ */
+public class SaturatedClassesRetransformer {
+
+	/** Session ID used for the {@link #cumulativeCoverage}, which must never be reset. */
+	private static final String SESSION_ID = "";
+
+	private final Logger logger = LoggingUtils.getLogger(this);
+
+	private final Instrumentation instrumentation;
+
+	private final LenientCoverageTransformer transformer;
+
+	/** All coverage seen so far. */
+	private final CumulativeCoverage cumulativeCoverage = new CumulativeCoverage();
+
+	/** Fully covered execution data of all classes whose instrumentation has been removed by class ID. */
+	private final Map<Long, ExecutionData> retransformedClasses = new HashMap<>();
+
+	/** IDs of classes that could not be retransformed. Those are not tried again. */
+	private final Set<Long> failedClassIds = new HashSet<>();
+
+	public SaturatedClassesRetransformer(Instrumentation instrumentation, LenientCoverageTransformer transformer) {
+		this.instrumentation = instrumentation;
+		this.transformer = transformer;
+	}
+
+	/**
+	 * Adds the coverage of the given dump to the cumulative coverage and removes the instrumentation of all classes
+	 * that are fully covered now. Afterwards, adds the coverage of all classes without instrumentation to the dump.
+	 */
+	public void process(Dump dump) {
+		cumulativeCoverage.mergeAndCheckForNewCoverage(SESSION_ID, dump.store);
+
+		Map<String, ExecutionData> saturatedClasses = new HashMap<>();
+		for (ExecutionData executionData : dump.store.getContents()) {
+			long classId = executionData.getId();
+			if (executionData.hasHits() && !retransformedClasses.containsKey(classId)
+					&& !failedClassIds.contains(classId) && cumulativeCoverage.isFullyCovered(classId)) {
+				saturatedClasses.put(executionData.getName().replace('/', '.'), executionData);
+			}
+		}
+		if (!saturatedClasses.isEmpty()) {
+			retransform(saturatedClasses);
+		}
+
+		addCoverageOfRetransformedClasses(dump);
+	}
+
+	/** Adds the coverage of all classes without instrumentation to the given dump. */
+	public void addCoverageOfRetransformedClasses(Dump dump) {
+		for (ExecutionData executionData : retransformedClasses.values()) {
+			boolean[] probes = new boolean[executionData.getProbes().length];
+			Arrays.fill(probes, true);
+			dump.store.put(new ExecutionData(executionData.getId(), executionData.getName(), probes));
+		}
+	}
+
+	/** Retransforms the loaded classes with the given names (dot-separated) to their original bytecode. */
+	private void retransform(Map<String, ExecutionData> saturatedClasses) {
+		List<Class<?>> classesToRetransform = new ArrayList<>();
+		for (Class<?> loadedClass : instrumentation.getAllLoadedClasses()) {
+			if (saturatedClasses.containsKey(loadedClass.getName()) && instrumentation.isModifiableClass(loadedClass)) {
+				classesToRetransform.add(loadedClass);
+			}
+		}
+		for (ExecutionData executionData : saturatedClasses.values()) {
+			transformer.markSaturated(executionData.getId());
+		}
+
+		try {
+			instrumentation.retransformClasses(classesToRetransform.toArray(new Class<?>[0]));
+			for (ExecutionData executionData : saturatedClasses.values()) {
+				retransformedClasses.put(executionData.getId(), executionData);
+			}
+			logger.debug("Removed the instrumentation of {} fully covered classes.", classesToRetransform.size());
+		} catch (Throwable t) {
+			// the JVM may reject the retransformation with different errors (e.g. UnmodifiableClassException,
+			// VerifyError), which must not affect the application
+			for (ExecutionData executionData : saturatedClasses.values()) {
+				transformer.unmarkSaturated(executionData.getId());
+				failedClassIds.add(executionData.getId());
+			}
+			logger.warn("Could not remove the instrumentation of {} fully covered classes. They stay instrumented.",
+					classesToRetransform.size(), t);
+		}
+	}
+}
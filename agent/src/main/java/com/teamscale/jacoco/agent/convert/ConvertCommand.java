@@ -92,6 +92,25 @@ public class ConvertCommand implements ICommand {
 			"testwise coverage should be split into multiple reports (Default is 5000).")
 	private int splitAfter = 5000;
 
+	/** After how many megabytes testwise coverage should be split into multiple reports. */
+	@Parameter(names = {"--split-after-mb"}, required = false, arity = 1, description = "After how many megabytes " +
+			"of uncompressed JSON testwise coverage should be split into multiple reports, in addition to " +
+			"--split-after. Defaults to 0, i.e. the reports are only split by the number of tests.")
+	/* package */ int splitAfterMegabytes = 0;
+
+	/** Whether the testwise coverage reports should be compressed. */
+	@Parameter(names = {"--compress"}, required = false, arity = 0, description = "Whether the testwise coverage " +
+			"reports should be compressed with gzip. Compressed reports must be decompressed before they can be " +
+			"uploaded to Teamscale.")
+	/* package */ boolean shouldCompress = false;
+
+	/** Whether identical coverage of multiple tests should only be written once per testwise coverage report. */
+	@Parameter(names = {"--deduplicate-coverage"}, required = false, arity = 0, description = "Whether identical " +
+			"coverage of multiple tests should only be written once per testwise coverage report. Such reports are " +
+			"considerably smaller for data-driven test suites, but must be expanded before they can be uploaded to " +
+			"Teamscale.")
+	/* package */ boolean shouldDeduplicateCoverage = false;
+
 	/** @see #classDirectoriesOrZips */
 	public List<File> getClassDirectoriesOrZips() throws AgentOptionParseException {
 		return ClasspathUtils
@@ -124,6 +143,21 @@ public class ConvertCommand implements ICommand {
 		return splitAfter;
 	}
 
+	/** @see #splitAfterMegabytes */
+	public long getSplitAfterBytes() {
+		return splitAfterMegabytes * 1024L * 1024L;
+	}
+
+	/** @see #shouldCompress */
+	public boolean shouldCompress() {
+		return shouldCompress;
+	}
+
+	/** @see #shouldDeduplicateCoverage */
+	public boolean shouldDeduplicateCoverage() {
+		return shouldDeduplicateCoverage;
+	}
+
 	/** @see #duplicateClassFileBehavior */
 	public EDuplicateClassFileBehavior getDuplicateClassFileBehavior() {
 		return duplicateClassFileBehavior;
@@ -6,6 +6,7 @@ import com.teamscale.jacoco.agent.util.Benchmark;
 import com.teamscale.jacoco.agent.util.LoggingUtils;
 import com.teamscale.report.ReportUtils;
 import com.teamscale.report.jacoco.EmptyReportException;
+import com.teamscale.report.jacoco.ExecutionDataMerger;
 import com.teamscale.report.jacoco.JaCoCoXmlReportGenerator;
 import com.teamscale.report.jacoco.dump.Dump;
 import com.teamscale.report.testwise.ETestArtifactFormat;
@@ -16,9 +17,6 @@ import com.teamscale.report.testwise.model.factory.TestInfoFactory;
 import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.CommandLineLogger;
 import com.teamscale.report.util.ILogger;
-import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.data.SessionInfo;
-import org.jacoco.core.tools.ExecFileLoader;
 import org.slf4j.Logger;
 
 import java.io.File;
@@ -44,21 +42,20 @@ public class Converter {
 		List<File> jacocoExecutionDataList = ReportUtils
 				.listFiles(ETestArtifactFormat.JACOCO, arguments.getInputFiles());
 
-		ExecFileLoader loader = new ExecFileLoader();
-		for (File jacocoExecutionData : jacocoExecutionDataList) {
-			loader.load(jacocoExecutionData);
+		ExecutionDataMerger merger = new ExecutionDataMerger(getWildcardIncludeExcludeFilter(),
+				Runtime.getRuntime().availableProcessors());
+		Dump dump;
+		try (Benchmark benchmark = new Benchmark("Loading " + jacocoExecutionDataList.size() + " exec files")) {
+			dump = merger.merge(jacocoExecutionDataList);
 		}
 
-		SessionInfo sessionInfo = loader.getSessionInfoStore().getMerged("merged");
-		ExecutionDataStore executionDataStore = loader.getExecutionDataStore();
-
 		Logger logger = LoggingUtils.getLogger(this);
 		JaCoCoXmlReportGenerator generator = new JaCoCoXmlReportGenerator(arguments.getClassDirectoriesOrZips(),
 				getWildcardIncludeExcludeFilter(), arguments.getDuplicateClassFileBehavior(), arguments.shouldIgnoreUncoveredClasses,
 				wrap(logger));
 
 		try (Benchmark benchmark = new Benchmark("Generating the XML report")) {
-			generator.convert(new Dump(sessionInfo, executionDataStore), Paths.get(arguments.outputFile).toFile());
+			generator.convert(dump, Paths.get(arguments.outputFile).toFile());
 		} catch (EmptyReportException e) {
 			logger.warn("Converted report was emtpy.", e);
 		}
@@ -66,10 +63,11 @@ public class Converter {
 
 	/** Converts one .exec binary coverage file, test details and test execution files to JSON testwise coverage. */
 	public void runTestwiseCoverageReportGeneration() throws IOException, AgentOptionParseException {
-		List<TestDetails> testDetails = ReportUtils.readObjects(ETestArtifactFormat.TEST_LIST,
-				TestDetails[].class, arguments.getInputFiles());
-		List<TestExecution> testExecutions = ReportUtils.readObjects(ETestArtifactFormat.TEST_EXECUTION,
-				TestExecution[].class, arguments.getInputFiles());
+		TestInfoFactory testInfoFactory = new TestInfoFactory();
+		int testDetailsCount = ReportUtils.streamObjects(ETestArtifactFormat.TEST_LIST, TestDetails.class,
+				arguments.getInputFiles(), testInfoFactory::addTestDetails);
+		int testExecutionsCount = ReportUtils.streamObjects(ETestArtifactFormat.TEST_EXECUTION, TestExecution.class,
+				arguments.getInputFiles(), testInfoFactory::addTestExecution);
 
 		List<File> jacocoExecutionDataList = ReportUtils
 				.listFiles(ETestArtifactFormat.JACOCO, arguments.getInputFiles());
@@ -82,16 +80,20 @@ public class Converter {
 				logger
 		);
 
-		TestInfoFactory testInfoFactory = new TestInfoFactory(testDetails, testExecutions);
-
 		try (Benchmark benchmark = new Benchmark("Generating the testwise coverage report")) {
 			logger.info(
-					"Writing report with " + testDetails.size() + " Details/" + testExecutions.size() + " Results");
-
-			try (TestwiseCoverageReportWriter coverageWriter = new TestwiseCoverageReportWriter(testInfoFactory,
-					arguments.getOutputFile(), arguments.getSplitAfter())) {
+					"Writing report with " + testDetailsCount + " Details/" + testExecutionsCount + " Results");
+
+			try (TestwiseCoverageReportWriter coverageWriter = TestwiseCoverageReportWriter
+					.builder(testInfoFactory, arguments.getOutputFile())
+					.splitAfter(arguments.getSplitAfter())
+					.splitAfterBytes(arguments.getSplitAfterBytes())
+					.compress(arguments.shouldCompress())
+					.deduplicateCoverage(arguments.shouldDeduplicateCoverage())
+					.build()) {
 				for (File executionDataFile : jacocoExecutionDataList) {
-					generator.convertAndConsume(executionDataFile, coverageWriter);
+					generator.convertAndConsume(executionDataFile, coverageWriter,
+							Runtime.getRuntime().availableProcessors());
 				}
 			}
 		}
@@ -11,6 +11,7 @@ import com.teamscale.client.ProxySystemProperties;
 import com.teamscale.client.StringUtils;
 import com.teamscale.client.TeamscaleClient;
 import com.teamscale.client.TeamscaleServer;
+import com.teamscale.client.UnixDomainSocketUtils;
 import com.teamscale.jacoco.agent.commandline.Validator;
 import com.teamscale.jacoco.agent.commit_resolution.git_properties.CommitInfo;
 import com.teamscale.jacoco.agent.commit_resolution.git_properties.GitMultiProjectPropertiesLocator;
@@ -141,6 +142,54 @@ public class AgentOptions {
 	/** Whether to dump coverage when the JVM shuts down. */
 	/* package */ boolean shouldDumpOnExit = true;
 
+	/**
+	 * Whether to skip the conversion and upload of a dump if it does not contain any coverage that has not already been
+	 * dumped before.
+	 */
+	/* package */ boolean skipUnchangedDumps = false;
+
+	/**
+	 * If {@link #skipUnchangedDumps} is enabled, the number of consecutive skipped intervals after which a dump is
+	 * converted and uploaded anyway. 0 means that unchanged dumps are always skipped.
+	 */
+	/* package */ int heartbeatDumpIntervals = 0;
+
+	/**
+	 * File in which the coverage is persisted in between two dumps so it survives a crash of the JVM or
+	 * <code>null</code> if it should not be persisted.
+	 */
+	/* package */ Path coverageStore = null;
+
+	/** The interval in seconds in which coverage is written to the {@link #coverageStore}. */
+	/* package */ int coverageStoreIntervalInSeconds = 60;
+
+	/** Whether the instrumentation of classes should be removed once all of their probes have been hit. */
+	/* package */ boolean retransformSaturatedClasses = false;
+
+	/** How detailed the profiled classes are instrumented. */
+	/* package */ EInstrumentationMode instrumentationMode = EInstrumentationMode.FULL;
+
+	/**
+	 * Directory in which instrumented classes are cached across JVM runs or <code>null</code> if they should not be
+	 * cached.
+	 */
+	/* package */ Path instrumentationCacheDirectory = null;
+
+	/** The maximum size of the {@link #instrumentationCacheDirectory} in MB. */
+	/* package */ int instrumentationCacheMaxSizeInMb = 256;
+
+	/**
+	 * Whether the agent (i.e. the HTTP server, the uploader etc.) should be started on a background thread after the
+	 * classes are instrumented, so that the profiled application can start right away.
+	 */
+	/* package */ boolean deferredStartup = false;
+
+	/**
+	 * Whether the HTTP API should be served by a minimal built-in server instead of Jetty. This server handles test
+	 * start and end events without going through Jersey, which reduces their latency.
+	 */
+	/* package */ boolean useLightweightHttpServer = false;
+
 	/**
 	 * Whether to search directories and jar files recursively for git.properties files
 	 */
@@ -188,11 +237,23 @@ public class AgentOptions {
 	 */
 	/* package */ Integer httpServerPort = null;
 
+	/**
+	 * The path of the Unix domain socket on which the HTTP server should be listening. This is an alternative to the
+	 * {@link #httpServerPort} for test runners on the same machine.
+	 */
+	/* package */ Path httpServerSocket = null;
+
 	/**
 	 * Whether classes without coverage should be skipped from the XML report.
 	 */
 	/* package */ boolean ignoreUncoveredClasses = false;
 
+	/**
+	 * Whether the XML report should be generated directly from the probes with line coverage only instead of with
+	 * JaCoCo's full coverage analysis.
+	 */
+	/* package */ boolean lineCoverageReport = false;
+
 	/**
 	 * The configuration necessary to upload files to an azure file storage
 	 */
@@ -293,6 +354,15 @@ public class AgentOptions {
 			validateTestwiseCoverageConfig(validator);
 		}
 
+		validator.isTrue(coverageStore == null || coverageStoreIntervalInSeconds > 0,
+				"The coverage-store-interval must be greater than 0.");
+		validator.isFalse(retransformSaturatedClasses && useTestwiseCoverageMode(),
+				"The option retransform-saturated-classes is not supported in testwise mode.");
+		validator.isFalse(deferredStartup && useTestwiseCoverageMode(),
+				"The option deferred-startup is not supported in testwise mode.");
+		validator.isFalse(httpServerSocket != null && !UnixDomainSocketUtils.isSupported(),
+				"The option http-server-socket requires Java 16 or newer.");
+
 		return validator;
 	}
 
@@ -377,9 +447,10 @@ public class AgentOptions {
 
 	private void validateTestwiseCoverageConfig(Validator validator) {
 		validator.isFalse(
-				!(testwiseCoverageMode == ETestwiseCoverageMode.DISK) && httpServerPort == null,
-				"You use 'mode' 'TESTWISE' but did use neither 'http-server-port' nor dumping to disk!" +
-						" One of them is required!");
+				!(testwiseCoverageMode == ETestwiseCoverageMode.DISK) && httpServerPort == null
+						&& httpServerSocket == null,
+				"You use 'mode' 'TESTWISE' but did use neither 'http-server-port', 'http-server-socket' nor dumping" +
+						" to disk! One of them is required!");
 
 		validator.isFalse(testwiseCoverageMode == ETestwiseCoverageMode.TEAMSCALE_UPLOAD
 						&& !teamscaleServer.isConfiguredForSingleProjectTeamscaleUpload(),
@@ -699,6 +770,14 @@ public class AgentOptions {
 		return httpServerPort;
 	}
 
+	/**
+	 * Returns the path of the Unix domain socket at which the http server should listen for test execution information
+	 * or null if disabled.
+	 */
+	public Path getHttpServerSocket() {
+		return httpServerSocket;
+	}
+
 	/**
 	 * @see #loggingConfig
 	 */
@@ -738,6 +817,56 @@ public class AgentOptions {
 		return shouldDumpOnExit;
 	}
 
+	/** @see #skipUnchangedDumps */
+	public boolean shouldSkipUnchangedDumps() {
+		return skipUnchangedDumps;
+	}
+
+	/** @see #heartbeatDumpIntervals */
+	public int getHeartbeatDumpIntervals() {
+		return heartbeatDumpIntervals;
+	}
+
+	/** @see #coverageStore */
+	public Path getCoverageStore() {
+		return coverageStore;
+	}
+
+	/** @see #coverageStoreIntervalInSeconds */
+	public int getCoverageStoreIntervalInSeconds() {
+		return coverageStoreIntervalInSeconds;
+	}
+
+	/** @see #retransformSaturatedClasses */
+	public boolean shouldRetransformSaturatedClasses() {
+		return retransformSaturatedClasses;
+	}
+
+	/** @see #instrumentationMode */
+	public EInstrumentationMode getInstrumentationMode() {
+		return instrumentationMode;
+	}
+
+	/** @see #instrumentationCacheDirectory */
+	public Path getInstrumentationCacheDirectory() {
+		return instrumentationCacheDirectory;
+	}
+
+	/** @see #instrumentationCacheMaxSizeInMb */
+	public int getInstrumentationCacheMaxSizeInMb() {
+		return instrumentationCacheMaxSizeInMb;
+	}
+
+	/** @see #deferredStartup */
+	public boolean shouldDeferStartup() {
+		return deferredStartup;
+	}
+
+	/** @see #useLightweightHttpServer */
+	public boolean shouldUseLightweightHttpServer() {
+		return useLightweightHttpServer;
+	}
+
 	public ETestwiseCoverageMode getTestwiseCoverageMode() {
 		return testwiseCoverageMode;
 	}
@@ -747,6 +876,11 @@ public class AgentOptions {
 		return ignoreUncoveredClasses;
 	}
 
+	/** @see #lineCoverageReport */
+	public boolean shouldGenerateLineCoverageReport() {
+		return lineCoverageReport;
+	}
+
 	/** @return the {@link TeamscaleProxyOptions} for the given protocol. */
 	public TeamscaleProxyOptions getTeamscaleProxyOptions(ProxySystemProperties.Protocol protocol) {
 		if (protocol == ProxySystemProperties.Protocol.HTTP) {
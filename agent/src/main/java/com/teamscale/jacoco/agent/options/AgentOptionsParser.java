@@ -300,12 +300,45 @@ public class AgentOptionsParser {
 			case "ignore-uncovered-classes":
 				options.ignoreUncoveredClasses = Boolean.parseBoolean(value);
 				return true;
+			case "line-coverage-report":
+				options.lineCoverageReport = Boolean.parseBoolean(value);
+				return true;
 			case "obfuscate-security-related-outputs":
 				options.obfuscateSecurityRelatedOutputs = Boolean.parseBoolean(value);
 				return true;
 			case "dump-on-exit":
 				options.shouldDumpOnExit = Boolean.parseBoolean(value);
 				return true;
+			case "skip-unchanged-dumps":
+				options.skipUnchangedDumps = Boolean.parseBoolean(value);
+				return true;
+			case "heartbeat-dump-intervals":
+				options.heartbeatDumpIntervals = parseInt(key, value);
+				return true;
+			case "coverage-store":
+				options.coverageStore = filePatternResolver.parsePath(key, value);
+				return true;
+			case "coverage-store-interval":
+				options.coverageStoreIntervalInSeconds = parseInt(key, value);
+				return true;
+			case "retransform-saturated-classes":
+				options.retransformSaturatedClasses = Boolean.parseBoolean(value);
+				return true;
+			case "instrumentation-mode":
+				options.instrumentationMode = parseEnumValue(key, value, EInstrumentationMode.class);
+				return true;
+			case "instrumentation-cache":
+				options.instrumentationCacheDirectory = filePatternResolver.parsePath(key, value);
+				return true;
+			case "instrumentation-cache-max-size":
+				options.instrumentationCacheMaxSizeInMb = parseInt(key, value);
+				return true;
+			case "deferred-startup":
+				options.deferredStartup = Boolean.parseBoolean(value);
+				return true;
+			case "lightweight-http-server":
+				options.useLightweightHttpServer = Boolean.parseBoolean(value);
+				return true;
 			case "search-git-properties-recursively":
 				options.searchGitPropertiesRecursively = Boolean.parseBoolean(value);
 				return true;
@@ -342,6 +375,9 @@ public class AgentOptionsParser {
 			case "http-server-port":
 				options.httpServerPort = parseInt(key, value);
 				return true;
+			case "http-server-socket":
+				options.httpServerSocket = filePatternResolver.parsePath(key, value);
+				return true;
 			case "sap-nwdi-applications":
 				options.sapNetWeaverJavaApplications = SapNwdiApplication.parseApplications(value);
 				return true;
@@ -0,0 +1,15 @@
+package com.teamscale.jacoco.agent.options;
+
+/** Describes how detailed the profiled classes are instrumented. */
+public enum EInstrumentationMode {
+
+	/** The default mode in which JaCoCo's probes record line and branch coverage. */
+	FULL,
+
+	/**
+	 * Only records which methods have been executed with a single probe per method. This reduces the overhead of the
+	 * instrumentation to a minimum, e.g. for latency-critical production systems. All lines of the executed methods
+	 * are reported as covered (see {@link com.teamscale.jacoco.agent.MethodEntryProbes}).
+	 */
+	METHOD_ENTRY
+}
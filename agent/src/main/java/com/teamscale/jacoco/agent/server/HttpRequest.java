@@ -0,0 +1,272 @@
+package com.teamscale.jacoco.agent.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** A HTTP/1.1 request received by the {@link LightweightHttpServer}. */
+public class HttpRequest {
+
+	/** The maximum length of the request line and of each header line. */
+	private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+	/**
+	 * The maximum size of a request body. The largest bodies the agent receives are the lists of available tests at the
+	 * start of a test run.
+	 */
+	private static final int MAX_BODY_SIZE = 64 * 1024 * 1024;
+
+	/** The size of the chunks in which a body is read, so the memory only grows with the data that was actually sent. */
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+	/** The maximum number of empty lines that are skipped before a request line. */
+	private static final int MAX_EMPTY_LINES = 16;
+
+	/** The HTTP method, e.g. POST. */
+	public final String method;
+
+	/** The raw, i.e. still percent-encoded, path of the request. */
+	public final String path;
+
+	/** The raw query string of the request or <code>null</code> if it has none. */
+	public final String query;
+
+	/** The HTTP version, e.g. HTTP/1.1. */
+	public final String version;
+
+	/** The headers of the request with lower case names. */
+	public final Map<String, String> headers;
+
+	/** The body of the request. Empty if the request has none. */
+	public final byte[] body;
+
+	public HttpRequest(String method, String path, String query, String version, Map<String, String> headers,
+					   byte[] body) {
+		this.method = method;
+		this.path = path;
+		this.query = query;
+		this.version = version;
+		this.headers = headers;
+		this.body = body;
+	}
+
+	/** Returns the value of the header with the given lower case name or <code>null</code> if it is not present. */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	/** Returns the body decoded as UTF-8. */
+	public String getBodyAsString() {
+		return new String(body, StandardCharsets.UTF_8);
+	}
+
+	/** Whether the connection should be kept open after answering this request. */
+	public boolean isKeepAlive() {
+		String connection = getHeader("connection");
+		if ("HTTP/1.0".equals(version)) {
+			return "keep-alive".equalsIgnoreCase(connection);
+		}
+		return !"close".equalsIgnoreCase(connection);
+	}
+
+	/**
+	 * Reads the next request from the given stream.
+	 *
+	 * @return the request or <code>null</code> if the client closed the connection before sending another request.
+	 * @throws MalformedRequestException if the request is not a valid HTTP request.
+	 */
+	public static HttpRequest read(InputStream in) throws IOException {
+		String requestLine = readLine(in);
+		// clients may send an empty line between requests
+		for (int emptyLines = 0; requestLine != null && requestLine.isEmpty(); emptyLines++) {
+			if (emptyLines >= MAX_EMPTY_LINES) {
+				throw new MalformedRequestException("Too many empty lines before the request line");
+			}
+			requestLine = readLine(in);
+		}
+		if (requestLine == null) {
+			return null;
+		}
+
+		String[] parts = requestLine.split(" ");
+		if (parts.length != 3) {
+			throw new MalformedRequestException("Invalid request line: " + requestLine);
+		}
+		String target = parts[1];
+		String path = target;
+		String query = null;
+		int queryStart = target.indexOf('?');
+		if (queryStart >= 0) {
+			path = target.substring(0, queryStart);
+			query = target.substring(queryStart + 1);
+		}
+
+		Map<String, String> headers = readHeaders(in);
+		return new HttpRequest(parts[0], path, query, parts[2], headers, readBody(in, headers));
+	}
+
+	private static Map<String, String> readHeaders(InputStream in) throws IOException {
+		Map<String, String> headers = new LinkedHashMap<>();
+		while (true) {
+			String line = readLine(in);
+			if (line == null) {
+				throw new MalformedRequestException("Connection closed while reading the headers");
+			}
+			if (line.isEmpty()) {
+				return headers;
+			}
+			int separator = line.indexOf(':');
+			if (separator <= 0) {
+				throw new MalformedRequestException("Invalid header: " + line);
+			}
+			String name = line.substring(0, separator).trim().toLowerCase(Locale.ROOT);
+			String value = line.substring(separator + 1).trim();
+			headers.merge(name, value, (first, second) -> first + "," + second);
+		}
+	}
+
+	private static byte[] readBody(InputStream in, Map<String, String> headers) throws IOException {
+		String transferEncoding = headers.get("transfer-encoding");
+		if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+			return readChunkedBody(in);
+		}
+
+		String contentLength = headers.get("content-length");
+		if (contentLength == null) {
+			return new byte[0];
+		}
+		int length;
+		try {
+			length = Integer.parseInt(contentLength);
+		} catch (NumberFormatException e) {
+			throw new MalformedRequestException("Invalid content length: " + contentLength);
+		}
+		if (length < 0 || length > MAX_BODY_SIZE) {
+			throw new MalformedRequestException("Invalid content length: " + length);
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream(Math.min(length, READ_BUFFER_SIZE));
+		readFully(in, length, body);
+		return body.toByteArray();
+	}
+
+	private static byte[] readChunkedBody(InputStream in) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		while (true) {
+			String sizeLine = readLine(in);
+			if (sizeLine == null) {
+				throw new MalformedRequestException("Connection closed while reading a chunk");
+			}
+			int extensionStart = sizeLine.indexOf(';');
+			if (extensionStart >= 0) {
+				sizeLine = sizeLine.substring(0, extensionStart);
+			}
+			int size;
+			try {
+				size = Integer.parseInt(sizeLine.trim(), 16);
+			} catch (NumberFormatException e) {
+				throw new MalformedRequestException("Invalid chunk size: " + sizeLine);
+			}
+			if (size == 0) {
+				// skip the trailers
+				readHeaders(in);
+				return body.toByteArray();
+			}
+			if (size < 0 || body.size() + size > MAX_BODY_SIZE) {
+				throw new MalformedRequestException("Request body too large");
+			}
+			readFully(in, size, body);
+			readLine(in);
+		}
+	}
+
+	/**
+	 * Reads exactly the given number of bytes into the body. The bytes are read in small chunks instead of allocating
+	 * the whole length up front, since the length is sent by the client.
+	 */
+	private static void readFully(InputStream in, int length, ByteArrayOutputStream body) throws IOException {
+		byte[] buffer = new byte[Math.min(length, READ_BUFFER_SIZE)];
+		int remaining = length;
+		while (remaining > 0) {
+			int read = in.read(buffer, 0, Math.min(remaining, buffer.length));
+			if (read < 0) {
+				throw new MalformedRequestException("Connection closed while reading the body");
+			}
+			body.write(buffer, 0, read);
+			remaining -= read;
+		}
+	}
+
+	/**
+	 * Reads a line terminated by CRLF (or LF). Returns <code>null</code> if the stream ends before any character was
+	 * read.
+	 */
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder line = new StringBuilder();
+		while (true) {
+			int character = in.read();
+			if (character < 0) {
+				if (line.length() == 0) {
+					return null;
+				}
+				throw new MalformedRequestException("Connection closed in the middle of a line");
+			}
+			if (character == '\n') {
+				int length = line.length();
+				if (length > 0 && line.charAt(length - 1) == '\r') {
+					line.setLength(length - 1);
+				}
+				return line.toString();
+			}
+			if (line.length() >= MAX_LINE_LENGTH) {
+				throw new MalformedRequestException("Line too long");
+			}
+			// headers are ISO-8859-1, non-ASCII characters in the path are percent-encoded
+			line.append((char) character);
+		}
+	}
+
+	/**
+	 * Decodes a percent-encoded path segment. In contrast to {@link java.net.URLDecoder}, a <code>+</code> is not
+	 * decoded to a space.
+	 */
+	public static String decodePathSegment(String segment) throws MalformedRequestException {
+		if (segment.indexOf('%') < 0) {
+			return segment;
+		}
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream(segment.length());
+		for (int i = 0; i < segment.length(); i++) {
+			char character = segment.charAt(i);
+			if (character != '%') {
+				// encodes non-ASCII characters that have not been percent-encoded by the client
+				byte[] bytes = String.valueOf(character).getBytes(StandardCharsets.UTF_8);
+				decoded.write(bytes, 0, bytes.length);
+				continue;
+			}
+			if (i + 2 >= segment.length()) {
+				throw new MalformedRequestException("Invalid percent-encoding: " + segment);
+			}
+			int high = Character.digit(segment.charAt(i + 1), 16);
+			int low = Character.digit(segment.charAt(i + 2), 16);
+			if (high < 0 || low < 0) {
+				throw new MalformedRequestException("Invalid percent-encoding: " + segment);
+			}
+			decoded.write(high << 4 | low);
+			i += 2;
+		}
+		return new String(decoded.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/** Thrown if a request cannot be parsed. */
+	public static class MalformedRequestException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public MalformedRequestException(String message) {
+			super(message);
+		}
+	}
+}
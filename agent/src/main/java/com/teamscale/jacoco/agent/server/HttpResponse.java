@@ -0,0 +1,82 @@
+package com.teamscale.jacoco.agent.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/** A HTTP response sent by the {@link LightweightHttpServer}. */
+public class HttpResponse {
+
+	/** The content type of JSON responses. */
+	public static final String APPLICATION_JSON = "application/json";
+
+	/** The content type of plain text responses. */
+	public static final String TEXT_PLAIN = "text/plain";
+
+	private static final byte[] EMPTY_BODY = new byte[0];
+
+	/** The HTTP status code. */
+	public final int status;
+
+	/** The content type of the body or <code>null</code> if there is no body. */
+	public final String contentType;
+
+	/** The body of the response. */
+	public final byte[] body;
+
+	public HttpResponse(int status, String contentType, byte[] body) {
+		this.status = status;
+		this.contentType = contentType;
+		this.body = body;
+	}
+
+	/** Creates a "204 No Content" response. */
+	public static HttpResponse noContent() {
+		return new HttpResponse(204, null, EMPTY_BODY);
+	}
+
+	/** Creates a "200 OK" response with the given JSON as body. */
+	public static HttpResponse json(String json) {
+		return new HttpResponse(200, APPLICATION_JSON, json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Creates a response with the given status and message as plain text body. */
+	public static HttpResponse text(int status, String message) {
+		return new HttpResponse(status, TEXT_PLAIN, message.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Writes the response to the given stream. Does not flush the stream. */
+	public void write(OutputStream out, boolean keepAlive) throws IOException {
+		StringBuilder head = new StringBuilder(128);
+		head.append("HTTP/1.1 ").append(status).append(' ').append(getReasonPhrase(status)).append("\r\n");
+		if (contentType != null) {
+			head.append("Content-Type: ").append(contentType).append("\r\n");
+		}
+		head.append("Content-Length: ").append(body.length).append("\r\n");
+		if (!keepAlive) {
+			head.append("Connection: close\r\n");
+		}
+		head.append("\r\n");
+		out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+		out.write(body);
+	}
+
+	private static String getReasonPhrase(int status) {
+		switch (status) {
+			case 200:
+				return "OK";
+			case 204:
+				return "No Content";
+			case 400:
+				return "Bad Request";
+			case 404:
+				return "Not Found";
+			case 405:
+				return "Method Not Allowed";
+			case 500:
+				return "Internal Server Error";
+			default:
+				return "";
+		}
+	}
+}
@@ -0,0 +1,14 @@
+package com.teamscale.jacoco.agent.server;
+
+/** Handles requests received by the {@link LightweightHttpServer}. */
+@FunctionalInterface
+public interface IHttpRequestHandler {
+
+	/**
+	 * Handles the given request.
+	 *
+	 * @return the response or <code>null</code> if this handler is not responsible for the request.
+	 * @throws Exception if handling the request fails, which is answered with "500 Internal Server Error".
+	 */
+	HttpResponse handle(HttpRequest request) throws Exception;
+}
@@ -0,0 +1,68 @@
+package com.teamscale.jacoco.agent.server;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.ResourceConfig;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.util.function.Supplier;
+
+/**
+ * Passes requests to the Jersey resources of the agent without a servlet container in between. Jersey is only
+ * initialized when the first request is handled.
+ */
+public class JerseyRequestHandler implements IHttpRequestHandler {
+
+	private final Supplier<ResourceConfig> resourceConfigSupplier;
+
+	private volatile ApplicationHandler applicationHandler;
+
+	public JerseyRequestHandler(Supplier<ResourceConfig> resourceConfigSupplier) {
+		this.resourceConfigSupplier = resourceConfigSupplier;
+	}
+
+	@Override
+	public HttpResponse handle(HttpRequest request) throws Exception {
+		ApplicationHandler handler = getApplicationHandler();
+
+		String host = request.getHeader("host");
+		if (host == null) {
+			host = "localhost";
+		}
+		URI baseUri;
+		URI requestUri;
+		try {
+			baseUri = URI.create("http://" + host + "/");
+			requestUri = URI.create("http://" + host + request.path + (request.query == null ? "" : "?" + request.query));
+		} catch (IllegalArgumentException e) {
+			throw new HttpRequest.MalformedRequestException("Invalid request URI: " + request.path);
+		}
+
+		ContainerRequest containerRequest = new ContainerRequest(baseUri, requestUri, request.method, null,
+				new MapPropertiesDelegate(), handler.getConfiguration());
+		request.headers.forEach(containerRequest::header);
+		containerRequest.setEntityStream(new ByteArrayInputStream(request.body));
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		ContainerResponse response = handler.apply(containerRequest, body).get();
+		MediaType mediaType = response.getMediaType();
+		return new HttpResponse(response.getStatus(), mediaType == null ? null : mediaType.toString(),
+				body.toByteArray());
+	}
+
+	private ApplicationHandler getApplicationHandler() {
+		if (applicationHandler == null) {
+			synchronized (this) {
+				if (applicationHandler == null) {
+					applicationHandler = new ApplicationHandler(resourceConfigSupplier.get());
+				}
+			}
+		}
+		return applicationHandler;
+	}
+}
@@ -0,0 +1,192 @@
+package com.teamscale.jacoco.agent.server;
+
+import com.teamscale.client.UnixDomainSocketUtils;
+import com.teamscale.jacoco.agent.util.DaemonThreadFactory;
+import com.teamscale.jacoco.agent.util.LoggingUtils;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A minimal HTTP/1.1 server, which is an alternative to Jetty with much less overhead per request. Each connection is
+ * served by its own thread and kept alive as long as the client wants, so the typical test runner, which sends one
+ * request after the other, never waits for a thread or a new connection.
+ * <p>
+ * Requests are passed to the given handlers in order until one of them returns a response.
+ * <p>
+ * The server either listens on a TCP port or, if the test runner runs on the same machine, on a Unix domain socket,
+ * which avoids the overhead of the TCP stack and the need to find a free port.
+ */
+public class LightweightHttpServer {
+
+	private final Logger logger = LoggingUtils.getLogger(this);
+
+	private final int port;
+
+	/** The path of the Unix domain socket to listen on or <code>null</code> to listen on the {@link #port}. */
+	private final Path unixDomainSocket;
+
+	private final List<IHttpRequestHandler> handlers;
+
+	private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(
+			new DaemonThreadFactory(LightweightHttpServer.class, "connection"));
+
+	private final Set<Closeable> openConnections = ConcurrentHashMap.newKeySet();
+
+	private ServerSocket serverSocket;
+
+	private ServerSocketChannel serverSocketChannel;
+
+	/** Creates a server that listens on the given TCP port. */
+	public LightweightHttpServer(int port, IHttpRequestHandler... handlers) {
+		this.port = port;
+		this.unixDomainSocket = null;
+		this.handlers = Arrays.asList(handlers);
+	}
+
+	/** Creates a server that listens on the Unix domain socket with the given path. Requires Java 16 or newer. */
+	public LightweightHttpServer(Path unixDomainSocket, IHttpRequestHandler... handlers) {
+		this.port = -1;
+		this.unixDomainSocket = unixDomainSocket;
+		this.handlers = Arrays.asList(handlers);
+	}
+
+	/** Binds the server to its port or socket and starts accepting connections in the background. */
+	public void start() throws IOException {
+		Runnable acceptor;
+		if (unixDomainSocket != null) {
+			serverSocketChannel = UnixDomainSocketUtils.openServerSocketChannel(unixDomainSocket);
+			acceptor = this::acceptUnixDomainSocketConnections;
+		} else {
+			serverSocket = new ServerSocket();
+			serverSocket.setReuseAddress(true);
+			// only test runners on the same machine need to reach the server
+			serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+			acceptor = this::acceptTcpConnections;
+		}
+		new DaemonThreadFactory(LightweightHttpServer.class, "acceptor").newThread(acceptor).start();
+	}
+
+	private void acceptTcpConnections() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				handleConnectionInBackground(socket, socket.getInputStream(), socket.getOutputStream());
+			} catch (IOException e) {
+				if (!serverSocket.isClosed()) {
+					logger.error("Failed to accept a connection on port {}.", port, e);
+				}
+			}
+		}
+	}
+
+	private void acceptUnixDomainSocketConnections() {
+		while (serverSocketChannel.isOpen()) {
+			try {
+				SocketChannel channel = serverSocketChannel.accept();
+				handleConnectionInBackground(channel, Channels.newInputStream(channel),
+						Channels.newOutputStream(channel));
+			} catch (IOException e) {
+				if (serverSocketChannel.isOpen()) {
+					logger.error("Failed to accept a connection on {}.", unixDomainSocket, e);
+				}
+			}
+		}
+	}
+
+	private void handleConnectionInBackground(Closeable connection, InputStream in, OutputStream out) {
+		openConnections.add(connection);
+		connectionExecutor.execute(() -> {
+			try (Closeable ignored = connection) {
+				serve(new BufferedInputStream(in), new BufferedOutputStream(out));
+			} catch (IOException e) {
+				logger.debug("Connection {} closed unexpectedly.", connection, e);
+			} finally {
+				openConnections.remove(connection);
+			}
+		});
+	}
+
+	/** Serves the requests sent over a connection until the client closes it. */
+	public void serve(InputStream in, OutputStream out) throws IOException {
+		while (true) {
+			HttpRequest request;
+			try {
+				request = HttpRequest.read(in);
+			} catch (HttpRequest.MalformedRequestException e) {
+				HttpResponse.text(400, e.getMessage()).write(out, false);
+				out.flush();
+				return;
+			}
+			if (request == null) {
+				return;
+			}
+
+			boolean keepAlive = request.isKeepAlive();
+			handle(request).write(out, keepAlive);
+			out.flush();
+			if (!keepAlive) {
+				return;
+			}
+		}
+	}
+
+	private HttpResponse handle(HttpRequest request) {
+		try {
+			for (IHttpRequestHandler handler : handlers) {
+				HttpResponse response = handler.handle(request);
+				if (response != null) {
+					return response;
+				}
+			}
+			return HttpResponse.text(404, "Not found: " + request.path);
+		} catch (HttpRequest.MalformedRequestException e) {
+			return HttpResponse.text(400, e.getMessage());
+		} catch (Exception e) {
+			logger.error("Failed to handle request {} {}.", request.method, request.path, e);
+			return HttpResponse.text(500, "Message: " + e.getMessage());
+		}
+	}
+
+	/** Stops accepting connections and closes all open ones. */
+	public void stop() {
+		try {
+			if (serverSocketChannel != null) {
+				serverSocketChannel.close();
+				UnixDomainSocketUtils.deleteSocketIfExists(unixDomainSocket);
+			} else {
+				serverSocket.close();
+			}
+		} catch (IOException e) {
+			logger.debug("Failed to close the server socket.", e);
+		}
+		for (Closeable connection : openConnections) {
+			try {
+				connection.close();
+			} catch (IOException e) {
+				logger.debug("Failed to close connection {}.", connection, e);
+			}
+		}
+		connectionExecutor.shutdownNow();
+	}
+}
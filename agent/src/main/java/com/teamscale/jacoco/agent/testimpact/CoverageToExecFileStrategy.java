@@ -3,16 +3,21 @@ package com.teamscale.jacoco.agent.testimpact;
 import com.teamscale.jacoco.agent.JacocoRuntimeController;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.jacoco.agent.util.LoggingUtils;
+import com.teamscale.report.jacoco.dump.Dump;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
 import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.report.testwise.model.TestInfo;
 import org.slf4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
  * Strategy for appending coverage into one exec file with one session per test. Execution data will be stored in a json
  * file side-by-side with the exec file. Test executions are also appended into a single file.
+ * <p>
+ * The coverage of tests that ran concurrently with others is not taken from the JaCoCo runtime, but appended to a
+ * separate exec file in the output directory, which is converted together with the one of the runtime.
  */
 public class CoverageToExecFileStrategy extends TestEventHandlerStrategyBase {
 
@@ -21,6 +26,12 @@ public class CoverageToExecFileStrategy extends TestEventHandlerStrategyBase {
 	/** Helper for writing test executions to disk. */
 	private final TestExecutionWriter testExecutionWriter;
 
+	/**
+	 * The exec file into which the coverage of concurrently running tests is appended. Null until the first such test
+	 * ended.
+	 */
+	private File concurrentTestsExecFile;
+
 	public CoverageToExecFileStrategy(JacocoRuntimeController controller, AgentOptions agentOptions,
 									  TestExecutionWriter testExecutionWriter) {
 		super(agentOptions, controller);
@@ -28,11 +39,24 @@ public class CoverageToExecFileStrategy extends TestEventHandlerStrategyBase {
 	}
 
 	@Override
-	public TestInfo testEnd(String test,
-							TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
+	public synchronized TestInfo testEnd(String test,
+										 TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
 		logger.debug("Test {} ended with execution {}. Writing exec file and test execution", test, testExecution);
 		super.testEnd(test, testExecution);
-		controller.dump();
+		Dump dump = endCoverageWindow(test);
+		if (dump == null) {
+			controller.dump();
+		} else {
+			try {
+				if (concurrentTestsExecFile == null) {
+					concurrentTestsExecFile = agentOptions.createNewFileInOutputDirectory("jacoco-concurrent", "exec");
+				}
+				appendToExecFile(dump, concurrentTestsExecFile);
+			} catch (IOException e) {
+				throw new JacocoRuntimeController.DumpException(
+						"Failed to write coverage to disk into " + concurrentTestsExecFile + "!", e);
+			}
+		}
 		if (testExecution != null) {
 			try {
 				testExecutionWriter.append(testExecution);
@@ -15,6 +15,7 @@ import com.teamscale.client.PrioritizableTestCluster;
 import com.teamscale.jacoco.agent.JacocoRuntimeController;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.jacoco.agent.util.LoggingUtils;
+import com.teamscale.report.jacoco.dump.Dump;
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
 import com.teamscale.report.testwise.model.TestExecution;
@@ -63,7 +64,7 @@ public abstract class CoverageToJsonStrategyBase extends TestEventHandlerStrateg
 	}
 
 	@Override
-	public void testStart(String uniformPath) {
+	public synchronized void testStart(String uniformPath) throws JacocoRuntimeController.DumpException {
 		super.testStart(uniformPath);
 
 		if (availableTests.stream().noneMatch(test -> test.uniformPath.equals(uniformPath))) {
@@ -74,19 +75,24 @@ public abstract class CoverageToJsonStrategyBase extends TestEventHandlerStrateg
 	}
 
 	@Override
-	public TestInfo testEnd(String test,
-							TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
+	public synchronized TestInfo testEnd(String test,
+										 TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
 		super.testEnd(test, testExecution);
 		if (testExecution != null) {
 			testExecutions.add(testExecution);
 		}
 
+		Dump dump = endCoverageWindow(test);
 		try {
 			if (testExecFile == null) {
 				testExecFile = agentOptions.createNewFileInOutputDirectory("coverage", "exec");
 				testExecFile.deleteOnExit();
 			}
-			controller.dumpToFileAndReset(testExecFile);
+			if (dump == null) {
+				controller.dumpToFileAndReset(testExecFile);
+			} else {
+				appendToExecFile(dump, testExecFile);
+			}
 		} catch (IOException e) {
 			throw new JacocoRuntimeController.DumpException(
 					"Failed to write coverage to disk into " + testExecFile + "!",
@@ -96,6 +102,12 @@ public abstract class CoverageToJsonStrategyBase extends TestEventHandlerStrateg
 		return null;
 	}
 
+	@Override
+	public void addTestExecutions(List<TestExecution> testExecutions) {
+		logger.debug("Adding {} test executions", testExecutions.size());
+		this.testExecutions.addAll(testExecutions);
+	}
+
 	@Override
 	public void testRunEnd(boolean partial) throws IOException, CoverageGenerationException {
 		if (testExecFile == null) {
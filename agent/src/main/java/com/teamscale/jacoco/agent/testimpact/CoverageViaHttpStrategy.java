@@ -29,12 +29,15 @@ public class CoverageViaHttpStrategy extends TestEventHandlerStrategyBase {
 	}
 
 	@Override
-	public TestInfo testEnd(String test, TestExecution testExecution)
+	public synchronized TestInfo testEnd(String test, TestExecution testExecution)
 			throws JacocoRuntimeController.DumpException, CoverageGenerationException {
 		super.testEnd(test, testExecution);
 
 		TestInfoBuilder builder = new TestInfoBuilder(test);
-		Dump dump = controller.dumpAndReset();
+		Dump dump = endCoverageWindow(test);
+		if (dump == null) {
+			dump = controller.dumpAndReset();
+		}
 		reportGenerator.updateClassDirCache();
 		builder.setCoverage(reportGenerator.convert(dump));
 		if (testExecution != null) {
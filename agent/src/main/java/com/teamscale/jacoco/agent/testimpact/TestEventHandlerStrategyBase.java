@@ -1,8 +1,17 @@
 package com.teamscale.jacoco.agent.testimpact;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
 
 import org.slf4j.Logger;
 
@@ -14,13 +23,22 @@ import com.teamscale.jacoco.agent.JacocoRuntimeController;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.jacoco.agent.upload.teamscale.TeamscaleConfig;
 import com.teamscale.jacoco.agent.util.LoggingUtils;
+import com.teamscale.report.jacoco.dump.Dump;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
 import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.report.testwise.model.TestInfo;
 
 import retrofit2.Response;
 
-/** Base class for strategies to handle test events. */
+/**
+ * Base class for strategies to handle test events.
+ * <p>
+ * Tests may run concurrently, e.g. if JUnit's parallel execution is enabled. The JaCoCo runtime cannot tell apart the
+ * coverage of such tests, so every start and end of a test closes a coverage window, which is attributed to all tests
+ * running at that time. The coverage of a test that overlapped with others is therefore the union of all windows during
+ * its execution and may contain code executed by the other tests. Tests that run alone are not affected by this and
+ * the strategies handle them exactly as before.
+ */
 public abstract class TestEventHandlerStrategyBase {
 
 	private final Logger logger = LoggingUtils.getLogger(this);
@@ -28,8 +46,8 @@ public abstract class TestEventHandlerStrategyBase {
 	/** Controls the JaCoCo runtime. */
 	protected final JacocoRuntimeController controller;
 
-	/** The timestamp at which the /test/start endpoint has been called last time. */
-	private long startTimestamp = -1;
+	/** The tests that are currently running by their uniform path in the order they started. */
+	private final Map<String, RunningTest> runningTests = new LinkedHashMap<>();
 
 	/** The options the user has configured for the agent. */
 	protected final AgentOptions agentOptions;
@@ -45,12 +63,20 @@ public abstract class TestEventHandlerStrategyBase {
 	}
 
 	/** Called when test test with the given name is about to start. */
-	public void testStart(String test) {
+	public synchronized void testStart(String test) throws JacocoRuntimeController.DumpException {
 		logger.debug("Test {} started", test);
-		// Reset coverage so that we only record coverage that belongs to this particular test case.
-		controller.reset();
+		RunningTest runningTest = new RunningTest();
+		if (runningTests.isEmpty()) {
+			// Reset coverage so that we only record coverage that belongs to this particular test case.
+			controller.reset();
+		} else {
+			logger.debug("Test {} runs concurrently with {}", test, runningTests.keySet());
+			attributeWindowToRunningTests();
+			runningTest.concurrent = true;
+			runningTests.values().forEach(otherTest -> otherTest.concurrent = true);
+		}
 		controller.setSessionId(test);
-		startTimestamp = System.currentTimeMillis();
+		runningTests.put(test, runningTest);
 	}
 
 	/**
@@ -62,19 +88,86 @@ public abstract class TestEventHandlerStrategyBase {
 	 * @return The body of the response. <code>null</code> indicates "204 No content". Non-null results will be treated
 	 * as a json response.
 	 */
-	public TestInfo testEnd(String test,
-							TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
+	public synchronized TestInfo testEnd(String test,
+										 TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
 		if (testExecution != null) {
 			testExecution.setUniformPath(test);
-			if (startTimestamp != -1) {
+			RunningTest runningTest = runningTests.get(test);
+			if (runningTest != null) {
 				long endTimestamp = System.currentTimeMillis();
-				testExecution.setDurationMillis(endTimestamp - startTimestamp);
+				testExecution.setDurationMillis(endTimestamp - runningTest.startTimestamp);
 			}
 		}
 		logger.debug("Test {} ended with test execution {}", test, testExecution);
 		return null;
 	}
 
+	/**
+	 * Must be called by the strategies once the given test ended.
+	 *
+	 * @return <code>null</code> if the test ran alone, i.e. the JaCoCo runtime contains exactly its coverage, which
+	 * must be dumped and reset by the caller. Otherwise, the coverage attributed to the test, which the caller must
+	 * use instead of the one of the runtime.
+	 */
+	protected Dump endCoverageWindow(String test) throws JacocoRuntimeController.DumpException {
+		RunningTest runningTest = runningTests.get(test);
+		if (runningTest != null && !runningTest.concurrent) {
+			runningTests.remove(test);
+			return null;
+		}
+		if (runningTest == null && runningTests.isEmpty()) {
+			// the test has not been started, so just like before we attribute everything since the last reset to it
+			return null;
+		}
+
+		ExecutionDataStore window = attributeWindowToRunningTests();
+		runningTests.remove(test);
+		long endTimestamp = System.currentTimeMillis();
+		if (runningTest == null) {
+			return new Dump(new SessionInfo(test, endTimestamp, endTimestamp), window);
+		}
+		return new Dump(new SessionInfo(test, runningTest.startTimestamp, endTimestamp), runningTest.coverage);
+	}
+
+	/**
+	 * Dumps and resets the coverage collected since the last start or end of a test and adds it to the coverage of
+	 * all currently running tests.
+	 *
+	 * @return The dumped coverage.
+	 */
+	private ExecutionDataStore attributeWindowToRunningTests() throws JacocoRuntimeController.DumpException {
+		ExecutionDataStore window = controller.dumpAndReset().store;
+		for (RunningTest runningTest : runningTests.values()) {
+			for (ExecutionData data : window.getContents()) {
+				// the stores merge into the data they contain, so each of them needs its own copy
+				runningTest.coverage.put(new ExecutionData(data.getId(), data.getName(), data.getProbes().clone()));
+			}
+		}
+		return window;
+	}
+
+	/** Appends the given coverage to the given exec file. */
+	protected static void appendToExecFile(Dump dump, File file) throws IOException {
+		try (FileOutputStream outputStream = new FileOutputStream(file, true)) {
+			ExecutionDataWriter writer = new ExecutionDataWriter(outputStream);
+			writer.visitSessionInfo(dump.info);
+			dump.store.accept(writer);
+		}
+	}
+
+	/**
+	 * Called when the test with the given name finished and the next test is about to start. Saves test runners that
+	 * execute one test after the other a request per test.
+	 *
+	 * @return The result of {@link #testEnd(String, TestExecution)} for the finished test.
+	 */
+	public synchronized TestInfo testEndAndStart(String finishedTest, TestExecution testExecution,
+												 String nextTest) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
+		TestInfo testInfo = testEnd(finishedTest, testExecution);
+		testStart(nextTest);
+		return testInfo;
+	}
+
 	/**
 	 * Retrieves impacted tests from Teamscale, if a {@link #teamscaleClient} has been configured.
 	 *
@@ -129,6 +222,17 @@ public abstract class TestEventHandlerStrategyBase {
 		}
 	}
 
+	/**
+	 * Adds the given test executions to the ones passed to {@link #testEnd(String, TestExecution)}. This allows test
+	 * runners to send all results at the end of the test run instead of one with every test. Only supported by
+	 * strategies that create a report in {@link #testRunEnd(boolean)}.
+	 */
+	public void addTestExecutions(List<TestExecution> testExecutions) {
+		throw new UnsupportedOperationException("You configured the agent in a mode that does not support passing " +
+				"the test executions at the end of the test run. Please configure 'tia-mode=teamscale-upload' or " +
+				"'tia-mode=disk' or pass them when the individual tests end.");
+	}
+
 	/**
 	 * Signals that the test run has ended. Strategies that support this can upload a report via the
 	 * {@link #teamscaleClient} here.
@@ -138,4 +242,17 @@ public abstract class TestEventHandlerStrategyBase {
 				"reports to Teamscale. Please configure 'tia-mode=teamscale-upload' or simply don't call" +
 				"POST /testrun/end.");
 	}
+
+	/** A test that has been started, but has not ended yet. */
+	private static class RunningTest {
+
+		/** The time at which the test started. */
+		private final long startTimestamp = System.currentTimeMillis();
+
+		/** Whether other tests ran while this test was running. */
+		private boolean concurrent = false;
+
+		/** The coverage of the windows attributed to the test so far. Only filled if the test ran concurrently. */
+		private final ExecutionDataStore coverage = new ExecutionDataStore();
+	}
 }
@@ -0,0 +1,106 @@
+package com.teamscale.jacoco.agent.testimpact;
+
+import com.teamscale.client.JsonUtils;
+import com.teamscale.jacoco.agent.server.HttpRequest;
+import com.teamscale.jacoco.agent.server.HttpResponse;
+import com.teamscale.jacoco.agent.server.IHttpRequestHandler;
+import com.teamscale.jacoco.agent.util.LoggingUtils;
+import com.teamscale.report.testwise.TestInfoBinaryFormat;
+import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.report.testwise.model.TestInfo;
+import org.slf4j.Logger;
+
+/**
+ * Handles the /test/start, /test/end and combined /test/end/.../start endpoints of the {@link TestwiseCoverageAgent} for the
+ * {@link com.teamscale.jacoco.agent.server.LightweightHttpServer} without going through Jersey. Behaves exactly like
+ * the corresponding methods of {@link TestwiseCoverageResource}.
+ */
+public class TestEventRequestHandler implements IHttpRequestHandler {
+
+	private static final String TEST_START_PATH = "/test/start/";
+
+	private static final String TEST_END_PATH = "/test/end/";
+
+	private static final String NEXT_TEST_START_SEGMENT = "/start/";
+
+	private final Logger logger = LoggingUtils.getLogger(this);
+
+	private final TestwiseCoverageAgent agent;
+
+	public TestEventRequestHandler(TestwiseCoverageAgent agent) {
+		this.agent = agent;
+	}
+
+	@Override
+	public HttpResponse handle(HttpRequest request) throws Exception {
+		if (!request.method.equals("POST")) {
+			return null;
+		}
+
+		if (request.path.startsWith(TEST_START_PATH)) {
+			String testId = getTestId(request.path.substring(TEST_START_PATH.length()));
+			if (testId == null) {
+				return null;
+			}
+			logger.debug("Start test " + testId);
+			agent.testEventHandler.testStart(testId);
+			return HttpResponse.noContent();
+		}
+
+		if (request.path.startsWith(TEST_END_PATH)) {
+			String remainingPath = request.path.substring(TEST_END_PATH.length());
+			String nextTestId = null;
+			int nextTestStart = remainingPath.indexOf(NEXT_TEST_START_SEGMENT);
+			if (nextTestStart >= 0) {
+				nextTestId = getTestId(remainingPath.substring(nextTestStart + NEXT_TEST_START_SEGMENT.length()));
+				if (nextTestId == null) {
+					return null;
+				}
+				remainingPath = remainingPath.substring(0, nextTestStart);
+			}
+			String testId = getTestId(remainingPath);
+			if (testId == null) {
+				return null;
+			}
+
+			TestExecution testExecution = null;
+			if (request.body.length > 0) {
+				testExecution = JsonUtils.deserialize(request.getBodyAsString(), TestExecution.class);
+			}
+			TestInfo testInfo;
+			if (nextTestId == null) {
+				logger.debug("End test " + testId);
+				testInfo = agent.testEventHandler.testEnd(testId, testExecution);
+			} else {
+				logger.debug("End test " + testId + " and start test " + nextTestId);
+				testInfo = agent.testEventHandler.testEndAndStart(testId, testExecution, nextTestId);
+			}
+			if (testInfo == null) {
+				return HttpResponse.noContent();
+			}
+			if (acceptsBinaryFormat(request)) {
+				return new HttpResponse(200, TestInfoBinaryFormat.MEDIA_TYPE, TestInfoBinaryFormat.serialize(testInfo));
+			}
+			return HttpResponse.json(JsonUtils.serialize(testInfo));
+		}
+
+		return null;
+	}
+
+	/** Returns whether the client accepts the {@link TestInfoBinaryFormat}, which it then prefers over JSON. */
+	private static boolean acceptsBinaryFormat(HttpRequest request) {
+		String accept = request.getHeader("accept");
+		return accept != null && accept.contains(TestInfoBinaryFormat.MEDIA_TYPE);
+	}
+
+	/**
+	 * Returns the decoded test ID from the given path segment or <code>null</code> if it is empty or actually consists
+	 * of several segments, which Jersey answers with "404 Not Found".
+	 */
+	private static String getTestId(String encodedTestId) throws HttpRequest.MalformedRequestException {
+		if (encodedTestId.isEmpty() || encodedTestId.indexOf('/') >= 0) {
+			return null;
+		}
+		return HttpRequest.decodePathSegment(encodedTestId);
+	}
+}
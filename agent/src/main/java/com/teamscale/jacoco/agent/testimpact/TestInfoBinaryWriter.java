@@ -0,0 +1,32 @@
+package com.teamscale.jacoco.agent.testimpact;
+
+import com.teamscale.report.testwise.TestInfoBinaryFormat;
+import com.teamscale.report.testwise.model.TestInfo;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/** Writes {@link TestInfo}s in the {@link TestInfoBinaryFormat} if the client accepts it. */
+@Provider
+@Produces(TestInfoBinaryFormat.MEDIA_TYPE)
+public class TestInfoBinaryWriter implements MessageBodyWriter<TestInfo> {
+
+	@Override
+	public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+		return TestInfo.class.isAssignableFrom(type);
+	}
+
+	@Override
+	public void writeTo(TestInfo testInfo, Class<?> type, Type genericType, Annotation[] annotations,
+						MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+						OutputStream entityStream) throws IOException {
+		entityStream.write(TestInfoBinaryFormat.serialize(testInfo));
+	}
+}
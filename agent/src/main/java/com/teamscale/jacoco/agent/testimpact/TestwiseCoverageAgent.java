@@ -8,6 +8,7 @@ package com.teamscale.jacoco.agent.testimpact;
 import com.teamscale.jacoco.agent.AgentBase;
 import com.teamscale.jacoco.agent.GenericExceptionMapper;
 import com.teamscale.jacoco.agent.options.AgentOptions;
+import com.teamscale.jacoco.agent.server.IHttpRequestHandler;
 import com.teamscale.jacoco.agent.util.LoggingUtils;
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
 import org.glassfish.jersey.server.ResourceConfig;
@@ -62,7 +63,13 @@ public class TestwiseCoverageAgent extends AgentBase {
 		ResourceConfig resourceConfig = new ResourceConfig();
 		resourceConfig.property(ServerProperties.WADL_FEATURE_DISABLE, Boolean.TRUE.toString());
 		TestwiseCoverageResource.setAgent(this);
-		return resourceConfig.register(TestwiseCoverageResource.class).register(GenericExceptionMapper.class);
+		return resourceConfig.register(TestwiseCoverageResource.class).register(TestInfoBinaryWriter.class)
+				.register(GenericExceptionMapper.class);
+	}
+
+	@Override
+	protected IHttpRequestHandler createDirectRequestHandler() {
+		return new TestEventRequestHandler(this);
 	}
 
 	@Override
@@ -17,6 +17,7 @@ import com.teamscale.client.ClusteredTestDetails;
 import com.teamscale.client.PrioritizableTestCluster;
 import com.teamscale.jacoco.agent.JacocoRuntimeController;
 import com.teamscale.jacoco.agent.ResourceBase;
+import com.teamscale.report.testwise.TestInfoBinaryFormat;
 import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
 import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.report.testwise.model.TestInfo;
@@ -31,6 +32,9 @@ public class TestwiseCoverageResource extends ResourceBase {
 	/** Path parameter placeholder used in the HTTP requests. */
 	private static final String TEST_ID_PARAMETER = "testId";
 
+	/** Path parameter placeholder for the test that starts after the current one ended. */
+	private static final String NEXT_TEST_ID_PARAMETER = "nextTestId";
+
 	private static TestwiseCoverageAgent testwiseCoverageAgent;
 
 	/**
@@ -52,7 +56,8 @@ public class TestwiseCoverageResource extends ResourceBase {
 	/** Handles the start of a new test case by setting the session ID. */
 	@POST
 	@Path("/test/start/{" + TEST_ID_PARAMETER + "}")
-	public Response handleTestStart(@PathParam(TEST_ID_PARAMETER) String testId) {
+	public Response handleTestStart(
+			@PathParam(TEST_ID_PARAMETER) String testId) throws JacocoRuntimeController.DumpException {
 		if (testId == null || testId.isEmpty()) {
 			handleBadRequest("Test name is missing!");
 		}
@@ -63,9 +68,12 @@ public class TestwiseCoverageResource extends ResourceBase {
 		return Response.noContent().build();
 	}
 
-	/** Handles the end of a test case by resetting the session ID. */
+	/**
+	 * Handles the end of a test case by resetting the session ID. In <code>tia-mode=http</code>, the coverage of the test
+	 * is returned as JSON or, if the client accepts it, in the more compact {@link TestInfoBinaryFormat}.
+	 */
 	@POST
-	@Produces(MediaType.APPLICATION_JSON)
+	@Produces({MediaType.APPLICATION_JSON, TestInfoBinaryFormat.MEDIA_TYPE})
 	@Path("/test/end/{" + TEST_ID_PARAMETER + "}")
 	public TestInfo handleTestEnd(@PathParam(TEST_ID_PARAMETER) String testId,
 								  TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
@@ -79,6 +87,25 @@ public class TestwiseCoverageResource extends ResourceBase {
 				testExecution);
 	}
 
+	/**
+	 * Handles the end of a test case and the start of the next one, which is equivalent to calling
+	 * {@link #handleTestEnd(String, TestExecution)} and {@link #handleTestStart(String)} one after the other.
+	 */
+	@POST
+	@Produces({MediaType.APPLICATION_JSON, TestInfoBinaryFormat.MEDIA_TYPE})
+	@Path("/test/end/{" + TEST_ID_PARAMETER + "}/start/{" + NEXT_TEST_ID_PARAMETER + "}")
+	public TestInfo handleTestEndAndStart(@PathParam(TEST_ID_PARAMETER) String testId,
+										  @PathParam(NEXT_TEST_ID_PARAMETER) String nextTestId,
+										  TestExecution testExecution) throws JacocoRuntimeController.DumpException, CoverageGenerationException {
+		if (testId == null || testId.isEmpty() || nextTestId == null || nextTestId.isEmpty()) {
+			handleBadRequest("Test name is missing!");
+		}
+
+		logger.debug("End test " + testId + " and start test " + nextTestId);
+
+		return testwiseCoverageAgent.testEventHandler.testEndAndStart(testId, testExecution, nextTestId);
+	}
+
 	/** Handles the start of a new testrun. */
 	@POST
 	@Produces(MediaType.APPLICATION_JSON)
@@ -96,11 +123,18 @@ public class TestwiseCoverageResource extends ResourceBase {
 				includeFailedAndSkipped, baseline, baselineRevision);
 	}
 
-	/** Handles the end of a new testrun. */
+	/**
+	 * Handles the end of a new testrun. The test executions of the tests can optionally be passed all at once in the
+	 * body instead of with every test end.
+	 */
 	@POST
 	@Path("/testrun/end")
 	public Response handleTestRunEnd(
-			@DefaultValue("false") @QueryParam("partial") boolean partial) throws IOException, CoverageGenerationException {
+			@DefaultValue("false") @QueryParam("partial") boolean partial,
+			List<TestExecution> testExecutions) throws IOException, CoverageGenerationException {
+		if (testExecutions != null) {
+			testwiseCoverageAgent.testEventHandler.addTestExecutions(testExecutions);
+		}
 		testwiseCoverageAgent.testEventHandler.testRunEnd(partial);
 		return Response.noContent().build();
 	}
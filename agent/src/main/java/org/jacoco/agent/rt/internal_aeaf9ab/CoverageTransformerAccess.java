@@ -0,0 +1,26 @@
+package org.jacoco.agent.rt.internal_aeaf9ab;
+
+import java.io.IOException;
+import java.security.ProtectionDomain;
+
+/**
+ * Gives access to package-private functionality of JaCoCo's agent runtime, which is needed to skip the instrumentation
+ * in {@link CoverageTransformer#transform} for classes that have already been instrumented before.
+ */
+public class CoverageTransformerAccess {
+
+	/** Whether the given transformer would instrument the given class. */
+	public static boolean shouldInstrument(CoverageTransformer transformer, ClassLoader loader, String classname,
+			ProtectionDomain protectionDomain) {
+		return transformer.filter(loader, classname, protectionDomain);
+	}
+
+	/**
+	 * Writes the original class file to the given class dump directory like JaCoCo does for every class it instruments.
+	 * Does nothing if the directory is <code>null</code>.
+	 */
+	public static void dumpClassFile(String classDumpDirectory, String classname, byte[] classfileBuffer)
+			throws IOException {
+		new ClassFileDumper(classDumpDirectory).dump(classname, classfileBuffer);
+	}
+}
@@ -0,0 +1,67 @@
+package com.teamscale.jacoco.agent;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for {@link CumulativeCoverage}. */
+class CumulativeCoverageTest {
+
+	private final CumulativeCoverage cumulativeCoverage = new CumulativeCoverage();
+
+	@Test
+	void testDetectsNewlyCoveredProbes() {
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{true, false})))).isTrue();
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{true, false})))).isFalse();
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{false, true})))).isTrue();
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{true, true})))).isFalse();
+	}
+
+	@Test
+	void testNewClassesAreOnlyNewCoverageIfTheyHaveHits() {
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{true})))).isTrue();
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("session",
+				store(new ExecutionData(2, "Bar", new boolean[]{false, false})))).isFalse();
+	}
+
+	@Test
+	void testSessionChangeResetsCoverage() {
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("first",
+				store(new ExecutionData(1, "Foo", new boolean[]{true})))).isTrue();
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("second",
+				store(new ExecutionData(1, "Foo", new boolean[]{true})))).isTrue();
+		assertThat(cumulativeCoverage.mergeAndCheckForNewCoverage("second",
+				store(new ExecutionData(1, "Foo", new boolean[]{true})))).isFalse();
+	}
+
+	@Test
+	void testCheckingForNewCoverageDoesNotMerge() {
+		assertThat(cumulativeCoverage.hasNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{true, false})))).isTrue();
+		assertThat(cumulativeCoverage.hasNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{true, false})))).isTrue();
+		cumulativeCoverage.mergeAndCheckForNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{true, false})));
+		assertThat(cumulativeCoverage.hasNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{true, false})))).isFalse();
+		assertThat(cumulativeCoverage.hasNewCoverage("session",
+				store(new ExecutionData(1, "Foo", new boolean[]{false, true})))).isTrue();
+		assertThat(cumulativeCoverage.hasNewCoverage("other",
+				store(new ExecutionData(1, "Foo", new boolean[]{true, false})))).isTrue();
+	}
+
+	private static ExecutionDataStore store(ExecutionData... executionData) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		for (ExecutionData data : executionData) {
+			store.put(data);
+		}
+		return store;
+	}
+}
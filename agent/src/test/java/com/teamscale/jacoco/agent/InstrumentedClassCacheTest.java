@@ -0,0 +1,93 @@
+package com.teamscale.jacoco.agent;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for {@link InstrumentedClassCache}. */
+class InstrumentedClassCacheTest {
+
+	private static final long MAX_SIZE = 1024 * 1024;
+
+	@TempDir
+	Path cacheDirectory;
+
+	@Test
+	void testClassesAreCachedAcrossRuns() throws Exception {
+		InstrumentedClassCache cache = InstrumentedClassCache.open(cacheDirectory, "key", MAX_SIZE);
+		assertThat(cache.get(1)).isNull();
+		cache.put(1, createClass(100));
+		cache.awaitPendingWrites();
+
+		InstrumentedClassCache reopenedCache = InstrumentedClassCache.open(cacheDirectory, "key", MAX_SIZE);
+		assertThat(reopenedCache.get(1)).isEqualTo(createClass(100));
+		assertThat(reopenedCache.get(2)).isNull();
+	}
+
+	@Test
+	void testClassesOfOtherKeysAreNotReturned() throws Exception {
+		InstrumentedClassCache cache = InstrumentedClassCache.open(cacheDirectory, "agent-1.0/full", MAX_SIZE);
+		cache.put(1, createClass(100));
+		cache.awaitPendingWrites();
+
+		assertThat(InstrumentedClassCache.open(cacheDirectory, "agent-1.0/method_entry", MAX_SIZE).get(1)).isNull();
+		assertThat(InstrumentedClassCache.open(cacheDirectory, "agent-1.0/full", MAX_SIZE).get(1)).isNotNull();
+	}
+
+	@Test
+	void testNoMoreClassesAreAddedWhenFull() throws Exception {
+		InstrumentedClassCache cache = InstrumentedClassCache.open(cacheDirectory, "key", 250);
+		cache.put(1, createClass(100));
+		cache.put(2, createClass(100));
+		cache.put(3, createClass(100));
+		cache.awaitPendingWrites();
+
+		assertThat(cache.get(1)).isNotNull();
+		assertThat(cache.get(2)).isNotNull();
+		assertThat(cache.get(3)).isNull();
+	}
+
+	@Test
+	void testLeastRecentlyUsedClassesAreEvictedOnOpen() throws Exception {
+		InstrumentedClassCache cache = InstrumentedClassCache.open(cacheDirectory, "key", MAX_SIZE);
+		for (int i = 1; i <= 4; i++) {
+			cache.put(i, createClass(100));
+		}
+		cache.awaitPendingWrites();
+		for (int i = 1; i <= 4; i++) {
+			cacheDirectory.resolve("key").resolve(Long.toHexString(i) + ".class").toFile()
+					.setLastModified(1_000_000L * i);
+		}
+
+		// only 80% of the maximum size remain after eviction, i.e. two classes
+		InstrumentedClassCache smallerCache = InstrumentedClassCache.open(cacheDirectory, "key", 300);
+		assertThat(smallerCache.get(1)).isNull();
+		assertThat(smallerCache.get(2)).isNull();
+		assertThat(smallerCache.get(3)).isNotNull();
+		assertThat(smallerCache.get(4)).isNotNull();
+	}
+
+	@Test
+	void testCorruptClassFilesAreIgnored() throws Exception {
+		InstrumentedClassCache cache = InstrumentedClassCache.open(cacheDirectory, "key", MAX_SIZE);
+		cache.put(1, new byte[]{1, 2, 3, 4, 5});
+		cache.awaitPendingWrites();
+
+		assertThat(cache.get(1)).isNull();
+	}
+
+	/** Creates a fake class file of the given size. */
+	private static byte[] createClass(int size) {
+		byte[] bytes = new byte[size];
+		Arrays.fill(bytes, (byte) 42);
+		bytes[0] = (byte) 0xCA;
+		bytes[1] = (byte) 0xFE;
+		bytes[2] = (byte) 0xBA;
+		bytes[3] = (byte) 0xBE;
+		return bytes;
+	}
+}
@@ -0,0 +1,208 @@
+package com.teamscale.jacoco.agent;
+
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.LoggerRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link LenientCoverageTransformer#restoreOriginalMethods(byte[], byte[])}, which must produce classes that
+ * pass the bytecode verifier.
+ */
+class LenientCoverageTransformerTest {
+
+	private final IRuntime runtime = new LoggerRuntime();
+
+	private final RuntimeData runtimeData = new RuntimeData();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		runtime.startup(runtimeData);
+	}
+
+	@AfterEach
+	void tearDown() {
+		runtime.shutdown();
+	}
+
+	@Test
+	void testRestoredClassWithStaticInitializerCanBeLoadedAndRun() throws Exception {
+		for (int version : new int[]{Opcodes.V1_8, Opcodes.V11}) {
+			byte[] restored = instrumentAndRestore(ClassWorkload.class, version);
+			// the instrumented static initializer is replaced, so $jacocoInit is kept, but never called
+			assertThat(getMethodsCalling(restored, "$jacocoInit")).isEmpty();
+
+			Class<?> restoredClass = load(ClassWorkload.class, restored);
+			assertThat(restoredClass.getMethod("countPrimes").invoke(null)).isEqualTo(ClassWorkload.countPrimes());
+			assertThat(hasHitProbes()).describedAs("Java version %s", version).isFalse();
+		}
+	}
+
+	@Test
+	void testRestoredInterfaceWithAddedStaticInitializerCanBeLoadedAndRun() throws Exception {
+		for (int version : new int[]{Opcodes.V1_8, Opcodes.V11}) {
+			byte[] restored = instrumentAndRestore(InterfaceWorkload.class, version);
+			if (version == Opcodes.V1_8) {
+				// newer class files get their probe array via a constant dynamic instead of a static initializer
+				assertThat(getMethodNames(readClass(InterfaceWorkload.class))).doesNotContain("<clinit>");
+				assertThat(getMethodNames(restored)).contains("<clinit>");
+			}
+
+			Class<?> restoredClass = load(InterfaceWorkload.class, restored);
+			assertThat(restoredClass.getMethod("countPrimes").invoke(null))
+					.isEqualTo(InterfaceWorkload.countPrimes());
+			assertThat(hasHitProbes()).describedAs("Java version %s", version).isFalse();
+		}
+	}
+
+	/** Instruments the given class with JaCoCo and restores its original methods. */
+	private byte[] instrumentAndRestore(Class<?> workload, int version) throws IOException {
+		byte[] original = withClassFileVersion(readClass(workload), version);
+		byte[] instrumented = new Instrumenter(runtime).instrument(original, workload.getName());
+		return LenientCoverageTransformer.restoreOriginalMethods(original, instrumented);
+	}
+
+	/** Loads the given bytecode of the class in a separate class loader, which lets the JVM verify it. */
+	private static Class<?> load(Class<?> workload, byte[] restored) throws ClassNotFoundException {
+		ClassLoader classLoader = new ClassLoader(LenientCoverageTransformerTest.class.getClassLoader()) {
+			@Override
+			protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+				if (name.equals(workload.getName())) {
+					return defineClass(name, restored, 0, restored.length);
+				}
+				return super.loadClass(name, resolve);
+			}
+		};
+		Class<?> restoredClass = classLoader.loadClass(workload.getName());
+		assertThat(restoredClass.getClassLoader()).isSameAs(classLoader);
+		return restoredClass;
+	}
+
+	/** Returns whether any probe of the instrumented classes was hit. */
+	private boolean hasHitProbes() {
+		ExecutionDataStore store = new ExecutionDataStore();
+		runtimeData.collect(store, new SessionInfoStore(), true);
+		return store.getContents().stream().anyMatch(ExecutionData::hasHits);
+	}
+
+	/** Returns the names of the methods of the class that call the method with the given name. */
+	private static String[] getMethodsCalling(byte[] classBytes, String calledMethod) {
+		return readMethods(classBytes).stream().filter(method -> calls(method, calledMethod))
+				.map(method -> method.name).toArray(String[]::new);
+	}
+
+	private static String[] getMethodNames(byte[] classBytes) {
+		return readMethods(classBytes).stream().map(method -> method.name).toArray(String[]::new);
+	}
+
+	private static List<MethodNode> readMethods(byte[] classBytes) {
+		ClassNode classNode = new ClassNode(Opcodes.ASM9);
+		new ClassReader(classBytes).accept(classNode, 0);
+		return classNode.methods;
+	}
+
+	private static boolean calls(MethodNode method, String calledMethod) {
+		for (AbstractInsnNode instruction : method.instructions) {
+			if (instruction instanceof MethodInsnNode && ((MethodInsnNode) instruction).name.equals(calledMethod)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static byte[] withClassFileVersion(byte[] classBytes, int version) {
+		ClassWriter writer = new ClassWriter(0);
+		new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM9, writer) {
+			@Override
+			public void visit(int ignoredVersion, int access, String name, String signature, String superName,
+							  String[] interfaces) {
+				super.visit(version, access, name, signature, superName, interfaces);
+			}
+		}, 0);
+		return writer.toByteArray();
+	}
+
+	private static byte[] readClass(Class<?> workload) throws IOException {
+		String resource = "/" + workload.getName().replace('.', '/') + ".class";
+		try (InputStream inputStream = LenientCoverageTransformerTest.class.getResourceAsStream(resource)) {
+			return FileSystemUtils.readStreamBinary(inputStream);
+		}
+	}
+
+	/** A class whose static initializer is instrumented by JaCoCo. */
+	public static class ClassWorkload {
+
+		private static final int[] DIVISORS;
+
+		static {
+			DIVISORS = new int[100];
+			for (int i = 0; i < DIVISORS.length; i++) {
+				DIVISORS[i] = i + 2;
+			}
+		}
+
+		public static int countPrimes() {
+			int count = 0;
+			for (int number = 2; number < 10_000; number++) {
+				if (isPrime(number)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		private static boolean isPrime(int number) {
+			for (int divisor : DIVISORS) {
+				if (divisor * divisor > number) {
+					return true;
+				}
+				if (number % divisor == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/** An interface without static initializer, to which JaCoCo adds one that is kept when restoring the methods. */
+	public interface InterfaceWorkload {
+
+		static int countPrimes() {
+			int count = 0;
+			for (int number = 2; number < 10_000; number++) {
+				boolean isPrime = true;
+				for (int divisor = 2; divisor * divisor <= number; divisor++) {
+					if (number % divisor == 0) {
+						isPrime = false;
+						break;
+					}
+				}
+				if (isPrime) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.teamscale.jacoco.agent;
+
+import org.conqat.lib.commons.filesystem.FileSystemUtils;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfoStore;
+import org.jacoco.core.instr.Instrumenter;
+import org.jacoco.core.runtime.IRuntime;
+import org.jacoco.core.runtime.LoggerRuntime;
+import org.jacoco.core.runtime.RuntimeData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for {@link MethodEntryProbes}. */
+class MethodEntryProbesTest {
+
+	private final IRuntime runtime = new LoggerRuntime();
+
+	private final RuntimeData runtimeData = new RuntimeData();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		runtime.startup(runtimeData);
+	}
+
+	@AfterEach
+	void tearDown() {
+		runtime.shutdown();
+	}
+
+	@Test
+	void testAllLinesOfExecutedMethodsAreCovered() throws Exception {
+		assertLineCoverageIsOnMethodLevel(readWorkload());
+	}
+
+	@Test
+	void testAllLinesOfExecutedMethodsAreCoveredWithConstantDynamic() throws Exception {
+		// JaCoCo loads the probe array via a constant dynamic in class files of Java 11 and newer
+		assertLineCoverageIsOnMethodLevel(withClassFileVersion(readWorkload(), Opcodes.V11));
+	}
+
+	/**
+	 * Runs the workload with method entry instrumentation and asserts that all lines of the executed methods and no
+	 * lines of the other methods are covered. Loading the class also verifies the frames of all of its methods.
+	 */
+	private void assertLineCoverageIsOnMethodLevel(byte[] original) throws Exception {
+		byte[] instrumented = new Instrumenter(runtime).instrument(original, Workload.class.getName());
+		LongSupplier workload = load(MethodEntryProbes.reduceToMethodEntryProbes(instrumented));
+
+		assertThat(workload.getAsLong()).isEqualTo(new Workload().getAsLong());
+
+		ExecutionDataStore store = new ExecutionDataStore();
+		runtimeData.collect(store, new SessionInfoStore(), false);
+		CoverageBuilder coverageBuilder = new CoverageBuilder();
+		new Analyzer(store, coverageBuilder).analyzeClass(original, Workload.class.getName());
+		IClassCoverage classCoverage = coverageBuilder.getClasses().iterator().next();
+
+		List<String> executedMethods = new ArrayList<>();
+		for (IMethodCoverage method : classCoverage.getMethods()) {
+			ICounter lines = method.getLineCounter();
+			if (lines.getCoveredCount() > 0) {
+				executedMethods.add(method.getName() + method.getDesc());
+				assertThat(lines.getMissedCount()).describedAs(method.getName()).isZero();
+			}
+		}
+		assertThat(executedMethods).containsExactlyInAnyOrder("<init>()V", "getAsLong()J", "isPrime(I)Z");
+		assertThat(classCoverage.getLineCounter().getMissedCount()).isPositive();
+	}
+
+	private static byte[] withClassFileVersion(byte[] classBytes, int version) {
+		ClassWriter writer = new ClassWriter(0);
+		new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM9, writer) {
+			@Override
+			public void visit(int ignoredVersion, int access, String name, String signature, String superName,
+							  String[] interfaces) {
+				super.visit(version, access, name, signature, superName, interfaces);
+			}
+		}, 0);
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Benchmark that compares the run time of a branch-heavy workload without instrumentation, with full JaCoCo
+	 * instrumentation and with method entry instrumentation.
+	 */
+	@Test
+	@Tag("benchmark")
+	void benchmarkOverheadOfMethodEntryInstrumentation() throws Exception {
+		byte[] instrumented = instrumentWorkload();
+		long uninstrumentedNanos = measure(new Workload());
+		long fullNanos = measure(load(instrumented));
+		long methodEntryNanos = measure(load(MethodEntryProbes.reduceToMethodEntryProbes(instrumented)));
+
+		System.out.printf("Uninstrumented: %d ms, full instrumentation: %d ms (%+.0f%%), " +
+						"method entry instrumentation: %d ms (%+.0f%%)%n", uninstrumentedNanos / 1_000_000,
+				fullNanos / 1_000_000, getOverheadPercent(fullNanos, uninstrumentedNanos),
+				methodEntryNanos / 1_000_000, getOverheadPercent(methodEntryNanos, uninstrumentedNanos));
+	}
+
+	private static double getOverheadPercent(long nanos, long baselineNanos) {
+		return (nanos - baselineNanos) * 100.0 / baselineNanos;
+	}
+
+	/** Returns the best time of multiple runs of the workload to reduce the influence of JIT compilation. */
+	private static long measure(LongSupplier workload) {
+		long bestNanos = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			long start = System.nanoTime();
+			workload.getAsLong();
+			bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+		}
+		return bestNanos;
+	}
+
+	/** Returns the bytecode of {@link Workload} with full JaCoCo instrumentation. */
+	private byte[] instrumentWorkload() throws IOException {
+		return new Instrumenter(runtime).instrument(readWorkload(), Workload.class.getName());
+	}
+
+	/** Returns the original bytecode of {@link Workload}. */
+	private static byte[] readWorkload() throws IOException {
+		String resource = "/" + Workload.class.getName().replace('.', '/') + ".class";
+		try (InputStream inputStream = MethodEntryProbesTest.class.getResourceAsStream(resource)) {
+			return FileSystemUtils.readStreamBinary(inputStream);
+		}
+	}
+
+	/** Loads the given version of {@link Workload} in a separate class loader. */
+	private static LongSupplier load(byte[] classBytes) throws Exception {
+		ClassLoader classLoader = new ClassLoader(MethodEntryProbesTest.class.getClassLoader()) {
+			@Override
+			protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+				if (name.equals(Workload.class.getName())) {
+					return defineClass(name, classBytes, 0, classBytes.length);
+				}
+				return super.loadClass(name, resolve);
+			}
+		};
+		return (LongSupplier) classLoader.loadClass(Workload.class.getName()).getDeclaredConstructor().newInstance();
+	}
+
+	/**
+	 * Counts prime numbers, which executes many branches in few methods. The other methods are never executed, but
+	 * cover different kinds of locals at the start of a method.
+	 */
+	public static class Workload implements LongSupplier {
+
+		private final long limit;
+
+		public Workload() {
+			this.limit = 200_000;
+		}
+
+		private Workload(long limit, double factor, String[] names) {
+			if (names.length > 0) {
+				limit *= factor;
+			}
+			this.limit = limit;
+		}
+
+		public Workload(boolean unused) {
+			this.limit = unused ? 1 : 2;
+		}
+
+		private static String describe(long value, double factor, String[] names, char separator) {
+			if (names.length == 0) {
+				return value + "" + separator + factor;
+			}
+			return String.join(String.valueOf(separator), names);
+		}
+
+		@Override
+		public long getAsLong() {
+			long count = 0;
+			for (int i = 2; i < limit; i++) {
+				if (isPrime(i)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		private static boolean isPrime(int number) {
+			for (int divisor = 2; divisor * divisor <= number; divisor++) {
+				if (number % divisor == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.teamscale.jacoco.agent;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for {@link PersistentCoverageStore}. */
+class PersistentCoverageStoreTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testMergedCoverageSurvivesReopening() throws IOException {
+		Path file = tempDir.resolve("coverage.store");
+		try (PersistentCoverageStore store = PersistentCoverageStore.open(file)) {
+			assertThat(store.isEmpty()).isTrue();
+			store.merge(dump("session", new ExecutionData(1, "com/example/Foo", new boolean[]{true, false, false}),
+					new ExecutionData(2, "com/example/Bar", new boolean[]{false})));
+			store.merge(dump("session",
+					new ExecutionData(1, "com/example/Foo", new boolean[]{false, false, true})));
+		}
+
+		try (PersistentCoverageStore store = PersistentCoverageStore.open(file)) {
+			Dump dump = store.read();
+			assertThat(dump.info.getId()).isEqualTo("session");
+			assertThat(dump.store.getContents()).hasSize(1);
+			ExecutionData foo = dump.store.get(1);
+			assertThat(foo.getName()).isEqualTo("com/example/Foo");
+			assertThat(foo.getProbes()).containsExactly(true, false, true);
+		}
+	}
+
+	@Test
+	void testStoreGrowsAndCanBeCleared() throws IOException {
+		Path file = tempDir.resolve("coverage.store");
+		try (PersistentCoverageStore store = PersistentCoverageStore.open(file)) {
+			ExecutionData[] executionData = new ExecutionData[50_000];
+			for (int i = 0; i < executionData.length; i++) {
+				boolean[] probes = new boolean[100];
+				probes[i % 100] = true;
+				executionData[i] = new ExecutionData(i, "com/example/Class" + i, probes);
+			}
+			store.merge(dump("session", executionData));
+			assertThat(store.read().store.getContents()).hasSize(executionData.length);
+
+			store.clear();
+			assertThat(store.isEmpty()).isTrue();
+		}
+
+		try (PersistentCoverageStore store = PersistentCoverageStore.open(file)) {
+			assertThat(store.isEmpty()).isTrue();
+		}
+	}
+
+	@Test
+	void testSessionIdIsKeptInSeparateFile() throws IOException {
+		Path file = tempDir.resolve("coverage.store");
+		try (PersistentCoverageStore store = PersistentCoverageStore.open(file)) {
+			store.merge(dump("first", new ExecutionData(1, "com/example/Foo", new boolean[]{true})));
+			store.merge(dump("second", new ExecutionData(1, "com/example/Foo", new boolean[]{true})));
+		}
+
+		assertThat(tempDir.resolve("coverage.store.session")).hasContent("second");
+		assertThat(tempDir.toFile().list()).containsExactlyInAnyOrder("coverage.store", "coverage.store.session");
+		try (PersistentCoverageStore store = PersistentCoverageStore.open(file)) {
+			assertThat(store.read().info.getId()).isEqualTo("second");
+		}
+	}
+
+	@Test
+	void testCoverageOfPreviousSessionIsReturnedOnSessionChange() throws IOException {
+		Path file = tempDir.resolve("coverage.store");
+		try (PersistentCoverageStore store = PersistentCoverageStore.open(file)) {
+			assertThat(store.merge(dump("first", new ExecutionData(1, "com/example/Foo", new boolean[]{true, false}))))
+					.isNull();
+			assertThat(store.merge(dump("first", new ExecutionData(2, "com/example/Bar", new boolean[]{true}))))
+					.isNull();
+
+			Dump previousSession = store.merge(
+					dump("second", new ExecutionData(1, "com/example/Foo", new boolean[]{false, true})));
+
+			assertThat(previousSession.info.getId()).isEqualTo("first");
+			assertThat(previousSession.store.get(1).getProbes()).containsExactly(true, false);
+			assertThat(previousSession.store.get(2).getProbes()).containsExactly(true);
+		}
+
+		try (PersistentCoverageStore store = PersistentCoverageStore.open(file)) {
+			Dump dump = store.read();
+			assertThat(dump.info.getId()).isEqualTo("second");
+			assertThat(dump.store.getContents()).hasSize(1);
+			assertThat(dump.store.get(1).getProbes()).containsExactly(false, true);
+		}
+	}
+
+	private static Dump dump(String sessionId, ExecutionData... executionData) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		for (ExecutionData data : executionData) {
+			store.put(data);
+		}
+		return new Dump(new SessionInfo(sessionId, 0, 0), store);
+	}
+}
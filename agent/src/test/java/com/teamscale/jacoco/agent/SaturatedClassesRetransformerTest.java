@@ -0,0 +1,77 @@
+package com.teamscale.jacoco.agent;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.instrument.Instrumentation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Tests for {@link SaturatedClassesRetransformer}. */
+class SaturatedClassesRetransformerTest {
+
+	private final Instrumentation instrumentation = mock(Instrumentation.class);
+
+	private final LenientCoverageTransformer transformer = mock(LenientCoverageTransformer.class);
+
+	private final SaturatedClassesRetransformer retransformer = new SaturatedClassesRetransformer(instrumentation,
+			transformer);
+
+	@BeforeEach
+	void setUp() {
+		when(instrumentation.getAllLoadedClasses()).thenReturn(new Class<?>[]{String.class, Integer.class});
+		when(instrumentation.isModifiableClass(any())).thenReturn(true);
+	}
+
+	@Test
+	void testRetransformsClassOnceAllProbesWereHit() throws Exception {
+		retransformer.process(dump(new ExecutionData(1, "java/lang/String", new boolean[]{true, false})));
+		verify(instrumentation, never()).retransformClasses(any());
+
+		retransformer.process(dump(new ExecutionData(1, "java/lang/String", new boolean[]{false, true})));
+		verify(transformer).markSaturated(1);
+		verify(instrumentation).retransformClasses(String.class);
+	}
+
+	@Test
+	void testCoverageOfRetransformedClassesIsAddedToLaterDumps() {
+		retransformer.process(dump(new ExecutionData(1, "java/lang/String", new boolean[]{true, true})));
+
+		Dump laterDump = dump(new ExecutionData(2, "java/lang/Integer", new boolean[]{true, false}));
+		retransformer.process(laterDump);
+
+		assertThat(laterDump.store.get(1).getProbes()).containsExactly(true, true);
+		assertThat(laterDump.store.get(2).getProbes()).containsExactly(true, false);
+	}
+
+	@Test
+	void testFailedRetransformationIsNotRetried() throws Exception {
+		doThrow(new UnsupportedOperationException()).when(instrumentation).retransformClasses(any());
+		retransformer.process(dump(new ExecutionData(1, "java/lang/String", new boolean[]{true})));
+		retransformer.process(dump(new ExecutionData(1, "java/lang/String", new boolean[]{true})));
+
+		verify(instrumentation).retransformClasses(String.class);
+		verify(transformer).unmarkSaturated(1);
+		Dump laterDump = dump();
+		retransformer.addCoverageOfRetransformedClasses(laterDump);
+		assertThat(laterDump.store.getContents()).isEmpty();
+	}
+
+	private static Dump dump(ExecutionData... executionData) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		for (ExecutionData data : executionData) {
+			store.put(data);
+		}
+		return new Dump(new SessionInfo("session", 0, 0), store);
+	}
+}
@@ -0,0 +1,203 @@
+package com.teamscale.jacoco.agent.server;
+
+import com.teamscale.client.UnixDomainSocketUtils;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests for {@link LightweightHttpServer}. */
+class LightweightHttpServerTest {
+
+	private static final IHttpRequestHandler ECHO_HANDLER = request -> {
+		if (request.path.startsWith("/echo/")) {
+			return HttpResponse.text(200,
+					HttpRequest.decodePathSegment(request.path.substring("/echo/".length())) + ":"
+							+ request.getBodyAsString());
+		}
+		return null;
+	};
+
+	private static final IHttpRequestHandler FAILING_HANDLER = request -> {
+		if (request.path.equals("/fail")) {
+			throw new IllegalStateException("failure");
+		}
+		return null;
+	};
+
+	@Test
+	void testMultipleRequestsOnOneConnection() throws Exception {
+		String responses = serve("POST /echo/first HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nhello"
+				+ "POST /echo/second HTTP/1.1\r\nContent-Length: 0\r\n\r\n");
+
+		assertThat(responses).isEqualTo(
+				"HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 11\r\n\r\nfirst:hello"
+						+ "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 7\r\n\r\nsecond:");
+	}
+
+	@Test
+	void testConnectionIsClosedIfRequested() throws Exception {
+		String responses = serve("POST /echo/first HTTP/1.1\r\nConnection: close\r\n\r\n"
+				+ "POST /echo/second HTTP/1.1\r\n\r\n");
+
+		assertThat(responses).isEqualTo(
+				"HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 6\r\nConnection: close\r\n\r\nfirst:");
+	}
+
+	@Test
+	void testChunkedBody() throws Exception {
+		String responses = serve("POST /echo/chunked HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+				+ "5\r\nhello\r\n7;extension\r\n, world\r\n0\r\n\r\n");
+
+		assertThat(responses).endsWith("\r\n\r\nchunked:hello, world");
+	}
+
+	@Test
+	void testPathSegmentIsPercentDecoded() throws Exception {
+		String responses = serve("POST /echo/a%2Fb%20c+d%C3%A4 HTTP/1.1\r\n\r\n");
+
+		assertThat(responses).endsWith("\r\n\r\na/b c+dä:");
+	}
+
+	@Test
+	void testErrors() throws Exception {
+		assertThat(serve("GET /unknown HTTP/1.1\r\n\r\n")).startsWith("HTTP/1.1 404 Not Found\r\n");
+		assertThat(serve("GET /fail HTTP/1.1\r\n\r\n")).startsWith("HTTP/1.1 500 Internal Server Error\r\n")
+				.endsWith("Message: failure");
+		assertThat(serve("POST /echo/%XY HTTP/1.1\r\n\r\n")).startsWith("HTTP/1.1 400 Bad Request\r\n");
+		assertThat(serve("invalid\r\n\r\n")).startsWith("HTTP/1.1 400 Bad Request\r\n")
+				.contains("Connection: close");
+	}
+
+	@Test
+	void testEmptyLinesBeforeRequestLine() throws Exception {
+		assertThat(serve("\r\n\r\nPOST /echo/empty HTTP/1.1\r\n\r\n")).endsWith("\r\n\r\nempty:");
+		StringBuilder emptyLines = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			emptyLines.append("\r\n");
+		}
+		assertThat(serve(emptyLines + "POST /echo/empty HTTP/1.1\r\n\r\n"))
+				.startsWith("HTTP/1.1 400 Bad Request\r\n");
+	}
+
+	@Test
+	void testTruncatedOrTooLargeBodiesAreRejected() throws Exception {
+		assertThat(serve("POST /echo/large HTTP/1.1\r\nContent-Length: 67108864\r\n\r\nhello"))
+				.startsWith("HTTP/1.1 400 Bad Request\r\n");
+		assertThat(serve("POST /echo/large HTTP/1.1\r\nContent-Length: 536870912\r\n\r\nhello"))
+				.startsWith("HTTP/1.1 400 Bad Request\r\n");
+	}
+
+	@Test
+	void testRequestsAreDelegatedToJersey() throws Exception {
+		IHttpRequestHandler jerseyHandler = new JerseyRequestHandler(
+				() -> new ResourceConfig().register(TestResource.class));
+
+		String responses = serve(new LightweightHttpServer(0, ECHO_HANDLER, jerseyHandler),
+				"GET /resource/a%20b?suffix=c HTTP/1.1\r\nHost: localhost:1234\r\n\r\nPOST /echo/direct HTTP/1.1\r\n\r\n");
+
+		assertThat(responses).isEqualTo(
+				"HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 4\r\n\r\na bc"
+						+ "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 7\r\n\r\ndirect:");
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_16)
+	void testUnixDomainSocket(@TempDir java.nio.file.Path tempDir) throws Exception {
+		java.nio.file.Path socket = tempDir.resolve("agent.sock");
+		LightweightHttpServer server = new LightweightHttpServer(socket, ECHO_HANDLER);
+		server.start();
+		try (SocketChannel channel = UnixDomainSocketUtils.openSocketChannel(socket)) {
+			OutputStream out = Channels.newOutputStream(channel);
+			out.write("POST /echo/socket HTTP/1.1\r\nConnection: close\r\nContent-Length: 5\r\n\r\nhello"
+					.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+
+			InputStream in = Channels.newInputStream(channel);
+			ByteArrayOutputStream response = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int count;
+			while ((count = in.read(buffer)) >= 0) {
+				response.write(buffer, 0, count);
+			}
+			assertThat(new String(response.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(
+					"HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: 12\r\nConnection: close\r\n\r\nsocket:hello");
+		} finally {
+			server.stop();
+		}
+		assertThat(socket).doesNotExist();
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_16)
+	void testLeftoverUnixDomainSocketIsReplaced(@TempDir java.nio.file.Path tempDir) throws Exception {
+		java.nio.file.Path socket = tempDir.resolve("agent.sock");
+		ServerSocketChannel leftover = UnixDomainSocketUtils.openServerSocketChannel(socket);
+		// closing the channel keeps the socket file, like a crashed process would
+		leftover.close();
+		assertThat(socket).exists();
+
+		LightweightHttpServer server = new LightweightHttpServer(socket, ECHO_HANDLER);
+		server.start();
+		server.stop();
+		assertThat(socket).doesNotExist();
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_16)
+	void testFilesThatAreNoUnixDomainSocketsAreNotDeleted(@TempDir java.nio.file.Path tempDir) throws Exception {
+		java.nio.file.Path file = Files.write(tempDir.resolve("agent.sock"), "data".getBytes(StandardCharsets.UTF_8));
+		assertThatThrownBy(() -> new LightweightHttpServer(file, ECHO_HANDLER).start()).isInstanceOf(IOException.class)
+				.hasMessageContaining("not a socket");
+		assertThat(file).hasContent("data");
+
+		java.nio.file.Path directory = Files.createDirectory(tempDir.resolve("directory.sock"));
+		assertThatThrownBy(() -> new LightweightHttpServer(directory, ECHO_HANDLER).start())
+				.isInstanceOf(IOException.class).hasMessageContaining("not a socket");
+		assertThat(directory).isDirectory();
+	}
+
+	/** Resource for testing the delegation to Jersey. */
+	@Path("/resource")
+	public static class TestResource {
+
+		/** Returns the path parameter followed by the query parameter. */
+		@GET
+		@Path("/{value}")
+		@Produces("text/plain")
+		public String get(@PathParam("value") String value, @QueryParam("suffix") String suffix) {
+			return value + suffix;
+		}
+	}
+
+	private static String serve(String requests) throws IOException {
+		return serve(new LightweightHttpServer(0, ECHO_HANDLER, FAILING_HANDLER), requests);
+	}
+
+	/** Lets the server handle the given requests as if they were sent over a single connection. */
+	private static String serve(LightweightHttpServer server, String requests) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		server.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,88 @@
+package com.teamscale.jacoco.agent.testimpact;
+
+import com.teamscale.jacoco.agent.JacocoRuntimeController;
+import com.teamscale.jacoco.agent.options.AgentOptions;
+import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class CoverageViaHttpStrategyTest {
+
+	private static final long CLASS_ID = 123;
+
+	@Mock
+	private JacocoRuntimeController controller;
+
+	@Mock
+	private JaCoCoTestwiseReportGenerator reportGenerator;
+
+	@Test
+	public void coverageOfOverlappingTestsIsAttributedToAllOfThem() throws Exception {
+		// the coverage recorded by the runtime between the test events
+		when(controller.dumpAndReset()).thenReturn(createDump(true, false, false), createDump(false, true, false),
+				createDump(false, false, true));
+		when(reportGenerator.convert(any(Dump.class)))
+				.thenAnswer(invocation -> new TestCoverageBuilder("test"));
+		CoverageViaHttpStrategy strategy = new CoverageViaHttpStrategy(controller, mock(AgentOptions.class),
+				reportGenerator);
+
+		strategy.testStart("A");
+		strategy.testStart("B");
+		strategy.testEnd("A", null);
+		strategy.testEnd("B", null);
+
+		ArgumentCaptor<Dump> dumps = ArgumentCaptor.forClass(Dump.class);
+		verify(reportGenerator, times(2)).convert(dumps.capture());
+		verify(controller, times(1)).reset();
+		List<Dump> convertedDumps = dumps.getAllValues();
+		assertThat(convertedDumps.get(0).info.getId()).isEqualTo("A");
+		assertThat(convertedDumps.get(0).store.get(CLASS_ID).getProbes()).containsExactly(true, true, false);
+		assertThat(convertedDumps.get(1).info.getId()).isEqualTo("B");
+		assertThat(convertedDumps.get(1).store.get(CLASS_ID).getProbes()).containsExactly(false, true, true);
+	}
+
+	@Test
+	public void coverageOfSequentialTestsIsTakenFromTheRuntime() throws Exception {
+		Dump firstDump = createDump(true, false, false);
+		Dump secondDump = createDump(false, true, false);
+		when(controller.dumpAndReset()).thenReturn(firstDump, secondDump);
+		when(reportGenerator.convert(any(Dump.class)))
+				.thenAnswer(invocation -> new TestCoverageBuilder("test"));
+		CoverageViaHttpStrategy strategy = new CoverageViaHttpStrategy(controller, mock(AgentOptions.class),
+				reportGenerator);
+
+		strategy.testStart("A");
+		strategy.testEndAndStart("A", null, "B");
+		strategy.testEnd("B", null);
+
+		ArgumentCaptor<Dump> dumps = ArgumentCaptor.forClass(Dump.class);
+		verify(reportGenerator, times(2)).convert(dumps.capture());
+		verify(controller, times(2)).reset();
+		assertThat(dumps.getAllValues()).containsExactly(firstDump, secondDump);
+	}
+
+	/** Creates a dump that contains a single class with the given probes. */
+	private static Dump createDump(boolean... probes) {
+		ExecutionDataStore store = new ExecutionDataStore();
+		store.put(new ExecutionData(CLASS_ID, "Foo", probes));
+		return new Dump(new SessionInfo("runtime", 0, 0), store);
+	}
+}
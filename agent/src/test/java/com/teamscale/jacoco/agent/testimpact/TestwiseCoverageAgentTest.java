@@ -10,8 +10,14 @@ import com.teamscale.client.TeamscaleServer;
 import com.teamscale.jacoco.agent.options.AgentOptions;
 import com.teamscale.jacoco.agent.options.ETestwiseCoverageMode;
 import com.teamscale.jacoco.agent.util.TestUtils;
+import com.teamscale.report.jacoco.dump.Dump;
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator;
 import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.report.testwise.model.TestInfo;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.tia.client.ITestwiseCoverageAgentApi;
 import com.teamscale.tia.client.RunningTest;
 import com.teamscale.tia.client.TestRun;
 import com.teamscale.tia.client.TestRunWithClusteredSuggestions;
@@ -19,7 +25,10 @@ import com.teamscale.tia.client.TiaAgent;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
@@ -100,6 +109,200 @@ public class TestwiseCoverageAgentTest {
 				any(), any(), any(), any(), any());
 	}
 
+	@Test
+	public void testAccessViaTiaClientWithLightweightHttpServer() throws Exception {
+		List<ClusteredTestDetails> availableTests = Collections.singletonList(
+				new ClusteredTestDetails("test/with spaces+plus", "test1", "content", "cluster", "partition"));
+		when(client.getImpactedTests(any(), any(), any(), any(), any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean()))
+				.thenReturn(Response.success(Collections.singletonList(new PrioritizableTestCluster("cluster",
+						Collections.singletonList(new PrioritizableTest("test/with spaces+plus"))))));
+		when(reportGenerator.convert(any(File.class)))
+				.thenReturn(CoverageToTeamscaleStrategyTest.getDummyTestwiseCoverage("test/with spaces+plus"));
+
+		int port;
+		synchronized (TestUtils.class) {
+			port = TestUtils.getFreePort();
+			AgentOptions options = mockOptions(port);
+			when(options.shouldUseLightweightHttpServer()).thenReturn(true);
+			when(options.createNewFileInOutputDirectory(any(), any())).thenReturn(new File(tempDir, "test"));
+			new TestwiseCoverageAgent(options, null, reportGenerator);
+		}
+
+		TiaAgent agent = new TiaAgent(false, HttpUrl.get("http://localhost:" + port));
+		TestRunWithClusteredSuggestions testRun = agent.startTestRun(availableTests);
+		PrioritizableTest test = testRun.getPrioritizedClusters().get(0).tests.get(0);
+		RunningTest runningTest = testRun.startTest(test.testName);
+		runningTest.endTest(new TestRun.TestResultWithMessage(ETestExecutionResult.PASSED, "message"));
+		testRun.endTestRun(false);
+
+		verify(client).uploadReport(eq(EReportFormat.TESTWISE_COVERAGE), matches(
+						".*\\Q\"uniformPath\":\"test/with spaces+plus\",\"sourcePath\":\"test1\",\"content\":\"content\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"message\":\"message\"\\E.*"),
+				any(), any(), any(), any(), any());
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_16)
+	public void testAccessViaTiaClientOverUnixDomainSocket() throws Exception {
+		when(reportGenerator.convert(any(File.class)))
+				.thenReturn(CoverageToTeamscaleStrategyTest.getDummyTestwiseCoverage("test1"));
+
+		File socket = new File(tempDir, "agent.sock");
+		AgentOptions options = mockOptions(null);
+		when(options.getHttpServerSocket()).thenReturn(socket.toPath());
+		when(options.createNewFileInOutputDirectory(any(), any())).thenReturn(new File(tempDir, "test"));
+		new TestwiseCoverageAgent(options, null, reportGenerator);
+
+		TestRun testRun = new TiaAgent(false, ITestwiseCoverageAgentApi.UNIX_DOMAIN_SOCKET_URL_PREFIX + socket)
+				.startTestRunWithoutTestSelection();
+		RunningTest runningTest = testRun.startTest("test1");
+		runningTest.endTest(new TestRun.TestResultWithMessage(ETestExecutionResult.PASSED, "message"));
+		testRun.endTestRun(false);
+
+		verify(client).uploadReport(eq(EReportFormat.TESTWISE_COVERAGE), matches(
+						".*\\Q\"uniformPath\":\"test1\",\"sourcePath\":\"test1\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"message\":\"message\"\\E.*"),
+				any(), any(), any(), any(), any());
+	}
+
+	@Test
+	public void testRetrievingCoverageViaHttp() throws Exception {
+		assertCoverageIsRetrievedViaHttp(false);
+	}
+
+	@Test
+	public void testRetrievingCoverageViaHttpWithLightweightHttpServer() throws Exception {
+		assertCoverageIsRetrievedViaHttp(true);
+	}
+
+	/** Asserts that the coverage of a test is returned in the binary format to the tia-client. */
+	private void assertCoverageIsRetrievedViaHttp(boolean lightweightHttpServer) throws Exception {
+		TestCoverageBuilder coverage = new TestCoverageBuilder("test1");
+		FileCoverageBuilder fileCoverage = new FileCoverageBuilder("src/main/java", "Main.java");
+		fileCoverage.addLineRange(1, 4);
+		fileCoverage.addLine(7);
+		coverage.add(fileCoverage);
+		when(reportGenerator.convert(any(Dump.class))).thenReturn(coverage);
+
+		int port;
+		synchronized (TestUtils.class) {
+			port = TestUtils.getFreePort();
+			AgentOptions options = mock(AgentOptions.class);
+			when(options.getHttpServerPort()).thenReturn(port);
+			when(options.getTestwiseCoverageMode()).thenReturn(ETestwiseCoverageMode.HTTP);
+			if (lightweightHttpServer) {
+				when(options.shouldUseLightweightHttpServer()).thenReturn(true);
+			}
+			new TestwiseCoverageAgent(options, null, reportGenerator);
+		}
+
+		TestRun testRun = new TiaAgent(false, HttpUrl.get("http://localhost:" + port))
+				.startTestRunWithoutTestSelection();
+		TestInfo testInfo = testRun.startTest("test1")
+				.endTestAndRetrieveCoverage(new TestRun.TestResultWithMessage(ETestExecutionResult.PASSED, "message"));
+
+		assertThat(testInfo.uniformPath).isEqualTo("test1");
+		assertThat(testInfo.result).isEqualTo(ETestExecutionResult.PASSED);
+		assertThat(testInfo.message).isEqualTo("message");
+		assertThat(testInfo.paths).hasSize(1);
+		assertThat(testInfo.paths.get(0).getPath()).isEqualTo("src/main/java");
+		assertThat(testInfo.paths.get(0).getFiles()).singleElement()
+				.satisfies(file -> {
+					assertThat(file.fileName).isEqualTo("Main.java");
+					assertThat(file.coveredLines).isEqualTo("1-4,7");
+				});
+	}
+
+	@Test
+	public void testEndingAndStartingTestsWithSingleRequest() throws Exception {
+		when(reportGenerator.convert(any(File.class)))
+				.thenReturn(CoverageToTeamscaleStrategyTest.getDummyTestwiseCoverage("test2"));
+
+		int port;
+		synchronized (TestUtils.class) {
+			port = TestUtils.getFreePort();
+			AgentOptions options = mockOptions(port);
+			when(options.createNewFileInOutputDirectory(any(), any())).thenReturn(new File(tempDir, "test"));
+			new TestwiseCoverageAgent(options, null, reportGenerator);
+		}
+
+		TestRun testRun = new TiaAgent(false, HttpUrl.get("http://localhost:" + port))
+				.startTestRunWithoutTestSelection();
+		RunningTest runningTest = testRun.startTest("test1");
+		runningTest = runningTest.endTestAndStartNext(
+				new TestRun.TestResultWithMessage(ETestExecutionResult.FAILURE, "failure"), "test2");
+		runningTest.endTest(new TestRun.TestResultWithMessage(ETestExecutionResult.PASSED, "message"));
+		testRun.endTestRun(false);
+
+		verify(client).uploadReport(eq(EReportFormat.TESTWISE_COVERAGE), matches(
+						"\\Q{\"partial\":false,\"tests\":[{\"uniformPath\":\"test1\",\"sourcePath\":\"test1\",\"duration\":\\E[^,]*\\Q,\"result\":\"FAILURE\",\"message\":\"failure\",\"paths\":[]},{\"uniformPath\":\"test2\",\"sourcePath\":\"test2\",\"duration\":\\E[^,]*\\Q,\"result\":\"PASSED\",\"message\":\"message\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4\"}]}]}]}\\E"),
+				any(), any(), any(), any(), any());
+	}
+
+	@Test
+	public void testPassingTestExecutionsAtTestRunEnd() throws Exception {
+		when(reportGenerator.convert(any(File.class)))
+				.thenReturn(CoverageToTeamscaleStrategyTest.getDummyTestwiseCoverage("test2"));
+
+		int port;
+		synchronized (TestUtils.class) {
+			port = TestUtils.getFreePort();
+			AgentOptions options = mockOptions(port);
+			when(options.shouldUseLightweightHttpServer()).thenReturn(true);
+			when(options.createNewFileInOutputDirectory(any(), any())).thenReturn(new File(tempDir, "test"));
+			new TestwiseCoverageAgent(options, null, reportGenerator);
+		}
+
+		ITestwiseCoverageAgentApi api = ITestwiseCoverageAgentApi.createService(
+				HttpUrl.get("http://localhost:" + port));
+		api.testStarted("test1").execute();
+		api.testFinishedAndNextStarted("test1", "test2").execute();
+		api.testFinished("test2").execute();
+		Response<ResponseBody> response = api.testRunFinished(false,
+				Arrays.asList(new TestExecution("test1", 1000L, ETestExecutionResult.PASSED),
+						new TestExecution("test2", 2000L, ETestExecutionResult.SKIPPED, "skipped"))).execute();
+
+		assertThat(response.isSuccessful()).describedAs(response.toString()).isTrue();
+		verify(client).uploadReport(eq(EReportFormat.TESTWISE_COVERAGE), matches(
+						"\\Q{\"partial\":false,\"tests\":[{\"uniformPath\":\"test1\",\"sourcePath\":\"test1\",\"duration\":1.0,\"result\":\"PASSED\",\"paths\":[]},{\"uniformPath\":\"test2\",\"sourcePath\":\"test2\",\"duration\":2.0,\"result\":\"SKIPPED\",\"message\":\"skipped\",\"paths\":[{\"path\":\"src/main/java\",\"files\":[{\"fileName\":\"Main.java\",\"coveredLines\":\"1-4\"}]}]}]}\\E"),
+				any(), any(), any(), any(), any());
+	}
+
+	/**
+	 * Benchmark that compares the latency of test start events between Jetty + Jersey and the lightweight HTTP server.
+	 * Handling a test start in the agent takes almost no time, so this measures the overhead of the HTTP stack.
+	 */
+	@Test
+	@Tag("benchmark")
+	public void benchmarkTestEventLatency() throws Exception {
+		long jerseyNanos = measureTestStartLatency(false);
+		long lightweightNanos = measureTestStartLatency(true);
+
+		System.out.printf("Average latency of a test start event: Jetty + Jersey %d µs, lightweight server %d µs%n",
+				jerseyNanos / 1000, lightweightNanos / 1000);
+	}
+
+	/** Returns the average time of a test start request in nanoseconds. */
+	private long measureTestStartLatency(boolean useLightweightHttpServer) throws Exception {
+		int port;
+		synchronized (TestUtils.class) {
+			port = TestUtils.getFreePort();
+			AgentOptions options = mockOptions(port);
+			when(options.shouldUseLightweightHttpServer()).thenReturn(useLightweightHttpServer);
+			new TestwiseCoverageAgent(options, null, reportGenerator);
+		}
+
+		TestRun testRun = new TiaAgent(false, HttpUrl.get("http://localhost:" + port)).startTestRunWithoutTestSelection();
+		for (int i = 0; i < 2000; i++) {
+			// warm up
+			testRun.startTest("test");
+		}
+		int requests = 5000;
+		long start = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			testRun.startTest("test");
+		}
+		return (System.nanoTime() - start) / requests;
+	}
+
 	@Test
 	public void testErrorHandling() throws Exception {
 		when(client.getImpactedTests(any(), any(), any(), any(), any(), any(), any(), anyBoolean(), anyBoolean(), anyBoolean()))
@@ -157,7 +360,7 @@ public class TestwiseCoverageAgentTest {
 		assertThat(tests.get(0).tests).hasSize(1);
 	}
 
-	private AgentOptions mockOptions(int port) {
+	private AgentOptions mockOptions(Integer port) {
 		AgentOptions options = mock(AgentOptions.class);
 		when(options.createTeamscaleClient()).thenReturn(client);
 
@@ -27,7 +27,7 @@ tasks.withType<JavaExec>() {
 	createAgentCopy()
 }
 
-tasks.test {
+tasks.withType<Test>() {
 	createAgentCopy()
 }
 
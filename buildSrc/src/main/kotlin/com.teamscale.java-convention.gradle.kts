@@ -19,10 +19,23 @@ java {
 tasks.test {
     useJUnitPlatform {
         excludeEngines("teamscale-test-impacted")
+        excludeTags("benchmark")
     }
     testLogging.exceptionFormat = TestExceptionFormat.FULL
 }
 
+tasks.register<Test>("benchmark") {
+    description = "Runs the tests tagged as benchmark, which are excluded from the test task."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        excludeEngines("teamscale-test-impacted")
+        includeTags("benchmark")
+    }
+    testLogging.showStandardStreams = true
+}
+
 // Workaround until https://github.com/gradle/gradle/issues/15383 is fixed
 val catalogs = extensions.getByType<VersionCatalogsExtension>()
 val libs = catalogs.named("libs")
@@ -5,7 +5,7 @@ plugins {
 
 val provider = SystemTestPorts.registerWith(project)
 
-tasks.test {
+tasks.withType<Test>() {
 	dependsOn(":agent:shadowJar")
 	usesService(provider)
 	portProvider = provider
@@ -5,6 +5,7 @@ import com.teamscale.client.PrioritizableTest;
 import com.teamscale.client.StringUtils;
 import com.teamscale.client.TestDetails;
 import com.teamscale.test_impacted.commons.LoggerUtils;
+import org.junit.platform.engine.TestDescriptor;
 import org.junit.platform.engine.TestEngine;
 import org.junit.platform.engine.UniqueId;
 
@@ -18,7 +19,8 @@ import java.util.logging.Logger;
 
 /**
  * Holds a list of test details that can currently be executed. Provides the ability to translate uniform paths returned
- * by the Teamscale server to unique IDs used in JUnit Platform.
+ * by the Teamscale server to unique IDs used in JUnit Platform and to look up the corresponding {@link TestDescriptor}s
+ * in constant time.
  */
 public class AvailableTests {
 
@@ -30,12 +32,19 @@ public class AvailableTests {
 	 */
 	private final Map<String, UniqueId> uniformPathToUniqueIdMapping = new HashMap<>();
 
+	/**
+	 * Index from unique ID to the test descriptor. Avoids {@link TestDescriptor#findByUniqueId(UniqueId)}, which walks
+	 * the whole descriptor tree for every lookup.
+	 */
+	private final Map<UniqueId, TestDescriptor> uniqueIdToTestDescriptor = new HashMap<>();
+
 	/** List of all test details. */
 	private final List<ClusteredTestDetails> testList = new ArrayList<>();
 
-	/** Adds a new {@link TestDetails} object and the according uniqueId. */
-	public void add(UniqueId uniqueId, ClusteredTestDetails details) {
-		uniformPathToUniqueIdMapping.put(details.uniformPath, uniqueId);
+	/** Adds a new {@link TestDetails} object and the according test descriptor. */
+	public void add(TestDescriptor testDescriptor, ClusteredTestDetails details) {
+		uniformPathToUniqueIdMapping.put(details.uniformPath, testDescriptor.getUniqueId());
+		uniqueIdToTestDescriptor.put(testDescriptor.getUniqueId(), testDescriptor);
 		testList.add(details);
 	}
 
@@ -58,4 +67,9 @@ public class AvailableTests {
 		}
 		return Optional.ofNullable(clusterUniqueId);
 	}
+
+	/** Returns the test descriptor of an available test with the given {@link UniqueId}. */
+	public Optional<TestDescriptor> findByUniqueId(UniqueId uniqueId) {
+		return Optional.ofNullable(uniqueIdToTestDescriptor.get(uniqueId));
+	}
 }
@@ -8,8 +8,10 @@ import org.junit.platform.engine.UniqueId;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -41,7 +43,7 @@ public class ImpactedTestsSorter implements ITestSorter {
 		}
 
 		Set<? super TestDescriptor> testRepresentatives = Collections.newSetFromMap(new IdentityHashMap<>());
-		Set<? super TestDescriptor> seenDescriptors = Collections.newSetFromMap(new IdentityHashMap<>());
+		Map<TestDescriptor, Integer> executionOrder = new IdentityHashMap<>();
 		for (PrioritizableTestCluster testCluster : testClusters) {
 			for (PrioritizableTest test : testCluster.tests) {
 				Optional<UniqueId> uniqueId = availableTests.convertToUniqueId(test);
@@ -49,45 +51,54 @@ public class ImpactedTestsSorter implements ITestSorter {
 					LOGGER.severe(() -> "Falling back to execute all...");
 					return;
 				}
-				Optional<? extends TestDescriptor> testDescriptor = rootTestDescriptor.findByUniqueId(uniqueId.get());
+				Optional<TestDescriptor> testDescriptor = availableTests.findByUniqueId(uniqueId.get());
 				if (!testDescriptor.isPresent()) {
 					LOGGER.severe(() -> "Falling back to execute all...");
 					return;
 				}
 				testRepresentatives.add(testDescriptor.get());
-				reinsertIntoHierarchy(testDescriptor.get(), seenDescriptors);
+				assignExecutionOrder(testDescriptor.get(), executionOrder);
 			}
 		}
 
 		removeNonImpactedTests(rootTestDescriptor, testRepresentatives);
+		sortChildren(rootTestDescriptor, testRepresentatives, executionOrder);
 	}
 
 	/**
-	 * Reinserts the given testDescriptor into the hierarchy by walking up the parents chain. By doing this in order
-	 * with all tests we end up with our intended order. This is continued until we reach a node that has already been
-	 * reinserted in a previous run, because parents should be sorted according to the order of their most important
-	 * child descriptors.
+	 * Assigns the next position in the execution order to the given testDescriptor and all of its parents. This is
+	 * continued until we reach a node that already got a position for a previous test, because parents should be
+	 * sorted according to the order of their most important child descriptors.
 	 */
-	private static void reinsertIntoHierarchy(TestDescriptor testDescriptor,
-											  Set<? super TestDescriptor> seenDescriptors) {
-		Optional<? extends TestDescriptor> currentTestDescriptor = Optional.of(testDescriptor);
-		while (currentTestDescriptor.isPresent() && !seenDescriptors.contains(currentTestDescriptor.get())) {
-			seenDescriptors.add(currentTestDescriptor.get());
-			reinsertIntoParent(currentTestDescriptor.get());
+	private static void assignExecutionOrder(TestDescriptor testDescriptor,
+											 Map<TestDescriptor, Integer> executionOrder) {
+		Optional<TestDescriptor> currentTestDescriptor = Optional.of(testDescriptor);
+		while (currentTestDescriptor.isPresent() && !executionOrder.containsKey(currentTestDescriptor.get())) {
+			executionOrder.put(currentTestDescriptor.get(), executionOrder.size());
 			currentTestDescriptor = currentTestDescriptor.get().getParent();
 		}
 	}
 
 	/**
-	 * Removes the test descriptor from its parent and inserts it again. The TestDescriptor internally uses a
-	 * {@link java.util.LinkedHashSet} so remove and insert moves the testDescriptor to the last position in the
-	 * iteration order. By doing this in order with all tests we end up with our intended order.
+	 * Sorts the children of the given descriptor and all its descendants according to the execution order in one pass.
+	 * The TestDescriptor internally uses a {@link java.util.LinkedHashSet}, so the children are only removed and
+	 * reinserted in the intended order if they are not already in that order. The children of test representatives
+	 * are left as they are.
 	 */
-	private static void reinsertIntoParent(TestDescriptor testDescriptor) {
-		Optional<TestDescriptor> parent = testDescriptor.getParent();
-		if (parent.isPresent()) {
-			parent.get().removeChild(testDescriptor);
-			parent.get().addChild(testDescriptor);
+	private static void sortChildren(TestDescriptor testDescriptor, Set<? super TestDescriptor> testRepresentatives,
+									 Map<TestDescriptor, Integer> executionOrder) {
+		if (testRepresentatives.contains(testDescriptor)) {
+			return;
+		}
+		List<TestDescriptor> children = new ArrayList<>(testDescriptor.getChildren());
+		List<TestDescriptor> sortedChildren = new ArrayList<>(children);
+		sortedChildren.sort(Comparator.comparingInt(child -> executionOrder.getOrDefault(child, -1)));
+		if (!sortedChildren.equals(children)) {
+			sortedChildren.forEach(testDescriptor::removeChild);
+			sortedChildren.forEach(testDescriptor::addChild);
+		}
+		for (TestDescriptor child : sortedChildren) {
+			sortChildren(child, testRepresentatives, executionOrder);
 		}
 	}
 
@@ -6,11 +6,27 @@ import com.teamscale.tia.client.ITestwiseCoverageAgentApi;
 import com.teamscale.tia.client.UrlUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-/** Communicates test start and end to the agent and the end of the overall test execution. */
+/**
+ * Communicates test start and end to the agent and the end of the overall test execution.
+ * <p>
+ * By default, the agents are called one after the other on the calling thread. In concurrent mode every agent gets its
+ * own notification thread, so the calls to all agents run in parallel while the order of the notifications per agent
+ * is preserved.
+ * <p>
+ * If test events are combined, the end of a test is only sent together with the start of the next test, so the agents
+ * are called only once per test. Everything that is executed between the two tests (e.g. {@code @AfterAll} methods) is
+ * then attributed to the first test.
+ */
 public class TeamscaleAgentNotifier {
 
 	private static final Logger LOGGER = LoggerUtils.getLogger(TeamscaleAgentNotifier.class);
@@ -24,45 +40,205 @@ public class TeamscaleAgentNotifier {
 	 */
 	private final boolean partial;
 
+	/**
+	 * One single-threaded executor per agent (same order as {@link #testwiseCoverageAgentApis}) or <code>null</code>
+	 * if the agents are notified sequentially on the calling thread.
+	 */
+	private final List<ExecutorService> agentExecutors;
+
+	/**
+	 * Whether the end of a test is signaled without waiting for the agents' responses. Only has an effect in concurrent
+	 * mode.
+	 */
+	private final boolean asyncTestEnd;
+
+	/** Whether the end of a test is sent together with the start of the next test. */
+	private final boolean combineTestEvents;
+
+	/**
+	 * The test that ended but has not been reported to the agents yet if {@link #combineTestEvents} is set. Is
+	 * <code>null</code> if there is no such test.
+	 */
+	private PendingTestEnd pendingTestEnd;
+
+	/** Number of notifications that failed on one of the {@link #agentExecutors}. */
+	private final AtomicInteger failedNotifications = new AtomicInteger();
+
 	public TeamscaleAgentNotifier(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis, boolean partial) {
+		this(testwiseCoverageAgentApis, partial, false, false, false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param concurrent   Whether all agents should be notified in parallel.
+	 * @param asyncTestEnd Whether the end of a test should be signaled fire-and-forget. Implies concurrent mode.
+	 */
+	public TeamscaleAgentNotifier(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis, boolean partial,
+								  boolean concurrent, boolean asyncTestEnd) {
+		this(testwiseCoverageAgentApis, partial, concurrent, asyncTestEnd, false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param concurrent   Whether all agents should be notified in parallel.
+	 * @param asyncTestEnd      Whether the end of a test should be signaled fire-and-forget. Implies concurrent mode.
+	 * @param combineTestEvents Whether the end of a test should be sent together with the start of the next test.
+	 */
+	public TeamscaleAgentNotifier(List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis, boolean partial,
+								  boolean concurrent, boolean asyncTestEnd, boolean combineTestEvents) {
 		this.testwiseCoverageAgentApis = testwiseCoverageAgentApis;
 		this.partial = partial;
+		this.asyncTestEnd = asyncTestEnd;
+		this.combineTestEvents = combineTestEvents;
+		if (concurrent || asyncTestEnd) {
+			agentExecutors = new ArrayList<>();
+			for (int i = 0; i < testwiseCoverageAgentApis.size(); i++) {
+				String threadName = "Teamscale agent notifier " + i;
+				agentExecutors.add(Executors.newSingleThreadExecutor(runnable -> {
+					Thread thread = new Thread(runnable, threadName);
+					thread.setDaemon(true);
+					return thread;
+				}));
+			}
+		} else {
+			agentExecutors = null;
+		}
 	}
 
 	/** Reports the start of a test to the Teamscale JaCoCo agent. */
-	public void startTest(String testUniformPath) {
-		try {
-			for (ITestwiseCoverageAgentApi apiService : testwiseCoverageAgentApis) {
-				apiService.testStarted(UrlUtils.percentEncode(testUniformPath)).execute();
-			}
-		} catch (IOException e) {
-			LOGGER.log(Level.SEVERE, e, () -> "Error while calling service api.");
+	public synchronized void startTest(String testUniformPath) {
+		if (pendingTestEnd != null) {
+			PendingTestEnd testEnd = pendingTestEnd;
+			pendingTestEnd = null;
+			notifyAgents(apiService -> {
+				if (testEnd.testExecution == null) {
+					apiService.testFinishedAndNextStarted(UrlUtils.percentEncode(testEnd.testUniformPath),
+							UrlUtils.percentEncode(testUniformPath)).execute();
+				} else {
+					apiService.testFinishedAndNextStarted(UrlUtils.percentEncode(testEnd.testUniformPath),
+							UrlUtils.percentEncode(testUniformPath), testEnd.testExecution).execute();
+				}
+			}, true, "Error contacting test wise coverage agent.");
+			return;
 		}
+
+		notifyAgents(apiService -> apiService.testStarted(UrlUtils.percentEncode(testUniformPath)).execute(),
+				true, "Error while calling service api.");
 	}
 
 	/** Reports the end of a test to the Teamscale JaCoCo agent. */
-	public void endTest(String testUniformPath, TestExecution testExecution) {
-		try {
-			for (ITestwiseCoverageAgentApi apiService : testwiseCoverageAgentApis) {
-				if (testExecution == null) {
-					apiService.testFinished(UrlUtils.percentEncode(testUniformPath)).execute();
-				} else {
-					apiService.testFinished(UrlUtils.percentEncode(testUniformPath), testExecution).execute();
+	public synchronized void endTest(String testUniformPath, TestExecution testExecution) {
+		// tests running in parallel may end before the next one starts
+		sendPendingTestEnd();
+		if (combineTestEvents) {
+			pendingTestEnd = new PendingTestEnd(testUniformPath, testExecution);
+			return;
+		}
+		sendTestEnd(testUniformPath, testExecution);
+	}
+
+	/** Sends the {@link #pendingTestEnd} on its own if there is one. */
+	private void sendPendingTestEnd() {
+		if (pendingTestEnd != null) {
+			sendTestEnd(pendingTestEnd.testUniformPath, pendingTestEnd.testExecution);
+			pendingTestEnd = null;
+		}
+	}
+
+	private void sendTestEnd(String testUniformPath, TestExecution testExecution) {
+		notifyAgents(apiService -> {
+			if (testExecution == null) {
+				apiService.testFinished(UrlUtils.percentEncode(testUniformPath)).execute();
+			} else {
+				apiService.testFinished(UrlUtils.percentEncode(testUniformPath), testExecution).execute();
+			}
+		}, !asyncTestEnd, "Error contacting test wise coverage agent.");
+	}
+
+	/**
+	 * Reports the end of the test run to the Teamscale JaCoCo agent. Waits for all pending notifications before, so
+	 * failed asynchronous notifications are reported at the latest here.
+	 */
+	public synchronized void testRunEnded() {
+		sendPendingTestEnd();
+		notifyAgents(apiService -> apiService.testRunFinished(partial).execute(), true,
+				"Error contacting test wise coverage agent.");
+		if (agentExecutors == null) {
+			return;
+		}
+		agentExecutors.forEach(ExecutorService::shutdown);
+		if (failedNotifications.get() > 0) {
+			LOGGER.severe(() -> failedNotifications.get() + " notifications of the test wise coverage agents failed." +
+					" The coverage of the affected tests is probably incomplete. See the log for details.");
+		}
+	}
+
+	/**
+	 * Sends the given notification to all agents. In concurrent mode, waits for all agents to respond if
+	 * waitForCompletion is set.
+	 */
+	private void notifyAgents(AgentNotification notification, boolean waitForCompletion, String errorMessage) {
+		if (agentExecutors == null) {
+			try {
+				for (ITestwiseCoverageAgentApi apiService : testwiseCoverageAgentApis) {
+					notification.send(apiService);
 				}
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, e, () -> errorMessage);
+			}
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < testwiseCoverageAgentApis.size(); i++) {
+			ITestwiseCoverageAgentApi apiService = testwiseCoverageAgentApis.get(i);
+			futures.add(agentExecutors.get(i).submit(() -> {
+				try {
+					notification.send(apiService);
+				} catch (IOException | RuntimeException e) {
+					failedNotifications.incrementAndGet();
+					LOGGER.log(Level.SEVERE, e, () -> errorMessage);
+				}
+			}));
+		}
+		if (waitForCompletion) {
+			for (Future<?> future : futures) {
+				awaitCompletion(future);
 			}
-		} catch (IOException e) {
-			LOGGER.log(Level.SEVERE, e, () -> "Error contacting test wise coverage agent.");
 		}
 	}
 
-	/** Reports the end of the test run to the Teamscale JaCoCo agent. */
-	public void testRunEnded() {
+	/** Waits for the given notification to be sent. Failures are already logged by the notification itself. */
+	private static void awaitCompletion(Future<?> future) {
 		try {
-			for (ITestwiseCoverageAgentApi apiService : testwiseCoverageAgentApis) {
-				apiService.testRunFinished(partial).execute();
-			}
-		} catch (IOException e) {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
 			LOGGER.log(Level.SEVERE, e, () -> "Error contacting test wise coverage agent.");
 		}
 	}
+
+	/** The end of a test that has not been sent to the agents yet. */
+	private static class PendingTestEnd {
+
+		private final String testUniformPath;
+
+		private final TestExecution testExecution;
+
+		private PendingTestEnd(String testUniformPath, TestExecution testExecution) {
+			this.testUniformPath = testUniformPath;
+			this.testExecution = testExecution;
+		}
+	}
+
+	/** A single notification of an agent. */
+	@FunctionalInterface
+	private interface AgentNotification {
+
+		/** Sends the notification to the given agent. */
+		void send(ITestwiseCoverageAgentApi apiService) throws IOException;
+	}
 }
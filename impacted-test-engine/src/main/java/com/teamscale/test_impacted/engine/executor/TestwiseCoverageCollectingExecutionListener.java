@@ -15,10 +15,11 @@ import org.junit.platform.engine.reporting.ReportEntry;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import static com.teamscale.test_impacted.test_descriptor.TestDescriptorUtils.isTestRepresentative;
@@ -26,6 +27,12 @@ import static com.teamscale.test_impacted.test_descriptor.TestDescriptorUtils.is
 /**
  * An execution listener which delegates events to another {@link EngineExecutionListener} and notifies Teamscale agents
  * collecting test wise coverage.
+ * <p>
+ * Start times and results are tracked per test, so the recorded test executions stay correct if the delegate engine
+ * runs tests in parallel. The agents attribute the coverage recorded while several tests run to all of them, so the
+ * coverage of such tests is less precise, which is why
+ * {@link com.teamscale.test_impacted.engine.options.TestEngineOptionUtils} warns about parallel execution as long as
+ * agents are configured.
  */
 public class TestwiseCoverageCollectingExecutionListener implements EngineExecutionListener {
 
@@ -35,16 +42,16 @@ public class TestwiseCoverageCollectingExecutionListener implements EngineExecut
 	private final TeamscaleAgentNotifier teamscaleAgentNotifier;
 
 	/** List of tests that have been executed, skipped or failed. */
-	private final List<TestExecution> testExecutions = new ArrayList<>();
+	private final List<TestExecution> testExecutions = Collections.synchronizedList(new ArrayList<>());
 
-	/** Time when the current test execution started. */
-	private long executionStartTime;
+	/** Time when the execution of the currently running tests started. */
+	private final Map<UniqueId, Long> executionStartTimes = new ConcurrentHashMap<>();
 
 	private final ITestDescriptorResolver testDescriptorResolver;
 
 	private final EngineExecutionListener delegateEngineExecutionListener;
 
-	private final Map<UniqueId, List<TestExecutionResult>> testResultCache = new HashMap<>();
+	private final Map<UniqueId, List<TestExecutionResult>> testResultCache = new ConcurrentHashMap<>();
 
 	public TestwiseCoverageCollectingExecutionListener(TeamscaleAgentNotifier teamscaleAgentNotifier,
 													   ITestDescriptorResolver testDescriptorResolver,
@@ -78,7 +85,7 @@ public class TestwiseCoverageCollectingExecutionListener implements EngineExecut
 	public void executionStarted(TestDescriptor testDescriptor) {
 		if (isTestRepresentative(testDescriptor)) {
 			testDescriptorResolver.getUniformPath(testDescriptor).ifPresent(teamscaleAgentNotifier::startTest);
-			executionStartTime = System.currentTimeMillis();
+			executionStartTimes.put(testDescriptor.getUniqueId(), System.currentTimeMillis());
 		}
 		delegateEngineExecutionListener.executionStarted(testDescriptor);
 	}
@@ -99,7 +106,8 @@ public class TestwiseCoverageCollectingExecutionListener implements EngineExecut
 			teamscaleAgentNotifier.endTest(uniformPath.get(), testExecution);
 		} else if (testDescriptor.getParent().isPresent()) {
 			List<TestExecutionResult> testExecutionResults = testResultCache.computeIfAbsent(
-					testDescriptor.getParent().get().getUniqueId(), (key) -> new ArrayList<>());
+					testDescriptor.getParent().get().getUniqueId(),
+					(key) -> Collections.synchronizedList(new ArrayList<>()));
 			testExecutionResults.add(testExecutionResult);
 		}
 
@@ -111,7 +119,11 @@ public class TestwiseCoverageCollectingExecutionListener implements EngineExecut
 		List<TestExecutionResult> testExecutionResults = getTestExecutionResults(testDescriptor, testExecutionResult);
 
 		long executionEndTime = System.currentTimeMillis();
-		long duration = executionEndTime - executionStartTime;
+		Long executionStartTime = executionStartTimes.remove(testDescriptor.getUniqueId());
+		long duration = 0;
+		if (executionStartTime != null) {
+			duration = executionEndTime - executionStartTime;
+		}
 		StringBuilder message = new StringBuilder();
 		Status status = Status.SUCCESSFUL;
 		for (TestExecutionResult executionResult : testExecutionResults) {
@@ -2,6 +2,7 @@ package com.teamscale.test_impacted.engine.options;
 
 import com.teamscale.client.CommitDescriptor;
 import com.teamscale.client.StringUtils;
+import com.teamscale.test_impacted.commons.LoggerUtils;
 import org.junit.platform.engine.ConfigurationParameters;
 
 import java.util.Arrays;
@@ -9,10 +10,16 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.function.Function;
+import java.util.logging.Logger;
 
 /** Utility class for {@link TestEngineOptions}. */
 public class TestEngineOptionUtils {
 
+	private static final Logger LOGGER = LoggerUtils.getLogger(TestEngineOptionUtils.class);
+
+	/** The JUnit Jupiter configuration parameter that enables parallel test execution. */
+	private static final String JUPITER_PARALLEL_EXECUTION_PARAMETER = "junit.jupiter.execution.parallel.enabled";
+
 	/** Returns the {@link TestEngineOptions} configured in the {@link Properties}. */
 	public static TestEngineOptions getEngineOptions(ConfigurationParameters configurationParameters) {
 		PrefixingPropertyReader propertyReader = new PrefixingPropertyReader("teamscale.test.impacted.",
@@ -28,6 +35,9 @@ public class TestEngineOptionUtils {
 					.build();
 		}
 
+		List<String> agentUrls = propertyReader.getStringList("agentsUrls");
+		warnAboutParallelExecutionWithAgents(configurationParameters, agentUrls);
+
 		return TestEngineOptions.builder()
 				.serverOptions(serverOptions)
 				.partition(propertyReader.getString("partition"))
@@ -40,13 +50,32 @@ public class TestEngineOptionUtils {
 				.baseline(propertyReader.getString("baseline"))
 				.baselineRevision(propertyReader.getString("baselineRevision"))
 				.repository(propertyReader.getString("repository"))
-				.agentUrls(propertyReader.getStringList("agentsUrls"))
+				.agentUrls(agentUrls)
+				.notifyAgentsConcurrently(propertyReader.getBoolean("notifyAgentsConcurrently", false))
+				.asyncTestEndNotification(propertyReader.getBoolean("asyncTestEndNotification", false))
+				.combineTestEvents(propertyReader.getBoolean("combineTestEvents", false))
 				.includedTestEngineIds(propertyReader.getStringList("includedEngines"))
 				.excludedTestEngineIds(propertyReader.getStringList("excludedEngines"))
 				.reportDirectory(propertyReader.getString("reportDirectory"))
 				.build();
 	}
 
+	/**
+	 * Logs a warning if JUnit's parallel execution is enabled while agents collect testwise coverage. An agent
+	 * attributes the coverage recorded while several tests run to all of them, so the coverage of these tests is less
+	 * precise.
+	 */
+	private static void warnAboutParallelExecutionWithAgents(ConfigurationParameters configurationParameters,
+															 List<String> agentUrls) {
+		if (!agentUrls.isEmpty() && configurationParameters.getBoolean(JUPITER_PARALLEL_EXECUTION_PARAMETER)
+				.orElse(false)) {
+			LOGGER.warning(() -> "Tests are executed in parallel while agents collect testwise coverage. " +
+					"The agents attribute the coverage recorded while several tests run to all of them, so the " +
+					"coverage of a test may contain code executed by concurrently running tests. Disable " +
+					JUPITER_PARALLEL_EXECUTION_PARAMETER + " to get precise testwise coverage.");
+		}
+	}
+
 	/**
 	 * Throws an {@link AssertionError} if the given value is blank.
 	 */
@@ -24,8 +24,6 @@ import com.teamscale.test_impacted.engine.executor.NOPTestSorter;
 import com.teamscale.test_impacted.engine.executor.TeamscaleAgentNotifier;
 import com.teamscale.tia.client.ITestwiseCoverageAgentApi;
 
-import okhttp3.HttpUrl;
-
 /** Represents options for the {@link ImpactedTestEngine}. */
 public class TestEngineOptions {
 
@@ -75,6 +73,21 @@ public class TestEngineOptions {
 	/** The URLs (including port) at which the agents listen. May be empty but not null. */
 	private List<ITestwiseCoverageAgentApi> testwiseCoverageAgentApis = Collections.emptyList();
 
+	/** Whether all agents are notified in parallel about test start and end. Defaults to false. */
+	private boolean notifyAgentsConcurrently = false;
+
+	/**
+	 * Whether the end of a test is signaled to the agents without waiting for their response. Implies
+	 * {@link #notifyAgentsConcurrently}. Defaults to false.
+	 */
+	private boolean asyncTestEndNotification = false;
+
+	/**
+	 * Whether the end of a test is sent to the agents together with the start of the next test, which saves one
+	 * request per test. Defaults to false.
+	 */
+	private boolean combineTestEvents = false;
+
 	/** The test engine ids of all {@link TestEngine}s to use. If empty all available {@link TestEngine}s are used. */
 	private Set<String> includedTestEngineIds = Collections.emptySet();
 
@@ -132,7 +145,7 @@ public class TestEngineOptions {
 
 	private TeamscaleAgentNotifier createTeamscaleAgentNotifier() {
 		return new TeamscaleAgentNotifier(testwiseCoverageAgentApis,
-				runImpacted && !runAllTests);
+				runImpacted && !runAllTests, notifyAgentsConcurrently, asyncTestEndNotification, combineTestEvents);
 	}
 
 	/** Returns the builder for {@link TestEngineOptions}. */
@@ -218,12 +231,29 @@ public class TestEngineOptions {
 		/** @see #testwiseCoverageAgentApis */
 		public Builder agentUrls(List<String> agentUrls) {
 			testEngineOptions.testwiseCoverageAgentApis = agentUrls.stream()
-					.map(HttpUrl::parse)
 					.map(ITestwiseCoverageAgentApi::createService)
 					.collect(Collectors.toList());
 			return this;
 		}
 
+		/** @see #notifyAgentsConcurrently */
+		public Builder notifyAgentsConcurrently(boolean notifyAgentsConcurrently) {
+			testEngineOptions.notifyAgentsConcurrently = notifyAgentsConcurrently;
+			return this;
+		}
+
+		/** @see #asyncTestEndNotification */
+		public Builder asyncTestEndNotification(boolean asyncTestEndNotification) {
+			testEngineOptions.asyncTestEndNotification = asyncTestEndNotification;
+			return this;
+		}
+
+		/** @see #combineTestEvents */
+		public Builder combineTestEvents(boolean combineTestEvents) {
+			testEngineOptions.combineTestEvents = combineTestEvents;
+			return this;
+		}
+
 		/** @see #includedTestEngineIds */
 		public Builder includedTestEngineIds(List<String> testEngineIds) {
 			testEngineOptions.includedTestEngineIds = new HashSet<>(testEngineIds);
@@ -138,7 +138,7 @@ public class TestDescriptorUtils {
 
 					ClusteredTestDetails testDetails = new ClusteredTestDetails(uniformPath.get(), source, null,
 							clusterId.get(), partition);
-					availableTests.add(testDescriptor.getUniqueId(), testDetails);
+					availableTests.add(testDescriptor, testDetails);
 				});
 
 
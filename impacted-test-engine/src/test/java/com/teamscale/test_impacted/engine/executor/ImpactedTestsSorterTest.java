@@ -0,0 +1,102 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.client.PrioritizableTest;
+import com.teamscale.client.PrioritizableTestCluster;
+import com.teamscale.test_impacted.test_descriptor.JUnitJupiterTestDescriptorResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.UniqueId;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.testCase;
+import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.testContainer;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Tests for {@link ImpactedTestsSorter}. */
+class ImpactedTestsSorterTest {
+
+	private final UniqueId rootId = UniqueId.forEngine("junit-jupiter");
+
+	private final ImpactedTestsProvider impactedTestsProvider = mock(ImpactedTestsProvider.class);
+
+	@Test
+	void testSelectsAndSortsImpactedTests() {
+		TestDescriptor root = testContainer(rootId,
+				testClass("FirstTestClass", "first()", "second()", "third()"),
+				testClass("SecondTestClass", "first()", "second()"));
+		mockImpactedTests(Arrays.asList("SecondTestClass/second()", "FirstTestClass/third()",
+				"FirstTestClass/first()"));
+
+		new ImpactedTestsSorter(impactedTestsProvider).selectAndSort(root);
+
+		assertThat(getTestNames(root)).containsExactly("SecondTestClass/second()", "FirstTestClass/third()",
+				"FirstTestClass/first()");
+	}
+
+	/**
+	 * Benchmark for the selection on a synthetic tree with 100k tests. Looking up every test in the whole tree would
+	 * take several minutes here.
+	 */
+	@Test
+	void testSelectionOfManyTestsIsFast() {
+		int classCount = 1000;
+		int testsPerClass = 100;
+		List<TestDescriptor> testClasses = new ArrayList<>();
+		List<String> impactedTests = new ArrayList<>();
+		for (int i = 0; i < classCount; i++) {
+			String[] testNames = new String[testsPerClass];
+			for (int j = 0; j < testsPerClass; j++) {
+				testNames[j] = "test" + j + "()";
+				if (j % 2 == 0) {
+					impactedTests.add("TestClass" + i + "/" + testNames[j]);
+				}
+			}
+			testClasses.add(testClass("TestClass" + i, testNames));
+		}
+		TestDescriptor root = testContainer(rootId, testClasses.toArray(new TestDescriptor[0]));
+		Collections.reverse(impactedTests);
+		mockImpactedTests(impactedTests);
+
+		assertTimeoutPreemptively(Duration.ofSeconds(30),
+				() -> new ImpactedTestsSorter(impactedTestsProvider).selectAndSort(root));
+
+		assertThat(getTestNames(root)).containsExactlyElementsOf(impactedTests);
+	}
+
+	private TestDescriptor testClass(String className, String... testNames) {
+		UniqueId classId = rootId.append(JUnitJupiterTestDescriptorResolver.CLASS_SEGMENT_TYPE, className);
+		TestDescriptor[] testCases = Arrays.stream(testNames)
+				.map(testName -> testCase(classId.append(JUnitJupiterTestDescriptorResolver.METHOD_SEGMENT_TYPE,
+						testName))).toArray(TestDescriptor[]::new);
+		return testContainer(classId, testCases);
+	}
+
+	private void mockImpactedTests(List<String> uniformPaths) {
+		List<PrioritizableTest> tests = uniformPaths.stream().map(PrioritizableTest::new)
+				.collect(Collectors.toList());
+		when(impactedTestsProvider.getImpactedTestsFromTeamscale(any()))
+				.thenReturn(Collections.singletonList(new PrioritizableTestCluster("cluster", tests)));
+	}
+
+	/** Returns the uniform paths of all remaining tests in execution order. */
+	private static List<String> getTestNames(TestDescriptor root) {
+		List<String> testNames = new ArrayList<>();
+		for (TestDescriptor testClass : root.getChildren()) {
+			String className = testClass.getUniqueId().getLastSegment().getValue();
+			for (TestDescriptor testCase : testClass.getChildren()) {
+				testNames.add(className + "/" + testCase.getUniqueId().getLastSegment().getValue());
+			}
+		}
+		return testNames;
+	}
+}
@@ -0,0 +1,141 @@
+package com.teamscale.test_impacted.engine.executor;
+
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.tia.client.ITestwiseCoverageAgentApi;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import retrofit2.Call;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/** Tests for {@link TeamscaleAgentNotifier}. */
+class TeamscaleAgentNotifierTest {
+
+	private final ITestwiseCoverageAgentApi firstAgent = mockAgent();
+
+	private final ITestwiseCoverageAgentApi secondAgent = mockAgent();
+
+	@Test
+	void testAsyncNotificationsPreserveOrderPerAgent() throws IOException {
+		TeamscaleAgentNotifier notifier = new TeamscaleAgentNotifier(Arrays.asList(firstAgent, secondAgent), false,
+				true, true);
+
+		notifier.startTest("MyClass/firstTest");
+		notifier.endTest("MyClass/firstTest", null);
+		notifier.startTest("MyClass/secondTest");
+		notifier.endTest("MyClass/secondTest", null);
+		notifier.testRunEnded();
+
+		for (ITestwiseCoverageAgentApi agent : Arrays.asList(firstAgent, secondAgent)) {
+			InOrder inOrder = inOrder(agent);
+			inOrder.verify(agent).testStarted("MyClass%2FfirstTest");
+			inOrder.verify(agent).testFinished("MyClass%2FfirstTest");
+			inOrder.verify(agent).testStarted("MyClass%2FsecondTest");
+			inOrder.verify(agent).testFinished("MyClass%2FsecondTest");
+			inOrder.verify(agent).testRunFinished(false);
+		}
+	}
+
+	@Test
+	void testFailingAgentDoesNotBlockOtherAgents() throws IOException {
+		Call<ResponseBody> failingCall = mockCall();
+		when(failingCall.execute()).thenThrow(new IOException("Connection refused"));
+		when(firstAgent.testStarted(anyString())).thenReturn(failingCall);
+		TeamscaleAgentNotifier notifier = new TeamscaleAgentNotifier(Arrays.asList(firstAgent, secondAgent), true,
+				true, false);
+
+		List<LogRecord> logRecords = new ArrayList<>();
+		Handler handler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				logRecords.add(record);
+			}
+
+			@Override
+			public void flush() {
+				// nothing to do
+			}
+
+			@Override
+			public void close() {
+				// nothing to do
+			}
+		};
+		Logger logger = Logger.getLogger(TeamscaleAgentNotifier.class.getName());
+		logger.addHandler(handler);
+		try {
+			notifier.startTest("MyClass/test");
+			notifier.endTest("MyClass/test", null);
+			notifier.testRunEnded();
+		} finally {
+			logger.removeHandler(handler);
+		}
+
+		for (ITestwiseCoverageAgentApi agent : Arrays.asList(firstAgent, secondAgent)) {
+			InOrder inOrder = inOrder(agent);
+			inOrder.verify(agent).testStarted("MyClass%2Ftest");
+			inOrder.verify(agent).testFinished("MyClass%2Ftest");
+			inOrder.verify(agent).testRunFinished(true);
+		}
+		assertThat(logRecords).filteredOn(record -> record.getLevel() == Level.SEVERE)
+				.extracting(LogRecord::getMessage)
+				.containsExactly("Error while calling service api.",
+						"1 notifications of the test wise coverage agents failed. The coverage of the affected tests"
+								+ " is probably incomplete. See the log for details.");
+	}
+
+	@Test
+	void testCombinedTestEvents() throws IOException {
+		TeamscaleAgentNotifier notifier = new TeamscaleAgentNotifier(Collections.singletonList(firstAgent), false,
+				false, false, true);
+		TestExecution testExecution = new TestExecution("MyClass/firstTest", 0L, ETestExecutionResult.PASSED);
+
+		notifier.startTest("MyClass/firstTest");
+		notifier.endTest("MyClass/firstTest", testExecution);
+		notifier.startTest("MyClass/secondTest");
+		notifier.endTest("MyClass/secondTest", null);
+		notifier.testRunEnded();
+
+		InOrder inOrder = inOrder(firstAgent);
+		inOrder.verify(firstAgent).testStarted("MyClass%2FfirstTest");
+		inOrder.verify(firstAgent)
+				.testFinishedAndNextStarted("MyClass%2FfirstTest", "MyClass%2FsecondTest", testExecution);
+		inOrder.verify(firstAgent).testFinished("MyClass%2FsecondTest");
+		inOrder.verify(firstAgent).testRunFinished(false);
+		verifyNoMoreInteractions(firstAgent);
+	}
+
+	private static ITestwiseCoverageAgentApi mockAgent() {
+		ITestwiseCoverageAgentApi agent = mock(ITestwiseCoverageAgentApi.class);
+		Call<ResponseBody> call = mockCall();
+		when(agent.testStarted(anyString())).thenReturn(call);
+		when(agent.testFinished(anyString())).thenReturn(call);
+		when(agent.testFinished(anyString(), any())).thenReturn(call);
+		when(agent.testFinishedAndNextStarted(anyString(), anyString(), any())).thenReturn(call);
+		when(agent.testRunFinished(any())).thenReturn(call);
+		return agent;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Call<ResponseBody> mockCall() {
+		return mock(Call.class);
+	}
+}
@@ -14,6 +14,7 @@ import java.util.Optional;
 import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.testCase;
 import static com.teamscale.test_impacted.engine.executor.SimpleTestDescriptor.testContainer;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.platform.engine.TestExecutionResult.failed;
 import static org.junit.platform.engine.TestExecutionResult.successful;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -127,4 +128,37 @@ class TestwiseCoverageCollectingExecutionListenerTest {
 		assertThat(testExecutions)
 				.allMatch(testExecution -> testExecution.getResult().equals(ETestExecutionResult.SKIPPED));
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testInterleavedExecutionOfTests() {
+		UniqueId testClassId = rootId.append("TEST_CONTAINER", "MyClass");
+		TestDescriptor testCase1 = testCase(testClassId.append("TEST_CASE", "testCase1()"));
+		TestDescriptor testCase2 = testCase(testClassId.append("TEST_CASE", "testCase2()"));
+		testContainer(rootId, testContainer(testClassId, testCase1, testCase2));
+
+		when(resolver.getUniformPath(testCase1)).thenReturn(Optional.of("MyClass/testCase1()"));
+		when(resolver.getUniformPath(testCase2)).thenReturn(Optional.of("MyClass/testCase2()"));
+
+		// Both tests run concurrently, so the second one starts before the first one ends.
+		executionListener.executionStarted(testCase1);
+		executionListener.executionStarted(testCase2);
+		executionListener.executionFinished(testCase1, successful());
+		executionListener.executionFinished(testCase2, failed(new AssertionError()));
+
+		verify(mockApi).startTest("MyClass/testCase1()");
+		verify(mockApi).startTest("MyClass/testCase2()");
+		verify(mockApi).endTest(eq("MyClass/testCase1()"), any());
+		verify(mockApi).endTest(eq("MyClass/testCase2()"), any());
+
+		List<TestExecution> testExecutions = executionListener.getTestExecutions();
+		assertThat(testExecutions).hasSize(2);
+		assertThat(testExecutions).anySatisfy(testExecution -> {
+			assertThat(testExecution.getUniformPath()).isEqualTo("MyClass/testCase1()");
+			assertThat(testExecution.getResult()).isEqualTo(ETestExecutionResult.PASSED);
+		});
+		assertThat(testExecutions).anySatisfy(testExecution -> {
+			assertThat(testExecution.getUniformPath()).isEqualTo("MyClass/testCase2()");
+			assertThat(testExecution.getResult()).isEqualTo(ETestExecutionResult.FAILURE);
+		});
+	}
+}
@@ -0,0 +1,91 @@
+package com.teamscale.test_impacted.engine.options;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.engine.ConfigurationParameters;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Tests for {@link TestEngineOptionUtils}. */
+class TestEngineOptionUtilsTest {
+
+	@TempDir
+	File reportDirectory;
+
+	private final Map<String, String> parameters = new HashMap<>();
+
+	@Test
+	void testParallelExecutionWithAgentsIsAllowed() {
+		parameters.put("teamscale.test.impacted.agentsUrls", "http://localhost:8123");
+		parameters.put("junit.jupiter.execution.parallel.enabled", "true");
+
+		List<LogRecord> logRecords = new ArrayList<>();
+		Handler handler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				logRecords.add(record);
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		Logger logger = Logger.getLogger(TestEngineOptionUtils.class.getName());
+		logger.addHandler(handler);
+		try {
+			assertThat(TestEngineOptionUtils.getEngineOptions(createConfigurationParameters())).isNotNull();
+		} finally {
+			logger.removeHandler(handler);
+		}
+
+		assertThat(logRecords).hasSize(1);
+		assertThat(logRecords.get(0).getLevel()).isEqualTo(Level.WARNING);
+		assertThat(logRecords.get(0).getMessage()).contains("junit.jupiter.execution.parallel.enabled");
+	}
+
+	@Test
+	void testParallelExecutionWithoutAgentsIsAllowed() {
+		parameters.put("junit.jupiter.execution.parallel.enabled", "true");
+
+		assertThat(TestEngineOptionUtils.getEngineOptions(createConfigurationParameters())).isNotNull();
+	}
+
+	@Test
+	void testSequentialExecutionWithAgentsIsAllowed() {
+		parameters.put("teamscale.test.impacted.agentsUrls", "http://localhost:8123");
+
+		assertThat(TestEngineOptionUtils.getEngineOptions(createConfigurationParameters())).isNotNull();
+	}
+
+	/** Creates configuration parameters that run all tests without a Teamscale server. */
+	private ConfigurationParameters createConfigurationParameters() {
+		parameters.put("teamscale.test.impacted.runImpacted", "false");
+		parameters.put("teamscale.test.impacted.endRevision", "abcd1337");
+		parameters.put("teamscale.test.impacted.reportDirectory", reportDirectory.getAbsolutePath());
+
+		ConfigurationParameters configurationParameters = mock(ConfigurationParameters.class);
+		when(configurationParameters.get(anyString()))
+				.thenAnswer(invocation -> Optional.ofNullable(parameters.get(invocation.<String>getArgument(0))));
+		when(configurationParameters.getBoolean(anyString())).thenAnswer(invocation -> Optional
+				.ofNullable(parameters.get(invocation.<String>getArgument(0))).map(Boolean::valueOf));
+		return configurationParameters;
+	}
+}
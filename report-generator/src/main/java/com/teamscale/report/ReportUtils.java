@@ -1,18 +1,22 @@
 package com.teamscale.report;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.teamscale.client.FileSystemUtils;
 import com.teamscale.client.JsonUtils;
 import com.teamscale.client.TestDetails;
 import com.teamscale.report.testwise.ETestArtifactFormat;
+import com.teamscale.report.testwise.TestwiseCoverageReportExpander;
 import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.report.testwise.model.TestwiseCoverageReport;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 /** Utilities for generating reports. */
 public class ReportUtils {
@@ -47,18 +51,76 @@ public class ReportUtils {
 		JsonUtils.serializeToFile(reportFile, report);
 	}
 
-	/** Recursively lists all files in the given directory that match the specified extension. */
+	/**
+	 * Returns the given testwise coverage reports in the classic, uncompressed format that Teamscale accepts.
+	 * Compressed reports and reports with deduplicated coverage are expanded into uncompressed files in the given
+	 * directory. Their names are prefixed with their index in the given list, since reports of different directories
+	 * may have the same name. All other files are returned as they are, including files that are not JSON.
+	 */
+	public static List<File> prepareTestwiseCoverageReportsForUpload(List<File> reports,
+																	 File outputDirectory) throws IOException {
+		List<File> preparedReports = new ArrayList<>();
+		for (int i = 0; i < reports.size(); i++) {
+			File report = reports.get(i);
+			String name = report.getName();
+			boolean compressed = name.toLowerCase().endsWith(".json.gz");
+			if (!compressed && (!FileSystemUtils.getFileExtension(report).equalsIgnoreCase("json") ||
+					!TestwiseCoverageReportExpander.isDeduplicated(report))) {
+				preparedReports.add(report);
+				continue;
+			}
+			if (compressed) {
+				name = name.substring(0, name.length() - ".gz".length());
+			}
+			File preparedReport = new File(outputDirectory, i + "-" + name);
+			if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+				throw new IOException("Failed to create directory " + outputDirectory.getAbsolutePath());
+			}
+			TestwiseCoverageReportExpander.expand(report, preparedReport);
+			preparedReports.add(preparedReport);
+		}
+		return preparedReports;
+	}
+
+	/**
+	 * Reads the JSON arrays of all files of the given artifact type into one list. Prefer
+	 * {@link #streamObjects(ETestArtifactFormat, Class, List, Consumer)} for large files.
+	 */
 	public static <T> List<T> readObjects(ETestArtifactFormat format, Class<T[]> clazz,
 										  List<File> directoriesOrFiles) throws IOException {
-		List<File> files = listFiles(format, directoriesOrFiles);
-		ArrayList<T> result = new ArrayList<>();
-		for (File file : files) {
-			T[] t = JsonUtils.deserializeFile(file, clazz);
-			if (t != null) {
-				result.addAll(Arrays.asList(t));
+		@SuppressWarnings("unchecked") Class<T> elementClass = (Class<T>) clazz.getComponentType();
+		List<T> result = new ArrayList<>();
+		streamObjects(format, elementClass, directoriesOrFiles, result::add);
+		return result;
+	}
+
+	/**
+	 * Reads the JSON arrays of all files of the given artifact type one element after the other and passes the
+	 * elements to the given consumer. Neither the files nor the arrays are ever held in memory as a whole, which matters
+	 * for test executions of hundreds of thousands of tests. Files that only contain <code>null</code> are skipped.
+	 *
+	 * @return The number of elements that were read.
+	 */
+	public static <T> int streamObjects(ETestArtifactFormat format, Class<T> elementClass,
+										List<File> directoriesOrFiles, Consumer<? super T> consumer) throws IOException {
+		int count = 0;
+		JsonFactory jsonFactory = JsonUtils.createFactory();
+		for (File file : listFiles(format, directoriesOrFiles)) {
+			try (JsonParser parser = jsonFactory.createParser(file)) {
+				JsonToken token = parser.nextToken();
+				if (token == JsonToken.VALUE_NULL) {
+					continue;
+				}
+				if (token != JsonToken.START_ARRAY) {
+					throw new IOException("Expected a JSON array in " + file + " but found " + token);
+				}
+				while (parser.nextToken() != JsonToken.END_ARRAY) {
+					consumer.accept(parser.readValueAs(elementClass));
+					count++;
+				}
 			}
 		}
-		return result;
+		return count;
 	}
 
 	/** Recursively lists all files of the given artifact type. */
@@ -0,0 +1,149 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merges the execution data of many *.exec files, e.g. one per pod of a cluster, into a single {@link Dump}.
+ * <p>
+ * The files are loaded in parallel: every thread merges the files it takes from the shared list into its own shard,
+ * and the shards are merged by class ID at the end, which combines the probes of the same class with OR. Execution data
+ * of classes that are excluded by the {@link ClasspathWildcardIncludeFilter} is dropped while reading, since it would
+ * be ignored by the report generators anyway. So the memory usage depends on the number of threads and included
+ * classes, but not on the number of files.
+ */
+public class ExecutionDataMerger {
+
+	/** Decides which classes are kept, or <code>null</code> to keep all classes. */
+	private final ClasspathWildcardIncludeFilter locationIncludeFilter;
+
+	/** The maximum number of files that are loaded at the same time. */
+	private final int threadCount;
+
+	/** Constructor. */
+	public ExecutionDataMerger(ClasspathWildcardIncludeFilter locationIncludeFilter, int threadCount) {
+		this.locationIncludeFilter = locationIncludeFilter;
+		this.threadCount = threadCount;
+	}
+
+	/** Loads and merges the given *.exec files. The session info of the dump spans all of their sessions. */
+	public Dump merge(List<File> executionDataFiles) throws IOException {
+		ExecutionDataStore executionDataStore = new ExecutionDataStore();
+		SessionInfoStore sessionInfoStore = new SessionInfoStore();
+		for (Shard shard : loadShards(executionDataFiles)) {
+			for (ExecutionData executionData : shard.executionDataStore.getContents()) {
+				executionDataStore.put(executionData);
+			}
+			for (SessionInfo sessionInfo : shard.sessionInfoStore.getInfos()) {
+				sessionInfoStore.visitSessionInfo(sessionInfo);
+			}
+		}
+		return new Dump(sessionInfoStore.getMerged("merged"), executionDataStore);
+	}
+
+	/** Loads the given files into one shard per thread. */
+	private List<Shard> loadShards(List<File> executionDataFiles) throws IOException {
+		int shardCount = Math.max(1, Math.min(threadCount, executionDataFiles.size()));
+		if (shardCount == 1) {
+			Shard shard = new Shard();
+			for (File executionDataFile : executionDataFiles) {
+				shard.load(executionDataFile);
+			}
+			return Collections.singletonList(shard);
+		}
+
+		AtomicInteger nextFileIndex = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(shardCount);
+		try {
+			List<Future<Shard>> futures = new ArrayList<>();
+			for (int i = 0; i < shardCount; i++) {
+				futures.add(executor.submit(() -> {
+					Shard shard = new Shard();
+					int fileIndex;
+					while ((fileIndex = nextFileIndex.getAndIncrement()) < executionDataFiles.size()) {
+						shard.load(executionDataFiles.get(fileIndex));
+					}
+					return shard;
+				}));
+			}
+			List<Shard> shards = new ArrayList<>();
+			for (Future<Shard> future : futures) {
+				shards.add(getShard(future));
+			}
+			return shards;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** Waits for the given shard to be loaded and rethrows its exceptions. */
+	private static Shard getShard(Future<Shard> shard) throws IOException {
+		try {
+			return shard.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading the execution data.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException("Loading the execution data failed.", e.getCause());
+		}
+	}
+
+	/** The execution data that is merged by one thread. */
+	private class Shard {
+
+		private final ExecutionDataStore executionDataStore = new ExecutionDataStore();
+
+		private final SessionInfoStore sessionInfoStore = new SessionInfoStore();
+
+		/** Caches whether a class is included, since the same classes occur in every file. */
+		private final Map<String, Boolean> isIncludedByClassName = new HashMap<>();
+
+		/** Loads the given file into this shard. */
+		private void load(File executionDataFile) throws IOException {
+			try (InputStream input = new BufferedInputStream(new FileInputStream(executionDataFile))) {
+				ExecutionDataReader reader = new ExecutionDataReader(input);
+				reader.setSessionInfoVisitor(sessionInfoStore);
+				reader.setExecutionDataVisitor(executionData -> {
+					if (isIncluded(executionData.getName())) {
+						executionDataStore.put(executionData);
+					}
+				});
+				reader.read();
+			}
+		}
+
+		private boolean isIncluded(String className) {
+			if (locationIncludeFilter == null) {
+				return true;
+			}
+			return isIncludedByClassName.computeIfAbsent(className, locationIncludeFilter::isIncluded);
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.jacoco.dump.Dump;
+
+import java.io.File;
+import java.io.IOException;
+
+/** Converts binary execution data into a coverage report that can be uploaded to Teamscale. */
+public interface ICoverageReportGenerator {
+
+	/**
+	 * Creates the report and writes it to a file.
+	 *
+	 * @return The file object of for the converted report
+	 * @throws EmptyReportException if the report does not contain any (covered) lines.
+	 */
+	CoverageFile convert(Dump dump, File filePath) throws IOException, EmptyReportException;
+}
@@ -0,0 +1,182 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.testwise.jacoco.cache.AnalyzerCache;
+import com.teamscale.report.testwise.jacoco.cache.ClassCoverageLookup;
+import com.teamscale.report.testwise.jacoco.cache.CoverageGenerationException;
+import com.teamscale.report.testwise.jacoco.cache.ProbesCache;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import com.teamscale.report.util.SortedIntList;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.report.internal.xml.ReportElement;
+import org.jacoco.report.internal.xml.XMLElement;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Creates an XML report from binary execution data that only contains line coverage, which is all that Teamscale
+ * needs.
+ * <p>
+ * In contrast to {@link JaCoCoXmlReportGenerator}, this does not build JaCoCo's full coverage tree with methods,
+ * branches and complexity for every dump. Instead, the class files are analyzed once into a {@link ProbesCache}, which
+ * maps the probes of each class directly to lines, just like for testwise coverage. Subsequent dumps only analyze
+ * class files that have not been seen before.
+ * <p>
+ * The report uses the JaCoCo XML format, but only contains <code>line</code> elements per source file. Since the
+ * number of instructions per line is unknown, every line counts as one missed or one covered instruction. Unlike
+ * JaCoCo, the lines of compiler-generated code are not filtered, so e.g. the lines of synthetic methods are reported
+ * like in testwise coverage.
+ */
+public class JaCoCoLineCoverageReportGenerator implements ICoverageReportGenerator {
+
+	/** The name of the report, which is the same as in the reports of {@link JaCoCoXmlReportGenerator}. */
+	private static final String REPORT_NAME = "dummybundle";
+
+	/** The logger. */
+	private final ILogger logger;
+
+	/** Directories and zip files that contain class files. */
+	private final List<File> codeDirectoriesOrArchives;
+
+	/** Include filter to apply to all locations during class file traversal. */
+	private final ClasspathWildcardIncludeFilter locationIncludeFilter;
+
+	/** Whether to remove uncovered classes from the report. */
+	private final boolean ignoreUncoveredClasses;
+
+	/** The lookups from probes to lines of all analyzed classes. */
+	private final ProbesCache probesCache;
+
+	public JaCoCoLineCoverageReportGenerator(List<File> codeDirectoriesOrArchives,
+											 ClasspathWildcardIncludeFilter locationIncludeFilter,
+											 EDuplicateClassFileBehavior duplicateClassFileBehavior,
+											 boolean ignoreUncoveredClasses, ILogger logger) {
+		this.codeDirectoriesOrArchives = codeDirectoriesOrArchives;
+		this.locationIncludeFilter = locationIncludeFilter;
+		this.ignoreUncoveredClasses = ignoreUncoveredClasses;
+		this.logger = logger;
+		this.probesCache = new ProbesCache(logger, duplicateClassFileBehavior);
+	}
+
+	@Override
+	public synchronized CoverageFile convert(Dump dump, File filePath) throws IOException, EmptyReportException {
+		analyzeClassFiles();
+		Map<String, Map<String, SourceFileLines>> linesByPackage = collectLines(dump.store);
+		checkForEmptyReport(linesByPackage);
+
+		CoverageFile coverageFile = new CoverageFile(filePath);
+		try (OutputStream outputStream = coverageFile.getOutputStream()) {
+			writeReport(outputStream, dump, linesByPackage);
+		}
+		return coverageFile;
+	}
+
+	/** Adds all class files that have not been analyzed yet to the {@link #probesCache}. */
+	private void analyzeClassFiles() throws IOException {
+		AnalyzerCache analyzer = new AnalyzerCache(probesCache, locationIncludeFilter, logger);
+		for (File file : codeDirectoriesOrArchives) {
+			analyzer.analyzeAll(file);
+		}
+	}
+
+	/** Maps the probes of all analyzed classes to lines, grouped by package and source file, both sorted by name. */
+	private Map<String, Map<String, SourceFileLines>> collectLines(ExecutionDataStore store) throws IOException {
+		for (ExecutionData executionData : store.getContents()) {
+			probesCache.isKnownClass(executionData, locationIncludeFilter);
+		}
+		probesCache.flushLogger();
+
+		Map<String, Map<String, SourceFileLines>> linesByPackage = new TreeMap<>();
+		for (Map.Entry<Long, ClassCoverageLookup> entry : probesCache.getClassCoverageLookups().entrySet()) {
+			ClassCoverageLookup classCoverageLookup = entry.getValue();
+			ExecutionData executionData = store.get(entry.getKey());
+			boolean hasHits = executionData != null && executionData.hasHits();
+			if (classCoverageLookup.getSourceFileName() == null || (ignoreUncoveredClasses && !hasHits)) {
+				continue;
+			}
+
+			SourceFileLines lines = linesByPackage
+					.computeIfAbsent(classCoverageLookup.getPackageName(), packageName -> new TreeMap<>())
+					.computeIfAbsent(classCoverageLookup.getSourceFileName(), sourceFileName -> new SourceFileLines());
+			lines.coverableLines.addAll(classCoverageLookup.getCoverableLines());
+			if (hasHits) {
+				try {
+					classCoverageLookup.addCoveredLines(executionData.getProbes(), lines.coveredLines, logger);
+				} catch (CoverageGenerationException e) {
+					throw new IOException(e);
+				}
+			}
+		}
+		return linesByPackage;
+	}
+
+	private static void checkForEmptyReport(
+			Map<String, Map<String, SourceFileLines>> linesByPackage) throws EmptyReportException {
+		boolean hasCoverableLines = false;
+		for (Map<String, SourceFileLines> sourceFiles : linesByPackage.values()) {
+			for (SourceFileLines lines : sourceFiles.values()) {
+				if (!lines.coveredLines.isEmpty()) {
+					return;
+				}
+				hasCoverableLines |= !lines.coverableLines.isEmpty();
+			}
+		}
+		if (!hasCoverableLines) {
+			throw new EmptyReportException("The generated coverage report is empty. " +
+					JaCoCoXmlReportGenerator.MOST_LIKELY_CAUSE_MESSAGE);
+		}
+		throw new EmptyReportException("The generated coverage report does not contain any covered source code lines. " +
+				JaCoCoXmlReportGenerator.MOST_LIKELY_CAUSE_MESSAGE);
+	}
+
+	private static void writeReport(OutputStream outputStream, Dump dump,
+									Map<String, Map<String, SourceFileLines>> linesByPackage) throws IOException {
+		ReportElement report = new ReportElement(REPORT_NAME, outputStream, "UTF-8");
+		report.sessioninfo(dump.info);
+		for (Map.Entry<String, Map<String, SourceFileLines>> packageEntry : linesByPackage.entrySet()) {
+			ReportElement packageElement = report.packageElement(packageEntry.getKey());
+			for (Map.Entry<String, SourceFileLines> sourceFileEntry : packageEntry.getValue().entrySet()) {
+				ReportElement sourceFileElement = packageElement.sourcefile(sourceFileEntry.getKey());
+				sourceFileEntry.getValue().write(sourceFileElement);
+			}
+		}
+		report.close();
+	}
+
+	/** The coverable and covered lines of a source file, which may contain several classes. */
+	private static class SourceFileLines {
+
+		/** All lines that contain instructions. */
+		private final SortedIntList coverableLines = new SortedIntList();
+
+		/** The lines with at least one covered instruction. */
+		private final SortedIntList coveredLines = new SortedIntList();
+
+		/** Writes a <code>line</code> element for each coverable line in ascending order. */
+		private void write(ReportElement sourceFileElement) throws IOException {
+			int coveredIndex = 0;
+			for (int i = 0; i < coverableLines.size(); i++) {
+				int line = coverableLines.get(i);
+				while (coveredIndex < coveredLines.size() && coveredLines.get(coveredIndex) < line) {
+					coveredIndex++;
+				}
+				boolean covered = coveredIndex < coveredLines.size() && coveredLines.get(coveredIndex) == line;
+
+				XMLElement lineElement = sourceFileElement.element("line");
+				lineElement.attr("nr", line);
+				lineElement.attr("mi", covered ? 0 : 1);
+				lineElement.attr("ci", covered ? 1 : 0);
+				lineElement.attr("mb", 0);
+				lineElement.attr("cb", 0);
+			}
+		}
+	}
+}
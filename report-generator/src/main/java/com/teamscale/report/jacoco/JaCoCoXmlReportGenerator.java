@@ -4,21 +4,50 @@ import com.teamscale.report.EDuplicateClassFileBehavior;
 import com.teamscale.report.jacoco.dump.Dump;
 import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.ILogger;
-import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.CoverageNodeImpl;
 import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageNode;
+import org.jacoco.core.analysis.ILine;
+import org.jacoco.core.analysis.IPackageCoverage;
+import org.jacoco.core.analysis.ISourceFileCoverage;
 import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.data.SessionInfo;
-import org.jacoco.report.IReportVisitor;
-import org.jacoco.report.xml.XMLFormatter;
+import org.jacoco.core.internal.analysis.PackageCoverageImpl;
+import org.jacoco.report.internal.xml.ReportElement;
+import org.jacoco.report.internal.xml.XMLCoverageWriter;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates an XML report from binary execution data.
+ * <p>
+ * The report is identical to the one that JaCoCo's {@link org.jacoco.report.xml.XMLFormatter} writes for the bundle of
+ * a {@link TeamscaleCoverageBuilder}. But instead of building the coverage of all classes in memory first, the class
+ * files are traversed once to determine the packages and source files of the report and then analyzed in batches of
+ * packages, which are written to the report right away. This way, the memory needed for the coverage is bounded by
+ * the batch size or the size of the largest package, respectively. Since each batch only reads the class files in the
+ * directories of its packages, the batches together analyze every class file about once.
+ */
+public class JaCoCoXmlReportGenerator implements ICoverageReportGenerator {
+
+	/** The name of the report. */
+	private static final String REPORT_NAME = "dummybundle";
 
-/** Creates an XML report from binary execution data. */
-public class JaCoCoXmlReportGenerator {
+	/**
+	 * The default maximum number of classes whose coverage is kept in memory at once. Each batch needs one traversal of
+	 * the entries of the archives that contain its classes, but only inflates and analyzes its own class files.
+	 */
+	private static final int DEFAULT_MAX_CLASSES_PER_BATCH = 5_000;
 
 	/** The logger. */
 	private final ILogger logger;
@@ -37,8 +66,13 @@ public class JaCoCoXmlReportGenerator {
 	/** Whether to remove uncovered classes from the report. */
 	private final boolean ignoreUncoveredClasses;
 
+	/**
+	 * The maximum number of classes that are analyzed at once. Packages with more classes are analyzed on their own.
+	 */
+	private final int maxClassesPerBatch;
+
 	/** Part of the error message logged when validating the coverage report fails. */
-	private static final String MOST_LIKELY_CAUSE_MESSAGE = "Most likely you did not configure the agent correctly." +
+	/* package */ static final String MOST_LIKELY_CAUSE_MESSAGE = "Most likely you did not configure the agent correctly." +
 			" Please check that the includes and excludes options are set correctly so the relevant code is included." +
 			" If in doubt, first include more code and then iteratively narrow the patterns down to just the relevant code." +
 			" If you have specified the class-dir option, please make sure it points to a directory containing the" +
@@ -48,6 +82,15 @@ public class JaCoCoXmlReportGenerator {
 									ClasspathWildcardIncludeFilter locationIncludeFilter,
 									EDuplicateClassFileBehavior duplicateClassFileBehavior,
 									boolean ignoreUncoveredClasses, ILogger logger) {
+		this(codeDirectoriesOrArchives, locationIncludeFilter, duplicateClassFileBehavior, ignoreUncoveredClasses,
+				logger, DEFAULT_MAX_CLASSES_PER_BATCH);
+	}
+
+	/* package */ JaCoCoXmlReportGenerator(List<File> codeDirectoriesOrArchives,
+										   ClasspathWildcardIncludeFilter locationIncludeFilter,
+										   EDuplicateClassFileBehavior duplicateClassFileBehavior,
+										   boolean ignoreUncoveredClasses, ILogger logger, int maxClassesPerBatch) {
+		this.maxClassesPerBatch = maxClassesPerBatch;
 		this.codeDirectoriesOrArchives = codeDirectoriesOrArchives;
 		this.duplicateClassFileBehavior = duplicateClassFileBehavior;
 		this.locationIncludeFilter = locationIncludeFilter;
@@ -55,30 +98,35 @@ public class JaCoCoXmlReportGenerator {
 		this.logger = logger;
 	}
 
-
 	/**
 	 * Creates the report and writes it to a file.
 	 *
 	 * @return The file object of for the converted report or null if it could not be created
 	 */
+	@Override
 	public CoverageFile convert(Dump dump, File filePath) throws IOException, EmptyReportException {
-		CoverageFile coverageFile = new CoverageFile(filePath);
-		convertToReport(coverageFile, dump);
-		return coverageFile;
-	}
+		ReportStructureAnalyzer structureAnalyzer = analyzeStructure(dump.store);
+		IBundleCoverage structure = structureAnalyzer.getStructure(REPORT_NAME);
+		if (structure.getPackages().isEmpty()) {
+			throw new EmptyReportException("The generated coverage report is empty. " + MOST_LIKELY_CAUSE_MESSAGE);
+		}
 
-	/** Creates the report. */
-	private void convertToReport(CoverageFile coverageFile, Dump dump) throws IOException, EmptyReportException {
-		ExecutionDataStore mergedStore = dump.store;
-		IBundleCoverage bundleCoverage = analyzeStructureAndAnnotateCoverage(mergedStore);
-		checkForEmptyReport(bundleCoverage);
+		CoverageFile coverageFile = new CoverageFile(filePath);
+		ICoverageNode reportCoverage;
 		try (OutputStream outputStream = coverageFile.getOutputStream()) {
-			createReport(outputStream, bundleCoverage, dump.info, mergedStore);
+			reportCoverage = createReport(outputStream, dump, structureAnalyzer, structure);
+		}
+		try {
+			checkForEmptyReport(reportCoverage);
+		} catch (EmptyReportException e) {
+			Files.deleteIfExists(filePath.toPath());
+			throw e;
 		}
+		return coverageFile;
 	}
 
-	private void checkForEmptyReport(IBundleCoverage coverage) throws EmptyReportException {
-		if (coverage.getPackages().size() == 0 || coverage.getLineCounter().getTotalCount() == 0) {
+	private static void checkForEmptyReport(ICoverageNode coverage) throws EmptyReportException {
+		if (coverage.getLineCounter().getTotalCount() == 0) {
 			throw new EmptyReportException("The generated coverage report is empty. " + MOST_LIKELY_CAUSE_MESSAGE);
 		}
 		if (coverage.getLineCounter().getCoveredCount() == 0) {
@@ -88,32 +136,107 @@ public class JaCoCoXmlReportGenerator {
 		}
 	}
 
-	/** Creates an XML report based on the given session and coverage data. */
-	private static void createReport(OutputStream output, IBundleCoverage bundleCoverage, SessionInfo sessionInfo,
-									 ExecutionDataStore store) throws IOException {
-		XMLFormatter xmlFormatter = new XMLFormatter();
-		IReportVisitor visitor = xmlFormatter.createVisitor(output);
-
-		visitor.visitInfo(Collections.singletonList(sessionInfo), store.getContents());
-		visitor.visitBundle(bundleCoverage, null);
-		visitor.visitEnd();
+	/**
+	 * Traverses the class files in {@link #codeDirectoriesOrArchives} to determine the packages and source files of the
+	 * report.
+	 */
+	private ReportStructureAnalyzer analyzeStructure(ExecutionDataStore store) throws IOException {
+		ReportStructureAnalyzer analyzer = new ReportStructureAnalyzer(store, locationIncludeFilter,
+				duplicateClassFileBehavior, ignoreUncoveredClasses, logger);
+		for (File file : codeDirectoriesOrArchives) {
+			analyzer.analyzeAll(file);
+		}
+		return analyzer;
 	}
 
 	/**
-	 * Analyzes the structure of the class files in {@link #codeDirectoriesOrArchives} and builds an in-memory coverage
-	 * report with the coverage in the given store.
+	 * Writes an XML report with the packages of the given structure, which are analyzed batch by batch.
+	 *
+	 * @return The coverage of the whole report.
 	 */
-	private IBundleCoverage analyzeStructureAndAnnotateCoverage(ExecutionDataStore store) throws IOException {
-		CoverageBuilder coverageBuilder = new TeamscaleCoverageBuilder(this.logger,
-				duplicateClassFileBehavior, ignoreUncoveredClasses);
+	private ICoverageNode createReport(OutputStream output, Dump dump, ReportStructureAnalyzer structureAnalyzer,
+									   IBundleCoverage structure) throws IOException {
+		ReportElement report = new ReportElement(REPORT_NAME, output, "UTF-8");
+		report.sessioninfo(dump.info);
+
+		CoverageNodeImpl reportCoverage = new CoverageNodeImpl(ICoverageNode.ElementType.BUNDLE, REPORT_NAME);
+		List<IPackageCoverage> batch = new ArrayList<>();
+		int batchClassCount = 0;
+		for (IPackageCoverage packageStructure : structure.getPackages()) {
+			int classCount = structureAnalyzer.getClassCount(packageStructure.getName());
+			if (!batch.isEmpty() && batchClassCount + classCount > maxClassesPerBatch) {
+				writeBatch(report, reportCoverage, dump.store, structureAnalyzer, batch);
+				batch.clear();
+				batchClassCount = 0;
+			}
+			batch.add(packageStructure);
+			batchClassCount += classCount;
+		}
+		writeBatch(report, reportCoverage, dump.store, structureAnalyzer, batch);
+
+		XMLCoverageWriter.writeCounters(reportCoverage, report);
+		report.close();
+		return reportCoverage;
+	}
 
-		FilteringAnalyzer analyzer = new FilteringAnalyzer(store, coverageBuilder, locationIncludeFilter, logger);
+	/**
+	 * Analyzes the classes of the given packages and writes their coverage to the report in the order of the given
+	 * structure.
+	 */
+	private void writeBatch(ReportElement report, CoverageNodeImpl reportCoverage, ExecutionDataStore store,
+							ReportStructureAnalyzer structureAnalyzer,
+							List<IPackageCoverage> batch) throws IOException {
+		Set<String> packageNames = new HashSet<>();
+		Set<String> containerLocations = new HashSet<>();
+		Set<String> classDirectories = new HashSet<>();
+		for (IPackageCoverage packageStructure : batch) {
+			packageNames.add(packageStructure.getName());
+			containerLocations.addAll(structureAnalyzer.getContainerLocations(packageStructure.getName()));
+			classDirectories.addAll(structureAnalyzer.getClassDirectories(packageStructure.getName()));
+		}
 
+		// Duplicates have already been reported while analyzing the structure and are excluded the same way here
+		TeamscaleCoverageBuilder coverageBuilder = new TeamscaleCoverageBuilder(logger,
+				EDuplicateClassFileBehavior.IGNORE, ignoreUncoveredClasses);
+		FilteringAnalyzer analyzer = new PackageFilteringAnalyzer(store, coverageBuilder, locationIncludeFilter, logger,
+				packageNames, containerLocations, classDirectories);
 		for (File file : codeDirectoriesOrArchives) {
 			analyzer.analyzeAll(file);
 		}
 
-		return coverageBuilder.getBundle("dummybundle");
+		Map<String, ISourceFileCoverage> sourceFilesByPath = new HashMap<>();
+		for (ISourceFileCoverage sourceFile : coverageBuilder.getSourceFiles()) {
+			sourceFilesByPath.put(sourceFile.getPackageName() + "/" + sourceFile.getName(), sourceFile);
+		}
+		for (IPackageCoverage packageStructure : batch) {
+			List<ISourceFileCoverage> sourceFiles = new ArrayList<>();
+			for (ISourceFileCoverage sourceFileStructure : packageStructure.getSourceFiles()) {
+				ISourceFileCoverage sourceFile = sourceFilesByPath
+						.get(sourceFileStructure.getPackageName() + "/" + sourceFileStructure.getName());
+				if (sourceFile != null) {
+					sourceFiles.add(sourceFile);
+				}
+			}
+			IPackageCoverage packageCoverage = new PackageCoverageImpl(packageStructure.getName(),
+					Collections.emptyList(), sourceFiles);
+			writePackage(report, packageCoverage);
+			reportCoverage.increment(packageCoverage);
+		}
 	}
 
+	/** Writes a package like {@link XMLCoverageWriter#writeBundle} does. */
+	private static void writePackage(ReportElement report, IPackageCoverage packageCoverage) throws IOException {
+		ReportElement packageElement = report.packageElement(packageCoverage.getName());
+		for (ISourceFileCoverage sourceFile : packageCoverage.getSourceFiles()) {
+			ReportElement sourceFileElement = packageElement.sourcefile(sourceFile.getName());
+			for (int lineNumber = sourceFile.getFirstLine(); lineNumber <= sourceFile.getLastLine(); lineNumber++) {
+				ILine line = sourceFile.getLine(lineNumber);
+				if (line.getStatus() != ICounter.EMPTY) {
+					sourceFileElement.line(lineNumber, line);
+				}
+			}
+			XMLCoverageWriter.writeCounters(sourceFile, sourceFileElement);
+		}
+		XMLCoverageWriter.writeCounters(packageCoverage, packageElement);
+	}
 }
@@ -0,0 +1,116 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.instr.InstrSupport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * {@link FilteringAnalyzer} that only analyzes the classes of some packages. Archives that do not contain any of these
+ * classes are skipped without reading them. Class files in other directories than the ones of these classes are
+ * skipped, too. For archives in the analyzed directories, the entries are looked up in the central directory, so
+ * skipped class files are not even inflated.
+ * <p>
+ * The class files must have been traversed with a {@link ReportStructureAnalyzer} before, which already logged
+ * excluded and unsupported class files.
+ */
+/* package */ class PackageFilteringAnalyzer extends FilteringAnalyzer {
+
+	/** The filter for the analyzed class files. */
+	private final ClasspathWildcardIncludeFilter locationIncludeFilter;
+
+	/** The packages to analyze. */
+	private final Set<String> packageNames;
+
+	/** The locations of all archives and other containers of the classes to analyze. */
+	private final Set<String> containerLocations;
+
+	/** The directories of the class files of the classes to analyze. */
+	private final Set<String> classDirectories;
+
+	PackageFilteringAnalyzer(ExecutionDataStore executionData, ICoverageVisitor coverageVisitor,
+							 ClasspathWildcardIncludeFilter locationIncludeFilter, ILogger logger,
+							 Set<String> packageNames, Set<String> containerLocations, Set<String> classDirectories) {
+		super(executionData, coverageVisitor, locationIncludeFilter, logger);
+		this.locationIncludeFilter = locationIncludeFilter;
+		this.packageNames = packageNames;
+		this.containerLocations = containerLocations;
+		this.classDirectories = classDirectories;
+	}
+
+	@Override
+	public int analyzeAll(File file) throws IOException {
+		if (file.isDirectory() || !containerLocations.contains(file.getPath())) {
+			return super.analyzeAll(file);
+		}
+		ZipFile zipFile;
+		try {
+			zipFile = new ZipFile(file);
+		} catch (ZipException e) {
+			// e.g. a gzip or pack200 file, which can only be read sequentially
+			return super.analyzeAll(file);
+		}
+		int count = 0;
+		try (ZipFile archive = zipFile) {
+			Enumeration<? extends ZipEntry> entries = archive.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (!entry.isDirectory()) {
+					count += analyzeEntry(archive, entry, file.getPath() + "@" + entry.getName());
+				}
+			}
+		}
+		return count;
+	}
+
+	/** Analyzes the entry of the archive, which is only inflated if it may contain classes to analyze. */
+	private int analyzeEntry(ZipFile archive, ZipEntry entry, String location) throws IOException {
+		if (isSkipped(location)) {
+			return location.endsWith(".class") ? 1 : 0;
+		}
+		try (InputStream input = archive.getInputStream(entry)) {
+			return analyzeAll(input, location);
+		}
+	}
+
+	@Override
+	public int analyzeAll(InputStream input, String location) throws IOException {
+		if (isSkipped(location)) {
+			return location.endsWith(".class") ? 1 : 0;
+		}
+		return super.analyzeAll(input, location);
+	}
+
+	/** Returns whether the file at the given location cannot contain any of the classes to analyze. */
+	private boolean isSkipped(String location) {
+		if (location.endsWith(".class")) {
+			return !locationIncludeFilter.isIncluded(location) || !classDirectories
+					.contains(ReportStructureAnalyzer.getClassDirectory(location));
+		}
+		return !containerLocations.contains(location);
+	}
+
+	@Override
+	protected void analyzeClass(byte[] source) {
+		String className;
+		try {
+			className = InstrSupport.classReaderFor(source).getClassName();
+		} catch (RuntimeException e) {
+			// already reported by the ReportStructureAnalyzer
+			return;
+		}
+		if (packageNames.contains(ReportStructureAnalyzer.getPackageName(className))) {
+			super.analyzeClass(source);
+		}
+	}
+}
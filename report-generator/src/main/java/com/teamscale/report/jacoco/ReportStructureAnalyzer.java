@@ -0,0 +1,221 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import org.jacoco.core.analysis.IBundleCoverage;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ICoverageVisitor;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.analysis.ClassCoverageImpl;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link FilteringAnalyzer} that determines which packages and source files the report of a
+ * {@link TeamscaleCoverageBuilder} would contain and in which order, without keeping the coverage of the classes in
+ * memory.
+ * <p>
+ * Only the class file headers are read, unless uncovered classes should be ignored. In that case, classes with
+ * executed probes are analyzed fully to find out whether they contain covered code, but only their names are kept.
+ */
+/* package */ class ReportStructureAnalyzer extends FilteringAnalyzer {
+
+	/** The execution data to check for executed probes. */
+	private final ExecutionDataStore executionData;
+
+	/** Collects the classes that are part of the report. */
+	private final StructureVisitor structureVisitor;
+
+	/** Whether to remove uncovered classes from the report. */
+	private final boolean ignoreUncoveredClasses;
+
+	ReportStructureAnalyzer(ExecutionDataStore executionData, ClasspathWildcardIncludeFilter locationIncludeFilter,
+							EDuplicateClassFileBehavior duplicateClassFileBehavior, boolean ignoreUncoveredClasses,
+							ILogger logger) {
+		this(executionData, new StructureVisitor(
+						new TeamscaleCoverageBuilder(logger, duplicateClassFileBehavior, false), ignoreUncoveredClasses),
+				locationIncludeFilter, ignoreUncoveredClasses, logger);
+	}
+
+	private ReportStructureAnalyzer(ExecutionDataStore executionData, StructureVisitor structureVisitor,
+									ClasspathWildcardIncludeFilter locationIncludeFilter,
+									boolean ignoreUncoveredClasses, ILogger logger) {
+		super(executionData, structureVisitor, locationIncludeFilter, logger);
+		this.executionData = executionData;
+		this.structureVisitor = structureVisitor;
+		this.ignoreUncoveredClasses = ignoreUncoveredClasses;
+	}
+
+	@Override
+	public void analyzeClass(byte[] buffer, String location) throws IOException {
+		structureVisitor.currentLocation = location;
+		super.analyzeClass(buffer, location);
+	}
+
+	@Override
+	protected void analyzeClass(byte[] source) {
+		long classId = CRC64.classId(source);
+		ClassReader reader = InstrSupport.classReaderFor(source);
+		if (ignoreUncoveredClasses) {
+			ExecutionData data = executionData.get(classId);
+			if (data != null && data.hasHits()) {
+				super.analyzeClass(source);
+			}
+			return;
+		}
+
+		if ((reader.getAccess() & (Opcodes.ACC_MODULE | Opcodes.ACC_SYNTHETIC)) != 0) {
+			return;
+		}
+		ClassCoverageImpl coverage = new ClassCoverageImpl(reader.getClassName(), classId, false);
+		reader.accept(new ClassVisitor(InstrSupport.ASM_API_VERSION) {
+			@Override
+			public void visitSource(String sourceFileName, String debug) {
+				coverage.setSourceFileName(sourceFileName);
+			}
+		}, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+		structureVisitor.visitCoverage(coverage);
+	}
+
+	/**
+	 * Returns a bundle with the packages and source files of the report in the order in which
+	 * {@link org.jacoco.report.xml.XMLFormatter} writes them. The source files do not contain any lines.
+	 */
+	public IBundleCoverage getStructure(String name) {
+		return structureVisitor.coverageBuilder.getBundle(name);
+	}
+
+	/** Returns the number of classes of the package that are part of the report. */
+	public int getClassCount(String packageName) {
+		PackageLocations packageLocations = structureVisitor.packageLocations.get(packageName);
+		if (packageLocations == null) {
+			return 0;
+		}
+		return packageLocations.classCount;
+	}
+
+	/**
+	 * Returns the locations of all archives and other containers of classes of the package that are part of the report.
+	 * Class files that are directly contained in one of the analyzed directories are not included.
+	 */
+	public Set<String> getContainerLocations(String packageName) {
+		PackageLocations packageLocations = structureVisitor.packageLocations.get(packageName);
+		if (packageLocations == null) {
+			return Collections.emptySet();
+		}
+		return packageLocations.containerLocations;
+	}
+
+	/**
+	 * Returns the directories of all class files of the package that are part of the report, e.g.
+	 * <code>app.war@WEB-INF/classes/com/example/</code>.
+	 */
+	public Set<String> getClassDirectories(String packageName) {
+		PackageLocations packageLocations = structureVisitor.packageLocations.get(packageName);
+		if (packageLocations == null) {
+			return Collections.emptySet();
+		}
+		return packageLocations.classDirectories;
+	}
+
+	/**
+	 * Returns the directory of the class file with the given location including the trailing separator, e.g.
+	 * <code>app.jar@com/example/</code> for <code>app.jar@com/example/A.class</code>.
+	 */
+	/* package */ static String getClassDirectory(String classLocation) {
+		int position = Math.max(classLocation.lastIndexOf('@'),
+				Math.max(classLocation.lastIndexOf('/'), classLocation.lastIndexOf('\\')));
+		return classLocation.substring(0, position + 1);
+	}
+
+	/** Returns the package of the given VM class name, just like {@link IClassCoverage#getPackageName()}. */
+	/* package */ static String getPackageName(String className) {
+		int position = className.lastIndexOf('/');
+		if (position == -1) {
+			return "";
+		}
+		return className.substring(0, position);
+	}
+
+	/** The number and locations of the classes of a package. */
+	private static class PackageLocations {
+
+		/** The number of classes. */
+		private int classCount = 0;
+
+		/** The archives and other containers from which the classes were read. */
+		private final Set<String> containerLocations = new HashSet<>();
+
+		/** The directories of the class files. */
+		private final Set<String> classDirectories = new HashSet<>();
+
+		/**
+		 * Adds the containers of a class location like <code>app.war@WEB-INF/lib/lib.jar@com/example/A.class</code>,
+		 * i.e. <code>app.war</code> and <code>app.war@WEB-INF/lib/lib.jar</code>.
+		 */
+		private void addClassLocation(String location) {
+			classCount++;
+			if (location.endsWith(".class")) {
+				classDirectories.add(getClassDirectory(location));
+			} else {
+				containerLocations.add(location);
+			}
+			int separatorIndex = location.indexOf('@');
+			while (separatorIndex != -1) {
+				containerLocations.add(location.substring(0, separatorIndex));
+				separatorIndex = location.indexOf('@', separatorIndex + 1);
+			}
+		}
+	}
+
+	/**
+	 * Passes copies of the analyzed classes without their coverage to a {@link TeamscaleCoverageBuilder} and records
+	 * their locations.
+	 */
+	private static class StructureVisitor implements ICoverageVisitor {
+
+		/** The builder that determines the packages and source files of the report. */
+		private final TeamscaleCoverageBuilder coverageBuilder;
+
+		/** Whether to remove uncovered classes from the report. */
+		private final boolean ignoreUncoveredClasses;
+
+		/** The locations of the classes of the report per package. */
+		private final Map<String, PackageLocations> packageLocations = new HashMap<>();
+
+		/** The location of the class that is currently being analyzed. */
+		private String currentLocation;
+
+		private StructureVisitor(TeamscaleCoverageBuilder coverageBuilder, boolean ignoreUncoveredClasses) {
+			this.coverageBuilder = coverageBuilder;
+			this.ignoreUncoveredClasses = ignoreUncoveredClasses;
+		}
+
+		@Override
+		public void visitCoverage(IClassCoverage coverage) {
+			if (ignoreUncoveredClasses && (coverage.getClassCounter().getStatus() & ICounter.FULLY_COVERED) == 0) {
+				return;
+			}
+
+			ClassCoverageImpl structure = new ClassCoverageImpl(coverage.getName(), coverage.getId(),
+					coverage.isNoMatch());
+			structure.setSourceFileName(coverage.getSourceFileName());
+			coverageBuilder.visitCoverage(structure);
+			packageLocations.computeIfAbsent(coverage.getPackageName(), packageName -> new PackageLocations())
+					.addClassLocation(currentLocation);
+		}
+	}
+}
@@ -0,0 +1,190 @@
+package com.teamscale.report.testwise;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes files on a background thread. The data is collected in chunks, which are compressed and written to disk in
+ * the order in which they were filled, while the caller continues to fill the next chunk, possibly of the next file.
+ * Only a few chunks may wait for the background thread at any time, so the memory usage is bounded.
+ * <p>
+ * Errors of the background thread are rethrown by the next call of any of the streams, or by {@link #close()} at the
+ * latest.
+ */
+/* package */ class BackgroundFileWriter implements AutoCloseable {
+
+	/** The size of a chunk. */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/** The number of chunks that may wait for the background thread. */
+	private static final int MAX_PENDING_CHUNKS = 16;
+
+	/** The executor with a single thread, which writes the chunks in order. */
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Testwise coverage report writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Limits the number of chunks that wait for the background thread. */
+	private final Semaphore pendingChunks = new Semaphore(MAX_PENDING_CHUNKS);
+
+	/** The first error of the background thread, either an {@link IOException} or a {@link RuntimeException}. */
+	private volatile Exception error;
+
+	/** The stream of the file that is currently written on the background thread. */
+	private OutputStream currentFileOutput;
+
+	/**
+	 * Opens the given file for writing. The returned stream must be closed before the next file is opened. Closing it
+	 * does not wait until the file has actually been written.
+	 *
+	 * @param compress Whether the file should be compressed with gzip.
+	 */
+	public OutputStream open(File file, boolean compress) throws IOException {
+		checkError();
+		submit(() -> {
+			currentFileOutput = Files.newOutputStream(file.toPath());
+			if (compress) {
+				currentFileOutput = new GZIPOutputStream(currentFileOutput, CHUNK_SIZE);
+			}
+		});
+		return new ChunkedOutputStream();
+	}
+
+	/** Waits until all files have been written and rethrows the first error of the background thread. */
+	@Override
+	public void close() throws IOException {
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				// keep waiting, writing large reports may take a while
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the testwise coverage report.", e);
+		}
+		checkError();
+	}
+
+	private void checkError() throws IOException {
+		if (error != null) {
+			throw new IOException("Writing the testwise coverage report failed.", error);
+		}
+	}
+
+	/** Submits the given task to the background thread once there is room for another pending chunk. */
+	private void submit(IoTask task) throws IOException {
+		try {
+			pendingChunks.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the testwise coverage report.", e);
+		}
+		executor.execute(() -> {
+			try {
+				if (error == null) {
+					task.run();
+				}
+			} catch (IOException | RuntimeException e) {
+				// runtime exceptions must be recorded as well, since the executor would swallow them
+				error = e;
+				closeAfterError();
+			} finally {
+				pendingChunks.release();
+			}
+		});
+	}
+
+	/** Closes the current file after an error, so it is not kept open until the writer is closed. */
+	private void closeAfterError() {
+		if (currentFileOutput == null) {
+			return;
+		}
+		try {
+			currentFileOutput.close();
+		} catch (IOException e) {
+			error.addSuppressed(e);
+		}
+		currentFileOutput = null;
+	}
+
+	/** A task of the background thread. */
+	@FunctionalInterface
+	private interface IoTask {
+
+		/** Runs the task. */
+		void run() throws IOException;
+	}
+
+	/** Collects the written data in chunks, which are passed to the background thread once they are full. */
+	private class ChunkedOutputStream extends OutputStream {
+
+		/** The chunk that is currently being filled. */
+		private byte[] chunk = new byte[CHUNK_SIZE];
+
+		/** The number of bytes in the current chunk. */
+		private int chunkSize = 0;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (chunkSize == chunk.length) {
+				submitChunk();
+			}
+			chunk[chunkSize++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (chunkSize == chunk.length) {
+					submitChunk();
+				}
+				int count = Math.min(length, chunk.length - chunkSize);
+				System.arraycopy(buffer, offset, chunk, chunkSize, count);
+				chunkSize += count;
+				offset += count;
+				length -= count;
+			}
+		}
+
+		/** Does nothing, since only full chunks are passed to the background thread. */
+		@Override
+		public void flush() {
+			// nothing to do
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (chunk == null) {
+				return;
+			}
+			byte[] lastChunk = chunk;
+			int lastChunkSize = chunkSize;
+			chunk = null;
+			checkError();
+			submit(() -> {
+				currentFileOutput.write(lastChunk, 0, lastChunkSize);
+				currentFileOutput.close();
+				currentFileOutput = null;
+			});
+		}
+
+		private void submitChunk() throws IOException {
+			checkError();
+			byte[] fullChunk = chunk;
+			int fullChunkSize = chunkSize;
+			submit(() -> currentFileOutput.write(fullChunk, 0, fullChunkSize));
+			chunk = new byte[CHUNK_SIZE];
+			chunkSize = 0;
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.FileCoverage;
+import com.teamscale.report.testwise.model.PathCoverage;
+import com.teamscale.report.testwise.model.TestInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compact binary representation of a {@link TestInfo}, which the agent sends instead of JSON in
+ * <code>tia-mode=http</code> if the client accepts {@link #MEDIA_TYPE}. Compared to JSON, it
+ * <ul>
+ *     <li>stores every directory name and file name only once in a string table and refers to it by index,</li>
+ *     <li>stores covered line ranges as variable-length integers relative to the end of the previous range, and</li>
+ *     <li>optionally deflates everything after the header, which the agent does for large payloads.</li>
+ * </ul>
+ * <p>
+ * Layout: the magic bytes <code>TSTI</code>, a version byte and a flags byte, followed by the (possibly compressed)
+ * test details, the string table and the paths with their files and line ranges.
+ */
+public class TestInfoBinaryFormat {
+
+	/** The media type of the binary representation. */
+	public static final String MEDIA_TYPE = "application/vnd.teamscale.test-info";
+
+	/** Payloads whose uncompressed size exceeds this number of bytes are compressed by {@link #serialize(TestInfo)}. */
+	public static final int COMPRESSION_THRESHOLD = 16 * 1024;
+
+	private static final byte[] MAGIC = {'T', 'S', 'T', 'I'};
+
+	/** The number of bytes of the magic bytes, the version and the flags. */
+	private static final int HEADER_LENGTH = MAGIC.length + 2;
+
+	private static final int VERSION = 1;
+
+	/** Flag that is set if everything after the header is deflated. */
+	private static final int FLAG_COMPRESSED = 1;
+
+	/** Separator of the directories in {@link PathCoverage#getPath()}. */
+	private static final char PATH_SEPARATOR = '/';
+
+	private TestInfoBinaryFormat() {
+		// utility class
+	}
+
+	/**
+	 * Serializes the given test info. The payload is compressed if it exceeds {@link #COMPRESSION_THRESHOLD}, since
+	 * smaller payloads do not gain enough to justify the CPU time.
+	 */
+	public static byte[] serialize(TestInfo testInfo) throws IOException {
+		ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+		write(testInfo, uncompressed, false);
+		if (uncompressed.size() <= COMPRESSION_THRESHOLD) {
+			return uncompressed.toByteArray();
+		}
+
+		byte[] bytes = uncompressed.toByteArray();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+		writeHeader(compressed, true);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater, 8192)) {
+			out.write(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+		} finally {
+			deflater.end();
+		}
+		return compressed.toByteArray();
+	}
+
+	/** Writes the given test info to the stream. Does not close the stream. */
+	public static void write(TestInfo testInfo, OutputStream out, boolean compress) throws IOException {
+		writeHeader(out, compress);
+		Deflater deflater = null;
+		if (compress) {
+			deflater = new Deflater(Deflater.BEST_SPEED);
+			out = new DeflaterOutputStream(out, deflater, 8192);
+		}
+		try {
+			DataOutputStream data = new DataOutputStream(out);
+			writeString(data, testInfo.uniformPath);
+			writeString(data, testInfo.sourcePath);
+			writeString(data, testInfo.content);
+			if (testInfo.duration == null) {
+				data.writeBoolean(false);
+			} else {
+				data.writeBoolean(true);
+				data.writeDouble(testInfo.duration);
+			}
+			writeVarInt(data, testInfo.result == null ? 0 : testInfo.result.ordinal() + 1);
+			writeString(data, testInfo.message);
+			writePaths(data, testInfo.paths);
+			data.flush();
+			if (deflater != null) {
+				((DeflaterOutputStream) out).finish();
+			}
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	private static void writeHeader(OutputStream out, boolean compressed) throws IOException {
+		out.write(MAGIC);
+		out.write(VERSION);
+		out.write(compressed ? FLAG_COMPRESSED : 0);
+	}
+
+	private static void writePaths(DataOutputStream data, List<PathCoverage> paths) throws IOException {
+		Map<String, Integer> stringIndices = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		List<int[]> pathSegmentIndices = new ArrayList<>(paths.size());
+		for (PathCoverage path : paths) {
+			String[] segments = splitPath(path.getPath());
+			int[] indices = new int[segments.length];
+			for (int i = 0; i < segments.length; i++) {
+				indices[i] = intern(segments[i], stringIndices, strings);
+			}
+			pathSegmentIndices.add(indices);
+			for (FileCoverage file : path.getFiles()) {
+				intern(file.fileName, stringIndices, strings);
+			}
+		}
+
+		writeVarInt(data, strings.size());
+		for (String string : strings) {
+			writeString(data, string);
+		}
+
+		writeVarInt(data, paths.size());
+		for (int i = 0; i < paths.size(); i++) {
+			int[] segmentIndices = pathSegmentIndices.get(i);
+			writeVarInt(data, segmentIndices.length);
+			for (int segmentIndex : segmentIndices) {
+				writeVarInt(data, segmentIndex);
+			}
+			List<FileCoverage> files = paths.get(i).getFiles();
+			writeVarInt(data, files.size());
+			for (FileCoverage file : files) {
+				writeVarInt(data, stringIndices.get(file.fileName));
+				writeLineRanges(data, file.coveredLines);
+			}
+		}
+	}
+
+	private static int intern(String string, Map<String, Integer> stringIndices, List<String> strings) {
+		Integer index = stringIndices.get(string);
+		if (index == null) {
+			index = strings.size();
+			stringIndices.put(string, index);
+			strings.add(string);
+		}
+		return index;
+	}
+
+	private static String[] splitPath(String path) {
+		if (path.isEmpty()) {
+			return new String[0];
+		}
+		// an explicit limit keeps empty trailing segments, so that joining the segments restores the path exactly
+		return path.split(String.valueOf(PATH_SEPARATOR), -1);
+	}
+
+	/**
+	 * Writes the ranges of the given compact string representation (e.g. <code>1-5,7,9-11</code>) as the number of
+	 * ranges followed by the distance of each range's start to the previous range's end and the length of the range.
+	 */
+	private static void writeLineRanges(DataOutputStream data, String coveredLines) throws IOException {
+		List<int[]> ranges = parseLineRanges(coveredLines);
+		writeVarInt(data, ranges.size());
+		int previousEnd = 0;
+		for (int[] range : ranges) {
+			writeVarInt(data, range[0] - previousEnd);
+			writeVarInt(data, range[1] - range[0]);
+			previousEnd = range[1];
+		}
+	}
+
+	private static List<int[]> parseLineRanges(String coveredLines) throws IOException {
+		List<int[]> ranges = new ArrayList<>();
+		int length = coveredLines.length();
+		int position = 0;
+		while (position < length) {
+			int start = 0;
+			while (position < length && isDigit(coveredLines.charAt(position))) {
+				start = start * 10 + coveredLines.charAt(position++) - '0';
+			}
+			int end = start;
+			if (position < length && coveredLines.charAt(position) == '-') {
+				position++;
+				end = 0;
+				while (position < length && isDigit(coveredLines.charAt(position))) {
+					end = end * 10 + coveredLines.charAt(position++) - '0';
+				}
+			}
+			if (position < length && coveredLines.charAt(position++) != ',') {
+				throw new IOException("Invalid line ranges: " + coveredLines);
+			}
+			int previousEnd = ranges.isEmpty() ? 0 : ranges.get(ranges.size() - 1)[1];
+			if (start <= previousEnd || end < start) {
+				throw new IOException("Line ranges must be sorted and disjoint: " + coveredLines);
+			}
+			ranges.add(new int[]{start, end});
+		}
+		return ranges;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Reads a test info from the given stream. The stream is consumed incrementally, so the payload does not need to
+	 * be buffered completely. Does not close the stream.
+	 */
+	public static TestInfo read(InputStream in) throws IOException {
+		DataInputStream header = new DataInputStream(in);
+		byte[] magic = new byte[MAGIC.length];
+		header.readFully(magic);
+		for (int i = 0; i < MAGIC.length; i++) {
+			if (magic[i] != MAGIC[i]) {
+				throw new IOException("Not a binary test info");
+			}
+		}
+		int version = header.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary test info version " + version);
+		}
+		int flags = header.readUnsignedByte();
+
+		if ((flags & FLAG_COMPRESSED) == 0) {
+			return readBody(new DataInputStream(in));
+		}
+		Inflater inflater = new Inflater();
+		try {
+			return readBody(new DataInputStream(new InflaterInputStream(in, inflater, 8192)));
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/** Reads the test info that follows the header. */
+	private static TestInfo readBody(DataInputStream data) throws IOException {
+		String uniformPath = readString(data);
+		String sourcePath = readString(data);
+		String content = readString(data);
+		Double duration = null;
+		if (data.readBoolean()) {
+			duration = data.readDouble();
+		}
+		int resultOrdinal = readVarInt(data);
+		ETestExecutionResult result = null;
+		if (resultOrdinal > 0) {
+			result = ETestExecutionResult.values()[resultOrdinal - 1];
+		}
+		String message = readString(data);
+
+		TestInfo testInfo = new TestInfo(uniformPath, sourcePath, content, duration, result, message);
+		readPaths(data, testInfo.paths);
+		return testInfo;
+	}
+
+	private static void readPaths(DataInputStream data, List<PathCoverage> paths) throws IOException {
+		String[] strings = new String[readVarInt(data)];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = readString(data);
+		}
+
+		int pathCount = readVarInt(data);
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < pathCount; i++) {
+			builder.setLength(0);
+			int segmentCount = readVarInt(data);
+			for (int j = 0; j < segmentCount; j++) {
+				if (j > 0) {
+					builder.append(PATH_SEPARATOR);
+				}
+				builder.append(strings[readVarInt(data)]);
+			}
+			String path = builder.toString();
+
+			int fileCount = readVarInt(data);
+			List<FileCoverage> files = new ArrayList<>(fileCount);
+			for (int j = 0; j < fileCount; j++) {
+				String fileName = strings[readVarInt(data)];
+				files.add(new FileCoverage(fileName, readLineRanges(data, builder)));
+			}
+			paths.add(new PathCoverage(path, files));
+		}
+	}
+
+	private static String readLineRanges(DataInputStream data, StringBuilder builder) throws IOException {
+		builder.setLength(0);
+		int rangeCount = readVarInt(data);
+		int previousEnd = 0;
+		for (int i = 0; i < rangeCount; i++) {
+			int start = previousEnd + readVarInt(data);
+			int end = start + readVarInt(data);
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append(start);
+			if (end != start) {
+				builder.append('-').append(end);
+			}
+			previousEnd = end;
+		}
+		return builder.toString();
+	}
+
+	/** Writes a string as its UTF-8 length plus one, followed by its UTF-8 bytes. <code>null</code> is written as 0. */
+	private static void writeString(DataOutputStream data, String string) throws IOException {
+		if (string == null) {
+			writeVarInt(data, 0);
+			return;
+		}
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(data, bytes.length + 1);
+		data.write(bytes);
+	}
+
+	private static String readString(DataInputStream data) throws IOException {
+		int length = readVarInt(data);
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length - 1];
+		data.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** Writes a non-negative integer with 7 bits per byte, using the highest bit to signal that more bytes follow. */
+	private static void writeVarInt(DataOutputStream data, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			data.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		data.write(value);
+	}
+
+	private static int readVarInt(DataInputStream data) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = data.read();
+			if (b < 0) {
+				throw new EOFException("Unexpected end of binary test info");
+			}
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer in binary test info");
+	}
+}
@@ -0,0 +1,127 @@
+package com.teamscale.report.testwise;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.teamscale.client.JsonUtils;
+import com.teamscale.report.testwise.model.PathCoverage;
+import com.teamscale.report.testwise.model.TestInfo;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Expands testwise coverage reports with deduplicated coverage, as written by a {@link TestwiseCoverageReportWriter},
+ * back to classic {@link com.teamscale.report.testwise.model.TestwiseCoverageReport}s, in which every test lists all of
+ * its paths. Teamscale only accepts the classic, uncompressed format.
+ * <p>
+ * Both the input and the output are streamed one {@link TestInfo} after the other, so only the distinct coverage of
+ * the report is kept in memory. Reports whose names end with <code>.gz</code> are decompressed while reading.
+ */
+public class TestwiseCoverageReportExpander {
+
+	/** Field of the report that is set to <code>true</code> if it contains deduplicated coverage. */
+	public static final String DEDUPLICATED_FIELD = "deduplicated";
+
+	private TestwiseCoverageReportExpander() {
+		// utility class
+	}
+
+	/**
+	 * Returns whether the given file is a testwise coverage report with deduplicated coverage. Only the beginning of
+	 * the file is read.
+	 */
+	public static boolean isDeduplicated(File report) throws IOException {
+		try (JsonParser parser = JsonUtils.createFactory().createParser(open(report))) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				return false;
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (DEDUPLICATED_FIELD.equals(fieldName)) {
+					return value == JsonToken.VALUE_TRUE;
+				}
+				if ("tests".equals(fieldName)) {
+					// the writer always writes the flag before the tests
+					return false;
+				}
+				parser.skipChildren();
+			}
+			return false;
+		} catch (JsonProcessingException e) {
+			// not a JSON report at all
+			return false;
+		}
+	}
+
+	/** Expands the given report with deduplicated coverage and writes the classic report to the given output file. */
+	public static void expand(File report, File outputFile) throws IOException {
+		try (JsonParser parser = JsonUtils.createFactory().createParser(open(report));
+			 JsonGenerator generator = JsonUtils.createFactory()
+					 .createGenerator(Files.newOutputStream(outputFile.toPath()))) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Expected a testwise coverage report in " + report);
+			}
+			generator.writeStartObject();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				switch (fieldName) {
+					case "partial":
+						generator.writeBooleanField("partial", parser.getBooleanValue());
+						break;
+					case "tests":
+						generator.writeFieldName("tests");
+						expandTests(parser, generator, report);
+						break;
+					default:
+						parser.skipChildren();
+				}
+			}
+			generator.writeEndObject();
+		}
+	}
+
+	/** Opens the given report and decompresses it if necessary. */
+	private static InputStream open(File report) throws IOException {
+		InputStream input = new BufferedInputStream(Files.newInputStream(report.toPath()));
+		if (report.getName().endsWith(".gz")) {
+			return new GZIPInputStream(input);
+		}
+		return input;
+	}
+
+	private static void expandTests(JsonParser parser, JsonGenerator generator, File report) throws IOException {
+		Map<String, List<PathCoverage>> pathsByCoverageId = new HashMap<>();
+		generator.writeStartArray();
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			TestInfo testInfo = parser.readValueAs(TestInfo.class);
+			TestInfo expandedTestInfo = new TestInfo(testInfo.uniformPath, testInfo.sourcePath, testInfo.content,
+					testInfo.duration, testInfo.result, testInfo.message);
+			if (testInfo.coverageId == null) {
+				expandedTestInfo.paths.addAll(testInfo.paths);
+			} else if (!testInfo.paths.isEmpty()) {
+				pathsByCoverageId.put(testInfo.coverageId, testInfo.paths);
+				expandedTestInfo.paths.addAll(testInfo.paths);
+			} else {
+				List<PathCoverage> paths = pathsByCoverageId.get(testInfo.coverageId);
+				if (paths == null) {
+					throw new IOException(String.format("Test %s in %s refers to coverage %s, which is not " +
+							"listed by any previous test.", testInfo.uniformPath, report, testInfo.coverageId));
+				}
+				expandedTestInfo.paths.addAll(paths);
+			}
+			TestInfoSerializer.writeTestInfo(generator, expandedTestInfo);
+		}
+		generator.writeEndArray();
+	}
+}
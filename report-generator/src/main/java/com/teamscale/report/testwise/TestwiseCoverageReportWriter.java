@@ -1,22 +1,44 @@
 package com.teamscale.report.testwise;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.teamscale.client.JsonUtils;
 import com.teamscale.client.StringUtils;
+import com.teamscale.report.testwise.model.PathCoverage;
 import com.teamscale.report.testwise.model.TestInfo;
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 import com.teamscale.report.testwise.model.factory.TestInfoFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 
 /**
  * Writes out a {@link com.teamscale.report.testwise.model.TestwiseCoverageReport} one {@link TestInfo} after the other
  * so that we do not need to keep them all in memory during the conversion.
+ * <p>
+ * {@link #accept(TestCoverageBuilder)} may be called concurrently, e.g. when multiple exec files are converted in
+ * parallel.
+ * <p>
+ * Optionally, identical coverage of multiple tests is only written once per report file: every test with coverage gets
+ * a {@link TestInfo#coverageId} that is derived from the content of its paths, and only the first test with this id in
+ * a file lists the paths. Such reports must be expanded with {@link TestwiseCoverageReportExpander} before they are
+ * uploaded to Teamscale.
+ * <p>
+ * The report is split into multiple files after a number of tests and optionally once a file has reached a size. The
+ * files may be compressed with gzip. They are compressed and written on a background thread, while the tests of the
+ * next part of the report are serialized. Use the {@link Builder} to configure all of these options.
+ * <p>
+ * The tests are serialized with the {@link TestInfoSerializer} as compact JSON, unless pretty printing is enabled.
  */
 public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilder>, AutoCloseable {
 
@@ -27,6 +49,36 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 	/** After how many written tests a new file should be started. */
 	private final int splitAfter;
 
+	/**
+	 * After how many bytes of uncompressed JSON a new file should be started, or 0 to split only by the number of
+	 * tests.
+	 */
+	private final long splitAfterBytes;
+
+	/** Whether to compress the files with gzip. */
+	private final boolean compress;
+
+	/** Whether the written reports only contain a subset of the tests in the partition. */
+	private final boolean partial;
+
+	/** Whether to write identical coverage only once per report file. */
+	private final boolean deduplicateCoverage;
+
+	/** Whether to pretty print the JSON. */
+	private final boolean prettyPrint;
+
+	/** Creates the {@link JsonGenerator}s of the report files and of the {@link TestInfo#coverageId}s. */
+	private final JsonFactory jsonFactory = JsonUtils.createFactory();
+
+	/** The {@link TestInfo#coverageId}s whose paths have already been written to the current report file. */
+	private final Set<String> writtenCoverageIds = new HashSet<>();
+
+	/** Writes the files in the background. */
+	private final BackgroundFileWriter backgroundFileWriter = new BackgroundFileWriter();
+
+	/** Counts the bytes written to the current file. */
+	private CountingOutputStream outputStream;
+
 	/** Writer instance to where the {@link com.teamscale.report.testwise.model.TestwiseCoverageReport} is written to. */
 	private JsonGenerator jsonGenerator;
 
@@ -38,15 +90,40 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 
 	public TestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile,
 										int splitAfter) throws IOException {
-		this.testInfoFactory = testInfoFactory;
-		this.outputFile = outputFile;
-		this.splitAfter = splitAfter;
+		this(testInfoFactory, outputFile, splitAfter, false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param partial See {@link com.teamscale.report.testwise.model.TestwiseCoverageReport#partial}. Is written to
+	 *                every report file.
+	 */
+	public TestwiseCoverageReportWriter(TestInfoFactory testInfoFactory, File outputFile,
+										int splitAfter, boolean partial) throws IOException {
+		this(builder(testInfoFactory, outputFile).splitAfter(splitAfter).partial(partial));
+	}
+
+	private TestwiseCoverageReportWriter(Builder builder) throws IOException {
+		this.testInfoFactory = builder.testInfoFactory;
+		this.outputFile = builder.outputFile;
+		this.splitAfter = builder.splitAfter;
+		this.splitAfterBytes = builder.splitAfterBytes;
+		this.compress = builder.compress;
+		this.partial = builder.partial;
+		this.deduplicateCoverage = builder.deduplicateCoverage;
+		this.prettyPrint = builder.prettyPrint;
 
 		startReport();
 	}
 
+	/** Returns a builder for a writer that writes the report to the given file. */
+	public static Builder builder(TestInfoFactory testInfoFactory, File outputFile) {
+		return new Builder(testInfoFactory, outputFile);
+	}
+
 	@Override
-	public void accept(TestCoverageBuilder testCoverageBuilder) {
+	public synchronized void accept(TestCoverageBuilder testCoverageBuilder) {
 		TestInfo testInfo = testInfoFactory.createFor(testCoverageBuilder);
 		try {
 			writeTestInfo(testInfo);
@@ -56,20 +133,33 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 		}
 	}
 
+	/** Writes the remaining tests and waits until all files have been written. */
 	@Override
-	public void close() throws IOException {
-		for (TestInfo testInfo : testInfoFactory.createTestInfosWithoutCoverage()) {
-			writeTestInfo(testInfo);
+	public synchronized void close() throws IOException {
+		try {
+			for (TestInfo testInfo : testInfoFactory.createTestInfosWithoutCoverage()) {
+				writeTestInfo(testInfo);
+			}
+			endReport();
+		} finally {
+			backgroundFileWriter.close();
 		}
-		endReport();
 	}
 
 	private void startReport() throws IOException {
 		testFileCounter++;
-		OutputStream outputStream = Files.newOutputStream(getOutputFile(testFileCounter).toPath());
-		jsonGenerator = JsonUtils.createFactory().createGenerator(outputStream);
-		jsonGenerator.setPrettyPrinter(new DefaultPrettyPrinter());
+		outputStream = new CountingOutputStream(
+				backgroundFileWriter.open(getOutputFile(testFileCounter), compress));
+		jsonGenerator = jsonFactory.createGenerator(outputStream);
+		if (prettyPrint) {
+			jsonGenerator.setPrettyPrinter(new DefaultPrettyPrinter());
+		}
 		jsonGenerator.writeStartObject();
+		jsonGenerator.writeBooleanField("partial", partial);
+		if (deduplicateCoverage) {
+			jsonGenerator.writeBooleanField(TestwiseCoverageReportExpander.DEDUPLICATED_FIELD, true);
+			writtenCoverageIds.clear();
+		}
 		jsonGenerator.writeFieldName("tests");
 		jsonGenerator.writeStartArray();
 	}
@@ -78,22 +168,161 @@ public class TestwiseCoverageReportWriter implements Consumer<TestCoverageBuilde
 		String name = this.outputFile.getName();
 		name = StringUtils.stripSuffix(name, ".json");
 		name = name + "-" + testFileCounter + ".json";
+		if (compress) {
+			name += ".gz";
+		}
 		return new File(this.outputFile.getParent(), name);
 	}
 
 	private void writeTestInfo(TestInfo testInfo) throws IOException {
-		if (testsWritten >= splitAfter) {
+		if (testsWritten >= splitAfter || (splitAfterBytes > 0 && testsWritten > 0 &&
+				getBytesWritten() >= splitAfterBytes)) {
 			endReport();
 			testsWritten = 0;
 			startReport();
 		}
-		jsonGenerator.writeObject(testInfo);
+		if (deduplicateCoverage && !testInfo.paths.isEmpty()) {
+			TestInfoSerializer.writeTestInfo(jsonGenerator, deduplicate(testInfo));
+		} else {
+			TestInfoSerializer.writeTestInfo(jsonGenerator, testInfo);
+		}
 		testsWritten++;
 	}
 
+	/**
+	 * Returns a copy of the test info with its {@link TestInfo#coverageId}, which only contains the paths if they have
+	 * not been written to the current report file yet.
+	 */
+	private TestInfo deduplicate(TestInfo testInfo) throws IOException {
+		String coverageId = computeCoverageId(testInfo.paths);
+		TestInfo deduplicatedTestInfo = new TestInfo(testInfo.uniformPath, testInfo.sourcePath, testInfo.content,
+				testInfo.duration, testInfo.result, testInfo.message, coverageId);
+		if (writtenCoverageIds.add(coverageId)) {
+			deduplicatedTestInfo.paths.addAll(testInfo.paths);
+		}
+		return deduplicatedTestInfo;
+	}
+
+	/** Computes the SHA-1 hash of the compact JSON representation of the given paths. */
+	private String computeCoverageId(List<PathCoverage> paths) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not supported by this JVM", e);
+		}
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+			TestInfoSerializer.writePaths(generator, paths);
+		}
+		byte[] hash = digest.digest(json.toByteArray());
+		StringBuilder coverageId = new StringBuilder(hash.length * 2);
+		for (byte b : hash) {
+			coverageId.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return coverageId.toString();
+	}
+
+	/** Returns the number of bytes of the current file, including the ones buffered by the JSON generator. */
+	private long getBytesWritten() {
+		return outputStream.count + Math.max(0, jsonGenerator.getOutputBuffered());
+	}
+
 	private void endReport() throws IOException {
 		jsonGenerator.writeEndArray();
 		jsonGenerator.writeEndObject();
 		jsonGenerator.close();
 	}
+
+	/** Counts the bytes written to the underlying stream. */
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		/** The number of bytes written so far. */
+		private long count = 0;
+
+		private CountingOutputStream(OutputStream output) {
+			super(output);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) throws IOException {
+			out.write(buffer, offset, length);
+			count += length;
+		}
+	}
+
+	/** Builder for {@link TestwiseCoverageReportWriter}s. */
+	public static class Builder {
+
+		private final TestInfoFactory testInfoFactory;
+
+		private final File outputFile;
+
+		private int splitAfter = Integer.MAX_VALUE;
+
+		private long splitAfterBytes = 0;
+
+		private boolean compress = false;
+
+		private boolean partial = false;
+
+		private boolean deduplicateCoverage = false;
+
+		private boolean prettyPrint = false;
+
+		private Builder(TestInfoFactory testInfoFactory, File outputFile) {
+			this.testInfoFactory = testInfoFactory;
+			this.outputFile = outputFile;
+		}
+
+		/** Starts a new file after the given number of tests. Unlimited by default. */
+		public Builder splitAfter(int splitAfter) {
+			this.splitAfter = splitAfter;
+			return this;
+		}
+
+		/**
+		 * Starts a new file once the current one contains the given number of bytes of uncompressed JSON, or 0 to
+		 * split only by the number of tests, which is the default. A file exceeds the size by at most one test.
+		 */
+		public Builder splitAfterBytes(long splitAfterBytes) {
+			this.splitAfterBytes = splitAfterBytes;
+			return this;
+		}
+
+		/** Whether to compress the files with gzip, which appends <code>.gz</code> to their names. */
+		public Builder compress(boolean compress) {
+			this.compress = compress;
+			return this;
+		}
+
+		/** See {@link com.teamscale.report.testwise.model.TestwiseCoverageReport#partial}. */
+		public Builder partial(boolean partial) {
+			this.partial = partial;
+			return this;
+		}
+
+		/** Whether to write identical coverage only once per report file. */
+		public Builder deduplicateCoverage(boolean deduplicateCoverage) {
+			this.deduplicateCoverage = deduplicateCoverage;
+			return this;
+		}
+
+		/** Whether to pretty print the JSON, which makes the files larger. Compact JSON is written by default. */
+		public Builder prettyPrint(boolean prettyPrint) {
+			this.prettyPrint = prettyPrint;
+			return this;
+		}
+
+		/** Creates the writer and starts the first file. */
+		public TestwiseCoverageReportWriter build() throws IOException {
+			return new TestwiseCoverageReportWriter(this);
+		}
+	}
 }
@@ -71,6 +71,17 @@ class CachingExecutionDataReader {
 		}
 	}
 
+	/** Logs how often the covered lines of a class could be reused for an identical probe pattern. */
+	public void logMemoStatistics() {
+		long lookupCount = probesCache.getMemoLookupCount();
+		if (lookupCount == 0) {
+			return;
+		}
+		long hitCount = probesCache.getMemoHitCount();
+		logger.debug(String.format("Reused the covered lines of %d of %d converted classes (%.1f%%)", hitCount,
+				lookupCount, 100.0 * hitCount / lookupCount));
+	}
+
 	/**
 	 * Converts the given store to coverage data. The coverage will only contain line range coverage information.
 	 */
@@ -0,0 +1,260 @@
+package com.teamscale.report.testwise.jacoco;
+
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.internal.data.CompactDataInput;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index of the offsets of the session headers in a JaCoCo exec file, which allows reading ranges of sessions
+ * independently of each other, e.g. to convert them in parallel.
+ */
+/* package */ class ExecutionDataIndex {
+
+	/** Size of the header block at the beginning of every exec file: block type, magic number and format version. */
+	private static final int HEADER_SIZE = 5;
+
+	/** The buffer size for reading the exec file. */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The indexed exec file. */
+	private final File executionDataFile;
+
+	/** The header block of the exec file, which is prepended to ranges that do not start at the beginning. */
+	private final byte[] header;
+
+	/** The offsets of all session headers in ascending order. */
+	private final long[] sessionOffsets;
+
+	private ExecutionDataIndex(File executionDataFile, byte[] header, long[] sessionOffsets) {
+		this.executionDataFile = executionDataFile;
+		this.header = header;
+		this.sessionOffsets = sessionOffsets;
+	}
+
+	/**
+	 * Reads the given exec file once to find the offsets of its session headers. Execution data is skipped without
+	 * decoding the probes.
+	 */
+	public static ExecutionDataIndex create(File executionDataFile) throws IOException {
+		try (CountingInputStream countingInput = new CountingInputStream(
+				new BufferedInputStream(new FileInputStream(executionDataFile), BUFFER_SIZE))) {
+			CompactDataInput input = new CompactDataInput(countingInput);
+			byte[] header = new byte[HEADER_SIZE];
+			try {
+				input.readFully(header);
+			} catch (EOFException e) {
+				return new ExecutionDataIndex(executionDataFile, new byte[0], new long[0]);
+			}
+			if (header[0] != ExecutionDataWriter.BLOCK_HEADER) {
+				throw new IOException("Invalid execution data file " + executionDataFile + ".");
+			}
+
+			long[] sessionOffsets = new long[16];
+			int sessionCount = 0;
+			while (true) {
+				long offset = countingInput.count;
+				int blockType = input.read();
+				switch (blockType) {
+					case -1:
+						return new ExecutionDataIndex(executionDataFile, header,
+								Arrays.copyOf(sessionOffsets, sessionCount));
+					case ExecutionDataWriter.BLOCK_HEADER:
+						skipFully(input, HEADER_SIZE - 1);
+						break;
+					case ExecutionDataWriter.BLOCK_SESSIONINFO:
+						if (sessionCount == sessionOffsets.length) {
+							sessionOffsets = Arrays.copyOf(sessionOffsets, sessionCount * 2);
+						}
+						sessionOffsets[sessionCount++] = offset;
+						// id, start and dump time stamps
+						skipFully(input, input.readUnsignedShort());
+						skipFully(input, 2 * Long.BYTES);
+						break;
+					case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+						// class id, class name and probes
+						skipFully(input, Long.BYTES);
+						skipFully(input, input.readUnsignedShort());
+						skipFully(input, (input.readVarInt() + 7) / 8);
+						break;
+					default:
+						throw new IOException(String.format("Unknown block type %x in %s at offset %d.", blockType,
+								executionDataFile, offset));
+				}
+			}
+		}
+	}
+
+	private static void skipFully(InputStream input, long count) throws IOException {
+		long remaining = count;
+		while (remaining > 0) {
+			long skipped = input.skip(remaining);
+			if (skipped <= 0) {
+				if (input.read() == -1) {
+					throw new EOFException("Unexpected end of execution data.");
+				}
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/** Returns the number of sessions in the exec file. */
+	public int getSessionCount() {
+		return sessionOffsets.length;
+	}
+
+	/**
+	 * Splits the exec file into consecutive ranges of whole sessions. A new range is started at the first session that
+	 * starts at least the given number of bytes after the start of the current range.
+	 */
+	public List<Range> split(long minRangeSize) {
+		List<Range> ranges = new ArrayList<>();
+		long rangeStart = 0;
+		boolean rangeContainsSession = false;
+		for (long sessionOffset : sessionOffsets) {
+			if (rangeContainsSession && sessionOffset - rangeStart >= minRangeSize) {
+				ranges.add(new Range(rangeStart, sessionOffset));
+				rangeStart = sessionOffset;
+			}
+			rangeContainsSession = true;
+		}
+		ranges.add(new Range(rangeStart, executionDataFile.length()));
+		return ranges;
+	}
+
+	/**
+	 * Opens the given range of the exec file. The returned stream starts with a header block, so it can be read with
+	 * an {@link org.jacoco.core.data.ExecutionDataReader} like a complete exec file.
+	 */
+	public InputStream open(Range range) throws IOException {
+		FileInputStream fileInput = new FileInputStream(executionDataFile);
+		try {
+			fileInput.getChannel().position(range.start);
+			InputStream rangeInput = new BufferedInputStream(new LimitedInputStream(fileInput, range.end - range.start),
+					BUFFER_SIZE);
+			if (range.start == 0) {
+				return rangeInput;
+			}
+			return new SequenceInputStream(new ByteArrayInputStream(header), rangeInput);
+		} catch (IOException e) {
+			fileInput.close();
+			throw e;
+		}
+	}
+
+	/** A range of bytes of the exec file that contains whole sessions. */
+	public static class Range {
+
+		/** The offset of the first byte of the range. */
+		private final long start;
+
+		/** The offset after the last byte of the range. */
+		private final long end;
+
+		private Range(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + start + ", " + end + ")";
+		}
+	}
+
+	/** Counts the bytes that have been read or skipped. */
+	private static class CountingInputStream extends FilterInputStream {
+
+		/** The number of bytes read or skipped so far. */
+		private long count = 0;
+
+		private CountingInputStream(InputStream input) {
+			super(input);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int result = super.read();
+			if (result != -1) {
+				count++;
+			}
+			return result;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int result = super.read(buffer, offset, length);
+			if (result != -1) {
+				count += result;
+			}
+			return result;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+
+	/** Reads at most a given number of bytes from the underlying stream. */
+	private static class LimitedInputStream extends FilterInputStream {
+
+		/** The number of bytes that may still be read. */
+		private long remaining;
+
+		private LimitedInputStream(InputStream input, long limit) {
+			super(input);
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int result = super.read();
+			if (result != -1) {
+				remaining--;
+			}
+			return result;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int result = super.read(buffer, offset, (int) Math.min(length, remaining));
+			if (result != -1) {
+				remaining -= result;
+			}
+			return result;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(super.available(), remaining);
+		}
+	}
+}
@@ -19,9 +19,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 /**
@@ -31,6 +38,12 @@ import java.util.function.Consumer;
  */
 public class JaCoCoTestwiseReportGenerator {
 
+	/**
+	 * The minimum size of the ranges of an exec file that are converted in parallel. Large enough that the overhead of
+	 * opening the file is negligible and small enough that all threads are busy for exec files of a few hundred MB.
+	 */
+	private static final long DEFAULT_MIN_RANGE_SIZE = 16 * 1024 * 1024;
+
 	/** The execution data reader and converter. */
 	private final CachingExecutionDataReader executionDataReader;
 
@@ -67,6 +80,7 @@ public class JaCoCoTestwiseReportGenerator {
 		CachingExecutionDataReader.DumpConsumer dumpConsumer = executionDataReader
 				.buildCoverageConsumer(locationIncludeFilter, testwiseCoverage::add);
 		readAndConsumeDumps(executionDataFile, dumpConsumer);
+		executionDataReader.logMemoStatistics();
 		return testwiseCoverage;
 	}
 
@@ -83,27 +97,111 @@ public class JaCoCoTestwiseReportGenerator {
 		}
 	}
 
-	/** Converts the given dumps to a report. */
+	/**
+	 * Converts the given dumps to a report. May be called concurrently for different exec files, as the probes cache
+	 * is only read during the conversion. The consumer must be thread-safe in that case.
+	 */
 	public void convertAndConsume(File executionDataFile,
 								  Consumer<TestCoverageBuilder> consumer) throws IOException {
 		CachingExecutionDataReader.DumpConsumer dumpConsumer = executionDataReader
 				.buildCoverageConsumer(locationIncludeFilter, consumer);
 		readAndConsumeDumps(executionDataFile, dumpConsumer);
+		executionDataReader.logMemoStatistics();
+	}
+
+	/**
+	 * Converts the given dumps like {@link #convertAndConsume(File, Consumer)}, but splits the exec file into ranges of
+	 * sessions, which are converted in parallel on the given number of threads. The consumer is called on the calling
+	 * thread with the tests in the order of the exec file, so it does not need to be thread-safe.
+	 */
+	public void convertAndConsume(File executionDataFile, Consumer<TestCoverageBuilder> consumer,
+								  int threadCount) throws IOException {
+		convertAndConsume(executionDataFile, consumer, threadCount, DEFAULT_MIN_RANGE_SIZE);
+	}
+
+	/** @see #convertAndConsume(File, Consumer, int) */
+	/* package */ void convertAndConsume(File executionDataFile, Consumer<TestCoverageBuilder> consumer,
+										 int threadCount, long minRangeSize) throws IOException {
+		if (threadCount <= 1) {
+			convertAndConsume(executionDataFile, consumer);
+			return;
+		}
+		ExecutionDataIndex index = ExecutionDataIndex.create(executionDataFile);
+		List<ExecutionDataIndex.Range> ranges = index.split(minRangeSize);
+		if (ranges.size() == 1) {
+			convertAndConsume(executionDataFile, consumer);
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, ranges.size()));
+		try {
+			// Only a few ranges are converted ahead, so the converted tests of the whole file are never in memory
+			Deque<Future<List<TestCoverageBuilder>>> pendingRanges = new ArrayDeque<>();
+			Iterator<ExecutionDataIndex.Range> rangeIterator = ranges.iterator();
+			while (rangeIterator.hasNext() || !pendingRanges.isEmpty()) {
+				while (rangeIterator.hasNext() && pendingRanges.size() < 2 * threadCount) {
+					ExecutionDataIndex.Range range = rangeIterator.next();
+					pendingRanges.add(executor.submit(() -> convertRange(index, range)));
+				}
+				for (TestCoverageBuilder testCoverage : getConvertedRange(pendingRanges.remove())) {
+					consumer.accept(testCoverage);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		executionDataReader.logMemoStatistics();
+	}
+
+	/** Converts the sessions in the given range of an exec file. */
+	private List<TestCoverageBuilder> convertRange(ExecutionDataIndex index,
+												   ExecutionDataIndex.Range range) throws IOException {
+		List<TestCoverageBuilder> testCoverages = new ArrayList<>();
+		CachingExecutionDataReader.DumpConsumer dumpConsumer = executionDataReader
+				.buildCoverageConsumer(locationIncludeFilter, testCoverages::add);
+		try (InputStream input = index.open(range)) {
+			readAndConsumeDumps(input, dumpConsumer);
+		}
+		return testCoverages;
+	}
+
+	/** Waits for the conversion of a range and rethrows its exceptions. */
+	private static List<TestCoverageBuilder> getConvertedRange(
+			Future<List<TestCoverageBuilder>> convertedRange) throws IOException {
+		try {
+			return convertedRange.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while converting the execution data.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException("Converting the execution data failed.", e.getCause());
+		}
 	}
 
 	/** Reads the dumps from the given *.exec file. */
 	private void readAndConsumeDumps(File executionDataFile, Consumer<Dump> dumpConsumer) throws IOException {
 		try (InputStream input = new BufferedInputStream(new FileInputStream(executionDataFile))) {
-			ExecutionDataReader executionDataReader = new ExecutionDataReader(input);
-			DumpCallback dumpCallback = new DumpCallback(dumpConsumer);
-			executionDataReader.setExecutionDataVisitor(dumpCallback);
-			executionDataReader.setSessionInfoVisitor(dumpCallback);
-			executionDataReader.read();
-			// Ensure that the last read dump is also consumed
-			dumpCallback.processDump();
+			readAndConsumeDumps(input, dumpConsumer);
 		}
 	}
 
+	/** Reads the dumps from the given stream in the format of an *.exec file. */
+	private static void readAndConsumeDumps(InputStream input, Consumer<Dump> dumpConsumer) throws IOException {
+		ExecutionDataReader executionDataReader = new ExecutionDataReader(input);
+		DumpCallback dumpCallback = new DumpCallback(dumpConsumer);
+		executionDataReader.setExecutionDataVisitor(dumpCallback);
+		executionDataReader.setSessionInfoVisitor(dumpCallback);
+		executionDataReader.read();
+		// Ensure that the last read dump is also consumed
+		dumpCallback.processDump();
+	}
+
 	/** Collects execution information per session and passes it to the consumer . */
 	private static class DumpCallback implements IExecutionDataVisitor, ISessionInfoVisitor {
 
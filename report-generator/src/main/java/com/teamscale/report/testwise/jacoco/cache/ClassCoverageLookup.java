@@ -8,6 +8,7 @@ import org.jacoco.core.data.ExecutionData;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Holds information about a class' probes and to which line ranges they refer.
@@ -33,6 +34,9 @@ public class ClassCoverageLookup {
 	 */
 	private final List<SortedIntList> probes = new ArrayList<>();
 
+	/** All lines of the class that contain instructions and can therefore be covered. */
+	private final SortedIntList coverableLines = new SortedIntList();
+
 	/**
 	 * Constructor.
 	 *
@@ -58,6 +62,29 @@ public class ClassCoverageLookup {
 		probes.set(probeId, lines);
 	}
 
+	/** Adds a line that contains instructions and can therefore be covered. */
+	public void addCoverableLine(int line) {
+		coverableLines.add(line);
+	}
+
+	/** @see #coverableLines */
+	public SortedIntList getCoverableLines() {
+		return coverableLines;
+	}
+
+	/** @see #sourceFileName */
+	public String getSourceFileName() {
+		return sourceFileName;
+	}
+
+	/** Returns the package of the class (with / as separators), which is the empty string for the default package. */
+	public String getPackageName() {
+		if (className.contains("/")) {
+			return StringUtils.removeLastPart(className, '/');
+		}
+		return "";
+	}
+
 	/**
 	 * Ensures that the probes list is big enough to allow access to the given index. Intermediate list entries are
 	 * filled with null.
@@ -77,11 +104,7 @@ public class ClassCoverageLookup {
 											   ILogger logger) throws CoverageGenerationException {
 		boolean[] executedProbes = executionData.getProbes();
 
-		if (checkProbeInvariant(executedProbes)) {
-			throw new CoverageGenerationException("Probe lookup does not match with actual probe size for " +
-					sourceFileName + " " + className + " (" + probes.size() + " vs " + executedProbes.length + ")! " +
-					"This is a bug in the profiler tooling. Please report it back to CQSE.");
-		}
+		checkProbeInvariant(executedProbes);
 		if (sourceFileName == null) {
 			logger.warn(
 					"No source file name found for class " + className + "! This class was probably not compiled with " +
@@ -90,17 +113,23 @@ public class ClassCoverageLookup {
 		}
 
 		// we model the default package as the empty string
-		String packageName = "";
-		if (className.contains("/")) {
-			packageName = StringUtils.removeLastPart(className, '/');
-		}
-		final FileCoverageBuilder fileCoverage = new FileCoverageBuilder(packageName, sourceFileName);
-		fillFileCoverage(fileCoverage, executedProbes, logger);
+		final FileCoverageBuilder fileCoverage = new FileCoverageBuilder(getPackageName(), sourceFileName);
+		collectCoveredLines(executedProbes, fileCoverage::addLines, logger);
 
 		return fileCoverage;
 	}
 
-	private void fillFileCoverage(FileCoverageBuilder fileCoverage, boolean[] executedProbes, ILogger logger) {
+	/**
+	 * Adds the lines that are covered according to the given executed probes of this class to the given list. Unlike
+	 * {@link #getFileCoverage(ExecutionData, ILogger)}, this also works for classes without source file name.
+	 */
+	public void addCoveredLines(boolean[] executedProbes, SortedIntList coveredLines,
+								ILogger logger) throws CoverageGenerationException {
+		checkProbeInvariant(executedProbes);
+		collectCoveredLines(executedProbes, coveredLines::addAll, logger);
+	}
+
+	private void collectCoveredLines(boolean[] executedProbes, Consumer<SortedIntList> consumer, ILogger logger) {
 		for (int i = 0; i < probes.size(); i++) {
 			SortedIntList coveredLines = probes.get(i);
 			if (!executedProbes[i]) {
@@ -121,12 +150,16 @@ public class ClassCoverageLookup {
 								"Does the class contain debug information?");
 				continue;
 			}
-			fileCoverage.addLines(coveredLines);
+			consumer.accept(coveredLines);
 		}
 	}
 
 	/** Checks that the executed probes is not smaller than the cached probes. */
-	private boolean checkProbeInvariant(boolean[] executedProbes) {
-		return probes.size() > executedProbes.length;
+	private void checkProbeInvariant(boolean[] executedProbes) throws CoverageGenerationException {
+		if (probes.size() > executedProbes.length) {
+			throw new CoverageGenerationException("Probe lookup does not match with actual probe size for " +
+					sourceFileName + " " + className + " (" + probes.size() + " vs " + executedProbes.length + ")! " +
+					"This is a bug in the profiler tooling. Please report it back to CQSE.");
+		}
 	}
 }
@@ -4,19 +4,27 @@ import com.teamscale.report.EDuplicateClassFileBehavior;
 import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
 import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.ILogger;
+import com.teamscale.report.util.SortedIntList;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.report.JavaNames;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Holds {@link ClassCoverageLookup}s for all analyzed classes.
  */
 public class ProbesCache {
 
+	/** The default maximum number of probe patterns whose covered lines are memoized. */
+	private static final int DEFAULT_MAX_MEMOIZED_PROBE_PATTERNS = 10_000;
+
 	/** The logger. */
 	private final ILogger logger;
 
@@ -33,11 +41,40 @@ public class ProbesCache {
 
 	private final ClassNotFoundLogger classNotFoundLogger;
 
+	/**
+	 * The covered lines of the most recently used probe patterns. Many tests execute the same code in common classes,
+	 * e.g. for bootstrapping, so the same probe patterns occur over and over again. Must be synchronized on.
+	 */
+	private final Map<ProbePattern, SortedIntList> coveredLinesMemo;
+
+	/** The number of conversions whose covered lines were found in the {@link #coveredLinesMemo}. */
+	private final AtomicLong memoHitCount = new AtomicLong();
+
+	/** The number of conversions that looked up their covered lines in the {@link #coveredLinesMemo}. */
+	private final AtomicLong memoLookupCount = new AtomicLong();
+
 	/** Constructor. */
 	public ProbesCache(ILogger logger, EDuplicateClassFileBehavior duplicateClassFileBehavior) {
+		this(logger, duplicateClassFileBehavior, DEFAULT_MAX_MEMOIZED_PROBE_PATTERNS);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxMemoizedProbePatterns The maximum number of probe patterns whose covered lines are memoized. 0 disables
+	 *                                 the memo.
+	 */
+	public ProbesCache(ILogger logger, EDuplicateClassFileBehavior duplicateClassFileBehavior,
+					   int maxMemoizedProbePatterns) {
 		this.logger = logger;
 		this.classNotFoundLogger = new ClassNotFoundLogger(logger);
 		this.duplicateClassFileBehavior = duplicateClassFileBehavior;
+		this.coveredLinesMemo = new LinkedHashMap<ProbePattern, SortedIntList>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ProbePattern, SortedIntList> eldest) {
+				return size() > maxMemoizedProbePatterns;
+			}
+		};
 	}
 
 	/** Adds a new class entry to the cache and returns its {@link ClassCoverageLookup}. */
@@ -86,19 +123,81 @@ public class ProbesCache {
 	 */
 	public FileCoverageBuilder getCoverage(ExecutionData executionData,
 										   ClasspathWildcardIncludeFilter locationIncludeFilter) throws CoverageGenerationException {
-		long classId = executionData.getId();
-		if (!containsClassId(classId)) {
-			String fullyQualifiedClassName = new JavaNames().getQualifiedClassName(executionData.getName());
-			if (locationIncludeFilter.isIncluded(fullyQualifiedClassName + ".class")) {
-				classNotFoundLogger.log(fullyQualifiedClassName);
-			}
+		if (!isKnownClass(executionData, locationIncludeFilter)) {
 			return null;
 		}
 		if (!executionData.hasHits()) {
 			return null;
 		}
 
-		return classCoverageLookups.get(classId).getFileCoverage(executionData, logger);
+		ClassCoverageLookup classCoverageLookup = classCoverageLookups.get(executionData.getId());
+		if (classCoverageLookup.getSourceFileName() == null) {
+			// Logs that the class has no debug information
+			return classCoverageLookup.getFileCoverage(executionData, logger);
+		}
+
+		FileCoverageBuilder fileCoverage = new FileCoverageBuilder(classCoverageLookup.getPackageName(),
+				classCoverageLookup.getSourceFileName());
+		fileCoverage.addLines(getCoveredLines(classCoverageLookup, executionData));
+		return fileCoverage;
+	}
+
+	/**
+	 * Returns the covered lines of the class for the probes of the given {@link ExecutionData}, reusing the result for
+	 * a previous identical probe pattern if possible. The returned list must not be modified.
+	 */
+	private SortedIntList getCoveredLines(ClassCoverageLookup classCoverageLookup,
+										  ExecutionData executionData) throws CoverageGenerationException {
+		memoLookupCount.incrementAndGet();
+		ProbePattern probePattern = new ProbePattern(executionData.getId(), executionData.getProbes());
+		SortedIntList coveredLines;
+		synchronized (coveredLinesMemo) {
+			coveredLines = coveredLinesMemo.get(probePattern);
+		}
+		if (coveredLines != null) {
+			memoHitCount.incrementAndGet();
+			return coveredLines;
+		}
+
+		coveredLines = new SortedIntList();
+		classCoverageLookup.addCoveredLines(executionData.getProbes(), coveredLines, logger);
+		// The probes of the execution data may be reused, e.g. when the agent resets the coverage
+		ProbePattern memoizedProbePattern = new ProbePattern(executionData.getId(),
+				executionData.getProbes().clone());
+		synchronized (coveredLinesMemo) {
+			coveredLinesMemo.put(memoizedProbePattern, coveredLines);
+		}
+		return coveredLines;
+	}
+
+	/** Returns the number of conversions whose covered lines could be reused from a previous identical probe pattern. */
+	public long getMemoHitCount() {
+		return memoHitCount.get();
+	}
+
+	/** Returns the number of conversions of probes to covered lines, excluding classes without debug information. */
+	public long getMemoLookupCount() {
+		return memoLookupCount.get();
+	}
+
+	/**
+	 * Returns whether the class of the given {@link ExecutionData} has been analyzed. Otherwise, the class is reported
+	 * via {@link #flushLogger()} if it matches the include filter.
+	 */
+	public boolean isKnownClass(ExecutionData executionData, ClasspathWildcardIncludeFilter locationIncludeFilter) {
+		if (containsClassId(executionData.getId())) {
+			return true;
+		}
+		String fullyQualifiedClassName = new JavaNames().getQualifiedClassName(executionData.getName());
+		if (locationIncludeFilter.isIncluded(fullyQualifiedClassName + ".class")) {
+			classNotFoundLogger.log(fullyQualifiedClassName);
+		}
+		return false;
+	}
+
+	/** Returns the {@link ClassCoverageLookup}s of all analyzed classes by their class ID. */
+	public Map<Long, ClassCoverageLookup> getClassCoverageLookups() {
+		return Collections.unmodifiableMap(classCoverageLookups);
 	}
 
 	/** Returns true if the cache does not contain coverage for any class. */
@@ -110,4 +209,41 @@ public class ProbesCache {
 	public void flushLogger() {
 		classNotFoundLogger.flush();
 	}
+
+	/** The executed probes of a class, which determine its covered lines. */
+	private static class ProbePattern {
+
+		/** The ID of the class. */
+		private final long classId;
+
+		/** The executed probes of the class. */
+		private final boolean[] probes;
+
+		/** The cached hash code. */
+		private final int hashCode;
+
+		private ProbePattern(long classId, boolean[] probes) {
+			this.classId = classId;
+			this.probes = probes;
+			this.hashCode = 31 * Long.hashCode(classId) + Arrays.hashCode(probes);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof ProbePattern)) {
+				return false;
+			}
+			ProbePattern otherPattern = (ProbePattern) other;
+			return classId == otherPattern.classId && hashCode == otherPattern.hashCode && Arrays.equals(probes,
+					otherPattern.probes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
 }
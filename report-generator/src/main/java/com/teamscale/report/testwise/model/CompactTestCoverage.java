@@ -0,0 +1,85 @@
+package com.teamscale.report.testwise.model;
+
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable coverage of a test that refers to its files by their id in a {@link SourceFileTable} and stores the covered
+ * lines as primitive arrays of line ranges. Since it does not contain the test's uniform path, tests with identical
+ * coverage can share the same instance.
+ */
+/* package */ class CompactTestCoverage {
+
+	/** The ids of the covered files in ascending order. */
+	private final int[] fileIds;
+
+	/**
+	 * The covered lines of each file in {@link #fileIds}, as consecutive pairs of the first and last line of each
+	 * range.
+	 */
+	private final int[][] lineRanges;
+
+	/** The cached hash code. */
+	private final int hashCode;
+
+	private CompactTestCoverage(int[] fileIds, int[][] lineRanges) {
+		this.fileIds = fileIds;
+		this.lineRanges = lineRanges;
+		this.hashCode = 31 * Arrays.hashCode(fileIds) + Arrays.deepHashCode(lineRanges);
+	}
+
+	/** Creates the compact representation of the given coverage. Its files are added to the given table. */
+	public static CompactTestCoverage of(TestCoverageBuilder testCoverage, SourceFileTable sourceFiles) {
+		List<FileCoverageBuilder> files = testCoverage.getFiles();
+		long[] fileIdsAndIndices = new long[files.size()];
+		for (int i = 0; i < files.size(); i++) {
+			FileCoverageBuilder file = files.get(i);
+			fileIdsAndIndices[i] = ((long) sourceFiles.getId(file.getPath(), file.getFileName()) << 32) | i;
+		}
+		Arrays.sort(fileIdsAndIndices);
+
+		int[] fileIds = new int[files.size()];
+		int[][] lineRanges = new int[files.size()][];
+		for (int i = 0; i < fileIdsAndIndices.length; i++) {
+			fileIds[i] = (int) (fileIdsAndIndices[i] >>> 32);
+			lineRanges[i] = files.get((int) fileIdsAndIndices[i]).getCoveredLineRanges();
+		}
+		return new CompactTestCoverage(fileIds, lineRanges);
+	}
+
+	/** Creates a {@link TestCoverageBuilder} with this coverage for the test with the given uniform path. */
+	public TestCoverageBuilder toBuilder(String uniformPath, SourceFileTable sourceFiles) {
+		TestCoverageBuilder testCoverage = new TestCoverageBuilder(uniformPath);
+		for (int i = 0; i < fileIds.length; i++) {
+			FileCoverageBuilder file = new FileCoverageBuilder(sourceFiles.getPath(fileIds[i]),
+					sourceFiles.getFileName(fileIds[i]));
+			int[] ranges = lineRanges[i];
+			for (int j = 0; j < ranges.length; j += 2) {
+				file.addLineRange(ranges[j], ranges[j + 1]);
+			}
+			testCoverage.add(file);
+		}
+		return testCoverage;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CompactTestCoverage)) {
+			return false;
+		}
+		CompactTestCoverage that = (CompactTestCoverage) other;
+		return hashCode == that.hashCode && Arrays.equals(fileIds, that.fileIds) &&
+				Arrays.deepEquals(lineRanges, that.lineRanges);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+}
@@ -0,0 +1,65 @@
+package com.teamscale.report.testwise.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns an int id to every distinct source file, i.e. combination of path and file name, so that the coverage of
+ * many tests can refer to the same file without keeping its own strings and maps. Every path is stored only once.
+ */
+/* package */ class SourceFileTable {
+
+	/** The ids of the files per path and file name. */
+	private final Map<String, Map<String, Integer>> fileIds = new HashMap<>();
+
+	/** The path of every file by id. Files of the same path share the same string instance. */
+	private String[] paths = new String[64];
+
+	/** The name of every file by id. */
+	private String[] fileNames = new String[64];
+
+	/** The number of files in the table. */
+	private int size = 0;
+
+	/** Returns the id of the given file and adds it to the table if necessary. */
+	public int getId(String path, String fileName) {
+		Map<String, Integer> fileIdsOfPath = fileIds.get(path);
+		if (fileIdsOfPath == null) {
+			fileIdsOfPath = new HashMap<>();
+			fileIds.put(path, fileIdsOfPath);
+		}
+		Integer id = fileIdsOfPath.get(fileName);
+		if (id != null) {
+			return id;
+		}
+
+		if (size == paths.length) {
+			paths = Arrays.copyOf(paths, size * 2);
+			fileNames = Arrays.copyOf(fileNames, size * 2);
+		}
+		String internedPath = path;
+		if (!fileIdsOfPath.isEmpty()) {
+			internedPath = paths[fileIdsOfPath.values().iterator().next()];
+		}
+		paths[size] = internedPath;
+		fileNames[size] = fileName;
+		fileIdsOfPath.put(fileName, size);
+		return size++;
+	}
+
+	/** Returns the path of the file with the given id. */
+	public String getPath(int id) {
+		return paths[id];
+	}
+
+	/** Returns the name of the file with the given id. */
+	public String getFileName(int id) {
+		return fileNames[id];
+	}
+
+	/** Returns the number of files in the table. */
+	public int size() {
+		return size;
+	}
+}
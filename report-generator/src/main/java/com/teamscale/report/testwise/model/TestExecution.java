@@ -19,6 +19,7 @@ package com.teamscale.report.testwise.model;
 
 import com.fasterxml.jackson.annotation.JsonAlias;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.io.Serializable;
@@ -40,9 +41,13 @@ public class TestExecution implements Serializable {
 	@Deprecated
 	private long durationMillis;
 
-	/** Duration of the execution in seconds. */
+	/**
+	 * Duration of the execution in seconds. Omitted if unset, as it would otherwise override the durationSeconds,
+	 * which mappers without field access write based on the {@link #durationMillis}.
+	 */
 	@JsonProperty("duration")
 	@JsonAlias("durationSeconds")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
 	private Double duration;
 
 	/** The actual execution result state. */
@@ -37,19 +37,33 @@ public class TestInfo {
 	 */
 	public final String message;
 
+	/**
+	 * Identifies the covered {@link #paths} in reports with deduplicated coverage, in which only the first test with
+	 * this coverage in a report file lists the paths. {@code null} in classic reports.
+	 *
+	 * @see com.teamscale.report.testwise.TestwiseCoverageReportExpander
+	 */
+	public final String coverageId;
+
 	/** All paths that the test did cover. */
 	public final List<PathCoverage> paths = new ArrayList<>();
 
+	public TestInfo(String uniformPath, String sourcePath, String content, Double duration,
+					ETestExecutionResult result, String message) {
+		this(uniformPath, sourcePath, content, duration, result, message, null);
+	}
+
 	@JsonCreator
 	public TestInfo(@JsonProperty("uniformPath") String uniformPath, @JsonProperty("sourcePath") String sourcePath,
 					@JsonProperty("content") String content, @JsonProperty("duration") Double duration,
 					@JsonProperty("result") ETestExecutionResult result,
-					@JsonProperty("message") String message) {
+					@JsonProperty("message") String message, @JsonProperty("coverageId") String coverageId) {
 		this.uniformPath = uniformPath;
 		this.sourcePath = sourcePath;
 		this.content = content;
 		this.duration = duration;
 		this.result = result;
 		this.message = message;
+		this.coverageId = coverageId;
 	}
 }
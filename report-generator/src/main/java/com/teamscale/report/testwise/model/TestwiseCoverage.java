@@ -2,15 +2,31 @@ package com.teamscale.report.testwise.model;
 
 import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
 
+import java.util.AbstractCollection;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
-/** Container for coverage produced by multiple tests. */
+/**
+ * Container for coverage produced by multiple tests.
+ * <p>
+ * Test suites with tens of thousands of tests would need many gigabytes of heap if all their
+ * {@link TestCoverageBuilder}s were kept. The coverage is therefore stored in a compact form: the paths and names of
+ * the files are interned in a {@link SourceFileTable}, covered lines are stored as primitive arrays of ranges and
+ * tests with identical coverage share the same {@link CompactTestCoverage}. The shared coverage is reference-counted,
+ * so it is released as soon as no test has this coverage anymore, e.g. since further coverage of the test was merged.
+ */
 public class TestwiseCoverage {
 
-	/** A mapping from test ID to {@link TestCoverageBuilder}. */
-	private final Map<String, TestCoverageBuilder> tests = new HashMap<>();
+	/** The files covered by any test. */
+	private final SourceFileTable sourceFiles = new SourceFileTable();
+
+	/** A mapping from test ID to its coverage. */
+	private final Map<String, CompactTestCoverage> tests = new HashMap<>();
+
+	/** The canonical instance of every distinct coverage, which is shared by all tests with this coverage. */
+	private final Map<CompactTestCoverage, SharedCoverage> distinctCoverage = new HashMap<>();
 
 	/**
 	 * Adds the {@link TestCoverageBuilder} to the map.
@@ -20,11 +36,27 @@ public class TestwiseCoverage {
 		if (coverage == null || coverage.isEmpty()) {
 			return;
 		}
-		if (tests.containsKey(coverage.getUniformPath())) {
-			TestCoverageBuilder testCoverage = tests.get(coverage.getUniformPath());
-			testCoverage.addAll(coverage.getFiles());
-		} else {
-			tests.put(coverage.getUniformPath(), coverage);
+		CompactTestCoverage existingCoverage = tests.get(coverage.getUniformPath());
+		if (existingCoverage != null) {
+			TestCoverageBuilder mergedCoverage = existingCoverage.toBuilder(coverage.getUniformPath(), sourceFiles);
+			mergedCoverage.addAll(coverage.getFiles());
+			coverage = mergedCoverage;
+		}
+		CompactTestCoverage compactCoverage = CompactTestCoverage.of(coverage, sourceFiles);
+		SharedCoverage sharedCoverage = distinctCoverage.computeIfAbsent(compactCoverage, SharedCoverage::new);
+		sharedCoverage.testCount++;
+		tests.put(coverage.getUniformPath(), sharedCoverage.coverage);
+		if (existingCoverage != null) {
+			release(existingCoverage);
+		}
+	}
+
+	/** Removes a test from the tests that share the given coverage and forgets the coverage if it was the last one. */
+	private void release(CompactTestCoverage coverage) {
+		SharedCoverage sharedCoverage = distinctCoverage.get(coverage);
+		sharedCoverage.testCount--;
+		if (sharedCoverage.testCount == 0) {
+			distinctCoverage.remove(coverage);
 		}
 	}
 
@@ -35,12 +67,62 @@ public class TestwiseCoverage {
 		if (testwiseCoverage == null) {
 			return;
 		}
-		for (TestCoverageBuilder value : testwiseCoverage.tests.values()) {
+		for (TestCoverageBuilder value : testwiseCoverage.getTests()) {
 			this.add(value);
 		}
 	}
 
+	/** Returns the number of distinct coverages, i.e. of {@link CompactTestCoverage}s that are kept in memory. */
+	/* package */ int getDistinctCoverageCount() {
+		return distinctCoverage.size();
+	}
+
+	/** Returns the number of files whose path and name are kept in memory. */
+	/* package */ int getSourceFileCount() {
+		return sourceFiles.size();
+	}
+
+	/**
+	 * Returns the coverage of all tests. The {@link TestCoverageBuilder}s are created on the fly while iterating, so
+	 * changes to them are not reflected in this container.
+	 */
 	public Collection<TestCoverageBuilder> getTests() {
-		return tests.values();
+		return new AbstractCollection<TestCoverageBuilder>() {
+			@Override
+			public Iterator<TestCoverageBuilder> iterator() {
+				Iterator<Map.Entry<String, CompactTestCoverage>> entries = tests.entrySet().iterator();
+				return new Iterator<TestCoverageBuilder>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public TestCoverageBuilder next() {
+						Map.Entry<String, CompactTestCoverage> entry = entries.next();
+						return entry.getValue().toBuilder(entry.getKey(), sourceFiles);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return tests.size();
+			}
+		};
+	}
+
+	/** The canonical instance of a distinct coverage and the number of tests that have this coverage. */
+	private static class SharedCoverage {
+
+		/** The coverage that is shared by the tests. */
+		private final CompactTestCoverage coverage;
+
+		/** The number of tests that have this coverage. */
+		private int testCount = 0;
+
+		private SharedCoverage(CompactTestCoverage coverage) {
+			this.coverage = coverage;
+		}
 	}
 }
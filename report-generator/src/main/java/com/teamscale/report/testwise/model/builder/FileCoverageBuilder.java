@@ -5,6 +5,7 @@ import com.teamscale.report.testwise.model.LineRange;
 import com.teamscale.report.util.SortedIntList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -99,6 +100,25 @@ public class FileCoverageBuilder {
 		return coveredRanges.stream().map(LineRange::toReportString).collect(Collectors.joining(","));
 	}
 
+	/**
+	 * Returns the covered lines as consecutive pairs of the first and last line of each range, e.g. <code>[1, 5, 7,
+	 * 7]</code> for 1-5,7.
+	 */
+	public int[] getCoveredLineRanges() {
+		int[] ranges = new int[coveredLines.size() * 2];
+		int rangeCount = 0;
+		for (int i = 0; i < coveredLines.size(); i++) {
+			int line = coveredLines.get(i);
+			if (rangeCount > 0 && ranges[rangeCount - 1] == line - 1) {
+				ranges[rangeCount - 1] = line;
+			} else {
+				ranges[rangeCount++] = line;
+				ranges[rangeCount++] = line;
+			}
+		}
+		return Arrays.copyOf(ranges, rangeCount);
+	}
+
 	/** Returns true if there is no coverage for the file yet. */
 	public boolean isEmpty() {
 		return coveredLines.size() == 0;
@@ -21,21 +21,36 @@ import java.util.Set;
 public class TestInfoFactory {
 
 	/** Maps uniform paths to test details. */
-	private Map<String, TestDetails> testDetailsMap = new HashMap<>();
+	private final Map<String, TestDetails> testDetailsMap = new HashMap<>();
 
 	/** Maps uniform paths to test executions. */
-	private Map<String, TestExecution> testExecutionsMap = new HashMap<>();
+	private final Map<String, TestExecution> testExecutionsMap = new HashMap<>();
 
 	/** Holds all uniform paths for tests that have been written to the outputFile. */
 	private final Set<String> processedTestUniformPaths = new HashSet<>();
 
+	/**
+	 * Creates an empty factory. Test details and executions are added with {@link #addTestDetails(TestDetails)} and
+	 * {@link #addTestExecution(TestExecution)}, e.g. while they are streamed from disk with
+	 * {@link com.teamscale.report.ReportUtils#streamObjects}.
+	 */
+	public TestInfoFactory() {
+		// nothing to do
+	}
+
 	public TestInfoFactory(List<TestDetails> testDetails, List<TestExecution> testExecutions) {
-		for (TestDetails testDetail : testDetails) {
-			testDetailsMap.put(testDetail.uniformPath, testDetail);
-		}
-		for (TestExecution testExecution : testExecutions) {
-			testExecutionsMap.put(testExecution.getUniformPath(), testExecution);
-		}
+		testDetails.forEach(this::addTestDetails);
+		testExecutions.forEach(this::addTestExecution);
+	}
+
+	/** Adds the details of a test. Later details of the same test replace earlier ones. */
+	public void addTestDetails(TestDetails testDetails) {
+		testDetailsMap.put(testDetails.uniformPath, testDetails);
+	}
+
+	/** Adds the execution of a test. Later executions of the same test replace earlier ones. */
+	public void addTestExecution(TestExecution testExecution) {
+		testExecutionsMap.put(testExecution.getUniformPath(), testExecution);
 	}
 
 	/**
@@ -86,9 +101,9 @@ public class TestInfoFactory {
 
 	/**
 	 * Strips parameterized test arguments when the full path given in the coverage file cannot be found in the test
-	 * details.
+	 * details. All variants of a parameterized test are therefore resolved to the same uniform path.
 	 */
-	private String resolveUniformPath(String originalUniformPath) {
+	public String resolveUniformPath(String originalUniformPath) {
 		String uniformPath = originalUniformPath;
 		TestDetails testDetails = testDetailsMap.get(uniformPath);
 		if (testDetails == null) {
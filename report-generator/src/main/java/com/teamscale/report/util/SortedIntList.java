@@ -58,6 +58,20 @@ public class SortedIntList {
 
 	/** Inserts all values from the given list, ignoring duplicates. */
 	public void addAll(SortedIntList input) {
+		if (input.isEmpty()) {
+			return;
+		}
+		if (isEmpty() || input.list[0] > list[count - 1]) {
+			// All values go to the end, e.g. when copying memoized covered lines
+			if (count + input.count > list.length) {
+				int[] n = new int[Math.max(list.length * 2, count + input.count)];
+				System.arraycopy(list, 0, n, 0, count);
+				list = n;
+			}
+			System.arraycopy(input.list, 0, list, count, input.count);
+			count += input.count;
+			return;
+		}
 		for (int i = 0; i < input.size(); i++) {
 			add(input.get(i));
 		}
@@ -181,6 +181,14 @@ public class CachingInstructionsBuilder extends InstructionsBuilder {
 			}
 			classCoverageLookup.addProbe(coveredProbe.probeId, coveredLines);
 		}
+
+		// ADDED
+		// Records all lines with instructions, so that uncovered lines can be reported as well
+		for (Instruction instruction : instructions.values()) {
+			if (instruction.getLine() != -1) {
+				classCoverageLookup.addCoverableLine(instruction.getLine());
+			}
+		}
 	}
 
 	/**
@@ -0,0 +1,102 @@
+package com.teamscale.report;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.teamscale.client.JsonUtils;
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.testwise.ETestArtifactFormat;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.report.testwise.model.TestInfo;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests for reading test artifacts with {@link ReportUtils}. */
+class ReportUtilsTest {
+
+	/** The number of test executions of the truncated test execution file. */
+	private static final int TEST_EXECUTION_COUNT = 1000;
+
+	@TempDir
+	File tempDir;
+
+	/** Ensures that the elements of all files of the artifact type are streamed to the {@link TestInfoFactory}. */
+	@Test
+	void streamsObjectsOfAllFiles() throws Exception {
+		File shard = new File(tempDir, "shard");
+		Files.createDirectories(shard.toPath());
+		JsonUtils.serializeToFile(new File(tempDir, "test-list.json"),
+				Arrays.asList(new TestDetails("Test1", "Test1", "a"), new TestDetails("Test2", "Test2", "b")));
+		JsonUtils.serializeToFile(new File(shard, "test-list-2.json"),
+				Collections.singletonList(new TestDetails("Test3", "Test3", "c")));
+		Files.write(new File(shard, "test-list-empty.json").toPath(), "null".getBytes(StandardCharsets.UTF_8));
+		JsonUtils.serializeToFile(new File(shard, "test-execution.json"),
+				Collections.singletonList(new TestExecution("Test2", 2000, ETestExecutionResult.FAILURE, "boom")));
+
+		TestInfoFactory testInfoFactory = new TestInfoFactory();
+		List<File> directories = Collections.singletonList(tempDir);
+		assertThat(ReportUtils.streamObjects(ETestArtifactFormat.TEST_LIST, TestDetails.class, directories,
+				testInfoFactory::addTestDetails)).isEqualTo(3);
+		assertThat(ReportUtils.streamObjects(ETestArtifactFormat.TEST_EXECUTION, TestExecution.class, directories,
+				testInfoFactory::addTestExecution)).isEqualTo(1);
+
+		TestInfo testInfo = testInfoFactory.createFor(new TestCoverageBuilder("Test2"));
+		assertThat(testInfo.content).isEqualTo("b");
+		assertThat(testInfo.result).isEqualTo(ETestExecutionResult.FAILURE);
+		assertThat(testInfo.message).isEqualTo("boom");
+		assertThat(testInfoFactory.createTestInfosWithoutCoverage()).extracting(info -> info.uniformPath)
+				.containsExactlyInAnyOrder("Test1", "Test3");
+		assertThat(ReportUtils.readObjects(ETestArtifactFormat.TEST_LIST, TestDetails[].class, directories))
+				.extracting(testDetails -> testDetails.uniformPath).containsExactlyInAnyOrder("Test1", "Test2", "Test3");
+	}
+
+	/** Ensures that files that do not contain a JSON array are rejected. */
+	@Test
+	void rejectsFilesWithoutArray() throws Exception {
+		Files.write(new File(tempDir, "test-list.json").toPath(), "{}".getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> ReportUtils.streamObjects(ETestArtifactFormat.TEST_LIST, TestDetails.class,
+				Collections.singletonList(tempDir), testDetails -> {
+				})).isInstanceOf(IOException.class).hasMessageContaining("Expected a JSON array");
+	}
+
+	/**
+	 * Ensures that the elements are passed to the consumer while the file is read, i.e. without reading the whole
+	 * array first. The array of the file is truncated, so reading it at once would fail without returning any element.
+	 */
+	@Test
+	void streamsElementsWhileReading() throws Exception {
+		File testExecutionFile = new File(tempDir, "test-execution.json");
+		try (JsonGenerator generator = JsonUtils.createFactory().createGenerator(testExecutionFile,
+				JsonEncoding.UTF8)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+			generator.writeStartArray();
+			for (int i = 0; i < TEST_EXECUTION_COUNT; i++) {
+				generator.writeObject(new TestExecution("com/example/Test" + i, i, ETestExecutionResult.PASSED));
+			}
+		}
+		List<File> files = Collections.singletonList(testExecutionFile);
+
+		List<String> uniformPaths = new ArrayList<>();
+		assertThatThrownBy(() -> ReportUtils.streamObjects(ETestArtifactFormat.TEST_EXECUTION, TestExecution.class,
+				files, testExecution -> uniformPaths.add(testExecution.getUniformPath())))
+				.isInstanceOf(IOException.class);
+		assertThat(uniformPaths).hasSize(TEST_EXECUTION_COUNT).startsWith("com/example/Test0");
+		assertThatThrownBy(() -> ReportUtils.readObjects(ETestArtifactFormat.TEST_EXECUTION, TestExecution[].class,
+				files)).isInstanceOf(IOException.class);
+	}
+}
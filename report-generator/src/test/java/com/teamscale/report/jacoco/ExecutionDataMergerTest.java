@@ -0,0 +1,133 @@
+package com.teamscale.report.jacoco;
+
+import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the {@link ExecutionDataMerger}. */
+class ExecutionDataMergerTest {
+
+	/** The number of classes of the synthetic application. */
+	private static final int CLASS_COUNT = 1000;
+
+	/** The number of probes per class. */
+	private static final int PROBE_COUNT = 50;
+
+	@TempDir
+	File tempDir;
+
+	/** Ensures that the merged execution data is the same as the one of JaCoCo's {@link ExecFileLoader}. */
+	@Test
+	void mergesLikeExecFileLoader() throws Exception {
+		List<File> files = writeExecutionDataFiles(50);
+
+		Dump dump = new ExecutionDataMerger(null, 4).merge(files);
+
+		ExecFileLoader loader = new ExecFileLoader();
+		for (File file : files) {
+			loader.load(file);
+		}
+		assertSameExecutionData(dump.store, loader.getExecutionDataStore());
+		SessionInfo expectedSessionInfo = loader.getSessionInfoStore().getMerged("merged");
+		assertThat(dump.info.getId()).isEqualTo("merged");
+		assertThat(dump.info.getStartTimeStamp()).isEqualTo(expectedSessionInfo.getStartTimeStamp());
+		assertThat(dump.info.getDumpTimeStamp()).isEqualTo(expectedSessionInfo.getDumpTimeStamp());
+	}
+
+	/** Ensures that the execution data of excluded classes is dropped. */
+	@Test
+	void dropsExcludedClasses() throws Exception {
+		List<File> files = writeExecutionDataFiles(10);
+
+		Dump dump = new ExecutionDataMerger(new ClasspathWildcardIncludeFilter("com.example.*", "*.Class1*"), 3)
+				.merge(files);
+
+		ExecFileLoader loader = new ExecFileLoader();
+		for (File file : files) {
+			loader.load(file);
+		}
+		ExecutionDataStore expectedStore = new ExecutionDataStore();
+		for (ExecutionData executionData : loader.getExecutionDataStore().getContents()) {
+			if (!executionData.getName().startsWith("com/example/Class1")) {
+				expectedStore.put(executionData);
+			}
+		}
+		assertThat(dump.store.getContents()).hasSize(CLASS_COUNT - 111);
+		assertSameExecutionData(dump.store, expectedStore);
+	}
+
+	/** Compares the time needed to load many small exec files with the {@link ExecFileLoader} and in parallel. */
+	@Test
+	@Tag("benchmark")
+	void benchmark() throws Exception {
+		List<File> files = writeExecutionDataFiles(500);
+		int threadCount = Runtime.getRuntime().availableProcessors();
+
+		long start = System.nanoTime();
+		ExecFileLoader loader = new ExecFileLoader();
+		for (File file : files) {
+			loader.load(file);
+		}
+		long loaderNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		Dump dump = new ExecutionDataMerger(null, threadCount).merge(files);
+		long mergerNanos = System.nanoTime() - start;
+
+		System.out.printf("Merging %d exec files: %d ms with ExecFileLoader, %d ms with %d threads%n", files.size(),
+				loaderNanos / 1_000_000, mergerNanos / 1_000_000, threadCount);
+		assertSameExecutionData(dump.store, loader.getExecutionDataStore());
+	}
+
+	private static void assertSameExecutionData(ExecutionDataStore actual, ExecutionDataStore expected) {
+		assertThat(actual.getContents()).hasSameSizeAs(expected.getContents());
+		for (ExecutionData expectedData : expected.getContents()) {
+			ExecutionData actualData = actual.get(expectedData.getId());
+			assertThat(actualData).isNotNull();
+			assertThat(actualData.getName()).isEqualTo(expectedData.getName());
+			assertThat(actualData.getProbes()).isEqualTo(expectedData.getProbes());
+		}
+	}
+
+	/** Writes exec files of one session each, in which every class has a few random probes set. */
+	private List<File> writeExecutionDataFiles(int fileCount) throws IOException {
+		Random random = new Random(42);
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < fileCount; i++) {
+			File file = new File(tempDir, "pod-" + i + ".exec");
+			try (OutputStream output = new BufferedOutputStream(new FileOutputStream(file))) {
+				ExecutionDataWriter writer = new ExecutionDataWriter(output);
+				writer.visitSessionInfo(new SessionInfo("pod-" + i, 1000 + random.nextInt(1000),
+						5000 + random.nextInt(1000)));
+				for (int classIndex = 0; classIndex < CLASS_COUNT; classIndex++) {
+					boolean[] probes = new boolean[PROBE_COUNT];
+					for (int probe = 0; probe < 3; probe++) {
+						probes[random.nextInt(PROBE_COUNT)] = true;
+					}
+					writer.visitClassExecution(new ExecutionData(classIndex, "com/example/Class" + classIndex,
+							probes));
+				}
+			}
+			files.add(file);
+		}
+		return files;
+	}
+}
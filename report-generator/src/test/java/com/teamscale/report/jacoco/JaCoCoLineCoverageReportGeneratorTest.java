@@ -0,0 +1,233 @@
+package com.teamscale.report.jacoco;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.jacoco.dump.Dump;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import com.teamscale.test.TestDataBase;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/** Tests for {@link JaCoCoLineCoverageReportGenerator}. */
+public class JaCoCoLineCoverageReportGeneratorTest extends TestDataBase {
+
+	@TempDir
+	File tempDir;
+
+	/** Ensures that the line coverage is the same as in the report of the {@link JaCoCoXmlReportGenerator}. */
+	@Test
+	void testSameLineCoverageAsXmlReport() throws Exception {
+		List<File> classFiles = Collections.singletonList(useTestFile("ignore-uncovered-classes"));
+		Dump dump = createDump(classFiles);
+
+		String lineCoverageReport = convert(createLineCoverageGenerator(classFiles, false), dump);
+		String xmlReport = convert(createXmlGenerator(classFiles, false), dump);
+
+		assertThat(getLines(lineCoverageReport)).isNotEmpty().isEqualTo(getLines(xmlReport));
+		assertThat(lineCoverageReport).contains("TestClassTwo");
+	}
+
+	/** Ensures that uncovered classes are removed from the report if ignore-uncovered-classes is set. */
+	@Test
+	void testShrinking() throws Exception {
+		String testFolderName = "ignore-uncovered-classes";
+		long classId = CRC64.classId(Files.readAllBytes(useTestFile(testFolderName + "/TestClass.class").toPath()));
+		ExecutionDataStore store = new ExecutionDataStore();
+		store.put(new ExecutionData(classId, "TestClass", new boolean[]{true, true, true}));
+
+		String report = convert(
+				createLineCoverageGenerator(Collections.singletonList(useTestFile(testFolderName)), true),
+				new Dump(new SessionInfo("session-id", 124L, 125L), store));
+
+		assertThat(report).contains("TestClass.java").doesNotContain("TestClassTwo").doesNotContain("ITestInterface");
+	}
+
+	@Test
+	void testEmptyCoverageFileThrowsException() {
+		List<File> classFiles = Collections.singletonList(useTestFile("empty-report-handling"));
+		Dump dump = new Dump(new SessionInfo("session-id", 124L, 125L), new ExecutionDataStore());
+
+		assertThatThrownBy(() -> convert(createLineCoverageGenerator(classFiles, false), dump))
+				.isExactlyInstanceOf(EmptyReportException.class)
+				.hasMessageContaining("does not contain any covered source code lines");
+	}
+
+	/**
+	 * Benchmark that compares the conversion of a dump for all classes of Jackson Databind with the
+	 * {@link JaCoCoXmlReportGenerator} and the {@link JaCoCoLineCoverageReportGenerator}. The agent converts dumps
+	 * repeatedly, so the first and subsequent conversions are measured separately.
+	 */
+	@Test
+	@Tag("benchmark")
+	void benchmarkAgainstXmlReportGenerator() throws Exception {
+		List<File> classFiles = Collections.singletonList(
+				Paths.get(ObjectMapper.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile());
+		Dump dump = createDump(classFiles);
+
+		ICoverageReportGenerator xmlGenerator = createXmlGenerator(classFiles, false);
+		ICoverageReportGenerator lineCoverageGenerator = createLineCoverageGenerator(classFiles, false);
+		long xmlFirstNanos = measure(xmlGenerator, dump, 1);
+		long lineCoverageFirstNanos = measure(lineCoverageGenerator, dump, 1);
+		long xmlNanos = measure(xmlGenerator, dump, 5);
+		long lineCoverageNanos = measure(lineCoverageGenerator, dump, 5);
+
+		System.out.printf("Converting a dump of %d classes: XML report %d ms (first %d ms), " +
+						"line coverage report %d ms (first %d ms)%n", dump.store.getContents().size(),
+				xmlNanos / 1_000_000, xmlFirstNanos / 1_000_000, lineCoverageNanos / 1_000_000,
+				lineCoverageFirstNanos / 1_000_000);
+		assertThat(getLines(convert(lineCoverageGenerator, dump)))
+				.containsAll(getLines(convert(xmlGenerator, dump)).stream()
+						.filter(line -> line.endsWith("covered")).collect(TreeSet::new, Set::add, Set::addAll));
+	}
+
+	/** Returns the average time of a conversion in nanoseconds. */
+	private long measure(ICoverageReportGenerator generator, Dump dump, int runs) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			generator.convert(dump, new File(tempDir, "coverage.xml"));
+		}
+		return (System.nanoTime() - start) / runs;
+	}
+
+	/**
+	 * Creates a dump in which every other probe of all classes in the given class files has been executed.
+	 */
+	public static Dump createDump(List<File> classFiles) throws IOException {
+		ExecutionDataStore store = new ExecutionDataStore();
+		for (File classFile : classFiles) {
+			if (classFile.isDirectory()) {
+				File[] files = classFile.listFiles((dir, name) -> name.endsWith(".class"));
+				for (File file : files) {
+					addExecutionData(store, Files.readAllBytes(file.toPath()));
+				}
+				continue;
+			}
+			try (ZipFile zipFile = new ZipFile(classFile)) {
+				Enumeration<? extends ZipEntry> entries = zipFile.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					if (!entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF")) {
+						continue;
+					}
+					try (InputStream in = zipFile.getInputStream(entry)) {
+						addExecutionData(store, readAllBytes(in));
+					}
+				}
+			}
+		}
+		return new Dump(new SessionInfo("session-id", 124L, 125L), store);
+	}
+
+	private static void addExecutionData(ExecutionDataStore store, byte[] classFile) {
+		int[] probeCount = new int[1];
+		String[] className = new String[1];
+		InstrSupport.classReaderFor(classFile).accept(new ClassProbesAdapter(new ClassProbesVisitor() {
+			@Override
+			public void visit(int version, int access, String name, String signature, String superName,
+							  String[] interfaces) {
+				className[0] = name;
+			}
+
+			@Override
+			public MethodProbesVisitor visitMethod(int access, String name, String descriptor, String signature,
+												   String[] exceptions) {
+				return null;
+			}
+
+			@Override
+			public void visitTotalProbeCount(int count) {
+				probeCount[0] = count;
+			}
+		}, false), 0);
+
+		boolean[] probes = new boolean[probeCount[0]];
+		for (int i = 0; i < probes.length; i += 2) {
+			probes[i] = true;
+		}
+		store.put(new ExecutionData(CRC64.classId(classFile), className[0], probes));
+	}
+
+	private static byte[] readAllBytes(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int count;
+		while ((count = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+	/** Returns all lines of the report as <code>package/file:line:covered</code> or <code>...:missed</code>. */
+	private static Set<String> getLines(String report) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+		DocumentBuilder builder = factory.newDocumentBuilder();
+		Document document = builder.parse(new ByteArrayInputStream(report.getBytes("UTF-8")));
+
+		Set<String> lines = new TreeSet<>();
+		NodeList sourceFiles = document.getElementsByTagName("sourcefile");
+		for (int i = 0; i < sourceFiles.getLength(); i++) {
+			Element sourceFile = (Element) sourceFiles.item(i);
+			String path = ((Element) sourceFile.getParentNode()).getAttribute("name") + "/" + sourceFile
+					.getAttribute("name");
+			NodeList lineElements = sourceFile.getElementsByTagName("line");
+			for (int j = 0; j < lineElements.getLength(); j++) {
+				Element line = (Element) lineElements.item(j);
+				boolean covered = Integer.parseInt(line.getAttribute("ci")) > 0;
+				lines.add(path + ":" + line.getAttribute("nr") + ":" + (covered ? "covered" : "missed"));
+			}
+		}
+		return lines;
+	}
+
+	private String convert(ICoverageReportGenerator generator, Dump dump) throws Exception {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		generator.convert(dump, new File(tempDir, "coverage.xml")).copy(stream);
+		return stream.toString("UTF-8");
+	}
+
+	private static ICoverageReportGenerator createLineCoverageGenerator(List<File> classFiles,
+																		boolean ignoreUncoveredClasses) {
+		return new JaCoCoLineCoverageReportGenerator(classFiles, new ClasspathWildcardIncludeFilter(null, null),
+				EDuplicateClassFileBehavior.IGNORE, ignoreUncoveredClasses, mock(ILogger.class));
+	}
+
+	private static ICoverageReportGenerator createXmlGenerator(List<File> classFiles, boolean ignoreUncoveredClasses) {
+		return new JaCoCoXmlReportGenerator(classFiles, new ClasspathWildcardIncludeFilter(null, null),
+				EDuplicateClassFileBehavior.IGNORE, ignoreUncoveredClasses, mock(ILogger.class));
+	}
+}
@@ -4,12 +4,19 @@ import com.teamscale.report.EDuplicateClassFileBehavior;
 import com.teamscale.report.jacoco.dump.Dump;
 import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
 import com.teamscale.report.util.ILogger;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.teamscale.test.TestDataBase;
+import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfo;
 import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.jacoco.report.IReportVisitor;
+import org.jacoco.report.xml.XMLFormatter;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -17,7 +24,9 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -26,6 +35,9 @@ import static org.mockito.Mockito.mock;
 /** Tests report generation with and without duplicate classes. */
 public class JaCoCoXmlReportGeneratorTest extends TestDataBase {
 
+	@TempDir
+	File tempDir;
+
 	/** Ensures that the normal case (no duplicated classes) runs without exceptions. */
 	@Test
 	void testNormalCaseThrowsNoException() throws Exception {
@@ -126,6 +138,126 @@ public class JaCoCoXmlReportGeneratorTest extends TestDataBase {
 		assertThat(xmlString).contains("TestClassTwo");
 	}
 
+	/**
+	 * Ensures that the report is byte-identical to the one that JaCoCo's {@link XMLFormatter} writes for the complete
+	 * coverage of all classes, also if the packages are analyzed in several batches.
+	 */
+	@Test
+	void testSameReportAsXmlFormatterForCompleteCoverage() throws Exception {
+		List<File> classFiles = Collections.singletonList(
+				Paths.get(ObjectMapper.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile());
+		Dump completeDump = JaCoCoLineCoverageReportGeneratorTest.createDump(classFiles);
+		ExecutionDataStore store = new ExecutionDataStore();
+		completeDump.store.getContents().stream().filter(data -> data.getName().hashCode() % 3 == 0)
+				.forEach(store::put);
+		Dump dump = new Dump(completeDump.info, store);
+
+		for (boolean ignoreUncoveredClasses : new boolean[]{false, true}) {
+			byte[] expectedReport = createReportWithXmlFormatter(classFiles, ignoreUncoveredClasses, dump);
+			for (int maxClassesPerBatch : new int[]{200, Integer.MAX_VALUE}) {
+				JaCoCoXmlReportGenerator generator = new JaCoCoXmlReportGenerator(classFiles,
+						new ClasspathWildcardIncludeFilter(null, null), EDuplicateClassFileBehavior.IGNORE,
+						ignoreUncoveredClasses, mock(ILogger.class), maxClassesPerBatch);
+				File reportFile = new File(tempDir, "coverage.xml");
+				generator.convert(dump, reportFile);
+
+				assertThat(Files.readAllBytes(reportFile.toPath())).isEqualTo(expectedReport);
+			}
+		}
+	}
+
+	/** Ensures that the analysis of a batch does not read the class files of other packages. */
+	@Test
+	void testBatchOnlyReadsClassFilesOfItsPackages() throws Exception {
+		List<File> classFiles = Collections.singletonList(
+				Paths.get(ObjectMapper.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile());
+		Dump dump = JaCoCoLineCoverageReportGeneratorTest.createDump(classFiles);
+		ILogger logger = mock(ILogger.class);
+		ClasspathWildcardIncludeFilter filter = new ClasspathWildcardIncludeFilter(null, null);
+		ReportStructureAnalyzer structureAnalyzer = new ReportStructureAnalyzer(dump.store, filter,
+				EDuplicateClassFileBehavior.IGNORE, false, logger);
+		for (File file : classFiles) {
+			structureAnalyzer.analyzeAll(file);
+		}
+
+		String packageName = "com/fasterxml/jackson/databind/node";
+		List<String> readClasses = new ArrayList<>();
+		PackageFilteringAnalyzer analyzer = new PackageFilteringAnalyzer(dump.store, coverage -> {
+		}, filter, logger, Collections.singleton(packageName),
+				structureAnalyzer.getContainerLocations(packageName),
+				structureAnalyzer.getClassDirectories(packageName)) {
+			@Override
+			protected void analyzeClass(byte[] source) {
+				readClasses.add(InstrSupport.classReaderFor(source).getClassName());
+				super.analyzeClass(source);
+			}
+		};
+		for (File file : classFiles) {
+			analyzer.analyzeAll(file);
+		}
+
+		// synthetic classes are read, too, but are not part of the report
+		assertThat(readClasses).hasSizeGreaterThanOrEqualTo(structureAnalyzer.getClassCount(packageName))
+				.allMatch(className -> ReportStructureAnalyzer.getPackageName(className).equals(packageName));
+	}
+
+	/**
+	 * Benchmark that compares converting a dump for all classes of Jackson Databind in many small batches with
+	 * analyzing all classes in a single pass like before the packages were analyzed in batches.
+	 */
+	@Test
+	@Tag("benchmark")
+	void benchmarkAgainstSinglePass() throws Exception {
+		List<File> classFiles = Collections.singletonList(
+				Paths.get(ObjectMapper.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile());
+		Dump dump = JaCoCoLineCoverageReportGeneratorTest.createDump(classFiles);
+		JaCoCoXmlReportGenerator generator = new JaCoCoXmlReportGenerator(classFiles,
+				new ClasspathWildcardIncludeFilter(null, null), EDuplicateClassFileBehavior.IGNORE, false,
+				mock(ILogger.class), 50);
+		File reportFile = new File(tempDir, "coverage.xml");
+
+		// warm up
+		createReportWithXmlFormatter(classFiles, false, dump);
+		generator.convert(dump, reportFile);
+
+		int runs = 5;
+		long start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			createReportWithXmlFormatter(classFiles, false, dump);
+		}
+		long singlePassNanos = (System.nanoTime() - start) / runs;
+		start = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			generator.convert(dump, reportFile);
+		}
+		long batchesNanos = (System.nanoTime() - start) / runs;
+
+		System.out.printf("Converting a dump of %d classes: %d ms in a single pass, %d ms in batches of 50 classes%n",
+				dump.store.getContents().size(), singlePassNanos / 1_000_000, batchesNanos / 1_000_000);
+		assertThat(Files.readAllBytes(reportFile.toPath()))
+				.isEqualTo(createReportWithXmlFormatter(classFiles, false, dump));
+	}
+
+	/** Creates a report like before the packages were analyzed in batches. */
+	private static byte[] createReportWithXmlFormatter(List<File> classFiles, boolean ignoreUncoveredClasses,
+													   Dump dump) throws IOException {
+		ILogger logger = mock(ILogger.class);
+		CoverageBuilder coverageBuilder = new TeamscaleCoverageBuilder(logger, EDuplicateClassFileBehavior.IGNORE,
+				ignoreUncoveredClasses);
+		FilteringAnalyzer analyzer = new FilteringAnalyzer(dump.store, coverageBuilder,
+				new ClasspathWildcardIncludeFilter(null, null), logger);
+		for (File file : classFiles) {
+			analyzer.analyzeAll(file);
+		}
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		IReportVisitor visitor = new XMLFormatter().createVisitor(output);
+		visitor.visitInfo(Collections.singletonList(dump.info), dump.store.getContents());
+		visitor.visitBundle(coverageBuilder.getBundle("dummybundle"), null);
+		visitor.visitEnd();
+		return output.toByteArray();
+	}
+
 	/**
 	 * Creates a dummy dump with the specified class ID. The class ID can currently be calculated with {@link
 	 * org.jacoco.core.internal.data.CRC64#classId(byte[])}. This might change in the future, as it's considered an
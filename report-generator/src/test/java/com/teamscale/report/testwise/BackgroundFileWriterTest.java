@@ -0,0 +1,57 @@
+package com.teamscale.report.testwise;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests for the {@link BackgroundFileWriter}. */
+class BackgroundFileWriterTest {
+
+	@TempDir
+	File tempDir;
+
+	@Test
+	void writesFilesInOrder() throws Exception {
+		File first = new File(tempDir, "first.txt");
+		File second = new File(tempDir, "second.txt");
+		try (BackgroundFileWriter writer = new BackgroundFileWriter()) {
+			try (OutputStream out = writer.open(first, false)) {
+				out.write("first".getBytes(StandardCharsets.UTF_8));
+			}
+			try (OutputStream out = writer.open(second, false)) {
+				out.write("second".getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		assertThat(first).hasContent("first");
+		assertThat(second).hasContent("second");
+	}
+
+	@Test
+	void errorsOfTheBackgroundThreadAreRethrown() {
+		assertThatThrownBy(() -> write(new File(tempDir, "missing/file.txt"))).isInstanceOf(IOException.class)
+				.hasCauseInstanceOf(IOException.class);
+	}
+
+	@Test
+	void runtimeExceptionsOfTheBackgroundThreadAreRethrown() {
+		// converting the file to a path fails with an InvalidPathException on the background thread
+		assertThatThrownBy(() -> write(new File(tempDir, "invalid\0.txt"))).isInstanceOf(IOException.class)
+				.hasCauseInstanceOf(InvalidPathException.class);
+	}
+
+	/** Writes an empty file. Depending on the timing, an error is rethrown by the file's stream or by the writer. */
+	private static void write(File file) throws IOException {
+		try (BackgroundFileWriter writer = new BackgroundFileWriter()) {
+			writer.open(file, false).close();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.client.JsonUtils;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.FileCoverage;
+import com.teamscale.report.testwise.model.PathCoverage;
+import com.teamscale.report.testwise.model.TestInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/** Tests for {@link TestInfoBinaryFormat}. */
+class TestInfoBinaryFormatTest {
+
+	@Test
+	void roundTrip() throws IOException {
+		TestInfo testInfo = new TestInfo("com/example/MyTest/testMethod()", "com/example/MyTest", "content", 1.5,
+				ETestExecutionResult.FAILURE, "Stack trace with ümlauts");
+		testInfo.paths.add(new PathCoverage("com/example", Arrays.asList(
+				new FileCoverage("Main.java", "1-5,7,9-11"),
+				new FileCoverage("Util.java", "100"))));
+		testInfo.paths.add(new PathCoverage("com/example/util", Collections.singletonList(
+				new FileCoverage("Main.java", "3,200000-200010"))));
+		testInfo.paths.add(new PathCoverage("", Collections.singletonList(new FileCoverage("Default.java", ""))));
+
+		assertRoundTrip(testInfo, false);
+		assertRoundTrip(testInfo, true);
+	}
+
+	@Test
+	void roundTripWithoutOptionalFields() throws IOException {
+		TestInfo testInfo = new TestInfo("test", null, null, null, null, null);
+
+		assertRoundTrip(testInfo, false);
+	}
+
+	@Test
+	void largePayloadsAreCompressedAndMuchSmallerThanJson() throws IOException {
+		TestInfo testInfo = new TestInfo("test", "test", null, 0.1, ETestExecutionResult.PASSED, null);
+		for (int i = 0; i < 500; i++) {
+			List<FileCoverage> files = new ArrayList<>();
+			for (int j = 0; j < 10; j++) {
+				files.add(new FileCoverage("Class" + j + ".java", "1-5,10,12-20,35-40," + (100 + i)));
+			}
+			testInfo.paths.add(new PathCoverage("com/teamscale/example/package" + i, files));
+		}
+
+		byte[] serialized = TestInfoBinaryFormat.serialize(testInfo);
+		int jsonSize = JsonUtils.serialize(testInfo).length();
+
+		assertThat(serialized.length).isLessThan(jsonSize / 10);
+		assertThat(serialized[5]).isEqualTo((byte) 1);
+		assertThat(JsonUtils.serialize(TestInfoBinaryFormat.read(new ByteArrayInputStream(serialized))))
+				.isEqualTo(JsonUtils.serialize(testInfo));
+	}
+
+	@Test
+	void rejectsOtherData() {
+		assertThatThrownBy(() -> TestInfoBinaryFormat.read(new ByteArrayInputStream("{\"uniformPath\":1}".getBytes())))
+				.isInstanceOf(IOException.class);
+	}
+
+	private static void assertRoundTrip(TestInfo testInfo, boolean compress) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TestInfoBinaryFormat.write(testInfo, out, compress);
+
+		TestInfo read = TestInfoBinaryFormat.read(new ByteArrayInputStream(out.toByteArray()));
+
+		assertThat(JsonUtils.serialize(read)).isEqualTo(JsonUtils.serialize(testInfo));
+	}
+}
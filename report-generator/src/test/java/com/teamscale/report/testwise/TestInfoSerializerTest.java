@@ -0,0 +1,148 @@
+package com.teamscale.report.testwise;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.teamscale.client.JsonUtils;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.FileCoverage;
+import com.teamscale.report.testwise.model.PathCoverage;
+import com.teamscale.report.testwise.model.TestInfo;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the {@link TestInfoSerializer}. */
+class TestInfoSerializerTest {
+
+	/** The number of warmup and measured iterations of the benchmark. */
+	private static final int BENCHMARK_ITERATIONS = 5;
+
+	/** Ensures that the JSON is the same as the one written by Jackson's databinding. */
+	@Test
+	void writesSameJsonAsDatabinding() throws Exception {
+		List<TestInfo> testInfos = Arrays.asList(createTestInfo(0),
+				new TestInfo("com/example/Test", null, null, null, null, null),
+				new TestInfo("com/example/Test", "com/example/Base", "abc", 0.001, ETestExecutionResult.FAILURE,
+						"java.lang.AssertionError: \"expected\" <1>\n\tat Test.java:12 ä€\u0001", "f00"),
+				createTestInfoWithoutFiles());
+
+		for (TestInfo testInfo : testInfos) {
+			assertThat(serialize(testInfo, false)).isEqualTo(JsonUtils.serialize(testInfo));
+			assertThat(serialize(testInfo, true))
+					.isEqualTo(JsonUtils.OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(testInfo));
+			assertThat(JsonUtils.serialize(JsonUtils.deserialize(serialize(testInfo, false), TestInfo.class)))
+					.isEqualTo(JsonUtils.serialize(testInfo));
+		}
+	}
+
+	/**
+	 * Compares the throughput of the {@link TestInfoSerializer} with the one of Jackson's databinding. As in JMH, every
+	 * variant is run a few times to warm up the JIT before it is measured.
+	 */
+	@Test
+	@Tag("benchmark")
+	void benchmark() throws Exception {
+		List<TestInfo> testInfos = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			testInfos.add(createTestInfo(i));
+		}
+		JsonFactory jsonFactory = JsonUtils.createFactory();
+
+		long databindNanos = measure(() -> {
+			try (JsonGenerator generator = jsonFactory.createGenerator(NullOutputStream.INSTANCE)) {
+				for (TestInfo testInfo : testInfos) {
+					generator.writeObject(testInfo);
+				}
+			}
+		});
+		long serializerNanos = measure(() -> {
+			try (JsonGenerator generator = jsonFactory.createGenerator(NullOutputStream.INSTANCE)) {
+				for (TestInfo testInfo : testInfos) {
+					TestInfoSerializer.writeTestInfo(generator, testInfo);
+				}
+			}
+		});
+
+		System.out.printf("Serializing %d tests: %.1f ms with databinding, %.1f ms with TestInfoSerializer%n",
+				testInfos.size(), databindNanos / 1e6, serializerNanos / 1e6);
+	}
+
+	/** Returns the average time of the measured iterations of the given benchmark in nanoseconds. */
+	private static long measure(IoRunnable benchmark) throws IOException {
+		for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+			benchmark.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+			benchmark.run();
+		}
+		return (System.nanoTime() - start) / BENCHMARK_ITERATIONS;
+	}
+
+	private static String serialize(TestInfo testInfo, boolean prettyPrint) throws IOException {
+		StringWriter json = new StringWriter();
+		try (JsonGenerator generator = JsonUtils.createFactory().createGenerator(json)) {
+			if (prettyPrint) {
+				generator.setPrettyPrinter(new DefaultPrettyPrinter());
+			}
+			TestInfoSerializer.writeTestInfo(generator, testInfo);
+		}
+		return json.toString();
+	}
+
+	/** Creates a test info that covers 100 files in 10 paths. */
+	private static TestInfo createTestInfo(int index) {
+		TestInfo testInfo = new TestInfo("com/example/Test" + index, "com/example/Test" + index, "content" + index,
+				1.5 * index, ETestExecutionResult.PASSED, null);
+		for (int path = 0; path < 10; path++) {
+			List<FileCoverage> files = new ArrayList<>();
+			for (int file = 0; file < 10; file++) {
+				files.add(new FileCoverage("File" + file + ".java", "1-10," + (index + file + 20)));
+			}
+			testInfo.paths.add(new PathCoverage("com/example/package" + path, files));
+		}
+		return testInfo;
+	}
+
+	private static TestInfo createTestInfoWithoutFiles() {
+		TestInfo testInfo = new TestInfo("com/example/Test", "com/example/Test", null, 2.0,
+				ETestExecutionResult.SKIPPED, null);
+		testInfo.paths.add(new PathCoverage("com/example", Collections.emptyList()));
+		testInfo.paths.add(new PathCoverage("", null));
+		return testInfo;
+	}
+
+	/** A benchmark that may throw an {@link IOException}. */
+	@FunctionalInterface
+	private interface IoRunnable {
+
+		/** Runs the benchmark once. */
+		void run() throws IOException;
+	}
+
+	/** Discards all data, so that the benchmark only measures the serialization. */
+	private static class NullOutputStream extends OutputStream {
+
+		private static final NullOutputStream INSTANCE = new NullOutputStream();
+
+		@Override
+		public void write(int b) {
+			// discard
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) {
+			// discard
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.client.JsonUtils;
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.ReportUtils;
+import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+import com.teamscale.report.testwise.model.TestwiseCoverageReport;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the deduplicated coverage of the {@link TestwiseCoverageReportWriter} and its expansion. */
+class TestwiseCoverageReportExpanderTest {
+
+	@TempDir
+	File tempDir;
+
+	/** Ensures that identical coverage is only written once and that the expanded report equals the classic one. */
+	@Test
+	void expandedReportEqualsClassicReport() throws Exception {
+		File classicReport = writeReport("classic", 100, false).get(0);
+		File deduplicatedReport = writeReport("deduplicated", 100, true).get(0);
+
+		assertThat(TestwiseCoverageReportExpander.isDeduplicated(deduplicatedReport)).isTrue();
+		assertThat(TestwiseCoverageReportExpander.isDeduplicated(classicReport)).isFalse();
+		assertThat(deduplicatedReport.length()).isLessThan(classicReport.length() / 5);
+
+		TestwiseCoverageReport report = JsonUtils.deserializeFile(deduplicatedReport, TestwiseCoverageReport.class);
+		assertThat(report.tests).hasSize(21);
+		assertThat(report.tests.stream().filter(testInfo -> !testInfo.paths.isEmpty())).hasSize(2);
+		assertThat(report.tests.stream().map(testInfo -> testInfo.coverageId).distinct()).hasSize(3);
+
+		File expandedReport = new File(tempDir, "expanded.json");
+		TestwiseCoverageReportExpander.expand(deduplicatedReport, expandedReport);
+		assertThat(expandedReport).hasSameTextualContentAs(classicReport);
+	}
+
+	/** Ensures that every split report file lists the coverage it refers to. */
+	@Test
+	void splitReportsCanBeExpandedIndependently() throws Exception {
+		List<File> classicReports = writeReport("classic", 5, false);
+		List<File> deduplicatedReports = writeReport("deduplicated", 5, true);
+		assertThat(deduplicatedReports).hasSize(5);
+
+		List<File> expandedReports = ReportUtils.prepareTestwiseCoverageReportsForUpload(deduplicatedReports,
+				new File(tempDir, "expanded"));
+		for (int i = 0; i < classicReports.size(); i++) {
+			assertThat(expandedReports.get(i)).hasSameTextualContentAs(classicReports.get(i));
+		}
+		assertThat(ReportUtils.prepareTestwiseCoverageReportsForUpload(classicReports,
+				new File(tempDir, "expanded-classic"))).isEqualTo(classicReports);
+	}
+
+	/** Ensures that classic reports do not contain any coverage ids. */
+	@Test
+	void classicReportHasNoCoverageIds() throws Exception {
+		TestwiseCoverageReport report = JsonUtils.deserializeFile(writeReport("classic", 100, false).get(0),
+				TestwiseCoverageReport.class);
+		assertThat(report.tests).extracting(testInfo -> testInfo.coverageId).containsOnlyNulls();
+		assertThat(report.tests).filteredOn(testInfo -> testInfo.paths.isEmpty()).hasSize(1);
+	}
+
+	/**
+	 * Writes a report of 20 parameterized tests of which every other test has the same coverage, and a test without
+	 * coverage.
+	 */
+	private List<File> writeReport(String name, int splitAfter, boolean deduplicateCoverage) throws IOException {
+		List<TestDetails> testDetails = new ArrayList<>();
+		List<TestExecution> testExecutions = new ArrayList<>();
+		for (int i = 0; i < 21; i++) {
+			String uniformPath = "com/example/DataDrivenTest/test(" + i + ")";
+			testDetails.add(new TestDetails(uniformPath, "com/example/DataDrivenTest", null));
+			testExecutions.add(new TestExecution(uniformPath, 100, ETestExecutionResult.PASSED));
+		}
+
+		File directory = new File(tempDir, name);
+		Files.createDirectories(directory.toPath());
+		File outputFile = new File(directory, "testwise-coverage.json");
+		try (TestwiseCoverageReportWriter writer = TestwiseCoverageReportWriter
+				.builder(new TestInfoFactory(testDetails, testExecutions), outputFile).splitAfter(splitAfter)
+				.deduplicateCoverage(deduplicateCoverage).build()) {
+			for (int i = 0; i < 20; i++) {
+				TestCoverageBuilder testCoverage = new TestCoverageBuilder(testDetails.get(i).uniformPath);
+				for (int file = 0; file < 50; file++) {
+					FileCoverageBuilder fileCoverage = new FileCoverageBuilder("com/example",
+							"File" + file + ".java");
+					fileCoverage.addLineRange(1, 10 + i % 2);
+					testCoverage.add(fileCoverage);
+				}
+				writer.accept(testCoverage);
+			}
+		}
+
+		File[] reports = directory.listFiles();
+		Arrays.sort(reports, (a, b) -> Integer.compare(getIndex(a), getIndex(b)));
+		return Arrays.asList(reports);
+	}
+
+	/** Returns the index of a split report file like <code>testwise-coverage-3.json</code>. */
+	private static int getIndex(File report) {
+		String name = report.getName();
+		return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.length() - ".json".length()));
+	}
+}
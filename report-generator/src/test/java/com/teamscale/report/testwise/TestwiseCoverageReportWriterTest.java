@@ -0,0 +1,124 @@
+package com.teamscale.report.testwise;
+
+import com.teamscale.client.JsonUtils;
+import com.teamscale.client.TestDetails;
+import com.teamscale.report.ReportUtils;
+import com.teamscale.report.testwise.model.TestInfo;
+import com.teamscale.report.testwise.model.TestwiseCoverageReport;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import com.teamscale.report.testwise.model.factory.TestInfoFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the splitting and compression of the {@link TestwiseCoverageReportWriter}. */
+class TestwiseCoverageReportWriterTest {
+
+	/** The number of tests of the written reports. */
+	private static final int TEST_COUNT = 500;
+
+	@TempDir
+	File tempDir;
+
+	/** Ensures that the report is split once a file has reached the given size. */
+	@Test
+	void splitsBySize() throws Exception {
+		List<File> reports = writeReport("split", builder -> builder.splitAfter(1000).splitAfterBytes(100_000));
+
+		assertThat(reports).hasSizeGreaterThan(3);
+		for (File report : reports) {
+			// a file may exceed the size by one test of about 3 KB
+			assertThat(report.length()).isLessThan(110_000);
+		}
+		assertThat(readUniformPaths(reports)).isEqualTo(getUniformPaths());
+	}
+
+	/** Ensures that compressed reports contain the same JSON as uncompressed ones and can be prepared for upload. */
+	@Test
+	void compressedReportsContainTheSameJson() throws Exception {
+		List<File> reports = writeReport("plain", builder -> builder.splitAfter(200));
+		List<File> compressedReports = writeReport("compressed", builder -> builder.splitAfter(200).compress(true));
+
+		assertThat(compressedReports).hasSameSizeAs(reports).allMatch(report -> report.getName().endsWith(".json.gz"));
+		List<File> preparedReports = ReportUtils.prepareTestwiseCoverageReportsForUpload(compressedReports,
+				new File(tempDir, "prepared"));
+		for (int i = 0; i < reports.size(); i++) {
+			assertThat(compressedReports.get(i).length()).isLessThan(reports.get(i).length() / 5);
+			try (GZIPInputStream input = new GZIPInputStream(Files.newInputStream(compressedReports.get(i).toPath()))) {
+				assertThat(input).hasSameContentAs(Files.newInputStream(reports.get(i).toPath()));
+			}
+			assertThat(preparedReports.get(i)).hasSameTextualContentAs(reports.get(i));
+		}
+	}
+
+	/** Configures a {@link TestwiseCoverageReportWriter.Builder}. */
+	private interface WriterConfiguration {
+
+		/** Configures the given builder. */
+		TestwiseCoverageReportWriter.Builder configure(TestwiseCoverageReportWriter.Builder builder);
+	}
+
+	/** Writes a report of {@link #TEST_COUNT} tests and returns the files in the order of their index. */
+	private List<File> writeReport(String name, WriterConfiguration configuration) throws IOException {
+		List<TestDetails> testDetails = new ArrayList<>();
+		for (String uniformPath : getUniformPaths()) {
+			testDetails.add(new TestDetails(uniformPath, uniformPath, null));
+		}
+
+		File directory = new File(tempDir, name);
+		Files.createDirectories(directory.toPath());
+		TestwiseCoverageReportWriter.Builder builder = TestwiseCoverageReportWriter.builder(
+				new TestInfoFactory(testDetails, Collections.emptyList()), new File(directory, "testwise-coverage.json"));
+		try (TestwiseCoverageReportWriter writer = configuration.configure(builder).build()) {
+			for (TestDetails test : testDetails) {
+				TestCoverageBuilder testCoverage = new TestCoverageBuilder(test.uniformPath);
+				for (int file = 0; file < 50; file++) {
+					FileCoverageBuilder fileCoverage = new FileCoverageBuilder("com/example", "File" + file + ".java");
+					fileCoverage.addLineRange(1, 10);
+					fileCoverage.addLine(file + 20);
+					testCoverage.add(fileCoverage);
+				}
+				writer.accept(testCoverage);
+			}
+		}
+
+		File[] reports = directory.listFiles();
+		Arrays.sort(reports, (a, b) -> Integer.compare(getIndex(a), getIndex(b)));
+		return Arrays.asList(reports);
+	}
+
+	/** Returns the index of a split report file like <code>testwise-coverage-3.json.gz</code>. */
+	private static int getIndex(File report) {
+		String name = report.getName();
+		return Integer.parseInt(name.substring(name.lastIndexOf('-') + 1, name.indexOf(".json")));
+	}
+
+	private static List<String> getUniformPaths() {
+		List<String> uniformPaths = new ArrayList<>();
+		for (int i = 0; i < TEST_COUNT; i++) {
+			uniformPaths.add(String.format("com/example/Test%03d", i));
+		}
+		return uniformPaths;
+	}
+
+	private static List<String> readUniformPaths(List<File> reports) throws IOException {
+		List<String> uniformPaths = new ArrayList<>();
+		for (File report : reports) {
+			for (TestInfo testInfo : JsonUtils.deserializeFile(report, TestwiseCoverageReport.class).tests) {
+				uniformPaths.add(testInfo.uniformPath);
+			}
+		}
+		return uniformPaths;
+	}
+}
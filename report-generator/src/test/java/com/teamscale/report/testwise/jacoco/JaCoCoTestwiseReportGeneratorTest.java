@@ -20,7 +20,10 @@ import org.skyscreamer.jsonassert.JSONCompareMode;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
 
 /** Tests for the {@link JaCoCoTestwiseReportGenerator} class. */
@@ -47,6 +50,32 @@ public class JaCoCoTestwiseReportGeneratorTest extends TestDataBase {
 		JSONAssert.assertEquals(expected, report, JSONCompareMode.STRICT);
 	}
 
+	/** Ensures that converting ranges of sessions in parallel yields the same tests in the same order. */
+	@Test
+	void testParallelConversionKeepsOrderOfTests() throws Exception {
+		JaCoCoTestwiseReportGenerator generator = new JaCoCoTestwiseReportGenerator(
+				Collections.singletonList(useTestFile("jacoco/cqddl/classes.zip")),
+				new ClasspathWildcardIncludeFilter(null, null), EDuplicateClassFileBehavior.IGNORE,
+				mock(ILogger.class));
+		File executionDataFile = useTestFile("jacoco/cqddl/coverage.exec");
+		ExecutionDataIndex index = ExecutionDataIndex.create(executionDataFile);
+		assertThat(index.split(1)).hasSize(index.getSessionCount());
+
+		List<String> sequentialTests = new ArrayList<>();
+		generator.convertAndConsume(executionDataFile, test -> sequentialTests.add(describe(test)));
+		List<String> parallelTests = new ArrayList<>();
+		generator.convertAndConsume(executionDataFile, test -> parallelTests.add(describe(test)), 4, 1);
+
+		assertThat(sequentialTests).hasSizeGreaterThan(1);
+		assertThat(parallelTests).isEqualTo(sequentialTests);
+	}
+
+	private static String describe(TestCoverageBuilder test) {
+		return test.getUniformPath() + ": " + test.getFiles().stream()
+				.map(file -> file.getPath() + "/" + file.getFileName() + ":" + file.computeCompactifiedRangesAsString())
+				.collect(Collectors.joining(", "));
+	}
+
 	private String runReportGenerator(String testDataFolder, String execFileName) throws Exception {
 		File classFileFolder = useTestFile(testDataFolder);
 		ClasspathWildcardIncludeFilter includeFilter = new ClasspathWildcardIncludeFilter(null, null);
@@ -0,0 +1,200 @@
+package com.teamscale.report.testwise.jacoco.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.teamscale.report.EDuplicateClassFileBehavior;
+import com.teamscale.report.jacoco.JaCoCoLineCoverageReportGeneratorTest;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.util.ClasspathWildcardIncludeFilter;
+import com.teamscale.report.util.ILogger;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/** Tests for the memo of covered lines in the {@link ProbesCache}. */
+class ProbesCacheTest {
+
+	/** The class files of Jackson Databind. */
+	private static List<File> classFiles;
+
+	/** Execution data for all classes of {@link #classFiles} in which every other probe was executed. */
+	private static List<ExecutionData> allExecutionData;
+
+	@TempDir
+	File tempDir;
+
+	@BeforeAll
+	static void readClasses() throws Exception {
+		classFiles = Collections.singletonList(
+				Paths.get(ObjectMapper.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toFile());
+		allExecutionData = new ArrayList<>(
+				JaCoCoLineCoverageReportGeneratorTest.createDump(classFiles).store.getContents());
+		allExecutionData.removeIf(executionData -> executionData.getProbes().length < 4);
+	}
+
+	/** Ensures that memoized covered lines are only reused for identical probe patterns. */
+	@Test
+	void memoizedLinesAreOnlyReusedForIdenticalProbes() throws Exception {
+		ProbesCache probesCache = createProbesCache(100);
+		ExecutionData executionData = allExecutionData.get(0);
+		boolean[] probes = executionData.getProbes().clone();
+		boolean[] otherProbes = new boolean[probes.length];
+		otherProbes[0] = true;
+
+		String lines = getCoveredLines(probesCache, executionData.getId(), executionData.getName(), probes);
+		String otherLines = getCoveredLines(probesCache, executionData.getId(), executionData.getName(), otherProbes);
+		// modifying the probes after the conversion must not affect the memo
+		Arrays.fill(probes, false);
+		String linesAgain = getCoveredLines(probesCache, executionData.getId(), executionData.getName(),
+				executionData.getProbes().clone());
+
+		assertThat(otherLines).isNotEqualTo(lines);
+		assertThat(linesAgain).isEqualTo(lines);
+		assertThat(probesCache.getMemoLookupCount()).isEqualTo(3);
+		assertThat(probesCache.getMemoHitCount()).isEqualTo(1);
+	}
+
+	/**
+	 * Benchmark that converts an exec file of 3000 tests, which all execute the same bootstrapping code and some classes
+	 * of Jackson Databind along a few typical paths, with and without the memo.
+	 */
+	@Test
+	@Tag("benchmark")
+	void benchmarkMemo() throws Exception {
+		File executionDataFile = writeExecutionDataFile(3000);
+		List<ExecutionDataStore> tests = readTests(executionDataFile);
+
+		ProbesCache memoizingProbesCache = createProbesCache(10_000);
+		ProbesCache probesCache = createProbesCache(0);
+		List<String> memoizedCoverage = new ArrayList<>();
+		List<String> coverage = new ArrayList<>();
+		convert(memoizingProbesCache, tests, new ArrayList<>());
+		convert(probesCache, tests, new ArrayList<>());
+		long memoNanos = convert(memoizingProbesCache, tests, memoizedCoverage);
+		long noMemoNanos = convert(probesCache, tests, coverage);
+
+		System.out.printf("Converting %d tests (%d MB exec file): %d ms without memo, %d ms with memo, " +
+						"hit rate %.1f%%%n", tests.size(), executionDataFile.length() / 1024 / 1024,
+				noMemoNanos / 1_000_000, memoNanos / 1_000_000,
+				100.0 * memoizingProbesCache.getMemoHitCount() / memoizingProbesCache.getMemoLookupCount());
+		assertThat(memoizedCoverage).isEqualTo(coverage);
+		assertThat(memoizingProbesCache.getMemoHitCount()).isGreaterThan(memoizingProbesCache.getMemoLookupCount() / 2);
+	}
+
+	/**
+	 * Writes an exec file in which every test executes the first 100 classes completely, and 50 random other classes
+	 * with one of three probe patterns per class.
+	 */
+	private File writeExecutionDataFile(int testCount) throws IOException {
+		File executionDataFile = new File(tempDir, "coverage.exec");
+		Random random = new Random(42);
+		try (OutputStream output = new BufferedOutputStream(new FileOutputStream(executionDataFile))) {
+			ExecutionDataWriter writer = new ExecutionDataWriter(output);
+			for (int test = 0; test < testCount; test++) {
+				writer.visitSessionInfo(new SessionInfo("com/example/Test" + test, test, test + 1));
+				for (int i = 0; i < 100; i++) {
+					ExecutionData executionData = allExecutionData.get(i);
+					boolean[] probes = new boolean[executionData.getProbes().length];
+					Arrays.fill(probes, true);
+					writer.visitClassExecution(new ExecutionData(executionData.getId(), executionData.getName(),
+							probes));
+				}
+				for (int i = 0; i < 50; i++) {
+					ExecutionData executionData = allExecutionData
+							.get(100 + random.nextInt(allExecutionData.size() - 100));
+					writer.visitClassExecution(new ExecutionData(executionData.getId(), executionData.getName(),
+							createProbePattern(executionData.getProbes().length, random.nextInt(3))));
+				}
+			}
+		}
+		return executionDataFile;
+	}
+
+	private static boolean[] createProbePattern(int probeCount, int variant) {
+		boolean[] probes = new boolean[probeCount];
+		for (int i = 0; i < probeCount; i++) {
+			switch (variant) {
+				case 0:
+					probes[i] = i % 2 == 0;
+					break;
+				case 1:
+					probes[i] = i < probeCount / 2;
+					break;
+				default:
+					probes[i] = i % 3 != 1;
+			}
+		}
+		return probes;
+	}
+
+	private static List<ExecutionDataStore> readTests(File executionDataFile) throws IOException {
+		List<ExecutionDataStore> tests = new ArrayList<>();
+		try (InputStream input = new BufferedInputStream(new FileInputStream(executionDataFile))) {
+			ExecutionDataReader reader = new ExecutionDataReader(input);
+			reader.setSessionInfoVisitor(info -> tests.add(new ExecutionDataStore()));
+			reader.setExecutionDataVisitor(executionData -> tests.get(tests.size() - 1).put(executionData));
+			reader.read();
+		}
+		return tests;
+	}
+
+	/** Converts the coverage of all tests and returns the time it took in nanoseconds. */
+	private static long convert(ProbesCache probesCache, List<ExecutionDataStore> tests,
+								List<String> coverage) throws CoverageGenerationException {
+		ClasspathWildcardIncludeFilter filter = new ClasspathWildcardIncludeFilter(null, null);
+		List<FileCoverageBuilder> fileCoverages = new ArrayList<>();
+		long start = System.nanoTime();
+		for (ExecutionDataStore test : tests) {
+			for (ExecutionData executionData : test.getContents()) {
+				fileCoverages.add(probesCache.getCoverage(executionData, filter));
+			}
+		}
+		long nanos = System.nanoTime() - start;
+
+		for (FileCoverageBuilder fileCoverage : fileCoverages) {
+			coverage.add(fileCoverage.getFileName() + ":" + fileCoverage.computeCompactifiedRangesAsString());
+		}
+		return nanos;
+	}
+
+	private static String getCoveredLines(ProbesCache probesCache, long classId, String className,
+										  boolean[] probes) throws CoverageGenerationException {
+		FileCoverageBuilder fileCoverage = probesCache.getCoverage(new ExecutionData(classId, className, probes),
+				new ClasspathWildcardIncludeFilter(null, null));
+		return fileCoverage.computeCompactifiedRangesAsString();
+	}
+
+	private static ProbesCache createProbesCache(int maxMemoizedProbePatterns) throws IOException {
+		ILogger logger = mock(ILogger.class);
+		ProbesCache probesCache = new ProbesCache(logger, EDuplicateClassFileBehavior.IGNORE,
+				maxMemoizedProbePatterns);
+		AnalyzerCache analyzer = new AnalyzerCache(probesCache, new ClasspathWildcardIncludeFilter(null, null), logger);
+		for (File file : classFiles) {
+			analyzer.analyzeAll(file);
+		}
+		return probesCache;
+	}
+}
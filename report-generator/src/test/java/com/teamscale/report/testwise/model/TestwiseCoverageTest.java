@@ -0,0 +1,142 @@
+package com.teamscale.report.testwise.model;
+
+import com.teamscale.client.JsonUtils;
+import com.teamscale.report.testwise.model.builder.FileCoverageBuilder;
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Tests for the compact representation of the coverage in {@link TestwiseCoverage}. */
+class TestwiseCoverageTest {
+
+	/** The number of tests of the synthetic test suite. */
+	private static final int TEST_COUNT = 50_000;
+
+	/** Ensures that the coverage of the tests is returned unchanged and that coverage of the same test is merged. */
+	@Test
+	void coverageIsPreservedAndMerged() throws Exception {
+		List<TestCoverageBuilder> tests = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			tests.add(createTestCoverage(i));
+		}
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		tests.forEach(testwiseCoverage::add);
+
+		TestCoverageBuilder additionalCoverage = new TestCoverageBuilder(tests.get(0).getUniformPath());
+		FileCoverageBuilder file = new FileCoverageBuilder("com/example", "File0.java");
+		file.addLineRange(1000, 1002);
+		additionalCoverage.add(file);
+		FileCoverageBuilder otherFile = new FileCoverageBuilder("com/other", "Other.java");
+		otherFile.addLine(7);
+		additionalCoverage.add(otherFile);
+		testwiseCoverage.add(additionalCoverage);
+		tests.get(0).add(file);
+		tests.get(0).add(otherFile);
+
+		assertThat(testwiseCoverage.getTests()).hasSize(100);
+		assertThat(serialize(testwiseCoverage.getTests())).isEqualTo(serialize(tests));
+	}
+
+	/** Ensures that a distinct coverage is released once no test has this coverage anymore. */
+	@Test
+	void sharedCoverageIsReleasedWhenNoTestHasItAnymore() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		for (int i = 0; i < 10; i++) {
+			testwiseCoverage.add(createTestCoverage(i));
+		}
+		assertThat(testwiseCoverage.getDistinctCoverageCount()).isEqualTo(2);
+
+		// the coverage of test 0 is still shared by tests 1 to 4
+		testwiseCoverage.add(createAdditionalCoverage(0));
+		assertThat(testwiseCoverage.getDistinctCoverageCount()).isEqualTo(3);
+
+		// merging the same coverage again keeps the coverage
+		testwiseCoverage.add(createAdditionalCoverage(0));
+		assertThat(testwiseCoverage.getDistinctCoverageCount()).isEqualTo(3);
+
+		for (int i = 1; i < 5; i++) {
+			testwiseCoverage.add(createAdditionalCoverage(i));
+		}
+		assertThat(testwiseCoverage.getDistinctCoverageCount()).isEqualTo(2);
+		assertThat(testwiseCoverage.getTests()).hasSize(10);
+	}
+
+	/**
+	 * Ensures that the {@link TestwiseCoverage} of a synthetic test suite of {@value #TEST_COUNT} parameterized tests
+	 * only keeps one instance of every distinct coverage and of every covered file, whereas the
+	 * {@link TestCoverageBuilder}s contain a {@link FileCoverageBuilder} per test and file.
+	 */
+	@Test
+	void compactRepresentationSharesCoverageAndFiles() {
+		TestwiseCoverage testwiseCoverage = new TestwiseCoverage();
+		Set<String> distinctFiles = new HashSet<>();
+		int fileCoverageCount = 0;
+		for (int i = 0; i < TEST_COUNT; i++) {
+			TestCoverageBuilder testCoverage = createTestCoverage(i);
+			for (FileCoverageBuilder file : testCoverage.getFiles()) {
+				distinctFiles.add(file.getPath() + "/" + file.getFileName());
+				fileCoverageCount++;
+			}
+			testwiseCoverage.add(testCoverage);
+		}
+
+		assertThat(testwiseCoverage.getTests()).hasSize(TEST_COUNT);
+		// two distinct coverages per test method with ten arguments
+		assertThat(testwiseCoverage.getDistinctCoverageCount()).isEqualTo(TEST_COUNT / 5);
+		assertThat(testwiseCoverage.getSourceFileCount()).isEqualTo(distinctFiles.size())
+				.isLessThan(fileCoverageCount / 50);
+	}
+
+	/**
+	 * Creates the coverage of a parameterized test that covers some common files and some files that depend on its
+	 * arguments. Every ten tests with consecutive indices are the same test method with different arguments, of which
+	 * five execute the same code.
+	 */
+	private static TestCoverageBuilder createTestCoverage(int index) {
+		TestCoverageBuilder testCoverage = new TestCoverageBuilder(
+				"com/example/DataDrivenTest" + index / 10 + "/test(" + index % 10 + ")");
+		Random random = new Random(index / 10 * 2 + (index % 10 < 5 ? 0 : 1));
+		for (int file = 0; file < 10; file++) {
+			FileCoverageBuilder fileCoverage = new FileCoverageBuilder("com/example", "File" + file + ".java");
+			fileCoverage.addLineRange(10, 50);
+			testCoverage.add(fileCoverage);
+		}
+		for (int i = 0; i < 20; i++) {
+			int file = random.nextInt(2000);
+			FileCoverageBuilder fileCoverage = new FileCoverageBuilder("com/example/package" + file / 100,
+					"File" + file + ".java");
+			int start = random.nextInt(100) + 1;
+			fileCoverage.addLineRange(start, start + random.nextInt(20));
+			fileCoverage.addLine(start + 30);
+			testCoverage.add(fileCoverage);
+		}
+		return testCoverage;
+	}
+
+	/** Creates coverage of the test with the given index that it did not have before. */
+	private static TestCoverageBuilder createAdditionalCoverage(int index) {
+		TestCoverageBuilder testCoverage = new TestCoverageBuilder(createTestCoverage(index).getUniformPath());
+		FileCoverageBuilder fileCoverage = new FileCoverageBuilder("com/other", "Other.java");
+		fileCoverage.addLine(7);
+		testCoverage.add(fileCoverage);
+		return testCoverage;
+	}
+
+	/** Returns the paths of all tests as JSON by uniform path. */
+	private static Map<String, String> serialize(Iterable<TestCoverageBuilder> tests) throws Exception {
+		Map<String, String> paths = new HashMap<>();
+		for (TestCoverageBuilder test : tests) {
+			paths.put(test.getUniformPath(), JsonUtils.serialize(test.getPaths()));
+		}
+		return paths;
+	}
+}
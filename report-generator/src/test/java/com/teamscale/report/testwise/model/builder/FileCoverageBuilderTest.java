@@ -62,4 +62,17 @@ class FileCoverageBuilderTest {
 		fileCoverage.addLineRange(6, 10);
 		assertEquals("1,3-4,6-10", fileCoverage.computeCompactifiedRangesAsString());
 	}
-}
\ No newline at end of file
+
+	/** Tests the transformation from line ranges into pairs of first and last lines. */
+	@Test
+	void getCoveredLineRanges() {
+		FileCoverageBuilder fileCoverage = new FileCoverageBuilder("path", "file");
+		assertThat(fileCoverage.getCoveredLineRanges()).isEmpty();
+		fileCoverage.addLine(1);
+		fileCoverage.addLineRange(3, 4);
+		fileCoverage.addLineRange(6, 10);
+		fileCoverage.addLine(5);
+		fileCoverage.addLine(12);
+		assertThat(fileCoverage.getCoveredLineRanges()).containsExactly(1, 1, 3, 10, 12, 12);
+	}
+}
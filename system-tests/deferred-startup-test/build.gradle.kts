@@ -0,0 +1,10 @@
+plugins {
+	com.teamscale.`system-test-convention`
+}
+
+tasks.withType<Test>() {
+	environment("AGENT_JAR", agentJar)
+	val sampleJar = project(":sample-app").tasks["jar"].outputs.files.singleFile
+	environment("SAMPLE_JAR", sampleJar)
+	dependsOn(":sample-app:assemble")
+}
@@ -0,0 +1,85 @@
+package com.teamscale.client;
+
+import com.teamscale.test.commons.SystemTestUtils;
+import org.conqat.lib.commons.io.ProcessUtils;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs a short-lived application with the agent's deferred-startup option and compares the time until its main method
+ * runs to the normal startup.
+ */
+public class DeferredStartupSystemTest {
+
+	private static final String AGENT_JAR = System.getenv("AGENT_JAR");
+	private static final String SAMPLE_JAR = System.getenv("SAMPLE_JAR");
+
+	/** The message the sample application logs in its main method. */
+	private static final String SAMPLE_APP_LOG_MESSAGE = "testing logging with incompatible logback version";
+
+	@TempDir
+	Path outputDirectory;
+
+	@Test
+	public void coverageOfShortLivedApplicationIsWritten() throws Exception {
+		ProcessUtils.ExecutionResult result = runSampleApp("out=" + outputDirectory + ",deferred-startup=true");
+
+		assertThat(result.getReturnCode()).isEqualTo(0);
+		try (Stream<Path> files = Files.walk(outputDirectory)) {
+			assertThat(files.filter(file -> file.toString().endsWith(".xml"))).isNotEmpty();
+		}
+	}
+
+	/**
+	 * Benchmark of the startup overhead of the agent, i.e. the time until the main method of the application runs. The
+	 * HTTP server is enabled as it is the most expensive part of the agent's startup.
+	 */
+	@Test
+	@Tag("benchmark")
+	public void benchmarkStartupTime() throws Exception {
+		String options = "out=" + outputDirectory + ",http-server-port=" + SystemTestUtils.AGENT_PORT;
+		long normalStartupMillis = measureTimeUntilMain(options);
+		long deferredStartupMillis = measureTimeUntilMain(options + ",deferred-startup=true");
+
+		System.out.printf("Time until main: normal startup %d ms, deferred startup %d ms%n", normalStartupMillis,
+				deferredStartupMillis);
+	}
+
+	/**
+	 * Returns the best time of multiple runs of the sample application until it writes its log message, which is the
+	 * first thing its main method does.
+	 */
+	private static long measureTimeUntilMain(String agentOptions) throws Exception {
+		long bestMillis = Long.MAX_VALUE;
+		for (int i = 0; i < 5; i++) {
+			long start = System.currentTimeMillis();
+			Process process = new ProcessBuilder("java", "-javaagent:" + AGENT_JAR + "=" + agentOptions, "-jar",
+					SAMPLE_JAR).redirectErrorStream(true).start();
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.contains(SAMPLE_APP_LOG_MESSAGE)) {
+						bestMillis = Math.min(bestMillis, System.currentTimeMillis() - start);
+					}
+				}
+			}
+			assertThat(process.waitFor()).isEqualTo(0);
+		}
+		return bestMillis;
+	}
+
+	private static ProcessUtils.ExecutionResult runSampleApp(String agentOptions) throws IOException {
+		return ProcessUtils.execute(
+				new ProcessBuilder("java", "-javaagent:" + AGENT_JAR + "=" + agentOptions, "-jar", SAMPLE_JAR));
+	}
+}
@@ -0,0 +1,117 @@
+package com.teamscale.client;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Utilities for Unix domain sockets, which are supported by the {@link SocketChannel}s of Java 16 and newer. The
+ * corresponding APIs are accessed via reflection, since we still support running on Java 8.
+ */
+public class UnixDomainSocketUtils {
+
+	private static final String UNIX_DOMAIN_SOCKET_ADDRESS_CLASS = "java.net.UnixDomainSocketAddress";
+
+	/** Returns whether the current JVM supports Unix domain sockets. */
+	public static boolean isSupported() {
+		try {
+			Class.forName(UNIX_DOMAIN_SOCKET_ADDRESS_CLASS);
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a server channel that is bound to the given path. An existing socket at this path, e.g. a leftover of a
+	 * previous process, is replaced.
+	 *
+	 * @throws IOException                   if a file or directory that is not a socket exists at the path.
+	 * @throws UnsupportedOperationException if the JVM does not support Unix domain sockets.
+	 */
+	public static ServerSocketChannel openServerSocketChannel(Path path) throws IOException {
+		SocketAddress address = createAddress(path);
+		deleteSocketIfExists(path);
+		ServerSocketChannel channel;
+		try {
+			channel = (ServerSocketChannel) invoke(ServerSocketChannel.class.getMethod("open", ProtocolFamily.class),
+					null, StandardProtocolFamily.valueOf("UNIX"));
+		} catch (NoSuchMethodException e) {
+			throw new UnsupportedOperationException("Unix domain sockets require Java 16 or newer.", e);
+		}
+		try {
+			channel.bind(address);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
+	}
+
+	/**
+	 * Opens a blocking channel that is connected to the server channel bound to the given path.
+	 *
+	 * @throws UnsupportedOperationException if the JVM does not support Unix domain sockets.
+	 */
+	public static SocketChannel openSocketChannel(Path path) throws IOException {
+		return SocketChannel.open(createAddress(path));
+	}
+
+	/**
+	 * Deletes the socket at the given path if there is one. Other files and directories are never deleted, since the
+	 * path may have been misconfigured to point to data that must not be lost.
+	 *
+	 * @throws IOException if a file or directory that is not a socket exists at the path.
+	 */
+	public static void deleteSocketIfExists(Path path) throws IOException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		} catch (NoSuchFileException e) {
+			return;
+		}
+		// sockets are neither regular files, nor directories, nor symbolic links
+		if (!attributes.isOther()) {
+			throw new IOException("Cannot use " + path
+					+ " as Unix domain socket since a file or directory that is not a socket exists there."
+					+ " Remove it or choose a different path.");
+		}
+		Files.deleteIfExists(path);
+	}
+
+	private static SocketAddress createAddress(Path path) throws IOException {
+		try {
+			Class<?> addressClass = Class.forName(UNIX_DOMAIN_SOCKET_ADDRESS_CLASS);
+			return (SocketAddress) invoke(addressClass.getMethod("of", Path.class), null, path);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			throw new UnsupportedOperationException("Unix domain sockets require Java 16 or newer.", e);
+		}
+	}
+
+	private static Object invoke(Method method, Object target, Object... arguments) throws IOException {
+		try {
+			return method.invoke(target, arguments);
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException("Cannot access " + method, e);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
@@ -1,13 +1,20 @@
 package com.teamscale
 
+import com.teamscale.client.CommitDescriptor
+import com.teamscale.client.EReportFormat
 import com.teamscale.client.TeamscaleClient
 import com.teamscale.config.extension.TeamscalePluginExtension
+import com.teamscale.report.ReportUtils
 import org.gradle.api.DefaultTask
 import org.gradle.api.GradleException
 import org.gradle.api.provider.SetProperty
 import org.gradle.api.tasks.*
+import java.io.File
 import java.net.ConnectException
 import java.net.SocketTimeoutException
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 /** Handles report uploads to Teamscale. */
 abstract class TeamscaleUploadTask : DefaultTask() {
@@ -57,6 +64,10 @@ abstract class TeamscaleUploadTask : DefaultTask() {
     @Input
     var ignoreFailures: Boolean = false
 
+    /** How many report groups (i.e. format, partition and message combinations) may be uploaded in parallel. */
+    @Input
+    var maxParallelUploads: Int = 4
+
     init {
         group = "Teamscale"
         description = "Uploads reports to Teamscale"
@@ -90,47 +101,105 @@ abstract class TeamscaleUploadTask : DefaultTask() {
     private fun uploadReports(enabledReports: List<Report>) {
         // We want to upload e.g. all JUnit test reports that go to the same partition
         // as one commit, so we group them before uploading them
-        for ((key, reports) in enabledReports.groupBy { Triple(it.format, it.partition.get(), it.message.get()) }) {
-            val (format, partition, message) = key
-            val reportFiles = reports.flatMap { it.reportFiles.files }.filter { it.exists() }.distinct()
-            logger.info("Uploading ${reportFiles.size} ${format.name} report(s) to partition $partition...")
-            if (reportFiles.isEmpty()) {
-                logger.info("Skipped empty upload!")
-                continue
-            }
-            logger.debug("Uploading $reportFiles")
-
-            try {
-                // Prefer to upload to revision and fallback to branch timestamp
-                val commitDescriptorOrNull = if (revision != null) null else commitDescriptor!!
-                retry(3) {
-                    val client =
-                        TeamscaleClient(server.url, server.userName, server.userAccessToken, server.project)
-                    client.uploadReports(
-                        format,
-                        reportFiles,
-                        commitDescriptorOrNull,
-                        revision,
-                        repository,
-                        partition,
-                        message
+        val uploads = enabledReports.groupBy { Triple(it.format, it.partition.get(), it.message.get()) }
+            .mapNotNull { (key, reports) ->
+                val (format, partition, message) = key
+                var reportFiles = reports.flatMap { it.reportFiles.files }.filter { it.exists() }.distinct()
+                if (format == EReportFormat.TESTWISE_COVERAGE) {
+                    // Teamscale only accepts uncompressed reports
+                    reportFiles = ReportUtils.prepareTestwiseCoverageReportsForUpload(
+                        reportFiles, temporaryDir.resolve(partition.replace("[ /\\\\]".toRegex(), "-"))
                     )
                 }
-            } catch (e: ConnectException) {
-                throw GradleException("Upload failed (${e.message})", e)
-            } catch (e: SocketTimeoutException) {
-                throw GradleException("Upload failed (${e.message})", e)
+                logger.info("Uploading ${reportFiles.size} ${format.name} report(s) to partition $partition...")
+                if (reportFiles.isEmpty()) {
+                    logger.info("Skipped empty upload!")
+                    return@mapNotNull null
+                }
+                ReportUpload(format, partition, message, reportFiles)
+            }
+        if (uploads.isEmpty()) {
+            return
+        }
+
+        // The client is thread-safe, so all uploads share its connection pool
+        val client = TeamscaleClient(server.url, server.userName, server.userAccessToken, server.project)
+        // Resolve the commit once up front, as the resolution accesses the project which is not thread-safe
+        val revision = this.revision
+        val repository = this.repository
+        // Prefer to upload to revision and fallback to branch timestamp
+        val commitDescriptorOrNull = if (revision != null) null else commitDescriptor!!
+        val executor = Executors.newFixedThreadPool(maxParallelUploads.coerceIn(1, uploads.size))
+        try {
+            val futures = uploads.map { reportUpload ->
+                executor.submit(Callable {
+                    upload(client, reportUpload, commitDescriptorOrNull, revision, repository)
+                })
             }
+            futures.forEach { it.get() }
+        } catch (e: ExecutionException) {
+            when (val cause = e.cause) {
+                is ConnectException, is SocketTimeoutException -> throw GradleException("Upload failed (${cause.message})", cause)
+                else -> throw cause ?: e
+            }
+        } finally {
+            executor.shutdownNow()
         }
     }
+
+    /** Uploads the report files of one group and logs the achieved throughput. */
+    private fun upload(
+        client: TeamscaleClient,
+        reportUpload: ReportUpload,
+        commitDescriptorOrNull: CommitDescriptor?,
+        revision: String?,
+        repository: String?
+    ) {
+        logger.debug("Uploading ${reportUpload.reportFiles}")
+        val startTime = System.nanoTime()
+        retry(3, INITIAL_RETRY_DELAY_MILLIS) {
+            client.uploadReports(
+                reportUpload.format,
+                reportUpload.reportFiles,
+                commitDescriptorOrNull,
+                revision,
+                repository,
+                reportUpload.partition,
+                reportUpload.message
+            )
+        }
+        val seconds = (System.nanoTime() - startTime) / 1e9
+        val megabytes = reportUpload.reportFiles.sumOf { it.length() } / (1024.0 * 1024.0)
+        logger.info(
+            "Uploaded %.2f MB of %s report(s) to partition %s in %.1f s (%.2f MB/s)".format(
+                megabytes, reportUpload.format.name, reportUpload.partition, seconds, megabytes / seconds.coerceAtLeast(0.001)
+            )
+        )
+    }
+
+    /** All report files that are uploaded in one commit to Teamscale. */
+    private data class ReportUpload(
+        val format: EReportFormat,
+        val partition: String,
+        val message: String,
+        val reportFiles: List<File>
+    )
+
+    companion object {
+
+        /** The delay before the first retry of a failed upload. Doubles with every further retry. */
+        private const val INITIAL_RETRY_DELAY_MILLIS = 1000L
+    }
 }
 
 /**
  * Retries the given block numOfRetries-times catching any thrown exceptions.
+ * Between the attempts the thread sleeps with exponential backoff starting at initialDelayMillis.
  * If none of the retries succeeded the latest catched exception is rethrown.
  */
-fun <T> retry(numOfRetries: Int, block: () -> T): T {
+fun <T> retry(numOfRetries: Int, initialDelayMillis: Long = 0, block: () -> T): T {
     var throwable: Throwable? = null
+    var delayMillis = initialDelayMillis
     (1..numOfRetries).forEach { attempt ->
         try {
             return block()
@@ -138,6 +207,10 @@ fun <T> retry(numOfRetries: Int, block: () -> T): T {
             throwable = e
             println("Failed attempt $attempt / $numOfRetries")
         }
+        if (attempt < numOfRetries && delayMillis > 0) {
+            Thread.sleep(delayMillis)
+            delayMillis *= 2
+        }
     }
     throw throwable!!
 }
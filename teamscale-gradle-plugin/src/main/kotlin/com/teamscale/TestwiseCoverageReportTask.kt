@@ -6,16 +6,23 @@ import com.teamscale.config.extension.TeamscaleTestImpactedTaskExtension
 import com.teamscale.report.EDuplicateClassFileBehavior
 import com.teamscale.report.ReportUtils
 import com.teamscale.report.testwise.ETestArtifactFormat
+import com.teamscale.report.testwise.TestwiseCoverageReportWriter
 import com.teamscale.report.testwise.jacoco.JaCoCoTestwiseReportGenerator
 import com.teamscale.report.testwise.model.TestExecution
 import com.teamscale.report.testwise.model.TestwiseCoverage
-import com.teamscale.report.testwise.model.builder.TestwiseCoverageReportBuilder
+import com.teamscale.report.testwise.model.builder.TestCoverageBuilder
+import com.teamscale.report.testwise.model.factory.TestInfoFactory
 import com.teamscale.report.util.ILogger
 import org.gradle.api.DefaultTask
+import org.gradle.api.GradleException
 import org.gradle.api.file.FileCollection
 import org.gradle.api.logging.Logger
 import org.gradle.api.tasks.*
 import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.function.Consumer
 
 /** Task which runs the impacted tests. */
 @Suppress("MemberVisibilityCanBePrivate")
@@ -38,6 +45,21 @@ open class TestwiseCoverageReportTask : DefaultTask() {
 		@Input
 		get() = configuration.agent.getFilter()
 
+	/** After how many tests the report should be split into multiple files. */
+	val splitAfter: Int
+		@Input
+		get() = configuration.report.splitAfter.get()
+
+	/** After how many megabytes of uncompressed JSON the report should be split into multiple files. */
+	val splitAfterMegabytes: Int
+		@Input
+		get() = configuration.report.splitAfterMegabytes.get()
+
+	/** Whether the report files should be compressed with gzip. */
+	val compress: Boolean
+		@Input
+		get() = configuration.report.compress.get()
+
 	/** Mapping from report files to artifacts that should be included in the report. */
 	@Internal
 	val reportsToArtifacts = mutableMapOf<Report, MutableList<File>>()
@@ -55,10 +77,18 @@ open class TestwiseCoverageReportTask : DefaultTask() {
 	val testArtifacts
 		get() = reportsToArtifacts.values.flatten()
 
-	/** The report files that will be produced by the task. */
-	val reportFiles
-		@OutputFiles
-		get() = reportsToArtifacts.keys.map { it.reportFiles }
+	/**
+	 * The file the report is written to. As the report is split into multiple files the actual report files
+	 * have a running number appended to the name (see [TestwiseCoverageConfiguration.isSplitReportFile]).
+	 */
+	val reportFile: File
+		@Internal
+		get() = configuration.report.destination.get().asFile
+
+	/** The directory that contains the report files that will be produced by the task. */
+	val reportDirectory: File
+		@OutputDirectory
+		get() = reportFile.parentFile
 
 	init {
 		group = "Teamscale"
@@ -73,6 +103,7 @@ open class TestwiseCoverageReportTask : DefaultTask() {
 
 	/**
 	 * Generates a testwise coverage from the execution data and merges it with eventually existing closure coverage.
+	 * The class files are only analyzed once, i.e. the probes cache of the generator is shared by all reports.
 	 */
 	@TaskAction
 	fun generateTestwiseCoverageReports() {
@@ -93,49 +124,90 @@ open class TestwiseCoverageReportTask : DefaultTask() {
 		}
 	}
 
-	/** Generates a testwise coverage report and stores it on disk. */
+	/**
+	 * Generates a testwise coverage report. The coverage is collected in a [TestwiseCoverage], which keeps it in a
+	 * compact form and merges the coverage of the same test, and then written to disk one test after the other.
+	 */
 	private fun generateTestwiseCoverageReport(
 		reportConfig: Report,
 		artifacts: MutableList<File>,
 		jaCoCoTestwiseReportGenerator: JaCoCoTestwiseReportGenerator
 	) {
-		val testDetails =
-			ReportUtils.readObjects(ETestArtifactFormat.TEST_LIST, Array<ClusteredTestDetails>::class.java, artifacts)
-		val testExecutions = ReportUtils.readObjects(
-			ETestArtifactFormat.TEST_EXECUTION,
-			Array<TestExecution>::class.java,
-			artifacts
-		)
-
-		val testwiseCoverage = buildTestwiseCoverage(artifacts, jaCoCoTestwiseReportGenerator) ?: return
-
-		logger.info("Merging report with ${testDetails.size} Details/${testwiseCoverage.tests.size} Coverage/${testExecutions.size} Results")
-
-		val report = TestwiseCoverageReportBuilder.createFrom(
-			testDetails,
-			testwiseCoverage.tests,
-			testExecutions,
-			reportConfig.partial
-		)
-		logger.info("Writing report to ${reportConfig.reportFiles.singleFile.absolutePath}")
-		ReportUtils.writeTestwiseCoverageReport(reportConfig.reportFiles.singleFile, report)
-	}
-
-	/** Collects JaCoCo's exec files from the artifacts folders and merges it with js coverage. */
-	private fun buildTestwiseCoverage(
-		artifacts: MutableList<File>,
-		jaCoCoTestwiseReportGenerator: JaCoCoTestwiseReportGenerator
-	): TestwiseCoverage? {
 		val jacocoExecutionData = ReportUtils.listFiles(ETestArtifactFormat.JACOCO, artifacts)
 		if (jacocoExecutionData.isEmpty()) {
 			logger.error("No execution data provided!")
-			return null
+			return
 		}
-		logger.info("Generating testwise coverage for $jacocoExecutionData")
 
+		val testInfoFactory = TestInfoFactory()
+		val testDetailsCount = ReportUtils.streamObjects(
+			ETestArtifactFormat.TEST_LIST,
+			ClusteredTestDetails::class.java,
+			artifacts
+		) { testInfoFactory.addTestDetails(it) }
+		val testExecutionsCount = ReportUtils.streamObjects(
+			ETestArtifactFormat.TEST_EXECUTION,
+			TestExecution::class.java,
+			artifacts
+		) { testInfoFactory.addTestExecution(it) }
+		logger.info("Writing report with $testDetailsCount Details/$testExecutionsCount Results to ${reportFile.absolutePath}")
+
+		deleteSplitReportFiles()
+		val testwiseCoverage = convertInParallel(jacocoExecutionData, jaCoCoTestwiseReportGenerator, testInfoFactory)
+		val writer = TestwiseCoverageReportWriter.builder(testInfoFactory, reportFile)
+			.splitAfter(splitAfter)
+			.splitAfterBytes(splitAfterMegabytes * 1024L * 1024L)
+			.compress(compress)
+			.partial(reportConfig.partial)
+			.build()
+		writer.use {
+			testwiseCoverage.tests.forEach(writer::accept)
+		}
+	}
+
+	/** Removes report files of a previous run, as the new run might produce fewer files. */
+	private fun deleteSplitReportFiles() {
+		reportDirectory.listFiles()?.filter { TestwiseCoverageConfiguration.isSplitReportFile(reportFile, it) }
+			?.forEach { it.delete() }
+	}
+
+	/**
+	 * Converts the given exec files in parallel. The number of threads is bounded by Gradle's max worker count.
+	 * If there are fewer exec files than workers, the remaining workers convert ranges of the individual exec files.
+	 *
+	 * The coverage is grouped by the uniform path that the [TestInfoFactory] resolves, so the coverage of a test
+	 * that is spread over multiple exec files and the coverage of all variants of a parameterized test end up in a
+	 * single test of the report.
+	 */
+	private fun convertInParallel(
+		jacocoExecutionData: List<File>,
+		jaCoCoTestwiseReportGenerator: JaCoCoTestwiseReportGenerator,
+		testInfoFactory: TestInfoFactory
+	): TestwiseCoverage {
 		val testwiseCoverage = TestwiseCoverage()
-		for (file in jacocoExecutionData) {
-			testwiseCoverage.add(jaCoCoTestwiseReportGenerator.convert(file))
+		val consumer = Consumer<TestCoverageBuilder> { coverage ->
+			val resolvedCoverage = TestCoverageBuilder(testInfoFactory.resolveUniformPath(coverage.uniformPath))
+			resolvedCoverage.addAll(coverage.files)
+			synchronized(testwiseCoverage) {
+				testwiseCoverage.add(resolvedCoverage)
+			}
+		}
+		val maxWorkerCount = project.gradle.startParameter.maxWorkerCount
+		val threadCount = minOf(jacocoExecutionData.size, maxWorkerCount)
+		val threadsPerFile = maxOf(1, maxWorkerCount / jacocoExecutionData.size)
+		val executor = Executors.newFixedThreadPool(threadCount)
+		try {
+			val futures = jacocoExecutionData.map { file ->
+				executor.submit(Callable {
+					logger.info("Generating testwise coverage for $file")
+					jaCoCoTestwiseReportGenerator.convertAndConsume(file, consumer, threadsPerFile)
+				})
+			}
+			futures.forEach { it.get() }
+		} catch (e: ExecutionException) {
+			throw GradleException("Failed to generate testwise coverage (${e.cause?.message})", e.cause)
+		} finally {
+			executor.shutdownNow()
 		}
 		return testwiseCoverage
 	}
@@ -5,6 +5,7 @@ import com.teamscale.client.EReportFormat
 import org.gradle.api.Project
 import org.gradle.api.file.FileCollection
 import org.gradle.api.file.RegularFileProperty
+import org.gradle.api.provider.Property
 import java.io.File
 
 /** Configuration for the testwise coverage report. */
@@ -20,6 +21,36 @@ open class TestwiseCoverageConfiguration(project: Project, task: TestImpacted) :
         this.destination.set(project.objects.fileProperty().fileValue(File(destination)))
     }
 
+    /**
+     * After how many tests the testwise coverage should be split into multiple report files. The report files are
+     * named after the destination with a running number appended, e.g. Unit-Tests-1.json.
+     */
+    var splitAfter: Property<Int> = project.objects.property(Int::class.java).convention(5000)
+
+    fun setSplitAfter(splitAfter: Int) {
+        this.splitAfter.set(splitAfter)
+    }
+
+    /**
+     * After how many megabytes of uncompressed JSON the testwise coverage should be split into multiple report files,
+     * in addition to [splitAfter]. Defaults to 0, i.e. the report is only split by the number of tests.
+     */
+    var splitAfterMegabytes: Property<Int> = project.objects.property(Int::class.java).convention(0)
+
+    fun setSplitAfterMegabytes(splitAfterMegabytes: Int) {
+        this.splitAfterMegabytes.set(splitAfterMegabytes)
+    }
+
+    /**
+     * Whether the report files should be compressed with gzip, which appends .gz to their names, e.g.
+     * Unit-Tests-1.json.gz. They are decompressed again before they are uploaded to Teamscale.
+     */
+    var compress: Property<Boolean> = project.objects.property(Boolean::class.java).convention(false)
+
+    fun setCompress(compress: Boolean) {
+        this.compress.set(compress)
+    }
+
     init {
         destination.set(partition.map { partition ->
             project.layout.buildDirectory.file(
@@ -34,6 +65,18 @@ open class TestwiseCoverageConfiguration(project: Project, task: TestImpacted) :
     }
 
     override fun getReportFiles(): FileCollection {
-        return project.objects.fileCollection().from(destination)
+        return project.objects.fileCollection().from(destination.map { destinationFile ->
+            val reportFile = destinationFile.asFile
+            project.fileTree(reportFile.parentFile).filter { isSplitReportFile(reportFile, it) }
+        })
+    }
+
+    companion object {
+
+        /** Returns whether the given file is one of the report files that have been split from the given destination. */
+        fun isSplitReportFile(destination: File, file: File): Boolean {
+            val baseName = Regex.escape(destination.name.removeSuffix(".json"))
+            return file.parentFile == destination.parentFile && file.name.matches(Regex("$baseName-\\d+\\.json(\\.gz)?"))
+        }
     }
 }
@@ -88,7 +88,7 @@ class TeamscalePluginTest {
 		assertThat(build.output).contains("FAILURE (21 tests, 14 successes, 1 failures, 6 skipped)")
 			.doesNotContain("you did not provide all relevant class files")
 		val testwiseCoverageReportFile =
-			File(temporaryFolder, "build/reports/testwise-coverage/unitTest/Unit-Tests.json")
+			File(temporaryFolder, "build/reports/testwise-coverage/unitTest/Unit-Tests-1.json")
 		assertThat(testwiseCoverageReportFile).exists()
 
 		assertFullCoverage(testwiseCoverageReportFile.readText())
@@ -110,7 +110,7 @@ class TeamscalePluginTest {
 		)
 		assertThat(build.output).contains("SUCCESS (1 tests, 1 successes, 0 failures, 0 skipped)")
 		val testwiseCoverageReportFile =
-			File(temporaryFolder, "build/reports/testwise-coverage/unitTest/Unit-Tests.json")
+			File(temporaryFolder, "build/reports/testwise-coverage/unitTest/Unit-Tests-1.json")
 		assertThat(testwiseCoverageReportFile).exists()
 
 		assertPartialCoverage(testwiseCoverageReportFile.readText())
@@ -133,7 +133,7 @@ class TeamscalePluginTest {
 			.doesNotContain("WARNING: JAXBContext implementation could not be found. WADL feature is disabled.")
 			.doesNotContain("WARNING: A class javax.activation.DataSource for a default provider")
 		val testwiseCoverageReportFile =
-			File(temporaryFolder, "build/reports/testwise-coverage/unitTest/Unit-Tests.json")
+			File(temporaryFolder, "build/reports/testwise-coverage/unitTest/Unit-Tests-1.json")
 		assertThat(testwiseCoverageReportFile).exists()
 
 		val source = testwiseCoverageReportFile.readText()
@@ -267,8 +267,15 @@ class TeamscalePluginTest {
 				"com/example/project/Calculator.java",
 				"13,16,20-22"
 			)
+			// the variants cover add and mul respectively, so their coverage must be merged
+			.containsCoverage(
+				"com/example/project/JUnit5Test/withValueSource(String)",
+				"com/example/project/Calculator.java",
+				"13,16,20-22"
+			)
 			// 19 Tests because JUnit 5 parameterized tests are grouped
 			.hasSize(19)
+			.hasUniqueUniformPaths()
 	}
 
 	private fun assertPartialCoverage(source: String) {
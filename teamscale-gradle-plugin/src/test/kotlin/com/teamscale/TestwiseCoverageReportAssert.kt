@@ -68,6 +68,18 @@ class TestwiseCoverageReportAssert(actual: TestwiseCoverageReport) :
 		return this
 	}
 
+	/** Asserts that no test occurs more than once in the report. */
+	fun hasUniqueUniformPaths(): TestwiseCoverageReportAssert {
+		isNotNull
+
+		val duplicates = actual.tests.groupBy { it.uniformPath }.filterValues { it.size > 1 }.keys
+		if (duplicates.isNotEmpty()) {
+			failWithMessage("Expected every test to occur only once but found duplicates of %s", duplicates)
+		}
+
+		return this
+	}
+
 	fun containsCoverage(
 		testUniformPath: String,
 		filePath: String,
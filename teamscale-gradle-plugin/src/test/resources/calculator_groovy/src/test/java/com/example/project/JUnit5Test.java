@@ -42,5 +42,12 @@ class JUnit5Test {
 	@ValueSource(strings = { "Hello", "JUnit" })
 	void withValueSource(String word) {
 		assertNotNull(word);
+		// each variant covers different lines, the report must contain the coverage of both
+		Calculator calculator = new Calculator();
+		if (word.equals("Hello")) {
+			assertEquals(3, calculator.add(1, 2));
+		} else {
+			assertEquals(6, calculator.mul(2, 3));
+		}
 	}
 }
@@ -55,6 +55,29 @@ public class TiaCoverageConvertMojo extends AbstractMojo {
 	@Parameter(defaultValue = "5000")
 	public int splitAfter;
 
+	/**
+	 * After how many megabytes of uncompressed JSON the testwise coverage should
+	 * be split into multiple reports, in addition to splitAfter (Default is 0,
+	 * i.e. the reports are only split by the number of tests).
+	 */
+	@Parameter(defaultValue = "0")
+	public int splitAfterMegabytes;
+
+	/**
+	 * Whether the testwise coverage reports should be compressed with gzip. The
+	 * upload-coverage goal decompresses them before uploading them.
+	 */
+	@Parameter(defaultValue = "false")
+	public boolean compress;
+
+	/**
+	 * Whether identical coverage of multiple tests should only be written once
+	 * per report. The upload-coverage goal expands such reports before uploading
+	 * them.
+	 */
+	@Parameter(defaultValue = "false")
+	public boolean deduplicateCoverage;
+
 	/**
 	 * The project build directory (usually: {@code ./target}). Provided
 	 * automatically by Maven.
@@ -98,11 +121,14 @@ public class TiaCoverageConvertMojo extends AbstractMojo {
 		List<File> jacocoExecutionDataList = ReportUtils.listFiles(ETestArtifactFormat.JACOCO, reportFileDirectories);
 		String reportFilePath = Paths.get(outputFolder, "testwise-coverage.json").toString();
 
-		try (TestwiseCoverageReportWriter coverageWriter = new TestwiseCoverageReportWriter(testInfoFactory,
-				new File(reportFilePath), splitAfter)) {
+		try (TestwiseCoverageReportWriter coverageWriter = TestwiseCoverageReportWriter
+				.builder(testInfoFactory, new File(reportFilePath)).splitAfter(splitAfter)
+				.splitAfterBytes(splitAfterMegabytes * 1024L * 1024L).compress(compress)
+				.deduplicateCoverage(deduplicateCoverage).build()) {
 			for (File executionDataFile : jacocoExecutionDataList) {
 				logger.info("Writing execution data for file: " + executionDataFile.getName());
-				generator.convertAndConsume(executionDataFile, coverageWriter);
+				generator.convertAndConsume(executionDataFile, coverageWriter,
+						Runtime.getRuntime().availableProcessors());
 			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
@@ -122,12 +148,13 @@ public class TiaCoverageConvertMojo extends AbstractMojo {
 
 	private TestInfoFactory createTestInfoFactory(List<File> reportFiles) throws MojoFailureException {
 		try {
-			List<TestDetails> testDetails = ReportUtils.readObjects(ETestArtifactFormat.TEST_LIST, TestDetails[].class,
-					reportFiles);
-			List<TestExecution> testExecutions = ReportUtils.readObjects(ETestArtifactFormat.TEST_EXECUTION,
-					TestExecution[].class, reportFiles);
-			logger.info("Writing report with " + testDetails.size() + " Details/" + testExecutions.size() + " Results");
-			return new TestInfoFactory(testDetails, testExecutions);
+			TestInfoFactory testInfoFactory = new TestInfoFactory();
+			int testDetailsCount = ReportUtils.streamObjects(ETestArtifactFormat.TEST_LIST, TestDetails.class,
+					reportFiles, testInfoFactory::addTestDetails);
+			int testExecutionsCount = ReportUtils.streamObjects(ETestArtifactFormat.TEST_EXECUTION,
+					TestExecution.class, reportFiles, testInfoFactory::addTestExecution);
+			logger.info("Writing report with " + testDetailsCount + " Details/" + testExecutionsCount + " Results");
+			return testInfoFactory;
 		} catch (IOException e) {
 			logger.error("Could not read test details from reports. Aborting.");
 			throw new MojoFailureException(e);
@@ -13,6 +13,7 @@ import org.codehaus.plexus.util.xml.Xpp3Dom;
 import shadow.com.teamscale.client.CommitDescriptor;
 import shadow.com.teamscale.client.EReportFormat;
 import shadow.com.teamscale.client.TeamscaleClient;
+import shadow.com.teamscale.report.ReportUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -201,7 +202,8 @@ public class CoverageUploadMojo extends TeamscaleMojoBase {
 		}
 		File[] files = reportPath.toFile().listFiles(File::isFile);
 		if (files != null) {
-			List<File> testwiseCoverageFiles = Arrays.asList(files);
+			List<File> testwiseCoverageFiles = ReportUtils.prepareTestwiseCoverageReportsForUpload(
+					Arrays.asList(files), Paths.get(projectBuildDir, "tia", "expanded-reports").toFile());
 			getLog().debug("Uploading testwise coverage to partition " + testwisePartition);
 			uploadCoverage(testwiseCoverageFiles.stream().map(File::toPath).collect(Collectors.toList()),
 					testwisePartition, EReportFormat.TESTWISE_COVERAGE);
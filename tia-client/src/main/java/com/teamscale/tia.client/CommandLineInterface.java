@@ -17,8 +17,6 @@ import com.teamscale.client.StringUtils;
 import com.teamscale.report.testwise.model.ETestExecutionResult;
 import com.teamscale.report.testwise.model.TestExecution;
 
-import okhttp3.HttpUrl;
-
 /**
  * Simple command-line interface to expose the {@link TiaAgent} to non-Java test runners.
  */
@@ -41,8 +39,7 @@ public class CommandLineInterface {
 					"You must provide at least two arguments: the agent's URL and the command to execute");
 		}
 
-		HttpUrl url = HttpUrl.parse(this.arguments.remove(0));
-		api = ITestwiseCoverageAgentApi.createService(url);
+		api = ITestwiseCoverageAgentApi.createService(this.arguments.remove(0));
 
 		command = this.arguments.remove(0);
 	}
@@ -1,10 +1,16 @@
 package com.teamscale.tia.client;
 
+import java.net.Proxy;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+import javax.net.SocketFactory;
+
 import com.teamscale.client.ClusteredTestDetails;
 import com.teamscale.client.PrioritizableTestCluster;
+import com.teamscale.client.UnixDomainSocketUtils;
+import com.teamscale.report.testwise.TestInfoBinaryFormat;
 import com.teamscale.report.testwise.model.TestExecution;
 
 import okhttp3.HttpUrl;
@@ -14,14 +20,19 @@ import retrofit2.Call;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 import retrofit2.http.Body;
+import retrofit2.http.Headers;
 import retrofit2.http.POST;
 import retrofit2.http.PUT;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 /** {@link Retrofit} API specification for the JaCoCo agent in test-wise coverage mode. */
 public interface ITestwiseCoverageAgentApi {
 
+	/** Prefix of agent URLs that denote the path of a Unix domain socket instead of an HTTP URL. */
+	String UNIX_DOMAIN_SOCKET_URL_PREFIX = "unix:";
+
 	/** Set the partition name as shown in Teamscale. */
 	@PUT("partition")
 	Call<ResponseBody> setPartition(@Body String partition);
@@ -55,6 +66,34 @@ public interface ITestwiseCoverageAgentApi {
 			@Body TestExecution testExecution
 	);
 
+	/**
+	 * Test finished and its coverage is returned (agent option <code>tia-mode=http</code>). Agents that support it
+	 * respond in the compact {@link TestInfoBinaryFormat}, older ones with JSON. The body is streamed, so it must be
+	 * closed by the caller.
+	 */
+	@Streaming
+	@Headers("Accept: " + TestInfoBinaryFormat.MEDIA_TYPE + ", application/json;q=0.5")
+	@POST("test/end/{testUniformPath}")
+	Call<ResponseBody> testFinishedWithCoverage(
+			@Path(value = "testUniformPath", encoded = true) String testUniformPath,
+			@Body TestExecution testExecution
+	);
+
+	/** Test finished and the next test started, which saves one request compared to the individual calls. */
+	@POST("test/end/{testUniformPath}/start/{nextTestUniformPath}")
+	Call<ResponseBody> testFinishedAndNextStarted(
+			@Path(value = "testUniformPath", encoded = true) String testUniformPath,
+			@Path(value = "nextTestUniformPath", encoded = true) String nextTestUniformPath
+	);
+
+	/** Test finished and the next test started, which saves one request compared to the individual calls. */
+	@POST("test/end/{testUniformPath}/start/{nextTestUniformPath}")
+	Call<ResponseBody> testFinishedAndNextStarted(
+			@Path(value = "testUniformPath", encoded = true) String testUniformPath,
+			@Path(value = "nextTestUniformPath", encoded = true) String nextTestUniformPath,
+			@Body TestExecution testExecution
+	);
+
 	/**
 	 * Test run started. Returns a single dummy cluster of TIA-selected and -prioritized tests
 	 * that Teamscale currently knows about.
@@ -85,15 +124,67 @@ public interface ITestwiseCoverageAgentApi {
 	@POST("testrun/end")
 	Call<ResponseBody> testRunFinished(@Query("partial") Boolean partial);
 
+	/**
+	 * Test run finished. Generate test-wise coverage report with the given test executions and upload to Teamscale.
+	 *
+	 * @param partial        Whether the test recording only contains a subset of the available tests.
+	 * @param testExecutions The results of all tests, if they were not passed when the individual tests finished.
+	 */
+	@POST("testrun/end")
+	Call<ResponseBody> testRunFinished(@Query("partial") Boolean partial, @Body List<TestExecution> testExecutions);
+
 	/**
 	 * Generates a {@link Retrofit} instance for this service, which uses basic auth to authenticate against the server
 	 * and which sets the Accept header to JSON.
 	 */
 	static ITestwiseCoverageAgentApi createService(HttpUrl baseUrl) {
+		return createService(baseUrl, SocketFactory.getDefault());
+	}
+
+	/**
+	 * Generates a {@link Retrofit} instance for this service, which talks to the agent via the Unix domain socket at
+	 * the given path (agent option <code>http-server-socket</code>). Requires Java 16 or newer.
+	 */
+	static ITestwiseCoverageAgentApi createService(java.nio.file.Path unixDomainSocket) {
+		if (!UnixDomainSocketUtils.isSupported()) {
+			throw new UnsupportedOperationException(
+					"Connecting to the agent via a Unix domain socket requires Java 16 or newer.");
+		}
+		return createService(HttpUrl.get("http://localhost/"), new UnixDomainSocketFactory(unixDomainSocket));
+	}
+
+	/**
+	 * Generates a {@link Retrofit} instance for this service from the given agent URL. This is either an HTTP URL or
+	 * {@value #UNIX_DOMAIN_SOCKET_URL_PREFIX} followed by the path of the agent's Unix domain socket, e.g.
+	 * <code>unix:/tmp/agent.sock</code>.
+	 *
+	 * @throws IllegalArgumentException if the URL is invalid.
+	 */
+	static ITestwiseCoverageAgentApi createService(String agentUrl) {
+		if (agentUrl.startsWith(UNIX_DOMAIN_SOCKET_URL_PREFIX)) {
+			return createService(Paths.get(agentUrl.substring(UNIX_DOMAIN_SOCKET_URL_PREFIX.length())));
+		}
+		HttpUrl url = HttpUrl.parse(agentUrl);
+		if (url == null) {
+			throw new IllegalArgumentException("Invalid agent URL: " + agentUrl);
+		}
+		return createService(url);
+	}
+
+	/**
+	 * Generates a {@link Retrofit} instance for this service, which connects to the agent with sockets from the given
+	 * factory.
+	 */
+	static ITestwiseCoverageAgentApi createService(HttpUrl baseUrl, SocketFactory socketFactory) {
 		OkHttpClient.Builder httpClientBuilder = new OkHttpClient.Builder();
 		httpClientBuilder.connectTimeout(60, TimeUnit.SECONDS);
 		httpClientBuilder.readTimeout(120, TimeUnit.SECONDS);
 		httpClientBuilder.writeTimeout(60, TimeUnit.SECONDS);
+		httpClientBuilder.socketFactory(socketFactory);
+		if (socketFactory instanceof UnixDomainSocketFactory) {
+			// the host name is only a placeholder, so it must not be resolved via a proxy
+			httpClientBuilder.proxy(Proxy.NO_PROXY);
+		}
 		Retrofit retrofit = new Retrofit.Builder()
 				.client(httpClientBuilder.build()) //
 				.baseUrl(baseUrl) //
@@ -2,11 +2,14 @@ package com.teamscale.tia.client;
 
 import com.teamscale.client.JsonUtils;
 import com.teamscale.client.StringUtils;
+import com.teamscale.report.testwise.TestInfoBinaryFormat;
 import com.teamscale.report.testwise.model.TestExecution;
 import com.teamscale.report.testwise.model.TestInfo;
+import okhttp3.MediaType;
 import okhttp3.ResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Represents a single test that is currently being executed by the caller of this library. Use
@@ -59,6 +62,38 @@ public class RunningTest {
 		}
 	}
 
+	/**
+	 * Signals to the agent that the test runner has finished executing this test and is about to start the given next
+	 * test. This combines {@link #endTest(TestRun.TestResultWithMessage)} and {@link TestRun#startTest(String)} into
+	 * a single request, which halves the overhead for test runners that execute one test after the other.
+	 *
+	 * @return the test that is now running.
+	 * @throws AgentHttpRequestFailedException if communicating with the agent fails or in case of internal errors. This
+	 *                                         method already retries the request once, so this is likely a terminal
+	 *                                         failure. The caller should record this problem appropriately and
+	 *                                         continue informing the coverage agent about further test start and end
+	 *                                         events.
+	 */
+	public RunningTest endTestAndStartNext(TestRun.TestResultWithMessage result,
+										   String nextUniformPath) throws AgentHttpRequestFailedException {
+		// the agent already records test duration, so we can simply provide a dummy value here
+		TestExecution execution = new TestExecution(uniformPath, 0L, result.result,
+				result.message);
+		ResponseBody body = AgentCommunicationUtils.handleRequestError(
+				() -> api.testFinishedAndNextStarted(UrlUtils.percentEncode(uniformPath),
+						UrlUtils.percentEncode(nextUniformPath), execution),
+				"Failed to end coverage recording for test case " + uniformPath + " and start it for test case " +
+						nextUniformPath + ". Coverage for these test cases is most likely lost.");
+
+		if (!StringUtils.isBlank(readBodyStringNullSafe(body))) {
+			throw new AgentConfigurationMismatch("The agent seems to be configured to return test coverage via" +
+					" HTTP to the tia-client (agent option `tia-mode=http`), which is not supported when ending a" +
+					" test and starting the next one with a single request. Please either reconfigure the agent or" +
+					" call #endTestAndRetrieveCoverage() and TestRun#startTest() instead of this method.");
+		}
+		return new RunningTest(nextUniformPath, api);
+	}
+
 	private String readBodyStringNullSafe(ResponseBody body) throws AgentHttpRequestFailedException {
 		if (body == null) {
 			return null;
@@ -92,10 +127,19 @@ public class RunningTest {
 		TestExecution execution = new TestExecution(uniformPath, 0L, result.result,
 				result.message);
 		ResponseBody body = AgentCommunicationUtils.handleRequestError(
-				() -> api.testFinished(UrlUtils.percentEncode(uniformPath), execution),
+				() -> api.testFinishedWithCoverage(UrlUtils.percentEncode(uniformPath), execution),
 				"Failed to end coverage recording for test case " + uniformPath +
 						". Coverage for that test case is most likely lost.");
 
+		if (body != null && isBinaryTestInfo(body.contentType())) {
+			try (InputStream in = body.byteStream()) {
+				return TestInfoBinaryFormat.read(in);
+			} catch (IOException e) {
+				throw new AgentHttpRequestFailedException("Unable to read the coverage returned by the agent. Maybe" +
+						" you have a version mismatch between the tia-client and the agent?", e);
+			}
+		}
+
 		String json = readBodyStringNullSafe(body);
 		if (StringUtils.isBlank(json)) {
 			throw new AgentConfigurationMismatch("You asked the tia-client to retrieve this test's coverage via HTTP" +
@@ -111,4 +155,9 @@ public class RunningTest {
 		}
 	}
 
+	private static boolean isBinaryTestInfo(MediaType contentType) {
+		return contentType != null && TestInfoBinaryFormat.MEDIA_TYPE.equals(
+				contentType.type() + "/" + contentType.subtype());
+	}
+
 }
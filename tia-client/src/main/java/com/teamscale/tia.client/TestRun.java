@@ -1,6 +1,9 @@
 package com.teamscale.tia.client;
 
 import com.teamscale.report.testwise.model.ETestExecutionResult;
+import com.teamscale.report.testwise.model.TestExecution;
+
+import java.util.List;
 
 /**
  * Use this class to report test start and end events and upload testwise coverage to Teamscale.
@@ -67,4 +70,19 @@ public class TestRun {
 				"Failed to create a coverage report and upload it to Teamscale. The coverage is most likely lost");
 	}
 
+	/**
+	 * Same as {@link #endTestRun(boolean)}, but additionally passes the results of all executed tests to the agent at
+	 * once. Use this if the results are not yet known when the individual tests end, or to keep the requests at test
+	 * end as small as possible.
+	 *
+	 * @throws AgentHttpRequestFailedException if communicating with the agent fails or in case of internal errors. This
+	 *                                         method already retries the request once, so this is likely a terminal
+	 *                                         failure. The recorded coverage is likely lost. The caller should log this
+	 *                                         problem appropriately.
+	 */
+	public void endTestRun(boolean partial, List<TestExecution> testExecutions) throws AgentHttpRequestFailedException {
+		AgentCommunicationUtils.handleRequestError(() -> api.testRunFinished(partial, testExecutions),
+				"Failed to create a coverage report and upload it to Teamscale. The coverage is most likely lost");
+	}
+
 }
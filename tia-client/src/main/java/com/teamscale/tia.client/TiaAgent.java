@@ -40,6 +40,18 @@ public class TiaAgent {
 		api = ITestwiseCoverageAgentApi.createService(url);
 	}
 
+	/**
+	 * @param includeNonImpactedTests if this is true, only prioritization is performed, no test selection.
+	 * @param url                     URL under which the agent is reachable. May also be
+	 *                                {@value ITestwiseCoverageAgentApi#UNIX_DOMAIN_SOCKET_URL_PREFIX} followed by the
+	 *                                path of the agent's Unix domain socket.
+	 * @throws IllegalArgumentException if the URL is invalid.
+	 */
+	public TiaAgent(boolean includeNonImpactedTests, String url) {
+		this.includeNonImpactedTests = includeNonImpactedTests;
+		api = ITestwiseCoverageAgentApi.createService(url);
+	}
+
 	/**
 	 * Starts a test run but does not ask Teamscale to prioritize and select any test cases. Use this when you only want
 	 * to record test-wise coverage and don't care about TIA's test selection and prioritization.
@@ -0,0 +1,233 @@
+package com.teamscale.tia.client;
+
+import com.teamscale.client.UnixDomainSocketUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Socket} that is connected to a Unix domain socket instead of a TCP port.
+ * <p>
+ * The channel is used in non-blocking mode, so reads honor the {@link #setSoTimeout(int) read timeout} like the reads
+ * of a TCP socket do. OkHttp relies on this, e.g. to check whether a pooled connection is still usable.
+ */
+class UnixDomainSocket extends Socket {
+
+	private final Path path;
+
+	private SocketChannel channel;
+
+	private Selector readSelector;
+
+	private Selector writeSelector;
+
+	private volatile int soTimeout;
+
+	private volatile boolean closed;
+
+	private boolean inputShutdown;
+
+	private boolean outputShutdown;
+
+	UnixDomainSocket(Path path) {
+		this.path = path;
+	}
+
+	/** Connects to the Unix domain socket. The given endpoint is ignored. */
+	@Override
+	public void connect(SocketAddress endpoint) throws IOException {
+		connect(endpoint, 0);
+	}
+
+	/** Connects to the Unix domain socket. The given endpoint is ignored. */
+	@Override
+	public synchronized void connect(SocketAddress endpoint, int timeout) throws IOException {
+		if (closed) {
+			throw new SocketException("Socket is closed");
+		}
+		channel = UnixDomainSocketUtils.openSocketChannel(path);
+		channel.configureBlocking(false);
+		readSelector = Selector.open();
+		channel.register(readSelector, SelectionKey.OP_READ);
+		writeSelector = Selector.open();
+		channel.register(writeSelector, SelectionKey.OP_WRITE);
+	}
+
+	@Override
+	public InputStream getInputStream() throws IOException {
+		ensureConnected();
+		return new InputStream() {
+			@Override
+			public int read() throws IOException {
+				byte[] buffer = new byte[1];
+				if (read(buffer, 0, 1) < 0) {
+					return -1;
+				}
+				return buffer[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] bytes, int offset, int length) throws IOException {
+				if (length == 0) {
+					return 0;
+				}
+				ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+				while (true) {
+					int count = channel.read(buffer);
+					if (count != 0) {
+						return count;
+					}
+					awaitReady(readSelector, soTimeout);
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				UnixDomainSocket.this.close();
+			}
+		};
+	}
+
+	@Override
+	public OutputStream getOutputStream() throws IOException {
+		ensureConnected();
+		return new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[]{(byte) b}, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+				while (buffer.hasRemaining()) {
+					if (channel.write(buffer) == 0) {
+						awaitReady(writeSelector, 0);
+					}
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				UnixDomainSocket.this.close();
+			}
+		};
+	}
+
+	/**
+	 * Waits until the channel is ready for the operation the given selector is registered for.
+	 *
+	 * @param timeoutMillis The maximum time to wait or 0 to wait forever.
+	 */
+	private void awaitReady(Selector selector, int timeoutMillis) throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (true) {
+			if (closed) {
+				throw new SocketException("Socket is closed");
+			}
+			long remainingMillis = 0;
+			if (timeoutMillis > 0) {
+				remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remainingMillis <= 0) {
+					throw new SocketTimeoutException("Read timed out");
+				}
+			}
+			try {
+				if (selector.select(remainingMillis) > 0) {
+					selector.selectedKeys().clear();
+					return;
+				}
+			} catch (ClosedSelectorException e) {
+				throw new SocketException("Socket is closed");
+			}
+		}
+	}
+
+	private void ensureConnected() throws SocketException {
+		if (closed) {
+			throw new SocketException("Socket is closed");
+		}
+		if (channel == null) {
+			throw new SocketException("Socket is not connected");
+		}
+	}
+
+	@Override
+	public void setSoTimeout(int timeout) {
+		soTimeout = timeout;
+	}
+
+	@Override
+	public int getSoTimeout() {
+		return soTimeout;
+	}
+
+	@Override
+	public boolean isConnected() {
+		return channel != null;
+	}
+
+	@Override
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public synchronized void shutdownInput() throws IOException {
+		ensureConnected();
+		channel.shutdownInput();
+		inputShutdown = true;
+	}
+
+	@Override
+	public synchronized void shutdownOutput() throws IOException {
+		ensureConnected();
+		channel.shutdownOutput();
+		outputShutdown = true;
+	}
+
+	@Override
+	public synchronized boolean isInputShutdown() {
+		return inputShutdown;
+	}
+
+	@Override
+	public synchronized boolean isOutputShutdown() {
+		return outputShutdown;
+	}
+
+	/** Closes the socket. Reads and writes that are blocked in other threads fail immediately. */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} finally {
+			readSelector.close();
+			writeSelector.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "UnixDomainSocket[" + path + "]";
+	}
+}
@@ -0,0 +1,64 @@
+package com.teamscale.tia.client;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+
+/**
+ * Creates sockets that connect to the agent's Unix domain socket, regardless of the host and port that are requested.
+ * This allows using OkHttp, which only knows TCP, to talk to the agent via a Unix domain socket. OkHttp only uses
+ * {@link #createSocket()} and connects the socket itself, but the other methods return connected sockets as well, so
+ * the factory can be used like any other {@link SocketFactory}.
+ */
+class UnixDomainSocketFactory extends SocketFactory {
+
+	private final Path path;
+
+	UnixDomainSocketFactory(Path path) {
+		this.path = path;
+	}
+
+	@Override
+	public Socket createSocket() {
+		return new UnixDomainSocket(path);
+	}
+
+	/** Returns a socket connected to the Unix domain socket. The host and port are ignored. */
+	@Override
+	public Socket createSocket(String host, int port) throws IOException {
+		return createConnectedSocket(InetSocketAddress.createUnresolved(host, port));
+	}
+
+	/** Returns a socket connected to the Unix domain socket. The addresses and ports are ignored. */
+	@Override
+	public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+		return createConnectedSocket(InetSocketAddress.createUnresolved(host, port));
+	}
+
+	/** Returns a socket connected to the Unix domain socket. The address and port are ignored. */
+	@Override
+	public Socket createSocket(InetAddress host, int port) throws IOException {
+		return createConnectedSocket(new InetSocketAddress(host, port));
+	}
+
+	/** Returns a socket connected to the Unix domain socket. The addresses and ports are ignored. */
+	@Override
+	public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+			throws IOException {
+		return createConnectedSocket(new InetSocketAddress(address, port));
+	}
+
+	private Socket createConnectedSocket(InetSocketAddress endpoint) throws IOException {
+		Socket socket = createSocket();
+		try {
+			socket.connect(endpoint);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+		return socket;
+	}
+}
@@ -0,0 +1,70 @@
+package com.teamscale.tia.client;
+
+import com.teamscale.client.UnixDomainSocketUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Tests for {@link UnixDomainSocket}. */
+@EnabledForJreRange(min = JRE.JAVA_16)
+public class UnixDomainSocketTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void shouldTransferDataAndHonorReadTimeout() throws Exception {
+		Path path = tempDir.resolve("agent.sock");
+		try (ServerSocketChannel serverChannel = UnixDomainSocketUtils.openServerSocketChannel(path);
+			 Socket socket = new UnixDomainSocketFactory(path).createSocket()) {
+			socket.connect(null);
+			try (SocketChannel serverSide = serverChannel.accept()) {
+				socket.getOutputStream().write(new byte[]{1, 2, 3});
+				ByteBuffer received = ByteBuffer.allocate(3);
+				while (received.hasRemaining()) {
+					serverSide.read(received);
+				}
+				assertThat(received.array()).containsExactly(1, 2, 3);
+
+				InputStream in = socket.getInputStream();
+				socket.setSoTimeout(10);
+				assertThrows(SocketTimeoutException.class, in::read);
+
+				serverSide.write(ByteBuffer.wrap(new byte[]{4}));
+				assertThat(in.read()).isEqualTo(4);
+			}
+			socket.setSoTimeout(0);
+			assertThat(socket.getInputStream().read()).isEqualTo(-1);
+		}
+	}
+
+	@Test
+	public void shouldCreateConnectedSockets() throws Exception {
+		Path path = tempDir.resolve("agent.sock");
+		UnixDomainSocketFactory factory = new UnixDomainSocketFactory(path);
+		try (ServerSocketChannel serverChannel = UnixDomainSocketUtils.openServerSocketChannel(path);
+			 Socket socket = factory.createSocket("localhost", 8123)) {
+			assertThat(socket.isConnected()).isTrue();
+			try (SocketChannel serverSide = serverChannel.accept()) {
+				socket.getOutputStream().write(new byte[]{1});
+				ByteBuffer received = ByteBuffer.allocate(1);
+				while (received.hasRemaining()) {
+					serverSide.read(received);
+				}
+				assertThat(received.array()).containsExactly(1);
+			}
+		}
+	}
+}
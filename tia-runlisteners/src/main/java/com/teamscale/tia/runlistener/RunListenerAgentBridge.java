@@ -4,7 +4,6 @@ import com.teamscale.report.testwise.model.ETestExecutionResult;
 import com.teamscale.tia.client.RunningTest;
 import com.teamscale.tia.client.TestRun;
 import com.teamscale.tia.client.TiaAgent;
-import okhttp3.HttpUrl;
 import org.junit.runner.notification.RunListener;
 
 /**
@@ -38,7 +37,7 @@ public class RunListenerAgentBridge {
 			throw exception;
 		}
 
-		TiaAgent agent = new TiaAgent(false, HttpUrl.get(agentUrl));
+		TiaAgent agent = new TiaAgent(false, agentUrl);
 		testRun = agent.startTestRunWithoutTestSelection();
 	}
 